@@ -28,8 +28,10 @@ import org.apache.commons.io.IOUtils;
 import org.basex.core.BaseXException;
 import org.basex.core.cmd.XQuery;
 
+import de.interactive_instruments.Configurable;
 import de.interactive_instruments.IFile;
 import de.interactive_instruments.SUtils;
+import de.interactive_instruments.etf.EtfConstants;
 import de.interactive_instruments.etf.dal.dao.Dao;
 import de.interactive_instruments.etf.dal.dao.Filter;
 import de.interactive_instruments.etf.dal.dao.PreparedDto;
@@ -55,6 +57,12 @@ import de.interactive_instruments.properties.ConfigPropertyHolder;
  */
 abstract class AbstractBsxDao<T extends Dto> implements Dao<T> {
 
+    /**
+     * If set to false, JSON responses are transformed with the DsResult2Json.xsl stylesheet instead of being written
+     * directly with the {@link StreamingJsonOutputFormat}, which produces the same output.
+     */
+    static final String ETF_STREAMING_JSON_PK = EtfConstants.ETF_PK_PREFIX + "internal.database.output.streamingJson";
+
     protected final TQuery tQuery;
     protected final BsxDsCtx ctx;
     protected final String xqueryStatement;
@@ -156,9 +164,14 @@ abstract class AbstractBsxDao<T extends Dto> implements Dao<T> {
             initAndAddTransformer(xmlItemCollectionTransformer);
 
             // JSON
-            final XsltOutputTransformer jsonItemCollectionTransformer = new XsltOutputTransformer(
-                    this, "DsResult2Json", "application/json", "xslt/DsResult2Json.xsl", "xslt");
-            initAndAddTransformer(jsonItemCollectionTransformer);
+            if (configProperties == null
+                    || !"false".equals(configProperties.getPropertyOrDefault(ETF_STREAMING_JSON_PK, "true"))) {
+                initAndAddTransformer(new StreamingJsonOutputFormat(this));
+            } else {
+                final XsltOutputTransformer jsonItemCollectionTransformer = new XsltOutputTransformer(
+                        this, StreamingJsonOutputFormat.LABEL, "application/json", "xslt/DsResult2Json.xsl", "xslt");
+                initAndAddTransformer(jsonItemCollectionTransformer);
+            }
 
         } catch (IOException | TransformerConfigurationException e) {
             throw new InitializationException(e);
@@ -167,7 +180,7 @@ abstract class AbstractBsxDao<T extends Dto> implements Dao<T> {
         initialized = true;
     }
 
-    private void initAndAddTransformer(final XsltOutputTransformer outputFormat)
+    private <F extends OutputFormat & Configurable> void initAndAddTransformer(final F outputFormat)
             throws ConfigurationException, InvalidStateTransitionException, InitializationException {
         outputFormat.getConfigurationProperties().setPropertiesFrom(configProperties, true);
         outputFormat.init();
@@ -218,22 +231,31 @@ abstract class AbstractBsxDao<T extends Dto> implements Dao<T> {
         }
     }
 
+    /**
+     * Creates a query for the XQuery statement of this DAO
+     *
+     * @return new query without parameters
+     */
+    protected BsXQuery createQuery() {
+        return new BsXQuery(this.ctx, xqueryStatement);
+    }
+
     private BsXQuery createPagedQuery(final Filter filter) throws BaseXException {
-        return new BsXQuery(this.ctx, xqueryStatement).parameter(filter)
+        return createQuery().parameter(filter)
                 .parameter("function", "paged")
                 .parameter("selection",
                         tQuery.typeName);
     }
 
-    private BsXQuery createIdQuery(final String id, final Filter filter) throws BaseXException {
-        return new BsXQuery(this.ctx, xqueryStatement).parameter(filter)
+    protected BsXQuery createIdQuery(final String id, final Filter filter) throws BaseXException {
+        return createQuery().parameter(filter)
                 .parameter("qids", id)
                 .parameter("function", "byId")
                 .parameter("selection", tQuery.typeName);
     }
 
     private BsXQuery createIdsQuery(final Set<EID> ids, final Filter filter) throws BaseXException {
-        return new BsXQuery(this.ctx, xqueryStatement).parameter(filter)
+        return createQuery().parameter(filter)
                 .parameter("qids", SUtils.concatStrWithPrefixAndSuffix(
                         ",", BsxDataStorage.ID_PREFIX, "", ids),
                         "xs:string")
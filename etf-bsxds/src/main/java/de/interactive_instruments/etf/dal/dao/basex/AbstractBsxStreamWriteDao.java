@@ -160,8 +160,7 @@ abstract class AbstractBsxStreamWriteDao<T extends Dto> extends AbstractBsxWrite
             itemFile = getFile(id);
             itemFile.createNewFile();
 
-            FileUtils.writeByteArrayToFile(itemFile, buffer);
-            add(dbName, itemFile);
+            addStreamed(dbName, id, itemFile, buffer);
 
             ctx.getLogger().trace("Wrote result to {}", itemFile.getPath());
             if (!exists(id)) {
@@ -190,6 +189,24 @@ abstract class AbstractBsxStreamWriteDao<T extends Dto> extends AbstractBsxWrite
 
     }
 
+    /**
+     * Writes a validated streamed item to its file and adds it to the database
+     *
+     * @param dbName
+     *            name of the database
+     * @param id
+     *            ID of the item
+     * @param itemFile
+     *            file of the item
+     * @param buffer
+     *            the validated XML document
+     */
+    protected void addStreamed(final String dbName, final EID id, final IFile itemFile, final byte[] buffer)
+            throws IOException, StorageException {
+        FileUtils.writeByteArrayToFile(itemFile, buffer);
+        add(dbName, itemFile);
+    }
+
     @Override
     public final T add(final InputStream inputStream, final Optional<Dto> rootType, final ChangeBeforeStoreHook<T> hook)
             throws StorageException {
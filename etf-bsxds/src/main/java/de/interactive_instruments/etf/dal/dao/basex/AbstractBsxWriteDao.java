@@ -175,6 +175,15 @@ abstract class AbstractBsxWriteDao<T extends Dto> extends AbstractBsxDao<T> impl
         flush(dbName);
     }
 
+    protected final void deleteAll(final String dbName, final List<IFile> files) throws BaseXException, StorageException {
+        final String sb = files.stream().map(
+                file -> "db:delete('" + dbName + "', '" + file.getName() + "')")
+                .collect(Collectors.joining(", "));
+        final XQuery deleteCmds = new XQuery(sb);
+        deleteCmds.execute(ctx.getBsxCtx());
+        flush(dbName);
+    }
+
     protected String dataBaseNameForType(final T t) {
         return this.tQuery.defaultDatabaseName();
     }
@@ -17,6 +17,7 @@ package de.interactive_instruments.etf.dal.dao.basex;
 
 import static de.interactive_instruments.etf.dal.dao.basex.DsUtils.valueOfOrDefault;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.util.HashMap;
 
@@ -24,6 +25,7 @@ import org.basex.core.BaseXException;
 import org.basex.core.cmd.XQuery;
 
 import de.interactive_instruments.etf.dal.dao.Filter;
+import de.interactive_instruments.etf.dal.dao.basex.ShardedTestTaskResult.ShardInsertingOutputStream;
 
 /**
  * Wrapped Xquery
@@ -36,6 +38,7 @@ final class BsXQuery {
     private final BsxDsCtx ctx;
     private final String queryStr;
     private final HashMap<String, String[]> parameter;
+    private boolean insertShards;
 
     BsXQuery(final BsxDsCtx ctx, final String queryStr) {
         this.ctx = ctx;
@@ -43,10 +46,22 @@ final class BsXQuery {
         this.parameter = new HashMap<>();
     }
 
-    private BsXQuery(final BsxDsCtx ctx, final String queryStr, final HashMap parameter) {
+    private BsXQuery(final BsxDsCtx ctx, final String queryStr, final HashMap parameter, final boolean insertShards) {
         this.ctx = ctx;
         this.queryStr = queryStr;
         this.parameter = new HashMap<>(parameter);
+        this.insertShards = insertShards;
+    }
+
+    /**
+     * Inserts the Test Task Result shards that are referenced in the query result into the output stream, see
+     * {@link ShardedTestTaskResult}
+     *
+     * @return this query
+     */
+    BsXQuery insertShards() {
+        this.insertShards = true;
+        return this;
     }
 
     BsXQuery parameter(final String name, final String value, final String type) {
@@ -94,7 +109,18 @@ final class BsXQuery {
 
     void execute(final OutputStream os) throws BaseXException {
         ensureInitializedQuery();
-        xQuery.execute(ctx.getBsxCtx(), os);
+        if (insertShards) {
+            final ShardInsertingOutputStream shardOs = new ShardInsertingOutputStream(os,
+                    path -> ctx.getStoreDir().secureExpandPathDown(path));
+            xQuery.execute(ctx.getBsxCtx(), shardOs);
+            try {
+                shardOs.finish();
+            } catch (final IOException e) {
+                throw new BaseXException(e);
+            }
+        } else {
+            xQuery.execute(ctx.getBsxCtx(), os);
+        }
     }
 
     String execute() throws BaseXException {
@@ -103,7 +129,7 @@ final class BsXQuery {
     }
 
     BsXQuery createCopy() {
-        return new BsXQuery(ctx, queryStr, this.parameter);
+        return new BsXQuery(ctx, queryStr, this.parameter, insertShards);
     }
 
     @Override
@@ -537,9 +537,10 @@ public final class BsxDataStorage implements BsxDsCtx, DataStorage {
 
                     final MultiFileFilter testTaskIdsFilter = file -> {
                         final String n = file.getName();
-                        if (n.startsWith("TestTaskResult-")) {
+                        // shard files are not stored in the database, only the header and the shard index
+                        if (n.startsWith("TestTaskResult-") || n.startsWith(ShardedTestTaskResult.INDEX_ELEMENT + "-")) {
                             for (final String testTaskId : testTaskIds) {
-                                if (n.contains(testTaskId)) {
+                                if (n.endsWith("-" + testTaskId + ".xml")) {
                                     return true;
                                 }
                             }
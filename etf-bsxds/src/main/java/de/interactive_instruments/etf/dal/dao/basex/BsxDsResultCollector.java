@@ -23,6 +23,7 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import de.interactive_instruments.IFile;
@@ -30,6 +31,7 @@ import de.interactive_instruments.MimeTypeUtils;
 import de.interactive_instruments.SUtils;
 import de.interactive_instruments.container.Pair;
 import de.interactive_instruments.etf.dal.dao.DataStorage;
+import de.interactive_instruments.etf.dal.dto.result.ResultStatistics;
 import de.interactive_instruments.etf.dal.dto.result.TestResultStatus;
 import de.interactive_instruments.etf.dal.dto.result.TestTaskResultDto;
 import de.interactive_instruments.etf.dal.dto.run.TestTaskDto;
@@ -55,12 +57,15 @@ final class BsxDsResultCollector extends AbstractTestResultCollector {
     private final IFile resultFile;
     private final TestTaskDto testTaskDto;
     private final DataStorage dataStorage;
+    private final CountingOutputStream countingOutputStream;
     private final BufferedOutputStream fileOutputStream;
     private final List<String> testStepAttachmentIds = new ArrayList<>(8);
     private final XmlTestResultWriter writer;
     private final int errorLimit;
     private boolean internalError = false;
     private TestTaskEndListener listener;
+    private PartialTestTaskResult partialResult;
+    private long testModuleResultStart;
 
     public BsxDsResultCollector(final DataStorage dataStorage, final TestRunLogger testRunLogger, final IFile resultFile,
             final IFile attachmentDir, final TestTaskDto testTaskDto) {
@@ -84,7 +89,8 @@ final class BsxDsResultCollector extends AbstractTestResultCollector {
         }
         errorLimit = errorLimitTmp;
         try {
-            fileOutputStream = new BufferedOutputStream(new FileOutputStream(resultFile), 16384);
+            countingOutputStream = new CountingOutputStream(new FileOutputStream(resultFile));
+            fileOutputStream = new BufferedOutputStream(countingOutputStream, 16384);
             writer = new XmlTestResultWriter(XMLOutputFactory.newInstance().createXMLStreamWriter(
                     fileOutputStream, "UTF-8"),
                     errorLimit);
@@ -117,14 +123,35 @@ final class BsxDsResultCollector extends AbstractTestResultCollector {
     ///////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     protected String startTestTaskResult(final String resultedFrom, final long startTimestamp) throws XMLStreamException {
-        return writer.writeStartTestTaskResult(
+        final String id = writer.writeStartTestTaskResult(
                 resultedFrom, startTimestamp, testTaskDto.getTestObject().getId().getId());
+        partialResult = new PartialTestTaskResult(testTaskDto.getId().getId(), id, resultFile);
+        getTestTaskResultDao().publishPartialResult(partialResult);
+        return id;
     }
 
-    protected String startTestModuleResult(final String resultedFrom, final long startTimestamp) throws XMLStreamException {
+    protected String startTestModuleResult(final String resultedFrom, final long startTimestamp)
+            throws XMLStreamException, IOException {
+        testModuleResultStart = flushedBytes();
+        partialResult.setHeaderLength(testModuleResultStart);
         return writer.writeStartTestModuleResult(resultedFrom, startTimestamp);
     }
 
+    private TestTaskResultDao getTestTaskResultDao() {
+        return (TestTaskResultDao) dataStorage.getDao(TestTaskResultDto.class);
+    }
+
+    /**
+     * Flushes all results written so far to the result file
+     *
+     * @return number of bytes in the result file
+     */
+    private long flushedBytes() throws XMLStreamException, IOException {
+        writer.flushItemBoundary();
+        fileOutputStream.flush();
+        return countingOutputStream.getByteCount();
+    }
+
     protected String doStartTestCaseResult(final String resultedFrom, final long startTimestamp) throws XMLStreamException {
         return writer.writeStartTestCaseResult(resultedFrom, startTimestamp);
     }
@@ -151,8 +178,10 @@ final class BsxDsResultCollector extends AbstractTestResultCollector {
             final String id = writer.writeEndTestTaskResult(testModelItemId, status, stopTimestamp);
             try {
                 writer.flush();
-                final EID resultId = ((AbstractBsxStreamWriteDao) dataStorage.getDao(
-                        TestTaskResultDto.class)).addAndValidate(testTaskDto.getParent(), new FileInputStream(resultFile));
+                // The completed Test Module results are already part of the result file
+                final TestTaskResultDao testTaskResultDao = getTestTaskResultDao();
+                final EID resultId = testTaskResultDao.addAndValidate(testTaskDto.getParent(), new FileInputStream(resultFile));
+                testTaskResultDao.writeResultStatistics(resultId, getResultStatistics());
                 if (listener != null) {
                     listener.testTaskFinished(dataStorage.getDao(TestTaskResultDto.class).getById(resultId).getDto());
                 }
@@ -163,6 +192,7 @@ final class BsxDsResultCollector extends AbstractTestResultCollector {
                 testRunLogger.error("Failed to stream result file into store: {}", resultFile.getPath());
                 throw e;
             } finally {
+                getTestTaskResultDao().withdrawPartialResult(partialResult);
                 writer.close();
             }
             return id;
@@ -171,8 +201,11 @@ final class BsxDsResultCollector extends AbstractTestResultCollector {
     }
 
     protected String endTestModuleResult(final String testModelItemId, final int status, final long stopTimestamp)
-            throws XMLStreamException {
-        return writer.writeEndTestModuleResult(testModelItemId, status, stopTimestamp);
+            throws XMLStreamException, IOException {
+        final String id = writer.writeEndTestModuleResult(testModelItemId, status, stopTimestamp);
+        // Publish the completed Test Module result
+        partialResult.addFragment(testModuleResultStart, flushedBytes());
+        return id;
     }
 
     protected String endTestCaseResult(final String testModelItemId, final int status, final long stopTimestamp)
@@ -435,6 +468,9 @@ final class BsxDsResultCollector extends AbstractTestResultCollector {
         if (!this.internalError) {
             this.internalError = true;
 
+            if (partialResult != null) {
+                getTestTaskResultDao().withdrawPartialResult(partialResult);
+            }
             try {
                 resultFile.delete();
                 final BufferedOutputStream errorOutputStream = new BufferedOutputStream(new FileOutputStream(resultFile),
@@ -459,8 +495,12 @@ final class BsxDsResultCollector extends AbstractTestResultCollector {
                             null, null, null);
                 }
 
-                final EID resultId = ((AbstractBsxStreamWriteDao) dataStorage.getDao(
-                        TestTaskResultDto.class)).addAndValidate(testTaskDto.getParent(), new FileInputStream(resultFile));
+                final TestTaskResultDao testTaskResultDao = getTestTaskResultDao();
+                final EID resultId = testTaskResultDao.addAndValidate(testTaskDto.getParent(), new FileInputStream(resultFile));
+                // the stored result only consists of the Test Task result
+                final ResultStatistics errorStatistics = new ResultStatistics();
+                errorStatistics.count(ResultStatistics.TEST_TASK_RESULT, TestResultStatus.INTERNAL_ERROR.value());
+                testTaskResultDao.writeResultStatistics(resultId, errorStatistics);
                 if (listener != null) {
                     listener.testTaskFinished(dataStorage.getDao(TestTaskResultDto.class).getById(resultId).getDto());
                 }
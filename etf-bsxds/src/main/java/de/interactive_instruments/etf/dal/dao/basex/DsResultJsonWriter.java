@@ -0,0 +1,981 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.dal.dao.basex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.interactive_instruments.SUtils;
+
+/**
+ * Writes a DsResultSet document as JSON item collection without an XSLT transformation.
+ *
+ * The output is identical to the output of the DsResult2Json.xsl stylesheet: the references of DsResult2Xml.xsl are
+ * resolved in the same way and the nodes are mapped according to the conventions of the XSLTJSON stylesheet
+ * (attributes become members, adjacent elements with the same name become arrays, text only elements become
+ * values, "$" holds the text of elements with attributes and numbers, booleans and null are not quoted).
+ *
+ * The document is read twice. The first pass collects the IDs of all items, the collections of the result set and the
+ * shape of every node (text content, child nodes and whether the next sibling has the same name), which decides how
+ * a node is mapped before its content is read. The second pass writes the JSON while the document is read. Only
+ * elements with mixed content, which do not occur in the ETF model, are built as small trees before they are written.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class DsResultJsonWriter {
+
+    private static final String ETF_NS = "http://www.interactive-instruments.de/etf/2.0";
+
+    /**
+     * Returns a new stream of the same document for each pass
+     */
+    @FunctionalInterface
+    interface Input {
+        InputStream open() throws IOException;
+    }
+
+    private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    static {
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    // node shape flags, collected in the first pass
+    private static final byte HAS_TEXT = 1;
+    private static final byte HAS_CHILD_NODES = 2;
+    private static final byte NEXT_SIBLING_SAME_NAME = 4;
+
+    // how an element is transformed, see DsResult2Xml.xsl
+    private static final int COPY = 0;
+    private static final int REMOVE = 1;
+    private static final int REFERENCE = 2;
+    private static final int LOCAL_REFERENCE = 3;
+    private static final int ATTACHMENT_DATA = 4;
+    private static final int LOG_PATH = 5;
+    private static final int SKIP = 6;
+
+    // type of the referenced item by the name of the referencing element, see DsResult2Xml.xsl
+    private static final Map<String, String> PARENT_TYPES = new HashMap<>();
+    private static final Map<String, String> RESULTED_FROM_TYPES = new HashMap<>();
+    static {
+        PARENT_TYPES.put("TestModule", "ExecutableTestSuite");
+        PARENT_TYPES.put("TestCase", "TestModule");
+        PARENT_TYPES.put("TestStep", "TestCase");
+        PARENT_TYPES.put("TestAssertion", "TestStep");
+        PARENT_TYPES.put("TestModuleResult", "TestTaskResult");
+        PARENT_TYPES.put("TestCaseResult", "TestModuleResult");
+        PARENT_TYPES.put("TestStepResult", "TestCaseResult");
+        PARENT_TYPES.put("TestAssertionResult", "TestStepResult");
+        PARENT_TYPES.put("TestObjectType", "TestObjectType");
+        PARENT_TYPES.put("TranslationTemplateBundle", "TranslationTemplateBundle");
+        PARENT_TYPES.put("TestTask", "TestRun");
+        PARENT_TYPES.put("TestTaskResult", "TestRun");
+
+        RESULTED_FROM_TYPES.put("TestTaskResult", "ExecutableTestSuite");
+        RESULTED_FROM_TYPES.put("TestModuleResult", "TestModule");
+        RESULTED_FROM_TYPES.put("TestCaseResult", "TestCase");
+        RESULTED_FROM_TYPES.put("TestStepResult", "TestStep");
+        RESULTED_FROM_TYPES.put("TestAssertionResult", "TestAssertion");
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String serviceUrl;
+    private final String selection;
+    private final String offset;
+    private final String limit;
+    private final String fields;
+
+    // first pass
+    private final Set<String> ids = new HashSet<>();
+    private final List<Collection> collections = new ArrayList<>();
+    private byte[] shapes = new byte[1024];
+
+    // second pass
+    private Writer out;
+    private int ordinal;
+
+    /**
+     * A child of the DsResultSet element
+     */
+    private static final class Collection {
+        private final String name;
+        private String firstItemName;
+        private String firstItemId;
+        private int items;
+
+        private Collection(final String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Frame {
+        private final Frame parent;
+        private final String name;
+        private final boolean etf;
+        private final String id;
+        private final int ordinal;
+        private final int transformation;
+        private byte shape;
+        private String lastChildName;
+        private int lastChildOrdinal;
+
+        private Frame(final Frame parent, final XMLStreamReader reader, final int ordinal, final int transformation) {
+            this.parent = parent;
+            this.name = reader.getLocalName();
+            this.etf = ETF_NS.equals(reader.getNamespaceURI());
+            this.id = reader.getAttributeValue(null, "id");
+            this.ordinal = ordinal;
+            this.transformation = transformation;
+        }
+
+        private String id() {
+            return id != null ? id : "";
+        }
+    }
+
+    /**
+     * Tracks the members of a JSON object that is written
+     */
+    private final class Members {
+        private int count;
+        private boolean inArray;
+
+        private Members(final int count) {
+            this.count = count;
+        }
+
+        private void begin(final String name, final boolean nextSiblingSameName) throws IOException {
+            if (inArray) {
+                out.write(',');
+            } else {
+                if (count++ > 0) {
+                    out.write(',');
+                }
+                writeName(name);
+                if (nextSiblingSameName) {
+                    out.write('[');
+                    inArray = true;
+                }
+            }
+        }
+
+        private void end(final boolean nextSiblingSameName) throws IOException {
+            if (inArray && !nextSiblingSameName) {
+                out.write(']');
+                inArray = false;
+            }
+        }
+    }
+
+    /**
+     * Element with mixed content
+     */
+    private static final class Node {
+        private final String name;
+        private final List<String> attributes;
+        // Node, String for text or null for comments and processing instructions
+        private final List<Object> children = new ArrayList<>();
+        private final List<String> childNames = new ArrayList<>();
+
+        private Node(final String name, final List<String> attributes) {
+            this.name = name;
+            this.attributes = attributes;
+        }
+
+        private void addText(final String text) {
+            final int last = children.size() - 1;
+            if (last >= 0 && children.get(last) instanceof String) {
+                children.set(last, children.get(last) + text);
+            } else {
+                children.add(text);
+                childNames.add("");
+            }
+        }
+
+        private void add(final String name, final Node node) {
+            children.add(node);
+            childNames.add(name);
+        }
+
+        private void appendText(final StringBuilder builder) {
+            for (final Object child : children) {
+                if (child instanceof String) {
+                    builder.append((String) child);
+                } else if (child != null) {
+                    ((Node) child).appendText(builder);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param serviceUrl
+     *            base URL of the service
+     * @param selection
+     *            local name of the selected items
+     * @param offset
+     *            offset parameter or null
+     * @param limit
+     *            limit parameter or null
+     * @param fields
+     *            fields parameter or null
+     */
+    DsResultJsonWriter(final String serviceUrl, final String selection, final String offset, final String limit,
+            final String fields) {
+        this.serviceUrl = serviceUrl;
+        this.selection = selection != null ? selection : "";
+        this.offset = offset;
+        this.limit = limit;
+        this.fields = fields == null || "*".equals(fields) ? "" : fields;
+    }
+
+    void write(final Input input, final Writer writer) throws IOException {
+        try {
+            try (final InputStream in = input.open()) {
+                final XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+                try {
+                    scan(reader);
+                } finally {
+                    reader.close();
+                }
+            }
+            this.out = writer;
+            writeItemCollection(input);
+            writer.flush();
+        } catch (final XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // First pass
+    // =====================================================================================================
+
+    private void scan(final XMLStreamReader reader) throws XMLStreamException, IOException {
+        Frame current = null;
+        int count = 0;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT: {
+                final int nodeOrdinal = count++;
+                final Frame frame;
+                if (current == null) {
+                    if (!"DsResultSet".equals(reader.getLocalName())) {
+                        throw new IOException("Expected a DsResultSet but found " + reader.getLocalName());
+                    }
+                    frame = new Frame(null, reader, nodeOrdinal, COPY);
+                } else {
+                    frame = new Frame(current, reader,
+                            nodeOrdinal, current.transformation == COPY ? transformation(reader, current) : SKIP);
+                    if (frame.id != null) {
+                        ids.add(frame.id);
+                    }
+                    if (current.parent == null) {
+                        collections.add(new Collection(frame.name));
+                    } else if (current.parent.parent == null) {
+                        final Collection collection = collections.get(collections.size() - 1);
+                        if (collection.items++ == 0) {
+                            collection.firstItemName = frame.name;
+                            collection.firstItemId = frame.id;
+                        }
+                    }
+                    if (frame.transformation != REMOVE && frame.transformation != SKIP) {
+                        addChild(current, frame.name, nodeOrdinal);
+                    }
+                }
+                current = frame;
+            }
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                ensureCapacity(current.ordinal);
+                shapes[current.ordinal] |= current.shape;
+                current = current.parent;
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+                if (current != null && current.transformation == COPY && !isWhitespace(reader.getText())) {
+                    current.shape |= HAS_TEXT;
+                    current.lastChildName = null;
+                }
+                break;
+            case XMLStreamConstants.COMMENT:
+            case XMLStreamConstants.PROCESSING_INSTRUCTION: {
+                final int nodeOrdinal = count++;
+                if (current != null && current.transformation == COPY) {
+                    addChild(current, nodeName(reader), nodeOrdinal);
+                }
+            }
+                break;
+            }
+        }
+    }
+
+    private void addChild(final Frame parent, final String name, final int childOrdinal) {
+        if (parent.parent == null) {
+            // the collections are grouped when they are written
+            return;
+        }
+        parent.shape |= HAS_CHILD_NODES;
+        if (name.equals(parent.lastChildName)) {
+            ensureCapacity(parent.lastChildOrdinal);
+            shapes[parent.lastChildOrdinal] |= NEXT_SIBLING_SAME_NAME;
+        }
+        parent.lastChildName = name;
+        parent.lastChildOrdinal = childOrdinal;
+    }
+
+    private void ensureCapacity(final int index) {
+        if (index >= shapes.length) {
+            shapes = Arrays.copyOf(shapes, Math.max(shapes.length * 2, index + 1));
+        }
+    }
+
+    private byte shape(final int index) {
+        return index < shapes.length ? shapes[index] : 0;
+    }
+
+    private static int transformation(final XMLStreamReader reader, final Frame parent) {
+        if (!ETF_NS.equals(reader.getNamespaceURI())) {
+            return COPY;
+        }
+        final String name = reader.getLocalName();
+        switch (name) {
+        case "itemHash":
+        case "localPath":
+            return parent.parent != null ? REMOVE : COPY;
+        case "tag":
+        case "testObject":
+        case "testObjectType":
+        case "testTaskResult":
+        case "executableTestSuite":
+        case "translationTemplateBundle":
+        case "testDriver":
+        case "testItemType":
+        case "parent":
+        case "resultedFrom":
+            return REFERENCE;
+        case "translationTemplate":
+            return LOCAL_REFERENCE;
+        case "testCase":
+            return parent.etf && "dependencies".equals(parent.name) ? LOCAL_REFERENCE : COPY;
+        case "attachment":
+            return parent.etf && "attachments".equals(parent.name) ? LOCAL_REFERENCE : COPY;
+        case "referencedData":
+            return parent.etf && "Attachment".equals(parent.name) ? ATTACHMENT_DATA : COPY;
+        case "logPath":
+            return parent.etf && "TestRun".equals(parent.name) ? LOG_PATH : COPY;
+        default:
+            return COPY;
+        }
+    }
+
+    // Second pass
+    // =====================================================================================================
+
+    private void writeItemCollection(final Input input) throws IOException, XMLStreamException {
+        final List<Collection> selected = new ArrayList<>();
+        final List<Collection> referenced = new ArrayList<>();
+        int returnedItems = 0;
+        for (final Collection collection : collections) {
+            if (selection.equals(collection.firstItemName)) {
+                selected.add(collection);
+                returnedItems += collection.items;
+            } else {
+                referenced.add(collection);
+            }
+        }
+
+        out.write("{\"EtfItemCollection\":{\"version\":2.0,\"returnedItems\":");
+        out.write(String.valueOf(returnedItems));
+        final String offsetValue = offset != null ? offset : "0";
+        final double offsetNumber = offset != null ? toDouble(offset) : 0;
+        final double limitNumber = limit != null ? toDouble(limit) : -1;
+        if (limitNumber > 0) {
+            out.write(",\"position\":");
+            writeValue(formatInteger(offsetNumber / limitNumber));
+            out.write(",\"ref\":");
+            writeValue(createUrl(serviceUrl + "/" + selection + "s.json",
+                    "offset", offsetValue, "limit", limit, "fields", fields));
+            if (offsetNumber - limitNumber >= 0) {
+                out.write(",\"previous\":");
+                writeValue(createUrl(serviceUrl + "/" + selection + "s.json",
+                        "offset", toXsString(offsetNumber - limitNumber), "limit", limit, "fields", fields));
+            }
+            if (returnedItems > 0 && returnedItems == limitNumber) {
+                out.write(",\"next\":");
+                writeValue(createUrl(serviceUrl + "/" + selection + "s.json",
+                        "offset", toXsString(offsetNumber + limitNumber), "limit", limit, "fields", fields));
+            }
+        } else {
+            final String firstItemId = selected.isEmpty() || selected.get(0).firstItemId == null ? ""
+                    : selected.get(0).firstItemId;
+            out.write(",\"ref\":");
+            writeValue(createUrl(serviceUrl + "/" + selection + "s/" + substringAfter(firstItemId, "EID") + ".json",
+                    "fields", fields));
+        }
+
+        writeCollections(input, selected, new Members(1));
+        if (returnedItems > 0 && !referenced.isEmpty()) {
+            out.write(",\"referencedItems\":{");
+            writeCollections(input, referenced, new Members(0));
+            out.write('}');
+        }
+        out.write("}}");
+    }
+
+    private void writeCollections(final Input input, final List<Collection> included, final Members members)
+            throws IOException, XMLStreamException {
+        if (included.isEmpty()) {
+            return;
+        }
+        try (final InputStream in = input.open()) {
+            final XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+            try {
+                ordinal = 0;
+                Frame root = null;
+                int index = 0;
+                int next = 0;
+                while (reader.hasNext()) {
+                    final int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        if (root == null) {
+                            root = new Frame(null, reader, ordinal++, COPY);
+                        } else if (next < included.size() && included.get(next) == collections.get(index++)) {
+                            final boolean nextSiblingSameName = next + 1 < included.size()
+                                    && included.get(next).name.equals(included.get(next + 1).name);
+                            writeElement(reader, root, members, nextSiblingSameName);
+                            if (++next == included.size()) {
+                                break;
+                            }
+                        } else {
+                            ordinal++;
+                            skipContent(reader);
+                        }
+                    } else if (event == XMLStreamConstants.COMMENT || event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+                        ordinal++;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the element the reader is positioned on, as member of an object or as array value
+     */
+    private void writeElement(final XMLStreamReader reader, final Frame parent, final Members members,
+            final boolean nextSiblingSameName) throws IOException, XMLStreamException {
+        final Frame frame = new Frame(parent, reader, ordinal++, transformation(reader, parent));
+        if (frame.transformation == REMOVE) {
+            skipContent(reader);
+            return;
+        }
+        members.begin(frame.name, nextSiblingSameName);
+        if (frame.transformation != COPY) {
+            final List<String> attributes = replacement(reader, frame);
+            if (attributes.isEmpty()) {
+                writeValue(logPath(frame));
+            } else {
+                out.write('{');
+                writeAttributes(attributes);
+                out.write('}');
+            }
+            skipContent(reader);
+        } else {
+            final List<String> attributes = attributes(reader, frame);
+            final byte shape = shape(frame.ordinal);
+            if ((shape & HAS_TEXT) != 0 && (shape & HAS_CHILD_NODES) != 0) {
+                writeNode(build(reader, frame, attributes));
+            } else if ((shape & HAS_TEXT) != 0) {
+                final String text = readText(reader);
+                if (attributes.isEmpty()) {
+                    writeValue(text);
+                } else {
+                    out.write('{');
+                    writeAttributes(attributes);
+                    out.write(",\"$\":");
+                    writeValue(text);
+                    out.write('}');
+                }
+            } else if ((shape & HAS_CHILD_NODES) != 0 || !attributes.isEmpty()) {
+                out.write('{');
+                writeAttributes(attributes);
+                writeChildren(reader, frame, new Members(attributes.size() / 2));
+                out.write('}');
+            } else {
+                out.write("null");
+                skipContent(reader);
+            }
+        }
+        members.end(nextSiblingSameName);
+    }
+
+    private void writeChildren(final XMLStreamReader reader, final Frame frame, final Members members)
+            throws IOException, XMLStreamException {
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                writeElement(reader, frame, members, (shape(ordinal) & NEXT_SIBLING_SAME_NAME) != 0);
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                return;
+            case XMLStreamConstants.COMMENT:
+            case XMLStreamConstants.PROCESSING_INSTRUCTION: {
+                final boolean nextSiblingSameName = (shape(ordinal++) & NEXT_SIBLING_SAME_NAME) != 0;
+                members.begin(nodeName(reader), nextSiblingSameName);
+                out.write("null");
+                members.end(nextSiblingSameName);
+            }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reads the text of an element without child nodes, whitespace only text nodes are stripped
+     */
+    private String readText(final XMLStreamReader reader) throws XMLStreamException {
+        final StringBuilder text = new StringBuilder();
+        final StringBuilder textNode = new StringBuilder();
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                textNode.append(reader.getText());
+                continue;
+            }
+            appendTextNode(text, textNode);
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                // removed element
+                ordinal++;
+                skipContent(reader);
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+        }
+        return text.toString();
+    }
+
+    private static void appendTextNode(final StringBuilder text, final StringBuilder textNode) {
+        if (textNode.length() > 0) {
+            if (!isWhitespace(textNode)) {
+                text.append(textNode);
+            }
+            textNode.setLength(0);
+        }
+    }
+
+    /**
+     * Builds an element with mixed content
+     */
+    private Node build(final XMLStreamReader reader, final Frame frame, final List<String> attributes)
+            throws XMLStreamException {
+        final Node node = new Node(frame.name, attributes);
+        final StringBuilder textNode = new StringBuilder();
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                textNode.append(reader.getText());
+                continue;
+            }
+            if (textNode.length() > 0) {
+                if (!isWhitespace(textNode)) {
+                    node.addText(textNode.toString());
+                }
+                textNode.setLength(0);
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                final Frame child = new Frame(frame, reader, ordinal++, transformation(reader, frame));
+                if (child.transformation == REMOVE) {
+                    skipContent(reader);
+                } else if (child.transformation == COPY) {
+                    node.add(child.name, build(reader, child, attributes(reader, child)));
+                } else {
+                    final List<String> replacement = replacement(reader, child);
+                    final Node replaced = new Node(child.name, replacement);
+                    if (replacement.isEmpty()) {
+                        replaced.addText(logPath(child));
+                    }
+                    node.add(child.name, replaced);
+                    skipContent(reader);
+                }
+            } else if (event == XMLStreamConstants.COMMENT || event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+                ordinal++;
+                node.add(nodeName(reader), null);
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Writes an element that has been built, like create-children() in xml-to-json.xsl
+     */
+    private void writeNode(final Node node) throws IOException {
+        final List<Object> children = node.children;
+        final boolean hasText = children.stream().anyMatch(c -> c instanceof String);
+        if (hasText) {
+            if (!node.attributes.isEmpty()) {
+                out.write('{');
+                writeAttributes(node.attributes);
+                out.write(",\"$\":");
+            }
+            if (children.size() == 1) {
+                writeValue((String) children.get(0));
+            } else {
+                final StringBuilder builder = new StringBuilder();
+                node.appendText(builder);
+                final String text = builder.toString();
+                out.write('[');
+                for (int i = 0; i < children.size(); i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    final Object child = children.get(i);
+                    if (child instanceof String) {
+                        writeValue(text);
+                    } else {
+                        out.write('{');
+                        writeName(node.childNames.get(i));
+                        writeNodeValue(child);
+                        out.write('}');
+                    }
+                }
+                out.write(']');
+            }
+            if (!node.attributes.isEmpty()) {
+                out.write('}');
+            }
+        } else if (!children.isEmpty() || !node.attributes.isEmpty()) {
+            out.write('{');
+            writeAttributes(node.attributes);
+            final Members members = new Members(node.attributes.size() / 2);
+            for (int i = 0; i < children.size(); i++) {
+                final boolean nextSiblingSameName = i + 1 < children.size()
+                        && node.childNames.get(i).equals(node.childNames.get(i + 1));
+                members.begin(node.childNames.get(i), nextSiblingSameName);
+                writeNodeValue(children.get(i));
+                members.end(nextSiblingSameName);
+            }
+            out.write('}');
+        } else {
+            out.write("null");
+        }
+    }
+
+    private void writeNodeValue(final Object child) throws IOException {
+        if (child == null) {
+            out.write("null");
+        } else {
+            writeNode((Node) child);
+        }
+    }
+
+    /**
+     * Attributes of a copied element as name value pairs
+     */
+    private List<String> attributes(final XMLStreamReader reader, final Frame frame) {
+        final int count = reader.getAttributeCount();
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        final List<String> attributes = new ArrayList<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            final String name = reader.getAttributeLocalName(i);
+            final String value = reader.getAttributeValue(i);
+            attributes.add(name);
+            if ("href".equals(name) && value.startsWith("file://") && isTestObjectResource(frame)
+                    && SUtils.isNullOrEmpty(reader.getAttributeNamespace(i))) {
+                // do not expose local paths
+                attributes.add(serviceUrl + "/TestObjects/" + frame.parent.parent.id() + "/data");
+            } else {
+                attributes.add(value);
+            }
+        }
+        return attributes;
+    }
+
+    private static boolean isTestObjectResource(final Frame frame) {
+        return frame.etf && "resource".equals(frame.name)
+                && frame.parent.etf && "ResourceCollection".equals(frame.parent.name)
+                && frame.parent.parent != null && frame.parent.parent.etf && "TestObject".equals(frame.parent.parent.name);
+    }
+
+    /**
+     * Attribute of an element that is replaced by a reference, or an empty list for the log path
+     */
+    private List<String> replacement(final XMLStreamReader reader, final Frame frame) {
+        switch (frame.transformation) {
+        case REFERENCE: {
+            final String reference = reader.getAttributeValue(null, "ref");
+            if (reference != null && ids.contains(reference)) {
+                return Arrays.asList("ref", reference);
+            }
+            return Arrays.asList("href", serviceUrl + "/" + referenceType(frame) + "s/"
+                    + substringAfter(reference != null ? reference : "", "EID") + ".json");
+        }
+        case LOCAL_REFERENCE: {
+            final String reference = reader.getAttributeValue(null, "ref");
+            return Arrays.asList("ref", reference != null ? reference : "");
+        }
+        case ATTACHMENT_DATA: {
+            final Frame attachment = frame.parent;
+            final Frame testTaskResult = attachment.parent != null ? attachment.parent.parent : null;
+            return Arrays.asList("href", serviceUrl + "/TestTaskResults/"
+                    + (testTaskResult != null ? testTaskResult.id() : "") + "/Attachments/" + attachment.id());
+        }
+        default:
+            return Collections.emptyList();
+        }
+    }
+
+    private String logPath(final Frame frame) {
+        return serviceUrl + "/TestRuns/" + frame.parent.id() + "/log";
+    }
+
+    private static String referenceType(final Frame frame) {
+        final String type;
+        switch (frame.name) {
+        case "testDriver":
+            return "Component";
+        case "testItemType":
+            return "TestItemType";
+        case "parent":
+            type = PARENT_TYPES.get(frame.parent.name);
+            return type != null ? type : "";
+        case "resultedFrom":
+            type = RESULTED_FROM_TYPES.get(frame.parent.name);
+            return type != null ? type : "";
+        default:
+            return Character.toUpperCase(frame.name.charAt(0)) + frame.name.substring(1);
+        }
+    }
+
+    private void skipContent(final XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                ordinal++;
+                depth++;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                depth--;
+                break;
+            case XMLStreamConstants.COMMENT:
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                ordinal++;
+                break;
+            }
+        }
+    }
+
+    private static String nodeName(final XMLStreamReader reader) {
+        return reader.getEventType() == XMLStreamConstants.PROCESSING_INSTRUCTION ? reader.getPITarget() : "";
+    }
+
+    // JSON output, see xml-to-json.xsl
+    // =====================================================================================================
+
+    private void writeName(final String name) throws IOException {
+        out.write('"');
+        out.write(name);
+        out.write("\":");
+    }
+
+    private void writeAttributes(final List<String> attributes) throws IOException {
+        for (int i = 0; i < attributes.size(); i += 2) {
+            if (i > 0) {
+                out.write(',');
+            }
+            writeName(attributes.get(i));
+            writeValue(attributes.get(i + 1));
+        }
+    }
+
+    private void writeValue(final String value) throws IOException {
+        if (value.isEmpty()) {
+            out.write("null");
+        } else if (isLiteral(value)) {
+            out.write(value);
+        } else {
+            out.write('"');
+            writeEscaped(value);
+            out.write('"');
+        }
+    }
+
+    /**
+     * Numbers that are valid in JSON, true, false and null are written without quotes
+     */
+    static boolean isLiteral(final String value) {
+        if ("true".equals(value) || "false".equals(value) || "null".equals(value)) {
+            return true;
+        }
+        final int length = value.length();
+        int i = value.charAt(0) == '-' ? 1 : 0;
+        final int integerStart = i;
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+        }
+        final int integerDigits = i - integerStart;
+        if (integerDigits == 0 || (integerDigits > 1 && value.charAt(integerStart) == '0')) {
+            return false;
+        }
+        if (i == length) {
+            // '-0' is not written as number
+            return integerStart == 0 || value.charAt(integerStart) != '0';
+        }
+        if (value.charAt(i++) != '.') {
+            return false;
+        }
+        final int fractionStart = i;
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+        }
+        return i == length && i > fractionStart;
+    }
+
+    private void writeEscaped(final String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                out.write("\\\"");
+                break;
+            case '\\':
+                out.write("\\\\");
+                break;
+            case '\b':
+                out.write("\\b");
+                break;
+            case '\t':
+                out.write("\\t");
+                break;
+            case '\n':
+                out.write("\\n");
+                break;
+            case '\f':
+                out.write("\\f");
+                break;
+            case '\r':
+                out.write("\\r");
+                break;
+            default:
+                // characters outside the BMP are written as escaped surrogate pairs
+                if (c < 32 || (c >= 127 && c <= 160) || Character.isSurrogate(c)) {
+                    out.write("\\u");
+                    out.write(HEX[c >> 12 & 0xF]);
+                    out.write(HEX[c >> 8 & 0xF]);
+                    out.write(HEX[c >> 4 & 0xF]);
+                    out.write(HEX[c & 0xF]);
+                } else {
+                    out.write(c);
+                }
+            }
+        }
+    }
+
+    // XPath helpers
+    // =====================================================================================================
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(final CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String substringAfter(final String str, final String separator) {
+        final int index = str.indexOf(separator);
+        return index == -1 ? "" : str.substring(index + separator.length());
+    }
+
+    /**
+     * Appends the parameters with a non-empty value, like etf:createUrl() in DsResult2Xml.xsl
+     */
+    private static String createUrl(final String baseUrl, final String... keyValuePairs) {
+        final StringBuilder params = new StringBuilder();
+        for (int i = 0; i < keyValuePairs.length; i += 2) {
+            if (keyValuePairs[i + 1] != null && !keyValuePairs[i + 1].isEmpty()) {
+                params.append('&').append(keyValuePairs[i]).append('=').append(keyValuePairs[i + 1]);
+            }
+        }
+        return params.length() > 0 ? baseUrl + "?" + params : baseUrl;
+    }
+
+    private static double toDouble(final String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (final NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * format-number($value, '#')
+     */
+    private static String formatInteger(final double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        } else if (Double.isInfinite(value)) {
+            return value > 0 ? "Infinity" : "-Infinity";
+        }
+        return BigDecimal.valueOf(value).setScale(0, RoundingMode.HALF_EVEN).toPlainString();
+    }
+
+    /**
+     * Canonical string representation of an xs:double
+     */
+    static String toXsString(final double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        } else if (Double.isInfinite(value)) {
+            return value > 0 ? "INF" : "-INF";
+        } else if (value == 0) {
+            return 1 / value > 0 ? "0" : "-0";
+        }
+        final BigDecimal decimal = BigDecimal.valueOf(value).stripTrailingZeros();
+        final double abs = Math.abs(value);
+        if (abs >= 1e-6 && abs < 1e6) {
+            return decimal.toPlainString();
+        }
+        final String digits = decimal.unscaledValue().abs().toString();
+        final int exponent = digits.length() - 1 - decimal.scale();
+        return (value < 0 ? "-" : "") + digits.charAt(0) + "." + (digits.length() > 1 ? digits.substring(1) : "0")
+                + "E" + exponent;
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.dal.dao.basex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.interactive_instruments.etf.dal.dao.PartialResultProvider;
+
+/**
+ * The completed Test Module results of a running Test Task.
+ *
+ * The fragments are byte ranges in the result file the {@link BsxDsResultCollector} writes to, so publishing a Test
+ * Module result does not copy or re-render anything. A partial Test Task Result document consists of the header of
+ * the result file, all completed Test Module results and the closing tags of the document. The document is not
+ * complete, i.e. the status and the attachments of the Test Task are missing.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class PartialTestTaskResult {
+
+    private static final byte[] DOCUMENT_END = ("</testModuleResults></" + XmlTestResultWriter.ETF_NS_PREFIX
+            + ":TestTaskResult>").getBytes(StandardCharsets.UTF_8);
+
+    private final String testTaskId;
+    private final String testTaskResultId;
+    private final File resultFile;
+    private volatile long headerLength = -1;
+    private final List<long[]> fragments = new CopyOnWriteArrayList<>();
+
+    PartialTestTaskResult(final String testTaskId, final String testTaskResultId, final File resultFile) {
+        this.testTaskId = testTaskId;
+        this.testTaskResultId = testTaskResultId;
+        this.resultFile = resultFile;
+    }
+
+    String getTestTaskId() {
+        return testTaskId;
+    }
+
+    String getTestTaskResultId() {
+        return testTaskResultId;
+    }
+
+    /**
+     * Set the length of the document header, which ends with the start tag of the testModuleResults element
+     *
+     * @param headerLength
+     *            number of bytes that have been flushed to the result file before the first Test Module result started
+     */
+    void setHeaderLength(final long headerLength) {
+        if (this.headerLength == -1) {
+            this.headerLength = headerLength;
+        }
+    }
+
+    /**
+     * Publish a completed Test Module result
+     *
+     * @param start
+     *            offset of the Test Module result in the result file
+     * @param end
+     *            offset after the end tag of the Test Module result, all bytes up to this offset must have been flushed
+     */
+    void addFragment(final long start, final long end) {
+        fragments.add(new long[]{start, end});
+    }
+
+    int getFragmentCount() {
+        return fragments.size();
+    }
+
+    long getHeaderLength() {
+        return headerLength;
+    }
+
+    /**
+     * Returns the byte ranges of the completed Test Module results, in the order they have been written
+     */
+    List<long[]> getFragments() {
+        return Collections.unmodifiableList(fragments);
+    }
+
+    /**
+     * Returns a snapshot of the Test Module results that are completed now. The snapshot streams the byte ranges from
+     * the result file without buffering them.
+     */
+    PartialResultProvider.PartialResult snapshot() {
+        final long header = headerLength;
+        final List<long[]> completed = new ArrayList<>(fragments);
+        return out -> writeTo(out, header, completed);
+    }
+
+    /**
+     * Writes the partial Test Task Result document
+     *
+     * @param out
+     *            target stream
+     * @throws IOException
+     *             if the result file can not be read
+     */
+    void writeTo(final OutputStream out) throws IOException {
+        snapshot().writeTo(out);
+    }
+
+    private void writeTo(final OutputStream out, final long header, final List<long[]> completed) throws IOException {
+        if (header == -1) {
+            throw new IOException("No Test Module result completed yet");
+        }
+        final byte[] buffer = new byte[16384];
+        try (final RandomAccessFile file = new RandomAccessFile(resultFile, "r")) {
+            copy(file, 0, header, out, buffer);
+            for (final long[] fragment : completed) {
+                copy(file, fragment[0], fragment[1], out, buffer);
+            }
+        }
+        out.write(DOCUMENT_END);
+    }
+
+    private static void copy(final RandomAccessFile file, final long start, final long end, final OutputStream out,
+            final byte[] buffer) throws IOException {
+        file.seek(start);
+        long remaining = end - start;
+        while (remaining > 0) {
+            final int read = file.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                throw new IOException("Unexpected end of result file " + file);
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+}
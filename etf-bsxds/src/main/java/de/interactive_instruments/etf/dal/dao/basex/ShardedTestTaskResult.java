@@ -0,0 +1,362 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.dal.dao.basex;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Stores a large Test Task Result document as header document, one shard document per Test Module result and a shard
+ * index.
+ *
+ * The header document is the Test Task Result document without the testModuleResults element, which is optional in the
+ * result schema, so the header stays a valid Test Task Result. The shards are listed in a separate index document,
+ * with the Test Module result ID and the Test Module the result was derived from, so that queries can open single
+ * shards:
+ *
+ * <pre>
+ * {@code
+ * <TestTaskResultShards xmlns="http://www.interactive-instruments.de/etf/2.0" testTaskResult="EID...">
+ *   <shard path="TestTaskResult-EID...-0.xml" testModuleResult="EID..." resultedFrom="EID..."/>
+ * </TestTaskResultShards>
+ * }
+ * </pre>
+ *
+ * A shard document is the Test Module result with the declaration of the default namespace. The documents are split
+ * along the Test Module byte ranges recorded by the {@link BsxDsResultCollector}, so the result is not parsed again.
+ * Only the header and the index are added to the database, the shards remain files in the store directory. The full
+ * document is reassembled by inserting the shards into the header, the output is identical to the original document.
+ *
+ * Queries do not open the shards, they return the header with an {@value #SHARDS_INSTRUCTION} processing instruction
+ * that lists the selected shards, i.e. {@code <?etf-shards TestTaskResult-EID...-0.xml?>}. The
+ * {@link ShardInsertingOutputStream} replaces the instruction with the shard files while the query result is
+ * serialized.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class ShardedTestTaskResult {
+
+    static final String INDEX_ELEMENT = "TestTaskResultShards";
+    static final String SHARD_ELEMENT = "shard";
+    static final String SHARDS_INSTRUCTION = "etf-shards";
+
+    private static final byte[] MODULE_START = "<TestModuleResult".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MODULE_RESULTS_START = "<testModuleResults>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NAMESPACED_MODULE_RESULTS_START = ("<testModuleResults xmlns=\""
+            + XmlTestResultWriter.ETF_NS + "\">").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MODULE_RESULTS_END = "</testModuleResults>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SHARD_NAMESPACE = (" xmlns=\"" + XmlTestResultWriter.ETF_NS + "\"")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TEST_OBJECT_START = "<testObject".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TEST_OBJECT_END = "</testObject>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ID_ATTRIBUTE = " id=\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESULTED_FROM = "<resultedFrom ref=\"".getBytes(StandardCharsets.UTF_8);
+
+    private ShardedTestTaskResult() {}
+
+    /**
+     * Splits a Test Task Result document
+     *
+     * @param buffer
+     *            the Test Task Result document
+     * @param headerLength
+     *            offset of the first Test Module result
+     * @param modules
+     *            byte ranges of all Test Module results
+     * @param testTaskResultId
+     *            ID of the Test Task Result, with the EID prefix
+     * @param headerFile
+     *            the file to write the header document to
+     * @param indexFile
+     *            the file to write the shard index to
+     * @param shardFiles
+     *            returns the file for the shard with the given index
+     * @return number of written shards or 0 if the document can not be split
+     * @throws IOException
+     *             if a document can not be written
+     */
+    static int write(final byte[] buffer, final long headerLength, final List<long[]> modules,
+            final String testTaskResultId, final File headerFile, final File indexFile,
+            final IntFunction<? extends File> shardFiles) throws IOException {
+        if (!isSplittable(buffer, headerLength, modules)) {
+            return 0;
+        }
+        try (final OutputStream index = new BufferedOutputStream(new FileOutputStream(indexFile))) {
+            index.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?><" + INDEX_ELEMENT + " xmlns=\""
+                    + XmlTestResultWriter.ETF_NS + "\" testTaskResult=\"" + testTaskResultId + "\">")
+                            .getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < modules.size(); i++) {
+                final long[] module = modules.get(i);
+                final File shardFile = shardFiles.apply(i);
+                try (final OutputStream shard = new BufferedOutputStream(new FileOutputStream(shardFile))) {
+                    shard.write(MODULE_START);
+                    shard.write(SHARD_NAMESPACE);
+                    final int start = (int) module[0] + MODULE_START.length;
+                    shard.write(buffer, start, (int) module[1] - start);
+                }
+                // the own resultedFrom reference is written after the nested results
+                final int resultedFrom = lastIndexOf(buffer, RESULTED_FROM, (int) module[0], (int) module[1]);
+                index.write(("<" + SHARD_ELEMENT + " path=\"" + shardFile.getName() + "\" testModuleResult=\""
+                        + attributeValue(buffer, indexOf(buffer, ID_ATTRIBUTE, (int) module[0]) + ID_ATTRIBUTE.length)
+                        + "\" resultedFrom=\"" + attributeValue(buffer, resultedFrom + RESULTED_FROM.length) + "\"/>")
+                                .getBytes(StandardCharsets.UTF_8));
+            }
+            index.write(("</" + INDEX_ELEMENT + ">").getBytes(StandardCharsets.UTF_8));
+        }
+        try (final OutputStream header = new BufferedOutputStream(new FileOutputStream(headerFile))) {
+            header.write(buffer, 0, (int) headerLength - MODULE_RESULTS_START.length);
+            final int end = (int) modules.get(modules.size() - 1)[1] + MODULE_RESULTS_END.length;
+            header.write(buffer, end, buffer.length - end);
+        }
+        return modules.size();
+    }
+
+    private static boolean isSplittable(final byte[] buffer, final long headerLength, final List<long[]> modules) {
+        if (modules.isEmpty()
+                || !startsWith(buffer, (int) headerLength - MODULE_RESULTS_START.length, MODULE_RESULTS_START)) {
+            return false;
+        }
+        long expectedStart = headerLength;
+        for (final long[] module : modules) {
+            if (module[0] != expectedStart || module[1] <= module[0] + MODULE_START.length || module[1] > buffer.length
+                    || !startsWith(buffer, (int) module[0], MODULE_START)) {
+                return false;
+            }
+            final byte next = buffer[(int) module[0] + MODULE_START.length];
+            if (next != ' ' && next != '>' || lastIndexOf(buffer, RESULTED_FROM, (int) module[0], (int) module[1]) == -1) {
+                return false;
+            }
+            expectedStart = module[1];
+        }
+        return startsWith(buffer, (int) expectedStart, MODULE_RESULTS_END);
+    }
+
+    /**
+     * Writes the reassembled Test Task Result document
+     *
+     * @param headerFile
+     *            the header document
+     * @param shardFiles
+     *            the shard documents in the order of the Test Module results
+     * @param out
+     *            target stream
+     * @throws IOException
+     *             if a document can not be read
+     */
+    static void writeXml(final File headerFile, final List<? extends File> shardFiles, final OutputStream out)
+            throws IOException {
+        final byte[] header = Files.readAllBytes(headerFile.toPath());
+        // the Test Module results follow the Test Object reference
+        final int testObjectStart = indexOf(header, TEST_OBJECT_START, 0);
+        final int tagEnd = testObjectStart != -1 ? indexOf(header, new byte[]{'>'}, testObjectStart) : -1;
+        if (tagEnd == -1) {
+            throw new IOException("Not a sharded Test Task Result: " + headerFile.getName());
+        }
+        final int insertAt;
+        if (header[tagEnd - 1] == '/') {
+            insertAt = tagEnd + 1;
+        } else {
+            final int testObjectEnd = indexOf(header, TEST_OBJECT_END, tagEnd);
+            if (testObjectEnd == -1) {
+                throw new IOException("Not a sharded Test Task Result: " + headerFile.getName());
+            }
+            insertAt = testObjectEnd + TEST_OBJECT_END.length;
+        }
+        out.write(header, 0, insertAt);
+        writeModuleResults(MODULE_RESULTS_START, shardFiles, out);
+        out.write(header, insertAt, header.length - insertAt);
+    }
+
+    private static void writeModuleResults(final byte[] start, final List<? extends File> shardFiles,
+            final OutputStream out) throws IOException {
+        out.write(start);
+        for (final File shardFile : shardFiles) {
+            try (final InputStream shard = new BufferedInputStream(new FileInputStream(shardFile))) {
+                IOUtils.skipFully(shard, MODULE_START.length + SHARD_NAMESPACE.length);
+                out.write(MODULE_START);
+                IOUtils.copy(shard, out);
+            }
+        }
+        out.write(MODULE_RESULTS_END);
+    }
+
+    /**
+     * Replaces the {@value #SHARDS_INSTRUCTION} processing instructions in a serialized query result with the listed
+     * shards.
+     *
+     * The prefix of the enclosing elements depends on the query, so the inserted testModuleResults element declares
+     * the default namespace again. {@link #finish()} must be called after the query has been executed, the wrapped
+     * stream is not closed.
+     */
+    static final class ShardInsertingOutputStream extends FilterOutputStream {
+
+        private static final byte[] INSTRUCTION_START = ("<?" + SHARDS_INSTRUCTION).getBytes(StandardCharsets.UTF_8);
+        private static final byte[] INSTRUCTION_END = "?>".getBytes(StandardCharsets.UTF_8);
+
+        private final Function<String, ? extends File> shardFiles;
+        // number of bytes that match the start of the instruction
+        private int matched;
+        // the content of the instruction or null if outside of an instruction
+        private ByteArrayOutputStream instruction;
+        private int previous;
+
+        /**
+         * Wraps a stream
+         *
+         * @param out
+         *            target stream
+         * @param shardFiles
+         *            resolves the shard file by the path in the shard index
+         */
+        ShardInsertingOutputStream(final OutputStream out, final Function<String, ? extends File> shardFiles) {
+            super(out);
+            this.shardFiles = shardFiles;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            int pos = off;
+            final int end = off + len;
+            while (pos < end) {
+                if (matched == 0 && instruction == null) {
+                    // pass everything up to the next tag
+                    int next = pos;
+                    while (next < end && b[next] != '<') {
+                        next++;
+                    }
+                    out.write(b, pos, next - pos);
+                    if (next == end) {
+                        return;
+                    }
+                    pos = next;
+                }
+                write(b[pos++]);
+            }
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (instruction != null) {
+                instruction.write(b);
+                if (b == '>' && previous == '?') {
+                    final byte[] content = instruction.toByteArray();
+                    instruction = null;
+                    writeInstruction(content, content.length - INSTRUCTION_END.length);
+                }
+                previous = b;
+            } else if (b == INSTRUCTION_START[matched]) {
+                if (++matched == INSTRUCTION_START.length) {
+                    matched = 0;
+                    previous = 0;
+                    instruction = new ByteArrayOutputStream();
+                }
+            } else {
+                out.write(INSTRUCTION_START, 0, matched);
+                // the start of the instruction contains only one '<'
+                if (b == INSTRUCTION_START[0]) {
+                    matched = 1;
+                } else {
+                    matched = 0;
+                    out.write(b);
+                }
+            }
+        }
+
+        private void writeInstruction(final byte[] content, final int length) throws IOException {
+            if (length > 0 && !Character.isWhitespace(content[0])) {
+                // another instruction with the same prefix
+                out.write(INSTRUCTION_START);
+                out.write(content);
+                return;
+            }
+            final List<File> files = new ArrayList<>();
+            for (final String path : new String(content, 0, length, StandardCharsets.UTF_8).trim().split("\\s+")) {
+                if (!path.isEmpty()) {
+                    final File file = shardFiles.apply(path);
+                    if (!file.exists()) {
+                        throw new IOException("Test Task Result shard does not exist: " + path);
+                    }
+                    files.add(file);
+                }
+            }
+            if (!files.isEmpty()) {
+                writeModuleResults(NAMESPACED_MODULE_RESULTS_START, files, out);
+            }
+        }
+
+        /**
+         * Writes bytes that are held back and flushes the wrapped stream
+         *
+         * @throws IOException
+         *             if the bytes can not be written
+         */
+        void finish() throws IOException {
+            out.write(INSTRUCTION_START, 0, matched);
+            matched = 0;
+            if (instruction != null) {
+                out.write(INSTRUCTION_START);
+                instruction.writeTo(out);
+                instruction = null;
+            }
+            out.flush();
+        }
+    }
+
+    private static boolean startsWith(final byte[] buffer, final int offset, final byte[] prefix) {
+        if (offset < 0 || offset + prefix.length > buffer.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int lastIndexOf(final byte[] buffer, final byte[] pattern, final int from, final int to) {
+        for (int i = to - pattern.length; i >= from; i--) {
+            if (startsWith(buffer, i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String attributeValue(final byte[] buffer, final int start) {
+        int end = start;
+        while (end < buffer.length && buffer[end] != '"') {
+            end++;
+        }
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(final byte[] buffer, final byte[] pattern, final int from) {
+        for (int i = from; i <= buffer.length - pattern.length; i++) {
+            if (startsWith(buffer, i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
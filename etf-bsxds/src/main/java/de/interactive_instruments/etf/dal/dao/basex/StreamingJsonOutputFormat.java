@@ -0,0 +1,208 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.dal.dao.basex;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import de.interactive_instruments.Configurable;
+import de.interactive_instruments.MediaType;
+import de.interactive_instruments.etf.dal.dao.Dao;
+import de.interactive_instruments.etf.model.EID;
+import de.interactive_instruments.etf.model.EidFactory;
+import de.interactive_instruments.etf.model.OutputFormat;
+import de.interactive_instruments.exceptions.ExcUtils;
+import de.interactive_instruments.exceptions.InitializationException;
+import de.interactive_instruments.exceptions.InvalidStateTransitionException;
+import de.interactive_instruments.exceptions.config.ConfigurationException;
+import de.interactive_instruments.properties.ConfigProperties;
+import de.interactive_instruments.properties.ConfigPropertyHolder;
+import de.interactive_instruments.properties.PropertyHolder;
+
+/**
+ * JSON Output Format that produces the same output as the DsResult2Json.xsl stylesheet, but writes the JSON directly
+ * while the DsResultSet is read, see {@link DsResultJsonWriter}.
+ *
+ * The result of the query is buffered as it is read twice. Results that exceed
+ * {@link #MAX_IN_MEMORY_SIZE} are buffered in a temporary file.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class StreamingJsonOutputFormat implements OutputFormat, Configurable {
+
+    static final String LABEL = "DsResult2Json";
+    private static final int MAX_IN_MEMORY_SIZE = 16 * 1024 * 1024;
+
+    private final EID id;
+    private boolean initialized = false;
+    private final ConfigProperties configProperties = new ConfigProperties(
+            "etf.webapp.base.url", "etf.api.base.url");
+
+    private final MediaType mimeType = new MediaType() {
+        @Override
+        public MediaType getBaseType() {
+            return null;
+        }
+
+        @Override
+        public String getType() {
+            return "application/json";
+        }
+
+        @Override
+        public String getSubtype() {
+            return null;
+        }
+
+        @Override
+        public Map<String, String> getParameters() {
+            return null;
+        }
+    };
+
+    /**
+     * Query result that is read twice
+     */
+    private static final class BufferedResult implements Closeable {
+        private byte[] bytes = new byte[65536];
+        private int length;
+        private File file;
+
+        private BufferedResult(final InputStream inputStream) throws IOException {
+            int read;
+            while ((read = inputStream.read(bytes, length, bytes.length - length)) != -1) {
+                length += read;
+                if (length == bytes.length) {
+                    if (length >= MAX_IN_MEMORY_SIZE) {
+                        file = File.createTempFile("etf-result", ".xml");
+                        try (final OutputStream out = new FileOutputStream(file)) {
+                            out.write(bytes, 0, length);
+                            inputStream.transferTo(out);
+                        }
+                        bytes = null;
+                        return;
+                    }
+                    bytes = Arrays.copyOf(bytes, length * 2);
+                }
+            }
+        }
+
+        private InputStream open() throws IOException {
+            if (file != null) {
+                return new BufferedInputStream(new FileInputStream(file), 65536);
+            }
+            return new ByteArrayInputStream(bytes, 0, length);
+        }
+
+        @Override
+        public void close() {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file.toPath());
+                } catch (final IOException e) {
+                    ExcUtils.suppress(e);
+                }
+            }
+        }
+    }
+
+    StreamingJsonOutputFormat(final Dao dao) {
+        this.id = EidFactory.getDefault().createUUID(dao.getDtoType().getSimpleName() + LABEL);
+    }
+
+    @Override
+    public EID getId() {
+        return this.id;
+    }
+
+    @Override
+    public String getLabel() {
+        return LABEL;
+    }
+
+    @Override
+    public MediaType getMediaTypeType() {
+        return mimeType;
+    }
+
+    @Override
+    public void streamTo(final PropertyHolder arguments, final InputStream inputStream, final OutputStream outputStream)
+            throws IOException {
+        final DsResultJsonWriter writer;
+        if (arguments != null) {
+            writer = new DsResultJsonWriter(configProperties.getProperty("etf.api.base.url"),
+                    arguments.getProperty("selection"), arguments.getProperty("offset"),
+                    arguments.getProperty("limit"), arguments.getProperty("fields"));
+        } else {
+            writer = new DsResultJsonWriter(configProperties.getProperty("etf.api.base.url"),
+                    null, null, null, null);
+        }
+        try (final BufferedResult result = new BufferedResult(inputStream)) {
+            writer.write(result::open, new BufferedWriter(
+                    new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 16384));
+        }
+    }
+
+    @Override
+    public String getRevision() {
+        final CRC32 crc = new CRC32();
+        crc.update(getClass().getName().getBytes(StandardCharsets.UTF_8));
+        final String implementationVersion = getClass().getPackage().getImplementationVersion();
+        if (implementationVersion != null) {
+            crc.update(implementationVersion.getBytes(StandardCharsets.UTF_8));
+        }
+        // the URLs are embedded in the output
+        final String url = String.valueOf(configProperties.getProperty("etf.api.base.url"));
+        crc.update(url.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    @Override
+    public String getParamTypeName() {
+        return null;
+    }
+
+    @Override
+    public Collection<Parameter> getParameters() {
+        return null;
+    }
+
+    @Override
+    public Parameter getParameter(final String s) {
+        return null;
+    }
+
+    @Override
+    public ConfigPropertyHolder getConfigurationProperties() {
+        return configProperties;
+    }
+
+    @Override
+    public void init() throws ConfigurationException, InitializationException, InvalidStateTransitionException {
+        configProperties.expectAllRequiredPropertiesSet();
+        initialized = true;
+    }
+
+    @Override
+    public boolean isInitialized() {
+        return initialized;
+    }
+}
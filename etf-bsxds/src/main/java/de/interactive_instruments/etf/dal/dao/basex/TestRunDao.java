@@ -51,6 +51,12 @@ final class TestRunDao extends AbstractBsxWriteDao<TestRunDto> {
         configProperties = new ConfigProperties("etf.webapp.base.url");
     }
 
+    @Override
+    protected BsXQuery createQuery() {
+        // the report contains the Test Task Results
+        return super.createQuery().insertShards();
+    }
+
     @Override
     protected void doInit() throws ConfigurationException, InitializationException, InvalidStateTransitionException {
         try {
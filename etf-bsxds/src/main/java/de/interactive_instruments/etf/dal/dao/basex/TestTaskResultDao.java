@@ -15,11 +15,21 @@
  */
 package de.interactive_instruments.etf.dal.dao.basex;
 
-import java.io.IOException;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
+import javax.xml.stream.*;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.validation.Schema;
 
+import org.apache.commons.io.FileUtils;
 import org.basex.core.BaseXException;
 import org.basex.core.cmd.XQuery;
 import org.slf4j.Logger;
@@ -27,11 +37,20 @@ import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
+import de.interactive_instruments.IFile;
 import de.interactive_instruments.SUtils;
+import de.interactive_instruments.etf.EtfConstants;
+import de.interactive_instruments.etf.dal.dao.PartialResultProvider;
+import de.interactive_instruments.etf.dal.dao.PreparedDto;
+import de.interactive_instruments.etf.dal.dao.ResultStatisticsProvider;
+import de.interactive_instruments.etf.dal.dao.TestModuleResultProvider;
+import de.interactive_instruments.etf.dal.dto.result.ResultStatistics;
+import de.interactive_instruments.etf.dal.dto.result.TestResultStatus;
 import de.interactive_instruments.etf.dal.dto.result.TestTaskResultDto;
 import de.interactive_instruments.etf.model.EID;
 import de.interactive_instruments.exceptions.*;
 import de.interactive_instruments.exceptions.config.ConfigurationException;
+import de.interactive_instruments.exceptions.config.InvalidPropertyException;
 import de.interactive_instruments.properties.ConfigProperties;
 
 /**
@@ -39,9 +58,19 @@ import de.interactive_instruments.properties.ConfigProperties;
  *
  * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
  */
-final class TestTaskResultDao extends AbstractBsxStreamWriteDao<TestTaskResultDto> {
+final class TestTaskResultDao extends AbstractBsxStreamWriteDao<TestTaskResultDto>
+        implements ResultStatisticsProvider, PartialResultProvider, TestModuleResultProvider {
+
+    /**
+     * Test Task Result documents larger than this number of bytes are stored as header document and one shard per
+     * Test Module result, see {@link ShardedTestTaskResult}. 0 disables sharding.
+     */
+    static final String ETF_SHARD_THRESHOLD_PK = EtfConstants.ETF_PK_PREFIX + "internal.database.results.shardThreshold";
 
     private final Schema schema;
+    private int shardThreshold;
+    // Partial results of running Test Tasks, by Test Task ID and Test Task Result ID
+    private final Map<String, PartialTestTaskResult> partialResults = new ConcurrentHashMap<>();
 
     private static class ValidationErrorHandler implements ErrorHandler {
 
@@ -85,6 +114,218 @@ final class TestTaskResultDao extends AbstractBsxStreamWriteDao<TestTaskResultDt
         } catch (IOException | TransformerConfigurationException e) {
             throw new InitializationException(e);
         }
+        try {
+            shardThreshold = configProperties.getPropertyOrDefaultAsInt(ETF_SHARD_THRESHOLD_PK, 33554432);
+        } catch (final InvalidPropertyException e) {
+            shardThreshold = 33554432;
+        }
+    }
+
+    @Override
+    protected void addStreamed(final String dbName, final EID id, final IFile itemFile, final byte[] buffer)
+            throws IOException, StorageException {
+        // The Test Module byte ranges are known while the result is collected
+        final PartialTestTaskResult layout = partialResults.get(id.getId());
+        if (shardThreshold > 0 && buffer.length > shardThreshold && layout != null) {
+            final IFile indexFile = getShardIndexFile(id);
+            final int shards = ShardedTestTaskResult.write(buffer, layout.getHeaderLength(), layout.getFragments(),
+                    BsxDataStorage.ID_PREFIX + id.getId(), itemFile, indexFile, index -> getShardFile(id, index));
+            if (shards > 0) {
+                // the shards are inserted into the query output and not added to the database
+                try {
+                    add(dbName, itemFile);
+                    add(dbName, indexFile);
+                } catch (final BaseXException | StorageException e) {
+                    getShardFiles(id).forEach(FileUtils::deleteQuietly);
+                    FileUtils.deleteQuietly(indexFile);
+                    throw e;
+                }
+                ctx.getLogger().debug("Stored Test Task Result {} in {} shards", id, shards);
+                return;
+            }
+        }
+        super.addStreamed(dbName, id, itemFile, buffer);
+    }
+
+    @Override
+    protected BsXQuery createQuery() {
+        return super.createQuery().insertShards();
+    }
+
+    @Override
+    public PreparedDto<TestTaskResultDto> getByIdWithTestModules(final EID testTaskResultId,
+            final Collection<EID> testModuleIds) throws StorageException, ObjectWithIdNotFoundException {
+        if (!exists(testTaskResultId)) {
+            throw new ObjectWithIdNotFoundException(this, testTaskResultId.getId());
+        }
+        try {
+            final BsXQuery bsXQuery = createIdQuery(BsxDataStorage.ID_PREFIX + testTaskResultId.getId(), null)
+                    .parameter("testModules", testModuleIds.stream()
+                            .map(testModuleId -> BsxDataStorage.ID_PREFIX + testModuleId.getId())
+                            .collect(Collectors.joining(" ")));
+            return new BsxPreparedDto<>(testTaskResultId, bsXQuery, DsResultSet::getTestTaskResults);
+        } catch (final BaseXException e) {
+            ctx.getLogger().error(e.getMessage());
+            throw new ObjectWithIdNotFoundException(this, testTaskResultId.getId());
+        }
+    }
+
+    private IFile getShardFile(final EID eid, final int index) {
+        return ctx.getStoreDir().secureExpandPathDown(
+                tQuery.typeName + "-" + BsxDataStorage.ID_PREFIX + eid.getId() + "-" + index + ".xml");
+    }
+
+    private IFile getShardIndexFile(final EID eid) {
+        return ctx.getStoreDir().secureExpandPathDown(
+                ShardedTestTaskResult.INDEX_ELEMENT + "-" + BsxDataStorage.ID_PREFIX + eid.getId() + ".xml");
+    }
+
+    /**
+     * Returns the shard documents of a Test Task Result, in the order of the Test Module results
+     *
+     * @param eid
+     *            Test Task Result ID
+     * @return shard files or an empty list if the result is not sharded
+     */
+    List<IFile> getShardFiles(final EID eid) {
+        final List<IFile> shardFiles = new ArrayList<>();
+        for (IFile shardFile = getShardFile(eid, 0); shardFile.exists(); shardFile = getShardFile(eid,
+                shardFiles.size())) {
+            shardFiles.add(shardFile);
+        }
+        return shardFiles;
+    }
+
+    private IFile getStatisticsFile(final EID eid) {
+        return ctx.getStoreDir().secureExpandPathDown(
+                "TestTaskResultStatistics-" + BsxDataStorage.ID_PREFIX + eid.getId() + ".xml");
+    }
+
+    /**
+     * Stores the statistics of a Test Task Result as small XML document next to the result, i.e.:
+     *
+     * <pre>
+     * {@code
+     * <ResultStatistics xmlns="http://www.interactive-instruments.de/etf/2.0" ref="EID...">
+     *   <results type="TestAssertionResult">
+     *     <count status="PASSED">10</count>
+     *     <count status="FAILED">1</count>
+     *   </results>
+     *   ...
+     * </ResultStatistics>
+     * }
+     * </pre>
+     *
+     * @param eid
+     *            Test Task Result ID
+     * @param statistics
+     *            statistics to save
+     * @throws StorageException
+     *             if the document can not be written
+     */
+    void writeResultStatistics(final EID eid, final ResultStatistics statistics) throws StorageException {
+        final IFile statisticsFile = getStatisticsFile(eid);
+        try (final OutputStream out = new BufferedOutputStream(new FileOutputStream(statisticsFile))) {
+            final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement("ResultStatistics");
+            writer.writeDefaultNamespace(XmlTestResultWriter.ETF_NS);
+            writer.writeAttribute("ref", BsxDataStorage.ID_PREFIX + eid.getId());
+            for (int type = ResultStatistics.TEST_TASK_RESULT; type <= ResultStatistics.TEST_ASSERTION_RESULT; type++) {
+                writer.writeStartElement("results");
+                writer.writeAttribute("type", ResultStatistics.getTypeName(type));
+                for (final TestResultStatus status : TestResultStatus.values()) {
+                    final int count = statistics.getCount(type, status);
+                    if (count > 0) {
+                        writer.writeStartElement("count");
+                        writer.writeAttribute("status", status.toString());
+                        writer.writeCharacters(String.valueOf(count));
+                        writer.writeEndElement();
+                    }
+                }
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } catch (final IOException | XMLStreamException e) {
+            FileUtils.deleteQuietly(statisticsFile);
+            ctx.getLogger().error("Failed to write statistics of Test Task Result {}", eid);
+            throw new StorageException(e);
+        }
+    }
+
+    @Override
+    public Optional<ResultStatistics> getResultStatistics(final EID eid) throws StorageException {
+        final IFile statisticsFile = getStatisticsFile(eid);
+        if (!statisticsFile.exists()) {
+            return Optional.empty();
+        }
+        try (final InputStream in = new BufferedInputStream(new FileInputStream(statisticsFile))) {
+            final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            final ResultStatistics statistics = new ResultStatistics();
+            int type = 0;
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    if ("results".equals(reader.getLocalName())) {
+                        type = ResultStatistics.getType(reader.getAttributeValue(null, "type"));
+                    } else if ("count".equals(reader.getLocalName())) {
+                        final TestResultStatus status = TestResultStatus.valueOf(reader.getAttributeValue(null, "status"));
+                        statistics.setCount(type, status, Integer.parseInt(reader.getElementText().trim()));
+                    }
+                }
+            }
+            reader.close();
+            return Optional.of(statistics);
+        } catch (final IOException | XMLStreamException | IllegalArgumentException e) {
+            ctx.getLogger().error("Failed to read statistics of Test Task Result {}", eid);
+            throw new StorageException(e);
+        }
+    }
+
+    void publishPartialResult(final PartialTestTaskResult partialResult) {
+        partialResults.put(partialResult.getTestTaskId(), partialResult);
+        partialResults.put(partialResult.getTestTaskResultId(), partialResult);
+    }
+
+    void withdrawPartialResult(final PartialTestTaskResult partialResult) {
+        partialResults.remove(partialResult.getTestTaskId(), partialResult);
+        partialResults.remove(partialResult.getTestTaskResultId(), partialResult);
+    }
+
+    @Override
+    public boolean hasPartialResult(final EID id) {
+        final PartialTestTaskResult partialResult = partialResults.get(id.getId());
+        return partialResult != null && partialResult.getFragmentCount() > 0;
+    }
+
+    @Override
+    public PartialResult getPartialResult(final EID id) {
+        final PartialTestTaskResult partialResult = partialResults.get(id.getId());
+        if (partialResult == null || partialResult.getFragmentCount() == 0) {
+            return null;
+        }
+        return partialResult.snapshot();
+    }
+
+    @Override
+    protected void doDelete(final EID eid, final boolean clean) throws StorageException, ObjectWithIdNotFoundException {
+        final List<IFile> shardFiles = getShardFiles(eid);
+        if (!shardFiles.isEmpty()) {
+            final IFile indexFile = getShardIndexFile(eid);
+            shardFiles.add(indexFile);
+            try {
+                // only the index is stored in the database
+                deleteAll(dataBaseNameFor(eid), Collections.singletonList(indexFile));
+            } catch (final BaseXException | IllegalStateException e) {
+                ctx.getLogger().error("Failed to delete shards of Test Task Result {}", eid);
+                throw new StorageException(e);
+            } finally {
+                shardFiles.forEach(FileUtils::deleteQuietly);
+            }
+        }
+        super.doDelete(eid, clean);
+        FileUtils.deleteQuietly(getStatisticsFile(eid));
     }
 
     @Override
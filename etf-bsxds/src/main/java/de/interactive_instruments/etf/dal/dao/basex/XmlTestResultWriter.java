@@ -347,6 +347,14 @@ final class XmlTestResultWriter implements Releasable {
         writer.flush();
     }
 
+    /**
+     * Closes a pending start tag and flushes the writer, so that the output ends exactly before the next result item
+     */
+    public void flushItemBoundary() throws XMLStreamException {
+        writer.writeCharacters("");
+        writer.flush();
+    }
+
     public void close() throws XMLStreamException {
         writer.writeEndDocument();
         writer.flush();
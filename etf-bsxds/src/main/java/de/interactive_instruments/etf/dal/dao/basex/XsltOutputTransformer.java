@@ -16,8 +16,10 @@
 package de.interactive_instruments.etf.dal.dao.basex;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Map;
+import java.util.zip.CRC32;
 
 import javax.xml.transform.*;
 import javax.xml.transform.stream.StreamResult;
@@ -63,6 +65,8 @@ final class XsltOutputTransformer implements OutputFormat, Configurable {
             "etf.webapp.base.url", "etf.api.base.url");
     private IFile stylesheetFile;
     private long stylesheetLastModified = 0;
+    // checksum of a stylesheet loaded from the jar
+    private final String stylesheetRevision;
     private final TransformerFactory transFact = TransformerFactory.newInstance(
             "net.sf.saxon.BasicTransformerFactory", null);
     private final Logger logger = LoggerFactory.getLogger(XsltOutputTransformer.class);
@@ -160,8 +164,18 @@ final class XsltOutputTransformer implements OutputFormat, Configurable {
         this.mimeTypeStr = mimeTypeStr;
         this.stylesheetFile = null;
         final ClassLoader cL = getClass().getClassLoader();
+        final byte[] stylesheet;
+        try (final InputStream in = cL.getResourceAsStream(stylesheetJarPath)) {
+            if (in == null) {
+                throw new IOException("Stylesheet " + stylesheetJarPath + " not found");
+            }
+            stylesheet = in.readAllBytes();
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(stylesheet);
+        this.stylesheetRevision = Long.toHexString(crc.getValue());
         // important to set systemId!
-        final Source xsltSource = new StreamSource(cL.getResourceAsStream(stylesheetJarPath), stylesheetJarPath);
+        final Source xsltSource = new StreamSource(new ByteArrayInputStream(stylesheet), stylesheetJarPath);
         if (jarImportPath != null) {
             transFact.setURIResolver(new ResourceResolver(stylesheetJarPath));
         }
@@ -185,6 +199,7 @@ final class XsltOutputTransformer implements OutputFormat, Configurable {
         this.mimeTypeStr = mimeTypeStr;
         this.label = label;
         this.stylesheetFile = stylesheetFile;
+        this.stylesheetRevision = null;
         stylesheetFile.expectFileIsReadable();
         newTransformerFromCurrentStyle();
     }
@@ -241,6 +256,26 @@ final class XsltOutputTransformer implements OutputFormat, Configurable {
         }
     }
 
+    @Override
+    public String getRevision() {
+        final CRC32 crc = new CRC32();
+        final String stylesheet = stylesheetFile != null ? String.valueOf(stylesheetFile.lastModified())
+                : stylesheetRevision;
+        crc.update(stylesheet.getBytes(StandardCharsets.UTF_8));
+        // the imported stylesheets may change with the version
+        final String implementationVersion = getClass().getPackage().getImplementationVersion();
+        if (implementationVersion != null) {
+            crc.update(implementationVersion.getBytes(StandardCharsets.UTF_8));
+        }
+        if (configProperties != null) {
+            // the URLs are embedded in the output
+            final String urls = configProperties.getProperty("etf.webapp.base.url") + " "
+                    + configProperties.getProperty("etf.api.base.url");
+            crc.update(urls.getBytes(StandardCharsets.UTF_8));
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
     @Override
     public String getParamTypeName() {
         return null;
@@ -537,7 +537,8 @@
 				<xsl:variable name="TestSuite" select="key('testSuiteKey', ../../etf:resultedFrom/@ref)"/>
 				<div id="rprtLogFile" data-role="collapsible" data-collapsed-icon="info" class="DoNotShowInSimpleView">
 					<h3><xsl:value-of select="$lang/x:e[@key = 'LogFile']"/><xsl:if test="$TestSuite">: <xsl:value-of select="$TestSuite/etf:label"/></xsl:if></h3>
-					<pre>Log path not available</pre>
+					<!-- Large logs are archived compressed and only available through the web service -->
+					<pre><a class="ui-link" href="{$serviceUrl}/TestRuns/{substring-after ($testRun/@id, 'EID')}.log" target="_blank"><xsl:value-of select="$lang/x:e[@key = 'LogLink']"/></a></pre>
 				</div>
 			</xsl:otherwise>
 		</xsl:choose>
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.dal.dao.basex;
+
+import static de.interactive_instruments.etf.dal.dao.basex.DsResultJsonWriterTest.createTestTaskResults;
+import static de.interactive_instruments.etf.dal.dao.basex.DsResultJsonWriterTest.stax;
+import static de.interactive_instruments.etf.dal.dao.basex.DsResultJsonWriterTest.xslt;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.TransformerException;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the conversion time of the {@link DsResultJsonWriter} with the DsResult2Json.xsl stylesheet. Run with the
+ * benchmark task.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@Tag("benchmark")
+public class DsResultJsonWriterBenchmarkTest {
+
+    private interface Conversion {
+        String convert() throws Exception;
+    }
+
+    @BeforeAll
+    static void setUp() throws TransformerException {
+        DsResultJsonWriterTest.setUp();
+    }
+
+    private static long measure(final int runs, final Conversion conversion) throws Exception {
+        final long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            conversion.convert();
+        }
+        return (System.nanoTime() - start) / runs;
+    }
+
+    @Test
+    void benchmarkAgainstXslt() throws Exception {
+        final byte[] list = createTestTaskResults(50, 40);
+        final byte[] single = createTestTaskResults(1, 5000);
+
+        final int runs = 3;
+        // warm up
+        measure(runs, () -> xslt(list, "TestTaskResult", "0", "50", null));
+        measure(runs, () -> stax(list, "TestTaskResult", "0", "50", null));
+
+        final long xsltList = measure(runs, () -> xslt(list, "TestTaskResult", "0", "50", null));
+        final long staxList = measure(runs, () -> stax(list, "TestTaskResult", "0", "50", null));
+        final long xsltSingle = measure(runs, () -> xslt(single, "TestTaskResult", null, null, null));
+        final long staxSingle = measure(runs, () -> stax(single, "TestTaskResult", null, null, null));
+        System.out.printf("List of 50 items (%d kB): XSLT %d ms, streaming %d ms%n", list.length / 1024,
+                TimeUnit.NANOSECONDS.toMillis(xsltList), TimeUnit.NANOSECONDS.toMillis(staxList));
+        System.out.printf("Single item (%d kB): XSLT %d ms, streaming %d ms%n", single.length / 1024,
+                TimeUnit.NANOSECONDS.toMillis(xsltSingle), TimeUnit.NANOSECONDS.toMillis(staxSingle));
+    }
+}
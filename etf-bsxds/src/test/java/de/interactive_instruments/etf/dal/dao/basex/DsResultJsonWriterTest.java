@@ -0,0 +1,240 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.dal.dao.basex;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the output of the {@link DsResultJsonWriter} with the output of the DsResult2Json.xsl stylesheet
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class DsResultJsonWriterTest {
+
+    private static final String SERVICE_URL = "http://localhost/etf-webapp/v2";
+    private static final String HEADER = "<DsResultSet xmlns=\"http://www.interactive-instruments.de/etf/2.0\" "
+            + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xmlns:x=\"urn:x\">";
+    private static Templates templates;
+
+    private static final String EDGE_CASES = HEADER
+            + "<testObjects>\n"
+            + "  <TestObject id=\"EID1\">\n"
+            + "    <itemHash>abc</itemHash>\n"
+            + "    <label>  padded  </label>\n"
+            + "    <description>Line1\nLine2 \"quoted\" \\ back\ttab &#x1F600; &#x7f; &#x85; &#xa0; / &lt;</description>\n"
+            + "    <numbers a=\"1\" b=\"01\" c=\"-0\" d=\"-0.5\" e=\"1.\" f=\".5\" g=\"+1\" h=\"1e3\" i=\"true\" j=\"\" "
+            + "k=\"null\" l=\"0\" m=\"10.25\" n=\"2 3\" o=\"-12\" p=\"0.0\" q=\"00.5\" r=\"-.5\" s=\"TRUE\" t=\"a&#10;b\"/>\n"
+            + "    <version>1.0.0</version>\n"
+            + "    <count>42</count>\n"
+            + "    <negative>-7</negative>\n"
+            + "    <mixed attr=\"x\">text <b>bold</b> tail<!-- c --></mixed>\n"
+            + "    <mixedNoAttr>a<itemHash>h</itemHash>b<c/><tag ref=\"EID2\"/>c</mixedNoAttr>\n"
+            + "    <textWithRemoved>a<itemHash>h</itemHash> <localPath>p</localPath>b</textWithRemoved>\n"
+            + "    <textWithAttr xml:lang=\"en\">Hello</textWithAttr>\n"
+            + "    <!-- comment -->\n"
+            + "    <!-- comment2 -->\n"
+            + "    <?pi data?>\n"
+            + "    <item>1</item><item>2</item><other/><item>3</item>\n"
+            + "    <x:foreign x:attr=\"1\"><x:tag ref=\"EID2\"/><x:tag ref=\"EID3\"/></x:foreign>\n"
+            + "    <tags><tag ref=\"EID2\"/><tag ref=\"EIDunknown\"/></tags>\n"
+            + "    <testObjectTypes><testObjectType ref=\"EID3\"/></testObjectTypes>\n"
+            + "    <ResourceCollection><resource name=\"r1\" href=\"file:///tmp/data\"/>"
+            + "<resource name=\"r2\" href=\"http://example.com\"/></ResourceCollection>\n"
+            + "    <empty/>\n"
+            + "    <emptyWithWhitespace>   </emptyWithWhitespace>\n"
+            + "    <cdata><![CDATA[<a> & b]]></cdata>\n"
+            + "    <onlyAttributes xsi:type=\"loc\" a=\"b\"/>\n"
+            + "  </TestObject>\n"
+            + "  <TestObject id=\"EID4\"><label>second</label></TestObject>\n"
+            + "</testObjects>\n"
+            + "<tags><Tag id=\"EID2\"><label>Tag</label></Tag></tags>\n"
+            + "<testObjectTypes/>\n"
+            + "<testTaskResults>\n"
+            + "  <TestTaskResult id=\"EID5\">\n"
+            + "    <parent ref=\"EID6\"/>\n"
+            + "    <resultedFrom ref=\"EID7\"/>\n"
+            + "    <testObject ref=\"EID1\"/>\n"
+            + "    <attachments><Attachment id=\"EID8\"><label>log</label><referencedData href=\"file:///x\"/></Attachment>"
+            + "<attachment ref=\"EID8\"/></attachments>\n"
+            + "    <testModuleResults><TestModuleResult id=\"EID9\"><parent ref=\"EID5\"/><resultedFrom ref=\"EIDx\"/>"
+            + "<testItemType ref=\"EIDy\"/><testDriver ref=\"EIDz\"/></TestModuleResult></testModuleResults>\n"
+            + "    <translationTemplate ref=\"x\"/>\n"
+            + "    <dependencies><testCase ref=\"EID10\"/></dependencies>\n"
+            + "    <testCase id=\"EID10\"/>\n"
+            + "  </TestTaskResult>\n"
+            + "  <TestTaskResult id=\"EID13\"><parent ref=\"EID11\"/></TestTaskResult>\n"
+            + "</testTaskResults>\n"
+            + "<testRuns><TestRun id=\"EID11\"><logPath>/var/log/x.log</logPath><testTasks>"
+            + "<TestTask id=\"EID12\"><parent ref=\"EID11\"/></TestTask></testTasks></TestRun></testRuns>\n"
+            + "</DsResultSet>";
+
+    @BeforeAll
+    static void setUp() throws TransformerException {
+        final TransformerFactory factory = TransformerFactory.newInstance("net.sf.saxon.BasicTransformerFactory", null);
+        final String stylesheet = DsResultJsonWriterTest.class.getClassLoader().getResource("xslt/DsResult2Json.xsl")
+                .toString();
+        templates = factory.newTemplates(new StreamSource(stylesheet));
+    }
+
+    static String xslt(final byte[] document, final String selection, final String offset, final String limit,
+            final String fields) throws TransformerException {
+        final Transformer transformer = templates.newTransformer();
+        transformer.setParameter("serviceUrl", SERVICE_URL);
+        transformer.setParameter("selection", selection);
+        if (offset != null) {
+            transformer.setParameter("offset", offset);
+        }
+        if (limit != null) {
+            transformer.setParameter("limit", limit);
+        }
+        if (fields != null) {
+            transformer.setParameter("fields", fields);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(document)), new StreamResult(out));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    static String stax(final byte[] document, final String selection, final String offset, final String limit,
+            final String fields) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DsResultJsonWriter(SERVICE_URL, selection, offset, limit, fields).write(
+                () -> new ByteArrayInputStream(document), new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void assertSameOutput(final byte[] document, final String selection, final String offset,
+            final String limit, final String fields) throws TransformerException, IOException {
+        assertEquals(xslt(document, selection, offset, limit, fields), stax(document, selection, offset, limit, fields),
+                "selection " + selection + ", offset " + offset + ", limit " + limit + ", fields " + fields);
+    }
+
+    private static byte[] resource(final String path) throws IOException {
+        try (final InputStream in = DsResultJsonWriterTest.class.getClassLoader().getResourceAsStream(path)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] wrap(final String collection, final String item) {
+        return (HEADER + "<" + collection + ">" + item.replaceFirst("^\\s*<\\?xml[^>]*\\?>", "") + "</" + collection
+                + "></DsResultSet>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testObjects() throws IOException, TransformerException {
+        final byte[] document = resource("database/testobjects.xml");
+        assertSameOutput(document, "TestObject", null, null, null);
+        assertSameOutput(document, "TestObject", "0", "2", null);
+        assertSameOutput(document, "TestObject", "2", "2", "label,id");
+        assertSameOutput(document, "TestObject", "1", "3", "*");
+        assertSameOutput(document, "TestObject", "5", "2", null);
+        assertSameOutput(document, "TestObjectType", "0", "50", null);
+        assertSameOutput(document, "Unknown", null, null, null);
+    }
+
+    @Test
+    void executableTestSuite() throws IOException, TransformerException {
+        final byte[] document = wrap("executableTestSuites",
+                new String(resource("database/ets.xml"), StandardCharsets.UTF_8));
+        assertSameOutput(document, "ExecutableTestSuite", null, null, null);
+        assertSameOutput(document, "ExecutableTestSuite", "0", "1", null);
+    }
+
+    @Test
+    void translationTemplateBundle() throws IOException, TransformerException {
+        final byte[] document = wrap("translationTemplateBundles",
+                new String(resource("database/translationtemplatebundle.xml"), StandardCharsets.UTF_8));
+        assertSameOutput(document, "TranslationTemplateBundle", null, null, null);
+    }
+
+    @Test
+    void edgeCases() throws IOException, TransformerException {
+        final byte[] document = EDGE_CASES.getBytes(StandardCharsets.UTF_8);
+        assertSameOutput(document, "TestObject", null, null, null);
+        assertSameOutput(document, "TestObject", "0", "2", null);
+        assertSameOutput(document, "TestTaskResult", "1", "1", "id");
+        assertSameOutput(document, "TestTaskResult", "999999", "1", null);
+        assertSameOutput(document, "TestRun", null, null, null);
+        assertSameOutput(document, "Tag", "3", "2", null);
+    }
+
+    @Test
+    void literals() {
+        assertTrue(DsResultJsonWriter.isLiteral("0"));
+        assertTrue(DsResultJsonWriter.isLiteral("-1.50"));
+        assertTrue(DsResultJsonWriter.isLiteral("null"));
+        assertFalse(DsResultJsonWriter.isLiteral("-0"));
+        assertFalse(DsResultJsonWriter.isLiteral("007"));
+        assertFalse(DsResultJsonWriter.isLiteral("1."));
+        assertEquals("1.0E6", DsResultJsonWriter.toXsString(1000000));
+        assertEquals("-5", DsResultJsonWriter.toXsString(-5));
+    }
+
+    /**
+     * Large Test Task Result similar to the structure that is written by the {@link XmlTestResultWriter}
+     */
+    static byte[] createTestTaskResults(final int items, final int assertions) {
+        final StringBuilder builder = new StringBuilder(HEADER).append("<testTaskResults>");
+        for (int i = 0; i < items; i++) {
+            final String taskId = "EID" + UUID.randomUUID();
+            builder.append("<TestTaskResult id=\"").append(taskId).append("\"><parent ref=\"EID")
+                    .append(UUID.randomUUID()).append("\"/><resultedFrom ref=\"EID").append(UUID.randomUUID())
+                    .append("\"/><startTimestamp>2020-09-13T14:26:40+02:00</startTimestamp><duration>1234</duration>")
+                    .append("<status>FAILED</status><testObject ref=\"EID").append(UUID.randomUUID())
+                    .append("\"/><testModuleResults><TestModuleResult id=\"EID").append(UUID.randomUUID())
+                    .append("\"><parent ref=\"").append(taskId).append("\"/><testCaseResults>");
+            for (int a = 0; a < assertions; a++) {
+                builder.append("<TestAssertionResult id=\"EID").append(UUID.randomUUID())
+                        .append("\"><resultedFrom ref=\"EID").append(UUID.randomUUID())
+                        .append("\"/><startTimestamp>2020-09-13T14:26:40+02:00</startTimestamp><duration>")
+                        .append(a).append("</duration><status>").append(a % 10 == 0 ? "FAILED" : "PASSED")
+                        .append("</status>");
+                if (a % 10 == 0) {
+                    builder.append("<messages><message ref=\"TR.fundamental\"><argument token=\"ID\">")
+                            .append(a).append("</argument><argument token=\"TEXT\">Element \"x\" &amp; more")
+                            .append("</argument></message></messages>");
+                }
+                builder.append("</TestAssertionResult>");
+            }
+            builder.append("</testCaseResults></TestModuleResult></testModuleResults></TestTaskResult>");
+        }
+        return builder.append("</testTaskResults></DsResultSet>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void largeTestTaskResults() throws IOException, TransformerException {
+        assertSameOutput(createTestTaskResults(50, 40), "TestTaskResult", "0", "50", null);
+        assertSameOutput(createTestTaskResults(1, 5000), "TestTaskResult", null, null, null);
+    }
+}
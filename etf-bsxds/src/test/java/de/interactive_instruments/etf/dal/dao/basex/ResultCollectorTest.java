@@ -19,10 +19,15 @@ import static de.interactive_instruments.etf.dal.dao.basex.BsxTestUtils.DATA_STO
 import static de.interactive_instruments.etf.test.TestDtos.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
 import org.jsoup.Jsoup;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -30,12 +35,17 @@ import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 import org.mockito.Mockito;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
 
 import de.interactive_instruments.IFile;
 import de.interactive_instruments.etf.dal.dao.Dao;
+import de.interactive_instruments.etf.dal.dao.PartialResultProvider;
 import de.interactive_instruments.etf.dal.dao.PreparedDto;
+import de.interactive_instruments.etf.dal.dao.ResultStatisticsProvider;
 import de.interactive_instruments.etf.dal.dao.WriteDao;
 import de.interactive_instruments.etf.dal.dto.result.AttachmentDto;
+import de.interactive_instruments.etf.dal.dto.result.ResultStatistics;
 import de.interactive_instruments.etf.dal.dto.result.TestResultStatus;
 import de.interactive_instruments.etf.dal.dto.result.TestTaskResultDto;
 import de.interactive_instruments.etf.model.EidFactory;
@@ -242,18 +252,63 @@ public class ResultCollectorTest {
         // first Test Case failed
         assertEquals(TestResultStatus.FAILED, c.status(""));
 
+        // The completed Test Module is published as partial result
+        final PartialResultProvider partialResultProvider = (PartialResultProvider) dao;
+        assertTrue(partialResultProvider.hasPartialResult(TASK_DTO_1.getId()));
+        final ByteArrayOutputStream partialResult = new ByteArrayOutputStream();
+        assertTrue(partialResultProvider.streamPartialResult(TASK_DTO_1.getId(), partialResult));
+        final Document partialResultDoc = parse(partialResult.toByteArray());
+        assertEquals(1, partialResultDoc.getElementsByTagNameNS(XmlTestResultWriter.ETF_NS, "TestModuleResult").getLength());
+        assertEquals("TestTaskResult", partialResultDoc.getDocumentElement().getLocalName());
+        assertEquals("EID" + testTaskResultId, partialResultDoc.getDocumentElement().getAttribute("id"));
+        final PartialResultProvider.PartialResult snapshot = partialResultProvider.getPartialResult(TASK_DTO_1.getId());
+        assertNotNull(snapshot);
+
         // End Test Task
         c.end(ETS_DTO_1.getId().getId());
         assertEquals(-1, c.currentModelType());
         assertEquals(TestResultStatus.FAILED, c.status(""));
 
+        // Partial result is withdrawn
+        assertFalse(partialResultProvider.hasPartialResult(TASK_DTO_1.getId()));
+        assertNull(partialResultProvider.getPartialResult(TASK_DTO_1.getId()));
+        // a snapshot taken before can still be streamed
+        final ByteArrayOutputStream snapshotResult = new ByteArrayOutputStream();
+        snapshot.writeTo(snapshotResult);
+        assertEquals(1, parse(snapshotResult.toByteArray())
+                .getElementsByTagNameNS(XmlTestResultWriter.ETF_NS, "TestModuleResult").getLength());
+
         // Get TestTaskResult
         final TestTaskResultDto result = dao.getById(EidFactory.getDefault().createUUID(testTaskResultId)).getDto();
         assertEquals(testTaskResultId, result.getId().getId());
 
+        // Check statistics, results of called Test Cases and Test Steps are not counted
+        final ResultStatistics statistics = ((ResultStatisticsProvider) dao).getResultStatistics(result.getId()).get();
+        assertEquals(1, statistics.getCount(ResultStatistics.TEST_TASK_RESULT, TestResultStatus.FAILED));
+        assertEquals(1, statistics.getCount(ResultStatistics.TEST_MODULE_RESULT, TestResultStatus.FAILED));
+        assertEquals(2, statistics.getTotal(ResultStatistics.TEST_CASE_RESULT));
+        assertEquals(1, statistics.getCount(ResultStatistics.TEST_CASE_RESULT, TestResultStatus.FAILED));
+        assertEquals(1, statistics.getCount(ResultStatistics.TEST_CASE_RESULT, TestResultStatus.SKIPPED));
+        assertEquals(3, statistics.getTotal(ResultStatistics.TEST_STEP_RESULT));
+        assertEquals(1, statistics.getCount(ResultStatistics.TEST_STEP_RESULT, TestResultStatus.PASSED_MANUAL));
+        assertEquals(1, statistics.getCount(ResultStatistics.TEST_STEP_RESULT, TestResultStatus.FAILED));
+        assertEquals(1, statistics.getCount(ResultStatistics.TEST_STEP_RESULT, TestResultStatus.SKIPPED));
+        assertEquals(2, statistics.getTotal(ResultStatistics.TEST_ASSERTION_RESULT));
+        assertEquals(2, statistics.getCount(ResultStatistics.TEST_ASSERTION_RESULT, TestResultStatus.PASSED_MANUAL));
+
         return result;
     }
 
+    private static Document parse(final byte[] xml) {
+        try {
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            throw new AssertionError("Invalid partial result", e);
+        }
+    }
+
     @Test
     public void relabelTest() throws ConfigurationException, InvalidStateTransitionException, InitializationException,
             ObjectWithIdNotFoundException, IOException {
@@ -306,6 +361,11 @@ public class ResultCollectorTest {
         assertNotNull(attachment);
         assertEquals("Internal error", attachment.getLabel());
         assertEquals("ERROR message in file", new IFile(attachment.getReferencedData()).readContent().toString());
+
+        final ResultStatistics statistics = ((ResultStatisticsProvider) dao).getResultStatistics(result.getId()).get();
+        assertEquals(1, statistics.getTotal(ResultStatistics.TEST_TASK_RESULT));
+        assertEquals(1, statistics.getCount(ResultStatistics.TEST_TASK_RESULT, TestResultStatus.INTERNAL_ERROR));
+        assertEquals(0, statistics.getTotal(ResultStatistics.TEST_ASSERTION_RESULT));
     }
 
 }
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.dal.dao.basex;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import de.interactive_instruments.etf.dal.dto.result.TestResultStatus;
+import de.interactive_instruments.exceptions.StorageException;
+
+/**
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+public class ShardedTestTaskResultTest {
+
+    private static final int MODULES = 3;
+    private static final int CASES = 5;
+
+    private static byte[] xml;
+    private static long headerLength;
+    private static final List<long[]> modules = new ArrayList<>();
+    private static File dir;
+
+    @BeforeAll
+    static void setUp() throws XMLStreamException, IOException, StorageException {
+        dir = Files.createTempDirectory("etf-shards").toFile();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final XmlTestResultWriter writer = new XmlTestResultWriter(
+                XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8"), 1000);
+        long time = 1600000000000L;
+        writer.writeStartTestTaskResult(UUID.randomUUID().toString(), time, UUID.randomUUID().toString());
+        for (int m = 0; m < MODULES; m++) {
+            // Record the byte ranges like the BsxDsResultCollector
+            writer.flushItemBoundary();
+            final long start = out.size();
+            if (m == 0) {
+                headerLength = start;
+            }
+            writer.writeStartTestModuleResult(UUID.randomUUID().toString(), time);
+            for (int c = 0; c < CASES; c++) {
+                writer.writeStartTestCaseResult(UUID.randomUUID().toString(), time += 3);
+                writer.writeStartTestStepResult(UUID.randomUUID().toString(), time += 1000);
+                writer.writeStartTestAssertionResults();
+                writer.writeStartTestAssertionResult(UUID.randomUUID().toString(), time);
+                writer.addMessage("TR.fileNotFound", "filename", "file" + c + ".xml");
+                writer.finalizeMessages();
+                writer.writeEndTestAssertionResult(null, TestResultStatus.FAILED.value(), time += 7);
+                writer.writeEndTestAssertionResults();
+                writer.writeEndTestStepResult(null, TestResultStatus.FAILED.value(), time += 11);
+                writer.writeEndTestCaseResult(null, TestResultStatus.FAILED.value(), time);
+            }
+            writer.writeEndTestModuleResult(null, TestResultStatus.FAILED.value(), time);
+            writer.flushItemBoundary();
+            modules.add(new long[]{start, out.size()});
+        }
+        writer.addAttachment(UUID.randomUUID().toString(),
+                Base64.getEncoder().encode("Log".getBytes(StandardCharsets.UTF_8)), "Log file", "UTF-8", "text/plain",
+                "LogFile");
+        writer.writeEndTestTaskResult(null, TestResultStatus.FAILED.value(), time);
+        writer.close();
+        xml = out.toByteArray();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        FileUtils.deleteQuietly(dir);
+    }
+
+    private static File shardFile(final int index) {
+        return new File(dir, "TestTaskResult-EID1-" + index + ".xml");
+    }
+
+    private static Document parse(final byte[] document) throws ParserConfigurationException, IOException, SAXException {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(document));
+    }
+
+    @Test
+    void t1_split() throws IOException, ParserConfigurationException, SAXException {
+        final File headerFile = new File(dir, "TestTaskResult-EID1.xml");
+        final File indexFile = new File(dir, "TestTaskResultShards-EID1.xml");
+        assertEquals(MODULES, ShardedTestTaskResult.write(xml, headerLength, modules, "EID1", headerFile, indexFile,
+                ShardedTestTaskResultTest::shardFile));
+
+        // the header is a Test Task Result without the optional Test Module results
+        final Document header = parse(Files.readAllBytes(headerFile.toPath()));
+        assertEquals(0, header.getElementsByTagNameNS(XmlTestResultWriter.ETF_NS, "testModuleResults").getLength());
+        assertEquals(0, header.getElementsByTagNameNS(XmlTestResultWriter.ETF_NS, "TestModuleResult").getLength());
+        assertEquals(1, header.getElementsByTagNameNS(XmlTestResultWriter.ETF_NS, "attachments").getLength());
+        assertTrue(header.getDocumentElement().getAttribute("id").startsWith("EID"));
+
+        final Document index = parse(Files.readAllBytes(indexFile.toPath()));
+        assertEquals(ShardedTestTaskResult.INDEX_ELEMENT, index.getDocumentElement().getLocalName());
+        assertEquals("EID1", index.getDocumentElement().getAttribute("testTaskResult"));
+        final NodeList shardRefs = index.getElementsByTagNameNS(XmlTestResultWriter.ETF_NS,
+                ShardedTestTaskResult.SHARD_ELEMENT);
+        assertEquals(MODULES, shardRefs.getLength());
+        for (int i = 0; i < MODULES; i++) {
+            final Document shard = parse(Files.readAllBytes(shardFile(i).toPath()));
+            assertEquals(XmlTestResultWriter.ETF_NS, shard.getDocumentElement().getNamespaceURI());
+            assertEquals("TestModuleResult", shard.getDocumentElement().getLocalName());
+            assertEquals(CASES,
+                    shard.getElementsByTagNameNS(XmlTestResultWriter.ETF_NS, "TestCaseResult").getLength());
+
+            // the references allow to select single shards
+            final Element shardRef = (Element) shardRefs.item(i);
+            assertEquals(shardFile(i).getName(), shardRef.getAttribute("path"));
+            assertEquals(shard.getDocumentElement().getAttribute("id"), shardRef.getAttribute("testModuleResult"));
+            final NodeList resultedFrom = shard.getDocumentElement().getElementsByTagNameNS(XmlTestResultWriter.ETF_NS,
+                    "resultedFrom");
+            assertEquals(((Element) resultedFrom.item(resultedFrom.getLength() - 1)).getAttribute("ref"),
+                    shardRef.getAttribute("resultedFrom"));
+        }
+    }
+
+    @Test
+    void t2_concatenation() throws IOException {
+        final List<File> shardFiles = new ArrayList<>();
+        for (int i = 0; i < MODULES; i++) {
+            shardFiles.add(shardFile(i));
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ShardedTestTaskResult.writeXml(new File(dir, "TestTaskResult-EID1.xml"), shardFiles, out);
+        assertArrayEquals(xml, out.toByteArray());
+    }
+
+    @Test
+    void t3_notSplittable() throws IOException {
+        final File headerFile = new File(dir, "TestTaskResult-EID2.xml");
+        final File indexFile = new File(dir, "TestTaskResultShards-EID2.xml");
+        assertEquals(0, ShardedTestTaskResult.write(xml, headerLength, new ArrayList<>(), "EID2", headerFile,
+                indexFile, ShardedTestTaskResultTest::shardFile));
+        // missing Test Module result
+        assertEquals(0, ShardedTestTaskResult.write(xml, headerLength, Arrays.asList(modules.get(0), modules.get(2)),
+                "EID2", headerFile, indexFile, ShardedTestTaskResultTest::shardFile));
+        // range does not start with a Test Module result
+        assertEquals(0, ShardedTestTaskResult.write(xml, headerLength - 1, Arrays.asList(
+                new long[]{headerLength - 1, modules.get(0)[1]}, modules.get(1), modules.get(2)),
+                "EID2", headerFile, indexFile, ShardedTestTaskResultTest::shardFile));
+        assertFalse(headerFile.exists());
+        assertFalse(indexFile.exists());
+    }
+
+    @Test
+    void t4_insertShards() throws IOException, ParserConfigurationException, SAXException {
+        final String queryResult = "<DsResultSet xmlns:etf=\"" + XmlTestResultWriter.ETF_NS + "\"><etf:TestTaskResult>"
+                + "<etf:testObject ref=\"EID2\"/><?etf-shards " + shardFile(0).getName() + " " + shardFile(2).getName()
+                + "?><?etf-shardsOther x?><etf:attachments/></etf:TestTaskResult></DsResultSet>";
+        final byte[] bytes = queryResult.getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ShardedTestTaskResult.ShardInsertingOutputStream shardOut = new ShardedTestTaskResult.ShardInsertingOutputStream(
+                out, path -> new File(dir, path));
+        // the instruction is split across several writes
+        for (int i = 0; i < bytes.length; i += 5) {
+            shardOut.write(bytes, i, Math.min(5, bytes.length - i));
+        }
+        shardOut.finish();
+
+        final Document result = parse(out.toByteArray());
+        final NodeList testModuleResults = result.getElementsByTagNameNS(XmlTestResultWriter.ETF_NS,
+                "TestModuleResult");
+        assertEquals(2, testModuleResults.getLength());
+        assertEquals(parse(Files.readAllBytes(shardFile(2).toPath())).getDocumentElement().getAttribute("id"),
+                ((Element) testModuleResults.item(1)).getAttribute("id"));
+        assertEquals("testObject", testModuleResults.item(0).getParentNode().getPreviousSibling().getLocalName());
+        assertEquals(2 * CASES,
+                result.getElementsByTagNameNS(XmlTestResultWriter.ETF_NS, "TestCaseResult").getLength());
+        assertEquals(1, result.getElementsByTagNameNS(XmlTestResultWriter.ETF_NS, "attachments").getLength());
+        // other instructions are passed through
+        assertTrue(new String(out.toByteArray(), StandardCharsets.UTF_8).contains("<?etf-shardsOther x?>"));
+
+        final ShardedTestTaskResult.ShardInsertingOutputStream missingShard = new ShardedTestTaskResult.ShardInsertingOutputStream(
+                new ByteArrayOutputStream(), path -> new File(dir, path));
+        assertThrows(IOException.class,
+                () -> missingShard.write("<?etf-shards TestTaskResult-EID3-0.xml?>".getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.dal.dao;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import de.interactive_instruments.etf.model.EID;
+
+/**
+ * Interface for Data Access Objects that provide the already completed parts of results that are still being collected
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public interface PartialResultProvider {
+
+    /**
+     * The completed parts of a result at the time the snapshot was taken
+     */
+    @FunctionalInterface
+    interface PartialResult {
+
+        /**
+         * Streams the partial result. The document is not complete and may not be valid against the result schema.
+         *
+         * @param outputStream
+         *            target stream
+         * @throws IOException
+         *             if the partial result can not be streamed
+         */
+        void writeTo(final OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * Checks if a partial result exists
+     *
+     * @param id
+     *            ID of the result or of the task that collects the result
+     * @return true if the result is still being collected and a partial result can be streamed
+     */
+    boolean hasPartialResult(final EID id);
+
+    /**
+     * Streams the completed parts of a result that is still being collected. The document is not complete and may not
+     * be valid against the result schema.
+     *
+     * @param id
+     *            ID of the result or of the task that collects the result
+     * @param outputStream
+     *            target stream
+     * @return false if no partial result exists, i.e. because the result has been completed in the meantime
+     * @throws IOException
+     *             if the partial result can not be streamed
+     */
+    default boolean streamPartialResult(final EID id, final OutputStream outputStream) throws IOException {
+        final PartialResult partialResult = getPartialResult(id);
+        if (partialResult == null) {
+            return false;
+        }
+        partialResult.writeTo(outputStream);
+        return true;
+    }
+
+    /**
+     * Takes a snapshot of the completed parts of a result that is still being collected. The snapshot can be streamed
+     * later, for instance by another thread, and does not include parts that are completed in the meantime.
+     *
+     * @param id
+     *            ID of the result or of the task that collects the result
+     * @return the snapshot or null if no partial result exists
+     */
+    PartialResult getPartialResult(final EID id);
+}
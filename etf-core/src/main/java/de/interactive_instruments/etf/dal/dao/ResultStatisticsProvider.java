@@ -0,0 +1,42 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.dal.dao;
+
+import java.util.Optional;
+
+import de.interactive_instruments.etf.dal.dto.result.ResultStatistics;
+import de.interactive_instruments.etf.model.EID;
+import de.interactive_instruments.exceptions.StorageException;
+
+/**
+ * Interface for Data Access Objects that store the {@link ResultStatistics} of Test Task Results next to the results
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public interface ResultStatisticsProvider {
+
+    /**
+     * Returns the statistics of a Test Task Result, without loading the Test Task Result
+     *
+     * @param testTaskResultId
+     *            ID of the Test Task Result
+     * @return the statistics or an empty Optional if no statistics have been stored for the Test Task Result, i.e.
+     *         because the Test Task Result has been created by an older version
+     * @throws StorageException
+     *             if the statistics can not be read
+     */
+    Optional<ResultStatistics> getResultStatistics(final EID testTaskResultId) throws StorageException;
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.dal.dao;
+
+import java.util.Collection;
+
+import de.interactive_instruments.etf.dal.dto.result.TestTaskResultDto;
+import de.interactive_instruments.etf.model.EID;
+import de.interactive_instruments.exceptions.ObjectWithIdNotFoundException;
+import de.interactive_instruments.exceptions.StorageException;
+
+/**
+ * Interface for Data Access Objects that can load a Test Task Result with a subset of its Test Module results
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public interface TestModuleResultProvider {
+
+    /**
+     * Returns a Test Task Result with the results of the passed Test Modules only. The results of other Test Modules
+     * are not loaded.
+     *
+     * @param testTaskResultId
+     *            ID of the Test Task Result
+     * @param testModuleIds
+     *            IDs of the Test Modules the results were derived from. An empty collection returns the Test Task
+     *            Result without Test Module results, i.e. to access the attachments.
+     * @return prepared Test Task Result
+     * @throws StorageException
+     *             if the query can not be created
+     * @throws ObjectWithIdNotFoundException
+     *             if the Test Task Result does not exist
+     */
+    PreparedDto<TestTaskResultDto> getByIdWithTestModules(final EID testTaskResultId,
+            final Collection<EID> testModuleIds) throws StorageException, ObjectWithIdNotFoundException;
+}
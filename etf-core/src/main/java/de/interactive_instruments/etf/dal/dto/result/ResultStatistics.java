@@ -0,0 +1,174 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.dal.dto.result;
+
+import java.util.Arrays;
+
+/**
+ * Number of results per result item type and status of one Test Task Result.
+ *
+ * Only the items of the result hierarchy (Test Task, Test Module, Test Case, Test Step and Test Assertion results) are
+ * counted, Test Case and Test Step results that have been invoked by a Test Step are not included. The statistics are
+ * gathered while the results are collected, so that overviews do not need to traverse the whole result.
+ *
+ * The result item type is the model type used by
+ * {@link de.interactive_instruments.etf.testdriver.BasicTestResultCollector#currentModelType()}: 1 for Test Task, 2 for
+ * Test Module, 3 for Test Case, 4 for Test Step and 5 for Test Assertion results.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public final class ResultStatistics {
+
+    public static final int TEST_TASK_RESULT = 1;
+    public static final int TEST_MODULE_RESULT = 2;
+    public static final int TEST_CASE_RESULT = 3;
+    public static final int TEST_STEP_RESULT = 4;
+    public static final int TEST_ASSERTION_RESULT = 5;
+
+    private static final String[] TYPE_NAMES = {null, "TestTaskResult", "TestModuleResult", "TestCaseResult",
+            "TestStepResult", "TestAssertionResult"};
+
+    private final int[][] counts = new int[TYPE_NAMES.length][TestResultStatus.values().length];
+
+    public ResultStatistics() {}
+
+    /**
+     * Increments the number of results of a type with a status
+     *
+     * @param modelType
+     *            result item type, 1-5
+     * @param status
+     *            status value as defined by {@link TestResultStatus#value()}
+     */
+    public void count(final int modelType, final int status) {
+        counts[checkType(modelType)][status]++;
+    }
+
+    /**
+     * Sets the number of results of a type with a status
+     *
+     * @param modelType
+     *            result item type, 1-5
+     * @param status
+     *            result status
+     * @param count
+     *            number of results
+     */
+    public void setCount(final int modelType, final TestResultStatus status, final int count) {
+        counts[checkType(modelType)][status.value()] = count;
+    }
+
+    public int getCount(final int modelType, final TestResultStatus status) {
+        return counts[checkType(modelType)][status.value()];
+    }
+
+    public int getTotal(final int modelType) {
+        int total = 0;
+        for (final int count : counts[checkType(modelType)]) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Adds the numbers of another statistics object, i.e. to aggregate the statistics of all Test Tasks of a Test Run
+     *
+     * @param statistics
+     *            statistics to add
+     */
+    public void add(final ResultStatistics statistics) {
+        for (int t = 1; t < counts.length; t++) {
+            for (int s = 0; s < counts[t].length; s++) {
+                counts[t][s] += statistics.counts[t][s];
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        for (int t = 1; t < counts.length; t++) {
+            if (getTotal(t) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the name of the result item type, which is used as element name in the result XML
+     *
+     * @param modelType
+     *            result item type, 1-5
+     * @return name of the type
+     */
+    public static String getTypeName(final int modelType) {
+        return TYPE_NAMES[checkType(modelType)];
+    }
+
+    /**
+     * Returns the result item type for a name
+     *
+     * @param typeName
+     *            name, as returned by {@link #getTypeName(int)}
+     * @return result item type, 1-5
+     * @throws IllegalArgumentException
+     *             if the name is unknown
+     */
+    public static int getType(final String typeName) {
+        for (int t = 1; t < TYPE_NAMES.length; t++) {
+            if (TYPE_NAMES[t].equals(typeName)) {
+                return t;
+            }
+        }
+        throw new IllegalArgumentException("Unknown result item type '" + typeName + "'");
+    }
+
+    private static int checkType(final int modelType) {
+        if (modelType < 1 || modelType >= TYPE_NAMES.length) {
+            throw new IllegalArgumentException("Invalid result item type " + modelType);
+        }
+        return modelType;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return Arrays.deepEquals(counts, ((ResultStatistics) o).counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(counts);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ResultStatistics{");
+        for (int t = 1; t < counts.length; t++) {
+            sb.append(TYPE_NAMES[t]).append("=").append(getTotal(t));
+            sb.append(" (FAILED=").append(counts[t][TestResultStatus.FAILED.value()]).append(")");
+            if (t < counts.length - 1) {
+                sb.append(", ");
+            }
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+}
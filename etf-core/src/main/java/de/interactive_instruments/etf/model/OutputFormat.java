@@ -65,6 +65,16 @@ public interface OutputFormat extends Comparable<OutputFormat>, Parameterizable
             final InputStream inputStream,
             final OutputStream outputStreamStream) throws IOException;
 
+    /**
+     * Identifies the revision of the transformation, which changes if the same input would produce a different output.
+     * Output that has been produced with another revision must not be reused.
+     *
+     * @return revision of the output format or null if the output must not be reused
+     */
+    default String getRevision() {
+        return null;
+    }
+
     @Override
     default int compareTo(final OutputFormat o) {
         return getId().compareTo(o.getId());
@@ -0,0 +1,250 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Adjusts the pool size of a {@link TaskPoolRegistry} between configured bounds with an additive increase,
+ * multiplicative decrease (AIMD) policy.
+ *
+ * On each {@link #update(Metrics)} the pool size is decreased multiplicatively if the CPU load, the heap headroom or the
+ * GC time exceed their limits. It is increased by one if Tasks are queued, all threads are busy and the resources are
+ * not exhausted. If the throughput dropped after an increase, the increase is reverted.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public final class AdaptivePoolSizing {
+
+    private final static double MAX_CPU_LOAD = 0.85;
+    private final static double MIN_HEAP_HEADROOM = 0.15;
+    private final static double MAX_GC_TIME_RATIO = 0.1;
+    private final static double DECREASE_FACTOR = 0.75;
+    private final static double THROUGHPUT_SMOOTHING = 0.3;
+    private final static double THROUGHPUT_TOLERANCE = 0.9;
+    private final static int MAX_DECISIONS = 100;
+
+    private final TaskPoolRegistry<?, ?> registry;
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private final Deque<Decision> decisions = new ArrayDeque<>();
+    private long lastCompleted;
+    private long lastUpdate;
+    // completed Tasks per minute, smoothed
+    private double throughput = Double.NaN;
+    // smoothed throughput before the last increase, NaN if the last decision was not an increase
+    private double throughputBeforeIncrease = Double.NaN;
+
+    /**
+     * Resource usage sampled since the last update
+     */
+    public static final class Metrics {
+        private final double cpuLoad;
+        private final double heapHeadroom;
+        private final double gcTimeRatio;
+
+        /**
+         * Creates a new sample
+         *
+         * @param cpuLoad
+         *            recent CPU load of the process between 0 and 1, negative if unknown
+         * @param heapHeadroom
+         *            fraction of the maximum heap that is free, between 0 and 1
+         * @param gcTimeRatio
+         *            fraction of the elapsed time spent in garbage collection, between 0 and 1
+         */
+        public Metrics(final double cpuLoad, final double heapHeadroom, final double gcTimeRatio) {
+            this.cpuLoad = cpuLoad;
+            this.heapHeadroom = heapHeadroom;
+            this.gcTimeRatio = gcTimeRatio;
+        }
+
+        public double getCpuLoad() {
+            return cpuLoad;
+        }
+
+        public double getHeapHeadroom() {
+            return heapHeadroom;
+        }
+
+        public double getGcTimeRatio() {
+            return gcTimeRatio;
+        }
+    }
+
+    /**
+     * A pool sizing decision
+     */
+    public static final class Decision {
+        private final long timestamp;
+        private final int previousPoolSize;
+        private final int poolSize;
+        private final String reason;
+        private final Metrics metrics;
+        private final double throughput;
+
+        private Decision(final int previousPoolSize, final int poolSize, final String reason, final Metrics metrics,
+                final double throughput) {
+            this.timestamp = System.currentTimeMillis();
+            this.previousPoolSize = previousPoolSize;
+            this.poolSize = poolSize;
+            this.reason = reason;
+            this.metrics = metrics;
+            this.throughput = throughput;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getPreviousPoolSize() {
+            return previousPoolSize;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public boolean isChanged() {
+            return poolSize != previousPoolSize;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public Metrics getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * Returns the smoothed throughput
+         *
+         * @return completed Tasks per minute
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        @Override
+        public String toString() {
+            return "Pool size " + previousPoolSize + " -> " + poolSize + ": " + reason
+                    + " (cpu load " + String.format("%.2f", metrics.cpuLoad)
+                    + ", heap headroom " + String.format("%.2f", metrics.heapHeadroom)
+                    + ", gc time " + String.format("%.3f", metrics.gcTimeRatio)
+                    + ", throughput " + String.format("%.2f", throughput) + "/min)";
+        }
+    }
+
+    /**
+     * Creates a new adaptive pool sizing policy and sets the initial pool size to the lower bound
+     *
+     * @param registry
+     *            registry whose pool is resized
+     * @param minPoolSize
+     *            lower bound, at least 1
+     * @param maxPoolSize
+     *            upper bound
+     */
+    public AdaptivePoolSizing(final TaskPoolRegistry<?, ?> registry, final int minPoolSize, final int maxPoolSize) {
+        if (minPoolSize < 1 || maxPoolSize < minPoolSize) {
+            throw new IllegalArgumentException(
+                    "Invalid pool size bounds: " + minPoolSize + " - " + maxPoolSize);
+        }
+        this.registry = registry;
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.lastCompleted = registry.getCompletedTaskCount();
+        this.lastUpdate = System.nanoTime();
+        final int poolSize = registry.getPoolSize();
+        registry.setPoolSize(Math.max(minPoolSize, Math.min(maxPoolSize, poolSize)));
+    }
+
+    /**
+     * Adjusts the pool size
+     *
+     * @param metrics
+     *            resource usage sampled since the last update
+     * @return the decision
+     */
+    public synchronized Decision update(final Metrics metrics) {
+        final long now = System.nanoTime();
+        final long completed = registry.getCompletedTaskCount();
+        final double minutes = Math.max(1e-3, (now - lastUpdate) / 6e10);
+        final double currentThroughput = (completed - lastCompleted) / minutes;
+        throughput = Double.isNaN(throughput) ? currentThroughput
+                : throughput + THROUGHPUT_SMOOTHING * (currentThroughput - throughput);
+        lastCompleted = completed;
+        lastUpdate = now;
+
+        final int poolSize = registry.getPoolSize();
+        int nextPoolSize = poolSize;
+        final String reason;
+        if (metrics.gcTimeRatio > MAX_GC_TIME_RATIO) {
+            nextPoolSize = decrease(poolSize);
+            reason = "GC time limit exceeded";
+        } else if (metrics.heapHeadroom < MIN_HEAP_HEADROOM) {
+            nextPoolSize = decrease(poolSize);
+            reason = "Heap headroom below limit";
+        } else if (metrics.cpuLoad > MAX_CPU_LOAD) {
+            nextPoolSize = decrease(poolSize);
+            reason = "CPU load limit exceeded";
+        } else if (!Double.isNaN(throughputBeforeIncrease)
+                && throughput < throughputBeforeIncrease * THROUGHPUT_TOLERANCE) {
+            nextPoolSize = Math.max(minPoolSize, poolSize - 1);
+            reason = "Throughput decreased after the last increase";
+        } else if (registry.getQueuedCount() > 0 && registry.getActiveCount() >= poolSize) {
+            nextPoolSize = Math.min(maxPoolSize, poolSize + 1);
+            reason = nextPoolSize > poolSize ? "Tasks queued and resources available" : "Upper bound reached";
+        } else {
+            reason = "Steady";
+        }
+        throughputBeforeIncrease = nextPoolSize > poolSize ? throughput : Double.NaN;
+        if (nextPoolSize != poolSize) {
+            registry.setPoolSize(nextPoolSize);
+        }
+        final Decision decision = new Decision(poolSize, nextPoolSize, reason, metrics, throughput);
+        decisions.addLast(decision);
+        if (decisions.size() > MAX_DECISIONS) {
+            decisions.removeFirst();
+        }
+        return decision;
+    }
+
+    private int decrease(final int poolSize) {
+        return Math.max(minPoolSize, (int) (poolSize * DECREASE_FACTOR));
+    }
+
+    /**
+     * Returns the recent decisions
+     *
+     * @return decisions, oldest first
+     */
+    public synchronized List<Decision> getDecisions() {
+        return new ArrayList<>(decisions);
+    }
+
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.util.Objects;
+
+/**
+ * Declares a bulkhead: Tasks of the same bulkhead, for instance all Test Runs of one Test Driver or a group of Test
+ * Drivers, are limited to a number of parallel executions, so that they cannot occupy all threads of a
+ * {@link TaskPoolRegistry}.
+ *
+ * @see ComponentInitializer#bulkhead()
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public final class BulkheadDefinition {
+
+    private final String name;
+    private final int limit;
+
+    /**
+     * Creates a new bulkhead definition
+     *
+     * @param name
+     *            name of the bulkhead
+     * @param limit
+     *            maximum number of parallel Tasks, 0 or a negative value if unlimited
+     */
+    public BulkheadDefinition(final String name, final int limit) {
+        this.name = Objects.requireNonNull(name, "Bulkhead name is null");
+        this.limit = limit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns true if the number of parallel Tasks is limited
+     *
+     * @return true if limited
+     */
+    public boolean isLimited() {
+        return limit > 0;
+    }
+
+    @Override
+    public String toString() {
+        return name + (isLimited() ? " (" + limit + ")" : " (unlimited)");
+    }
+}
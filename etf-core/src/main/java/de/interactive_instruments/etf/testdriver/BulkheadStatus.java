@@ -0,0 +1,84 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+/**
+ * Utilization of a bulkhead in a {@link TaskPoolRegistry}
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public final class BulkheadStatus {
+
+    private final String name;
+    private final int limit;
+    private final int running;
+    private final int borrowed;
+    private final int queued;
+    private final long completed;
+
+    BulkheadStatus(final String name, final int limit, final int running, final int borrowed, final int queued,
+            final long completed) {
+        this.name = name;
+        this.limit = limit;
+        this.running = running;
+        this.borrowed = borrowed;
+        this.queued = queued;
+        this.completed = completed;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of dispatched Tasks, including borrowed ones
+     *
+     * @return number of running Tasks
+     */
+    public int getRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the number of running Tasks that exceed the limit and use idle threads of other bulkheads
+     *
+     * @return number of borrowed threads
+     */
+    public int getBorrowed() {
+        return borrowed;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Returns the utilization of the bulkhead
+     *
+     * @return running Tasks divided by the limit
+     */
+    public double getUtilization() {
+        return (double) running / limit;
+    }
+}
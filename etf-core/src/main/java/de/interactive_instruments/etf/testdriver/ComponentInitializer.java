@@ -29,4 +29,19 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 public @interface ComponentInitializer {
     String id();
+
+    /**
+     * Name of the bulkhead that limits the parallel Test Runs of this Test Driver. Test Drivers with the same bulkhead
+     * name share the limit. Defaults to the id of the Test Driver.
+     *
+     * @return bulkhead name
+     */
+    String bulkhead() default "";
+
+    /**
+     * Maximum number of parallel Test Runs in the bulkhead, 0 if not limited by the Test Driver
+     *
+     * @return bulkhead limit
+     */
+    int bulkheadLimit() default 0;
 }
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+/**
+ * Weighted fair share between clients, based on start-time fair queuing.
+ *
+ * Every client has a virtual clock per priority class. A queued Task is ranked with the virtual start time
+ * {@code max(virtual time, last finish time of the client)} and advances the clock of its client by
+ * {@code 1 / weight}. The virtual time of the priority class is the rank of the last started Task. A client with the
+ * weight 2 gets twice as many Tasks started as a client with the weight 1, as long as both have Tasks queued, and a
+ * client that submits many Tasks at once can not delay the Tasks of other clients. Tasks without client share one
+ * anonymous client.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class FairShareSchedulingPolicy implements TaskSchedulingPolicy {
+
+    private static final String ANONYMOUS = "";
+
+    private final ToIntFunction<String> weights;
+    private final Map<TaskPriority, PriorityClass> classes = new EnumMap<>(TaskPriority.class);
+
+    private static final class PriorityClass {
+        private double virtualTime;
+        private final Map<String, Double> lastFinishTimes = new HashMap<>();
+    }
+
+    /**
+     * Creates a policy where all clients have the same weight
+     */
+    public FairShareSchedulingPolicy() {
+        this(client -> 1);
+    }
+
+    /**
+     * Creates a policy with client weights
+     *
+     * @param weights
+     *            returns the weight for a client, values lower than 1 are treated as 1
+     */
+    public FairShareSchedulingPolicy(final ToIntFunction<String> weights) {
+        this.weights = Objects.requireNonNull(weights, "Weights are null");
+        for (final TaskPriority priority : TaskPriority.values()) {
+            classes.put(priority, new PriorityClass());
+        }
+    }
+
+    @Override
+    public synchronized double queued(final TaskPriority priority, final String client) {
+        final PriorityClass priorityClass = classes.get(priority);
+        final String key = client != null ? client : ANONYMOUS;
+        final double start = Math.max(priorityClass.virtualTime,
+                priorityClass.lastFinishTimes.getOrDefault(key, 0d));
+        priorityClass.lastFinishTimes.put(key, start + 1d / Math.max(1, weights.applyAsInt(key)));
+        return start;
+    }
+
+    @Override
+    public synchronized void started(final TaskPriority priority, final String client, final double rank) {
+        final PriorityClass priorityClass = classes.get(priority);
+        if (rank > priorityClass.virtualTime) {
+            priorityClass.virtualTime = rank;
+        }
+        // Forget clients that are behind the virtual time, they have no queued Tasks
+        priorityClass.lastFinishTimes.values().removeIf(finish -> finish <= priorityClass.virtualTime);
+    }
+}
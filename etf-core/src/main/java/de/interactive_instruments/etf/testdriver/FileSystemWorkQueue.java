@@ -0,0 +1,307 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A {@link WorkQueue} in a directory, that can be shared by several processes on one host or on a shared volume.
+ *
+ * All state changes are atomic renames within the queue directory:
+ * <ul>
+ * <li>pending/ contains the published items, ordered by their publication time</li>
+ * <li>claimed/ contains the claimed items and their lease files. A worker writes its lease file before it moves an
+ * item from pending/ to claimed/, so only one worker wins an item and a claimed item always has a lease.</li>
+ * <li>failed/ contains the failed items</li>
+ * <li>nodes/ contains the name of the node that claimed an item most recently, also after the item has been
+ * completed</li>
+ * <li>tmp/ contains files that are being written</li>
+ * </ul>
+ * Completed items are deleted. The file system must support atomic moves within the queue directory.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class FileSystemWorkQueue implements WorkQueue {
+
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final String ITEM_SUFFIX = ".item";
+    private static final String LEASE_SUFFIX = ".lease";
+    private static final String NODE_SUFFIX = ".node";
+    // separates the name of a pending item and the claim token
+    private static final char CLAIM_SEPARATOR = '~';
+
+    private final Path pendingDir;
+    private final Path claimedDir;
+    private final Path failedDir;
+    private final Path nodesDir;
+    private final Path tmpDir;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    /**
+     * Opens or creates a queue
+     *
+     * @param dir
+     *            queue directory
+     * @throws IOException
+     *             if the directories could not be created
+     */
+    public FileSystemWorkQueue(final Path dir) throws IOException {
+        Objects.requireNonNull(dir, "Queue directory is null");
+        this.pendingDir = Files.createDirectories(dir.resolve("pending"));
+        this.claimedDir = Files.createDirectories(dir.resolve("claimed"));
+        this.failedDir = Files.createDirectories(dir.resolve("failed"));
+        this.nodesDir = Files.createDirectories(dir.resolve("nodes"));
+        this.tmpDir = Files.createDirectories(dir.resolve("tmp"));
+    }
+
+    private final class FileWorkItem implements WorkItem {
+        private final String name;
+        private final String id;
+        private final Path item;
+        private final Path lease;
+        private final String node;
+        private final long leaseTime;
+        private final byte[] payload;
+
+        private FileWorkItem(final String name, final Path item, final Path lease, final String node,
+                final long leaseTime) throws IOException {
+            this.name = name;
+            this.id = name.substring(name.indexOf('-') + 1, name.length() - ITEM_SUFFIX.length());
+            this.item = item;
+            this.lease = lease;
+            this.node = node;
+            this.leaseTime = leaseTime;
+            this.payload = Files.readAllBytes(item);
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public byte[] getPayload() {
+            return payload.clone();
+        }
+
+        @Override
+        public boolean renew() throws IOException {
+            writeLease(lease, node, leaseTime);
+            if (!Files.exists(item)) {
+                // recovered in the meantime
+                Files.deleteIfExists(lease);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean complete() throws IOException {
+            try {
+                Files.delete(item);
+                return true;
+            } catch (final NoSuchFileException e) {
+                return false;
+            } finally {
+                Files.deleteIfExists(lease);
+            }
+        }
+
+        private boolean moveTo(final Path dir) throws IOException {
+            try {
+                Files.move(item, dir.resolve(name), ATOMIC_MOVE);
+                return true;
+            } catch (final NoSuchFileException e) {
+                return false;
+            } finally {
+                Files.deleteIfExists(lease);
+            }
+        }
+
+        @Override
+        public boolean fail() throws IOException {
+            return moveTo(failedDir);
+        }
+
+        @Override
+        public boolean abandon() throws IOException {
+            return moveTo(pendingDir);
+        }
+
+        @Override
+        public String toString() {
+            return "WorkItem." + id + " (" + node + ")";
+        }
+    }
+
+    private void writeAtomically(final Path target, final byte[] content) throws IOException {
+        final Path tmp = tmpDir.resolve(UUID.randomUUID().toString() + ".tmp");
+        try {
+            Files.write(tmp, content);
+            Files.move(tmp, target, ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void writeLease(final Path lease, final String node, final long leaseTime) throws IOException {
+        final long expiry = System.currentTimeMillis() + leaseTime;
+        writeAtomically(lease, (expiry + "\n" + node + "\n").getBytes(UTF_8));
+    }
+
+    private static long readLeaseExpiry(final Path lease) throws IOException {
+        try {
+            final List<String> lines = Files.readAllLines(lease, UTF_8);
+            return lines.isEmpty() ? 0 : Long.parseLong(lines.get(0).trim());
+        } catch (final NoSuchFileException | NumberFormatException e) {
+            // broken claim
+            return 0;
+        }
+    }
+
+    private static List<String> list(final Path dir, final String suffix) throws IOException {
+        try (final Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).filter(n -> n.endsWith(suffix)).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public void publish(final String id, final byte[] payload) throws IOException {
+        if (id == null || !ID_PATTERN.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid work item ID '" + id + "'");
+        }
+        final String name = String.format("%013d%06d-%s%s", System.currentTimeMillis(),
+                sequence.incrementAndGet() % 1000000, id, ITEM_SUFFIX);
+        writeAtomically(pendingDir.resolve(name), Objects.requireNonNull(payload, "Payload is null"));
+    }
+
+    @Override
+    public WorkItem claim(final String node, final long leaseTime, final TimeUnit unit) throws IOException {
+        final long leaseMillis = unit.toMillis(leaseTime);
+        final String token = ID_PATTERN.matcher(node).matches() ? node : node.replaceAll("[^A-Za-z0-9._-]", "_");
+        for (final String name : list(pendingDir, ITEM_SUFFIX)) {
+            final String claimName = name.substring(0, name.length() - ITEM_SUFFIX.length()) + CLAIM_SEPARATOR
+                    + token + "_" + Long.toHexString(UUID.randomUUID().getMostSignificantBits());
+            final Path lease = claimedDir.resolve(claimName + LEASE_SUFFIX);
+            final Path item = claimedDir.resolve(claimName + ITEM_SUFFIX);
+            writeLease(lease, node, leaseMillis);
+            try {
+                Files.move(pendingDir.resolve(name), item, ATOMIC_MOVE);
+            } catch (final NoSuchFileException e) {
+                // claimed by another worker
+                Files.deleteIfExists(lease);
+                continue;
+            }
+            final FileWorkItem workItem = new FileWorkItem(name, item, lease, node, leaseMillis);
+            writeAtomically(nodeFile(workItem.id), node.getBytes(UTF_8));
+            return workItem;
+        }
+        return null;
+    }
+
+    @Override
+    public int recoverExpired() throws IOException {
+        int recovered = 0;
+        final long now = System.currentTimeMillis();
+        for (final String claimName : list(claimedDir, ITEM_SUFFIX)) {
+            final String base = claimName.substring(0, claimName.length() - ITEM_SUFFIX.length());
+            final Path lease = claimedDir.resolve(base + LEASE_SUFFIX);
+            if (readLeaseExpiry(lease) < now) {
+                final String name = base.substring(0, base.lastIndexOf(CLAIM_SEPARATOR)) + ITEM_SUFFIX;
+                try {
+                    Files.move(claimedDir.resolve(claimName), pendingDir.resolve(name), ATOMIC_MOVE);
+                    recovered++;
+                } catch (final NoSuchFileException e) {
+                    // completed or recovered by another node
+                    continue;
+                }
+                Files.deleteIfExists(lease);
+            }
+        }
+        return recovered;
+    }
+
+    private Path nodeFile(final String id) {
+        if (id == null || !ID_PATTERN.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid work item ID '" + id + "'");
+        }
+        return nodesDir.resolve(id + NODE_SUFFIX);
+    }
+
+    @Override
+    public boolean isPending(final String id) throws IOException {
+        if (id == null || !ID_PATTERN.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid work item ID '" + id + "'");
+        }
+        final String suffix = "-" + id + ITEM_SUFFIX;
+        // the name prefix consists of digits, the first '-' separates it from the ID
+        return list(pendingDir, suffix).stream().anyMatch(n -> n.indexOf('-') == n.length() - suffix.length());
+    }
+
+    @Override
+    public String getNode(final String id) throws IOException {
+        try {
+            return new String(Files.readAllBytes(nodeFile(id)), UTF_8);
+        } catch (final NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void forget(final String id) throws IOException {
+        Files.deleteIfExists(nodeFile(id));
+    }
+
+    @Override
+    public int getPendingCount() throws IOException {
+        return list(pendingDir, ITEM_SUFFIX).size();
+    }
+
+    @Override
+    public int getClaimedCount() throws IOException {
+        return list(claimedDir, ITEM_SUFFIX).size();
+    }
+
+    /**
+     * Returns the IDs of the failed items
+     *
+     * @return IDs of failed items
+     * @throws IOException
+     *             if the queue could not be read
+     */
+    public List<String> getFailedIds() throws IOException {
+        final List<String> ids = new ArrayList<>();
+        for (final String name : list(failedDir, ITEM_SUFFIX)) {
+            ids.add(name.substring(name.indexOf('-') + 1, name.length() - ITEM_SUFFIX.length()));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.io.*;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.interactive_instruments.exceptions.ExcUtils;
+
+/**
+ * Estimates the peak memory usage of a Task from the size of its input and the usage measured in previous runs.
+ *
+ * Estimates are learned per key, for instance per Executable Test Suite and per Test Driver. Inputs that are smaller
+ * than the minimum estimate are assumed to have a fixed footprint, larger inputs a footprint proportional to their
+ * size. Both values are exponentially smoothed over the measured runs. If no history exists for any key, the footprint
+ * is estimated with a default ratio.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class FootprintEstimator {
+
+    private final static double SMOOTHING = 0.3;
+
+    private final long minimum;
+    private final double defaultRatio;
+    private final ConcurrentMap<String, Model> models = new ConcurrentHashMap<>();
+
+    private static final class Model {
+        // bytes per input byte, NaN if unknown
+        private double ratio = Double.NaN;
+        // bytes for small inputs, NaN if unknown
+        private double fixed = Double.NaN;
+
+        private static double smooth(final double current, final double measured) {
+            return Double.isNaN(current) ? measured : current + SMOOTHING * (measured - current);
+        }
+
+        private synchronized void record(final long size, final long peak, final long minimum) {
+            if (size < minimum) {
+                fixed = smooth(fixed, peak);
+            } else {
+                ratio = smooth(ratio, (double) peak / size);
+            }
+        }
+
+        private synchronized double estimate(final long size, final long minimum) {
+            return size < minimum ? fixed : ratio * size;
+        }
+
+        private synchronized String format() {
+            return ratio + "," + fixed;
+        }
+
+        private static Model parse(final String value) {
+            final String[] values = value.split(",");
+            final Model model = new Model();
+            model.ratio = Double.parseDouble(values[0]);
+            model.fixed = Double.parseDouble(values[1]);
+            return model;
+        }
+    }
+
+    /**
+     * Creates a new estimator
+     *
+     * @param minimum
+     *            minimum estimate in bytes
+     * @param defaultRatio
+     *            peak memory usage per input byte, used if no history exists
+     */
+    public FootprintEstimator(final long minimum, final double defaultRatio) {
+        this.minimum = Math.max(1, minimum);
+        this.defaultRatio = defaultRatio;
+    }
+
+    /**
+     * Estimates the peak memory usage
+     *
+     * @param size
+     *            input size in bytes, 0 if unknown
+     * @param keys
+     *            keys ordered from the most to the least specific one
+     * @return estimated peak memory usage in bytes
+     */
+    public long estimate(final long size, final String... keys) {
+        for (final String key : keys) {
+            final Model model = key != null ? models.get(key) : null;
+            if (model != null) {
+                final double estimate = model.estimate(size, minimum);
+                if (!Double.isNaN(estimate)) {
+                    return Math.max(minimum, (long) estimate);
+                }
+            }
+        }
+        return Math.max(minimum, (long) (defaultRatio * size));
+    }
+
+    /**
+     * Records the measured peak memory usage for all keys
+     *
+     * @param size
+     *            input size in bytes, 0 if unknown
+     * @param peak
+     *            measured peak memory usage in bytes
+     * @param keys
+     *            keys of the run
+     */
+    public void record(final long size, final long peak, final String... keys) {
+        for (final String key : keys) {
+            if (key != null) {
+                models.computeIfAbsent(key, k -> new Model()).record(Math.max(0, size), Math.max(0, peak), minimum);
+            }
+        }
+    }
+
+    /**
+     * Loads previously stored estimates, invalid entries are ignored
+     *
+     * @param file
+     *            properties file
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public void load(final File file) throws IOException {
+        final Properties properties = new Properties();
+        try (final InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        for (final String key : properties.stringPropertyNames()) {
+            try {
+                models.put(key, Model.parse(properties.getProperty(key)));
+            } catch (final RuntimeException e) {
+                ExcUtils.suppress(e);
+            }
+        }
+    }
+
+    /**
+     * Stores the learned estimates
+     *
+     * @param file
+     *            properties file
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public synchronized void store(final File file) throws IOException {
+        final Properties properties = new Properties();
+        for (final Map.Entry<String, Model> entry : models.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().format());
+        }
+        try (final OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "Learned peak memory usage: ratio per input byte, fixed bytes");
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates non-daemon platform threads
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class PlatformTaskThreads implements TaskThreads {
+
+    static final PlatformTaskThreads INSTANCE = new PlatformTaskThreads();
+
+    private PlatformTaskThreads() {}
+
+    @Override
+    public String getName() {
+        return PLATFORM;
+    }
+
+    @Override
+    public boolean isVirtual() {
+        return false;
+    }
+
+    @Override
+    public ThreadFactory newThreadFactory(final String namePrefix) {
+        final AtomicInteger threadNo = new AtomicInteger();
+        return r -> new Thread(r, namePrefix + threadNo.incrementAndGet());
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.util.Arrays;
+
+/**
+ * Time Tasks waited in the queue of a {@link TaskPoolRegistry}, per {@link TaskPriority}.
+ *
+ * Percentiles are calculated over the most recent {@value #SAMPLES} started Tasks of a priority class.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public final class QueueWaitStatistics {
+
+    static final int SAMPLES = 1024;
+
+    private final long[][] samples = new long[TaskPriority.values().length][SAMPLES];
+    private final long[] counts = new long[TaskPriority.values().length];
+
+    synchronized void record(final TaskPriority priority, final long waitMillis) {
+        final int p = priority.ordinal();
+        samples[p][(int) (counts[p] % SAMPLES)] = waitMillis;
+        counts[p]++;
+    }
+
+    /**
+     * Returns the number of started Tasks
+     *
+     * @param priority
+     *            priority class
+     * @return number of Tasks that have been started
+     */
+    public synchronized long getCount(final TaskPriority priority) {
+        return counts[priority.ordinal()];
+    }
+
+    /**
+     * Returns the queue wait time percentile
+     *
+     * @param priority
+     *            priority class
+     * @param percentile
+     *            percentile between 0 and 100
+     * @return wait time in milliseconds or -1 if no Task of the priority class has been started yet
+     */
+    public long getPercentile(final TaskPriority priority, final double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        final long[] sorted;
+        synchronized (this) {
+            final int p = priority.ordinal();
+            sorted = Arrays.copyOf(samples[p], (int) Math.min(counts[p], SAMPLES));
+        }
+        if (sorted.length == 0) {
+            return -1;
+        }
+        Arrays.sort(sorted);
+        final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.util.*;
+
+import de.interactive_instruments.exceptions.ExcUtils;
+
+/**
+ * A table of read/write locks that are indexed by a key, for instance the ID of a Test Object.
+ *
+ * A shared lock is held together with other shared locks of the same key, an exclusive lock alone. Locks are granted
+ * in request order: a lock that can not be granted immediately waits behind the holders and the earlier waiting locks,
+ * and a callback is invoked when it is granted. Threads are never blocked. Conflicts are checked in constant time,
+ * entries are removed when a key is neither locked nor awaited.
+ *
+ * @param <K>
+ *            key type
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class ReadWriteLockTable<K> {
+
+    private enum LockState {
+        NEW, WAITING, HELD, RELEASED
+    }
+
+    private static final class Entry<K> {
+        private int readers;
+        private boolean writer;
+        private final ArrayDeque<ReadWriteLockTable<K>.Lock> waiting = new ArrayDeque<>();
+
+        private boolean isCompatible(final boolean shared) {
+            return !writer && (shared || readers == 0);
+        }
+
+        private boolean isUnused() {
+            return readers == 0 && !writer && waiting.isEmpty();
+        }
+    }
+
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private int waitingCount;
+
+    /**
+     * A lock of one key
+     */
+    public final class Lock {
+        private final K key;
+        private final boolean shared;
+        private Runnable onGranted;
+        private LockState state = LockState.NEW;
+
+        private Lock(final K key, final boolean shared) {
+            this.key = key;
+            this.shared = shared;
+        }
+
+        /**
+         * Acquires the lock if no holder conflicts and no other lock waits for the key. Otherwise the lock waits and
+         * the callback is invoked by the thread that releases the last conflicting lock.
+         *
+         * @param onGranted
+         *            invoked when a waiting lock is granted, not invoked if the lock is granted immediately
+         * @return true if the lock has been granted immediately, false if the lock waits
+         * @throws IllegalStateException
+         *             if the lock has already been acquired
+         */
+        public boolean acquire(final Runnable onGranted) {
+            synchronized (entries) {
+                if (state != LockState.NEW) {
+                    throw new IllegalStateException("Lock already acquired");
+                }
+                final Entry<K> entry = entries.computeIfAbsent(key, k -> new Entry<>());
+                if (entry.waiting.isEmpty() && entry.isCompatible(shared)) {
+                    hold(entry);
+                    return true;
+                }
+                this.onGranted = Objects.requireNonNull(onGranted, "Callback is null");
+                state = LockState.WAITING;
+                entry.waiting.add(this);
+                waitingCount++;
+                return false;
+            }
+        }
+
+        private void hold(final Entry<K> entry) {
+            if (shared) {
+                entry.readers++;
+            } else {
+                entry.writer = true;
+            }
+            state = LockState.HELD;
+        }
+
+        /**
+         * Releases a held lock or stops waiting for it and grants the waiting locks that do not conflict anymore.
+         * Releasing a lock more than once has no effect.
+         */
+        public void release() {
+            final List<Lock> granted = new ArrayList<>(1);
+            synchronized (entries) {
+                final Entry<K> entry = entries.get(key);
+                if (state == LockState.HELD) {
+                    if (shared) {
+                        entry.readers--;
+                    } else {
+                        entry.writer = false;
+                    }
+                } else if (state == LockState.WAITING) {
+                    entry.waiting.remove(this);
+                    waitingCount--;
+                }
+                state = LockState.RELEASED;
+                if (entry == null) {
+                    return;
+                }
+                while (!entry.waiting.isEmpty() && entry.isCompatible(entry.waiting.peek().shared)) {
+                    final Lock next = entry.waiting.poll();
+                    waitingCount--;
+                    next.hold(entry);
+                    granted.add(next);
+                }
+                if (entry.isUnused()) {
+                    entries.remove(key);
+                }
+            }
+            for (final Lock lock : granted) {
+                try {
+                    lock.onGranted.run();
+                } catch (Exception e) {
+                    ExcUtils.suppress(e);
+                }
+            }
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public boolean isShared() {
+            return shared;
+        }
+
+        public boolean isHeld() {
+            synchronized (entries) {
+                return state == LockState.HELD;
+            }
+        }
+
+        public boolean isWaiting() {
+            synchronized (entries) {
+                return state == LockState.WAITING;
+            }
+        }
+    }
+
+    /**
+     * Creates a new lock, that must be acquired with {@link Lock#acquire(Runnable)}
+     *
+     * @param key
+     *            locked key
+     * @param shared
+     *            true for a shared lock, false for an exclusive lock
+     * @return new lock
+     */
+    public Lock newLock(final K key, final boolean shared) {
+        return new Lock(Objects.requireNonNull(key, "Key is null"), shared);
+    }
+
+    /**
+     * Checks if a lock is held for a key
+     *
+     * @param key
+     *            the key
+     * @return true if a shared or exclusive lock is held
+     */
+    public boolean isLocked(final K key) {
+        synchronized (entries) {
+            final Entry<K> entry = entries.get(key);
+            return entry != null && (entry.writer || entry.readers > 0);
+        }
+    }
+
+    /**
+     * Returns the number of keys that are locked or awaited
+     *
+     * @return number of keys
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the number of locks that wait to be granted
+     *
+     * @return number of waiting locks
+     */
+    public int getWaitingCount() {
+        synchronized (entries) {
+            return waitingCount;
+        }
+    }
+}
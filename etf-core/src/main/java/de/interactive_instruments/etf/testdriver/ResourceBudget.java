@@ -0,0 +1,132 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A global budget of resource units, for instance bytes of heap memory, that Tasks acquire before they are started.
+ *
+ * Tasks are admitted in the order they asked for resources: a Task that does not fit into the remaining budget delays
+ * the following Tasks, so that large Tasks are not starved by a stream of small ones. A Task that requests more than
+ * the capacity is admitted once no other Task holds resources.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public final class ResourceBudget {
+
+    private final long capacity;
+    private final Deque<Object> waiting = new ArrayDeque<>();
+    private long used;
+
+    /**
+     * Creates a new budget
+     *
+     * @param capacity
+     *            number of resource units, must be greater than 0
+     */
+    public ResourceBudget(final long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Blocks until the requested resources are available and acquires them
+     *
+     * @param amount
+     *            requested resource units
+     * @return the acquired resource units, which must be passed to {@link #release(long)}
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting, no resources are acquired in this case
+     */
+    public synchronized long acquire(final long amount) throws InterruptedException {
+        final long acquired = Math.min(Math.max(0, amount), capacity);
+        final Object ticket = new Object();
+        waiting.addLast(ticket);
+        try {
+            while (waiting.peekFirst() != ticket || used + acquired > capacity) {
+                wait();
+            }
+        } catch (final InterruptedException e) {
+            waiting.remove(ticket);
+            notifyAll();
+            throw e;
+        }
+        waiting.removeFirst();
+        used += acquired;
+        // the next Task may fit as well
+        notifyAll();
+        return acquired;
+    }
+
+    /**
+     * Acquires the requested resources if they are available, without waiting
+     *
+     * @param amount
+     *            requested resource units
+     * @return the acquired resource units, which must be passed to {@link #release(long)}, or -1 if the resources are
+     *         not available or other Tasks wait for resources
+     */
+    public synchronized long tryAcquire(final long amount) {
+        final long acquired = Math.min(Math.max(0, amount), capacity);
+        if (!waiting.isEmpty() || used + acquired > capacity) {
+            return -1;
+        }
+        used += acquired;
+        return acquired;
+    }
+
+    /**
+     * Releases acquired resources
+     *
+     * @param acquired
+     *            the resource units returned by {@link #acquire(long)} or {@link #tryAcquire(long)}
+     */
+    public synchronized void release(final long acquired) {
+        used = Math.max(0, used - acquired);
+        notifyAll();
+    }
+
+    /**
+     * Returns the total number of resource units
+     *
+     * @return capacity
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of acquired resource units
+     *
+     * @return acquired resource units
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * Returns the number of Tasks that wait for resources
+     *
+     * @return number of delayed Tasks
+     */
+    public synchronized int getWaitingCount() {
+        return waiting.size();
+    }
+}
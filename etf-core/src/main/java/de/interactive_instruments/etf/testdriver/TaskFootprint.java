@@ -0,0 +1,50 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+/**
+ * Estimates the resources a Task will occupy while it is running and learns from the measured usage.
+ *
+ * @param <T>
+ *            Task type
+ *
+ * @see TaskPoolRegistry#setResourceBudget(ResourceBudget, TaskFootprint)
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public interface TaskFootprint<T> {
+
+    /**
+     * Estimates the resources the Task will occupy
+     *
+     * @param task
+     *            queued Task
+     * @return estimated resource units
+     */
+    long estimate(final T task);
+
+    /**
+     * Called after the Task completed with the peak usage observed while the Task was running
+     *
+     * @param task
+     *            completed Task
+     * @param estimate
+     *            the estimate the Task was admitted with
+     * @param peak
+     *            observed peak usage in resource units
+     */
+    default void measured(final T task, final long estimate, final long peak) {}
+}
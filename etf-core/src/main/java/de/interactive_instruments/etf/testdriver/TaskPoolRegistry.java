@@ -15,10 +15,14 @@
  */
 package de.interactive_instruments.etf.testdriver;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import de.interactive_instruments.etf.model.EID;
 import de.interactive_instruments.exceptions.ExcUtils;
@@ -32,6 +36,25 @@ import de.interactive_instruments.exceptions.ObjectWithIdNotFoundException;
  *
  * The TaskProgressInterface is used by a client to monitor the progress of the Thread without blocking it.
  *
+ * Queued Tasks are started by {@link TaskPriority} and, within a priority class, in the order determined by the
+ * {@link TaskSchedulingPolicy}.
+ *
+ * The registry does not use a global lock. Tasks are cancelled asynchronously: a cancelled Task is asked to stop
+ * gently, interrupted after a grace period if it does not stop and then released by a background reaper thread.
+ *
+ * If a {@link ResourceBudget} is set, a Task is only handed to the thread pool when its estimated footprint fits into
+ * the budget. Tasks that do not fit are delayed in queue order without occupying a thread. The peak heap usage of running Tasks is sampled and reported back to the
+ * {@link TaskFootprint}.
+ *
+ * Tasks are executed on platform threads by default, virtual threads can be used with
+ * {@link #setTaskThreads(TaskThreads)}.
+ *
+ * If locks are set, a Task is only started when it holds the lock returned for it, see {@link ReadWriteLockTable}.
+ * Conflicting Tasks wait behind the holder of the lock without occupying a thread.
+ *
+ * If bulkheads are set, Tasks of a bulkhead are limited to a number of parallel executions and are queued separately.
+ * A bulkhead that reached its limit may borrow idle threads of the pool.
+ *
  * <br>
  * <img src="TaskPoolRegistry.svg" alt="Class UML">
  *
@@ -45,25 +68,242 @@ import de.interactive_instruments.exceptions.ObjectWithIdNotFoundException;
 public class TaskPoolRegistry<R, T extends Task<R>> {
 
     private final static long keepAliveTime = 30;
+    private final static long DEFAULT_CANCEL_GRACE_PERIOD = 5000;
     private final ThreadPoolExecutor threadPool;
+    private final ScheduledExecutorService reaper;
+    private volatile long cancelGracePeriod = DEFAULT_CANCEL_GRACE_PERIOD;
 
     private final ConcurrentMap<EID, T> tasks = new ConcurrentHashMap<>();
-    private final ConcurrentMap<EID, Future<R>> cancelMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<EID, QueuedTask> cancelMap = new ConcurrentHashMap<>();
+    private final TaskSchedulingPolicy schedulingPolicy;
+    private final QueueWaitStatistics queueWaitStatistics = new QueueWaitStatistics();
+    private final AtomicLong submissions = new AtomicLong();
+
+    private final static long HEAP_SAMPLING_INTERVAL = 250;
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final Set<QueuedTask> measuring = ConcurrentHashMap.newKeySet();
+    private volatile ResourceBudget resourceBudget;
+    private volatile TaskFootprint<? super T> footprint;
+
+    private final int maxQueueSize;
+    // Tasks handed to the thread pool that have not completed yet
+    private final AtomicInteger executing = new AtomicInteger();
+    private final Object bulkheadLock = new Object();
+    private final Map<String, BulkheadPool> bulkheads = new HashMap<>();
+    private volatile Function<? super T, BulkheadDefinition> bulkheadClassifier;
+    private volatile Function<? super T, ReadWriteLockTable<?>.Lock> lockClassifier;
+    // Tasks that wait for their lock
+    private final Set<QueuedTask> lockWaiting = ConcurrentHashMap.newKeySet();
+    // Tasks that wait until their estimated footprint fits into the resource budget
+    private final Object admissionLock = new Object();
+    private final PriorityQueue<QueuedTask> admissionBacklog = new PriorityQueue<>(QueuedTask::compareTo);
+
+    private final class BulkheadPool {
+        private final String name;
+        private int limit;
+        private final PriorityQueue<QueuedTask> backlog = new PriorityQueue<>(QueuedTask::compareTo);
+        private int running;
+        private int borrowed;
+        private long completed;
+
+        private BulkheadPool(final String name) {
+            this.name = name;
+        }
+    }
+
+    private final class QueuedTask extends FutureTask<R> {
+        private final T task;
+        private final TaskPriority priority;
+        private final String client;
+        private final double rank;
+        private final long sequence;
+        private final long queuedTime;
+        private final AtomicBoolean cancelling = new AtomicBoolean();
+        private final CompletableFuture<Void> released = new CompletableFuture<>();
+        private long estimate;
+        // guarded by admissionLock
+        private long acquired = -1;
+        private long startHeap;
+        private volatile long peak;
+        private volatile ReadWriteLockTable<?>.Lock lock;
+        private final AtomicBoolean executed = new AtomicBoolean();
+        // guarded by bulkheadLock
+        private BulkheadPool bulkhead;
+        private boolean borrowing;
+
+        private QueuedTask(final T task, final TaskPriority priority, final String client) {
+            super(task);
+            this.task = task;
+            this.priority = priority;
+            this.client = client;
+            this.rank = schedulingPolicy.queued(priority, client);
+            this.sequence = submissions.incrementAndGet();
+            this.queuedTime = System.currentTimeMillis();
+        }
+
+        private void startMeasuring() {
+            final boolean admitted;
+            synchronized (admissionLock) {
+                admitted = acquired >= 0;
+            }
+            if (admitted && !isDone()) {
+                startHeap = memoryBean.getHeapMemoryUsage().getUsed();
+                measuring.add(this);
+            }
+        }
+
+        private void releaseBudget() {
+            final long units;
+            synchronized (admissionLock) {
+                units = acquired;
+                acquired = -1;
+            }
+            if (units >= 0) {
+                resourceBudget.release(units);
+                admitQueued();
+            }
+        }
+
+        private void sample(final long heapUsed, final int running) {
+            // the heap is shared: attribute the growth equally to all running Tasks
+            peak = Math.max(peak, (heapUsed - startHeap) / Math.max(1, running));
+        }
+
+        private void releaseLock() {
+            if (lock != null) {
+                lockWaiting.remove(this);
+                lock.release();
+            }
+        }
+
+        private void lockGranted() {
+            lockWaiting.remove(this);
+            if (!isDone()) {
+                try {
+                    dispatch(this);
+                } catch (final RejectedExecutionException e) {
+                    // done() releases the lock
+                    setException(e);
+                }
+            }
+        }
+
+        private void rejected(final RejectedExecutionException e) {
+            releaseBudget();
+            executed(this);
+            // done() releases the lock
+            setException(e);
+        }
 
-    private static final class TaskThreadFactory implements ThreadFactory {
-        private int threadNo = 1;
-        private final ThreadGroup threadGroup = new ThreadGroup("tasks");
+        private void finished() {
+            releaseLock();
+            final int running = measuring.size();
+            if (measuring.remove(this)) {
+                sample(memoryBean.getHeapMemoryUsage().getUsed(), running);
+                try {
+                    footprint.measured(task, estimate, peak);
+                } catch (Exception e) {
+                    ExcUtils.suppress(e);
+                }
+            }
+            releaseBudget();
+        }
+
+        private void started() {
+            queueWaitStatistics.record(priority, System.currentTimeMillis() - queuedTime);
+            schedulingPolicy.started(priority, client, rank);
+        }
+
+        private CompletableFuture<Void> cancelAsync() {
+            if (cancelling.compareAndSet(false, true)) {
+                if (isDone()) {
+                    reap();
+                } else if (threadPool.remove(this)) {
+                    // not started yet, done() releases the Task
+                    cancel(false);
+                    releaseBudget();
+                    executed(this);
+                } else if (removeFromAdmissionBacklog(this)) {
+                    cancel(false);
+                    executed(this);
+                    // the next delayed Task may fit now
+                    admitQueued();
+                } else if (removeFromBacklog(this) || lockWaiting.contains(this)) {
+                    cancel(false);
+                } else {
+                    try {
+                        reaper.execute(() -> {
+                            try {
+                                // Try to cancel gently
+                                task.cancel();
+                            } catch (Exception e) {
+                                ExcUtils.suppress(e);
+                            }
+                        });
+                        reaper.schedule(() -> cancel(true), cancelGracePeriod, TimeUnit.MILLISECONDS);
+                    } catch (final RejectedExecutionException e) {
+                        // registry shut down
+                        cancel(true);
+                    }
+                }
+            }
+            return released;
+        }
 
         @Override
-        public Thread newThread(final Runnable r) {
-            final Integer currentThreadNo = this.threadNo++;
-            final Thread t = new Thread(threadGroup, r,
-                    "task-" + currentThreadNo, 0);
-            return t;
+        protected void done() {
+            if (!executed.get()) {
+                // a started Task releases its lock after it stopped
+                releaseLock();
+            }
+            if (cancelling.get()) {
+                reap();
+            }
+        }
+
+        private void reap() {
+            try {
+                reaper.execute(this::releaseTask);
+            } catch (final RejectedExecutionException e) {
+                releaseTask();
+            }
+        }
+
+        private void releaseTask() {
+            if (!released.isDone()) {
+                try {
+                    release(this);
+                } catch (Exception e) {
+                    ExcUtils.suppress(e);
+                } finally {
+                    released.complete(null);
+                }
+            }
+        }
+
+        private int compareTo(final QueuedTask other) {
+            if (priority != other.priority) {
+                return priority.compareTo(other.priority);
+            }
+            if (rank != other.rank) {
+                return Double.compare(rank, other.rank);
+            }
+            return Long.compare(sequence, other.sequence);
         }
     }
 
-    private final TaskThreadFactory threadFactory = new TaskThreadFactory();
+    private static final String THREAD_NAME_PREFIX = "task-";
+    private volatile TaskThreads taskThreads = TaskThreads.platform();
+
+    private static ScheduledExecutorService createReaper() {
+        final ScheduledThreadPoolExecutor reaper = new ScheduledThreadPoolExecutor(1, r -> {
+            final Thread t = new Thread(r, "task-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        reaper.setRemoveOnCancelPolicy(true);
+        return reaper;
+    }
 
     /**
      * Creates a new Task Pool Registry which queues and executes all Tasks
@@ -81,9 +321,59 @@ public class TaskPoolRegistry<R, T extends Task<R>> {
      *            the maximum number of queued threads
      */
     public TaskPoolRegistry(final int corePoolSize, final int maxPoolSize, final int maxQueueSize) {
-        final ArrayBlockingQueue<Runnable> taskQueue = new ArrayBlockingQueue<>(maxQueueSize);
+        this(corePoolSize, maxPoolSize, maxQueueSize, TaskSchedulingPolicy.fifo());
+    }
+
+    /**
+     * Creates a new Task Pool Registry which queues Tasks by priority and scheduling policy
+     *
+     * If the queue is bounded and full, and the number of threads is greater than or equal to maxPoolSize, the task is
+     * rejected with an {@link RejectedExecutionException}
+     *
+     * @param corePoolSize
+     *            the number of threads to keep in the pool, even if they are idle for 30 seconds
+     * @param maxPoolSize
+     *            the maximum number of threads to allow in the pool
+     * @param maxQueueSize
+     *            the maximum number of queued threads, 0 or a negative value for an unbounded queue
+     * @param schedulingPolicy
+     *            policy that orders the queued Tasks of a priority class
+     */
+    public TaskPoolRegistry(final int corePoolSize, final int maxPoolSize, final int maxQueueSize,
+            final TaskSchedulingPolicy schedulingPolicy) {
+        this.maxQueueSize = maxQueueSize;
+        this.schedulingPolicy = Objects.requireNonNull(schedulingPolicy, "Scheduling policy is null");
+        final PriorityBlockingQueue<Runnable> taskQueue = new PriorityBlockingQueue<Runnable>(
+                maxQueueSize > 0 ? maxQueueSize : 11, (r1, r2) -> ((QueuedTask) r1).compareTo((QueuedTask) r2)) {
+            @Override
+            public boolean offer(final Runnable runnable) {
+                // PriorityBlockingQueues are unbounded
+                if (maxQueueSize > 0 && size() >= maxQueueSize) {
+                    return false;
+                }
+                return super.offer(runnable);
+            }
+        };
         this.threadPool = new ThreadPoolExecutor(corePoolSize, maxPoolSize,
-                keepAliveTime, TimeUnit.SECONDS, taskQueue, threadFactory);
+                keepAliveTime, TimeUnit.SECONDS, taskQueue, taskThreads.newThreadFactory(THREAD_NAME_PREFIX)) {
+            @Override
+            protected void beforeExecute(final Thread thread, final Runnable runnable) {
+                super.beforeExecute(thread, runnable);
+                final QueuedTask queuedTask = (QueuedTask) runnable;
+                queuedTask.executed.set(true);
+                queuedTask.startMeasuring();
+                queuedTask.started();
+            }
+
+            @Override
+            protected void afterExecute(final Runnable runnable, final Throwable throwable) {
+                super.afterExecute(runnable, throwable);
+                final QueuedTask queuedTask = (QueuedTask) runnable;
+                queuedTask.finished();
+                executed(queuedTask);
+            }
+        };
+        this.reaper = createReaper();
     }
 
     /**
@@ -158,7 +448,7 @@ public class TaskPoolRegistry<R, T extends Task<R>> {
      *
      * @return TaskWithProgressIndication collection
      */
-    public synchronized Collection<T> getTasks() {
+    public Collection<T> getTasks() {
         return tasks.values();
     }
 
@@ -174,14 +464,387 @@ public class TaskPoolRegistry<R, T extends Task<R>> {
      * @throws IllegalStateException
      *             if the future in the task is already set
      */
-    public synchronized Future<R> submitTask(final T task) throws NullPointerException, IllegalStateException {
-        final Future future = threadPool.submit(task);
+    public Future<R> submitTask(final T task) throws NullPointerException, IllegalStateException {
+        return submitTask(task, TaskPriority.NORMAL, null);
+    }
+
+    /**
+     * Queues the task with a priority class. The progress of the task is then accessible by calling getTaskProgress()
+     *
+     * @param task
+     *            executable task
+     * @param priority
+     *            priority class of the task
+     * @param client
+     *            the client that submits the task, used by the {@link TaskSchedulingPolicy}, may be null
+     * @return Future which might be used to get the result of the task
+     * @throws NullPointerException
+     *             if taskProgress is not set
+     * @throws IllegalStateException
+     *             if the future in the task is already set
+     * @throws RejectedExecutionException
+     *             if the queue is full
+     */
+    public Future<R> submitTask(final T task, final TaskPriority priority, final String client)
+            throws NullPointerException, IllegalStateException {
+        final QueuedTask future = new QueuedTask(task, Objects.requireNonNull(priority, "Priority is null"), client);
+        if (resourceBudget != null) {
+            future.estimate = footprint.estimate(task);
+        }
         task.setFuture(future);
-        tasks.put(task.getId(), task);
-        cancelMap.put(task.getId(), future);
+        final EID id = task.getId();
+        // register before executing, so that a fast Task can already be polled and cancelled
+        tasks.put(id, task);
+        cancelMap.put(id, future);
+        try {
+            final Function<? super T, ReadWriteLockTable<?>.Lock> locks = lockClassifier;
+            future.lock = locks != null ? locks.apply(task) : null;
+            if (future.lock != null) {
+                if (maxQueueSize > 0 && getQueuedCount() >= maxQueueSize) {
+                    throw new RejectedExecutionException("Queue is full");
+                }
+                lockWaiting.add(future);
+                if (future.lock.acquire(future::lockGranted)) {
+                    lockWaiting.remove(future);
+                    dispatch(future);
+                }
+            } else {
+                dispatch(future);
+            }
+        } catch (final RejectedExecutionException e) {
+            if (future.lock != null) {
+                future.lock.release();
+                lockWaiting.remove(future);
+            }
+            cancelMap.remove(id, future);
+            tasks.remove(id, task);
+            throw e;
+        }
         return future;
     }
 
+    /**
+     * Returns the number of queued Tasks that have not been started yet
+     *
+     * @param priority
+     *            priority class
+     * @return number of queued Tasks
+     */
+    public int getQueuedCount(final TaskPriority priority) {
+        int count = 0;
+        for (final Runnable runnable : threadPool.getQueue()) {
+            if (((QueuedTask) runnable).priority == priority) {
+                count++;
+            }
+        }
+        synchronized (bulkheadLock) {
+            for (final BulkheadPool bulkhead : bulkheads.values()) {
+                for (final QueuedTask queuedTask : bulkhead.backlog) {
+                    if (queuedTask.priority == priority) {
+                        count++;
+                    }
+                }
+            }
+        }
+        for (final QueuedTask queuedTask : lockWaiting) {
+            if (queuedTask.priority == priority) {
+                count++;
+            }
+        }
+        synchronized (admissionLock) {
+            for (final QueuedTask queuedTask : admissionBacklog) {
+                if (queuedTask.priority == priority) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void dispatch(final QueuedTask queuedTask) {
+        final Function<? super T, BulkheadDefinition> classifier = bulkheadClassifier;
+        final BulkheadDefinition bulkheadDefinition = classifier != null ? classifier.apply(queuedTask.task) : null;
+        if (bulkheadDefinition != null && bulkheadDefinition.isLimited()) {
+            queueInBulkhead(queuedTask, bulkheadDefinition);
+        } else {
+            execute(queuedTask);
+        }
+    }
+
+    private void execute(final QueuedTask queuedTask) {
+        if (resourceBudget != null) {
+            if (maxQueueSize > 0 && getQueuedCount() >= maxQueueSize) {
+                throw new RejectedExecutionException("Queue is full");
+            }
+            executing.incrementAndGet();
+            synchronized (admissionLock) {
+                admissionBacklog.add(queuedTask);
+            }
+            admitQueued();
+            return;
+        }
+        executing.incrementAndGet();
+        try {
+            threadPool.execute(queuedTask);
+        } catch (final RejectedExecutionException e) {
+            executing.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Hands the Tasks of the admission backlog to the thread pool, in queue order, as long as their estimated footprint
+     * fits into the resource budget. A Task that does not fit delays the following Tasks, but does not occupy a thread.
+     * The thread pool is called without holding the admissionLock.
+     */
+    private void admitQueued() {
+        final List<QueuedTask> admitted = new ArrayList<>();
+        synchronized (admissionLock) {
+            for (QueuedTask head; (head = admissionBacklog.peek()) != null;) {
+                if (!head.isDone()) {
+                    final long units = resourceBudget.tryAcquire(head.estimate);
+                    if (units < 0) {
+                        break;
+                    }
+                    head.acquired = units;
+                }
+                admissionBacklog.poll();
+                admitted.add(head);
+            }
+        }
+        for (final QueuedTask queuedTask : admitted) {
+            if (queuedTask.isDone()) {
+                // cancelled by the client while it was delayed
+                executed(queuedTask);
+                continue;
+            }
+            try {
+                threadPool.execute(queuedTask);
+            } catch (final RejectedExecutionException e) {
+                queuedTask.rejected(e);
+            }
+        }
+    }
+
+    private boolean removeFromAdmissionBacklog(final QueuedTask queuedTask) {
+        synchronized (admissionLock) {
+            return admissionBacklog.remove(queuedTask);
+        }
+    }
+
+    /**
+     * Returns the number of Tasks that wait until their estimated footprint fits into the resource budget
+     *
+     * @return number of delayed Tasks
+     */
+    public int getDelayedCount() {
+        synchronized (admissionLock) {
+            return admissionBacklog.size();
+        }
+    }
+
+    /**
+     * Called when a Task handed to the thread pool completed or was removed from the pool queue
+     */
+    private void executed(final QueuedTask queuedTask) {
+        executing.decrementAndGet();
+        synchronized (bulkheadLock) {
+            final BulkheadPool bulkhead = queuedTask.bulkhead;
+            if (bulkhead != null) {
+                bulkhead.running--;
+                bulkhead.completed++;
+                if (queuedTask.borrowing) {
+                    bulkhead.borrowed--;
+                }
+            }
+            dispatchBulkheads();
+        }
+    }
+
+    private void queueInBulkhead(final QueuedTask queuedTask, final BulkheadDefinition definition) {
+        synchronized (bulkheadLock) {
+            if (maxQueueSize > 0 && getQueuedCount() >= maxQueueSize) {
+                throw new RejectedExecutionException("Queue is full");
+            }
+            final BulkheadPool bulkhead = bulkheads.computeIfAbsent(definition.getName(), BulkheadPool::new);
+            bulkhead.limit = definition.getLimit();
+            queuedTask.bulkhead = bulkhead;
+            bulkhead.backlog.add(queuedTask);
+            dispatchBulkheads();
+        }
+    }
+
+    private boolean removeFromBacklog(final QueuedTask queuedTask) {
+        synchronized (bulkheadLock) {
+            return queuedTask.bulkhead != null && queuedTask.bulkhead.backlog.remove(queuedTask);
+        }
+    }
+
+    private int reserve(final BulkheadPool bulkhead, final int poolSize) {
+        return Math.max(0, Math.min(bulkhead.limit, poolSize) - bulkhead.running);
+    }
+
+    /**
+     * Hands the queued Tasks of the bulkheads to the thread pool: first the Tasks of bulkheads below their limit, then
+     * the Tasks of bulkheads that reached their limit, if threads are idle that are not reserved for the unused share of
+     * other bulkheads. Must be called with the bulkheadLock held.
+     */
+    private void dispatchBulkheads() {
+        while (!bulkheads.isEmpty()) {
+            QueuedTask next = null;
+            for (final BulkheadPool bulkhead : bulkheads.values()) {
+                final QueuedTask head = bulkhead.backlog.peek();
+                if (head != null && bulkhead.running < bulkhead.limit && (next == null || head.compareTo(next) < 0)) {
+                    next = head;
+                }
+            }
+            boolean borrow = false;
+            final int poolSize = getPoolSize();
+            if (next == null && executing.get() < poolSize) {
+                int reserved = 0;
+                for (final BulkheadPool bulkhead : bulkheads.values()) {
+                    reserved += reserve(bulkhead, poolSize);
+                }
+                for (final BulkheadPool bulkhead : bulkheads.values()) {
+                    final QueuedTask head = bulkhead.backlog.peek();
+                    final int reservedForOthers = reserved - reserve(bulkhead, poolSize);
+                    if (head != null && executing.get() + reservedForOthers < poolSize
+                            && (next == null || head.compareTo(next) < 0)) {
+                        next = head;
+                        borrow = true;
+                    }
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            final BulkheadPool bulkhead = next.bulkhead;
+            bulkhead.backlog.poll();
+            bulkhead.running++;
+            if (borrow) {
+                next.borrowing = true;
+                bulkhead.borrowed++;
+            }
+            try {
+                execute(next);
+            } catch (final RejectedExecutionException e) {
+                bulkhead.running--;
+                if (borrow) {
+                    next.borrowing = false;
+                    bulkhead.borrowed--;
+                }
+                bulkhead.backlog.add(next);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Limits the parallel execution of Tasks by bulkheads. Tasks without a bulkhead or with an unlimited bulkhead are
+     * only limited by the pool size. Must be set before Tasks are submitted.
+     *
+     * @param classifier
+     *            returns the bulkhead of a Task or null
+     */
+    public void setBulkheads(final Function<? super T, BulkheadDefinition> classifier) {
+        this.bulkheadClassifier = Objects.requireNonNull(classifier, "Bulkhead classifier is null");
+    }
+
+    /**
+     * Returns the utilization of the bulkheads
+     *
+     * @return bulkhead status, ordered by name
+     */
+    public List<BulkheadStatus> getBulkheadStatus() {
+        final List<BulkheadStatus> status = new ArrayList<>();
+        synchronized (bulkheadLock) {
+            for (final BulkheadPool bulkhead : bulkheads.values()) {
+                status.add(new BulkheadStatus(bulkhead.name, bulkhead.limit, bulkhead.running, bulkhead.borrowed,
+                        bulkhead.backlog.size(), bulkhead.completed));
+            }
+        }
+        status.sort(Comparator.comparing(BulkheadStatus::getName));
+        return status;
+    }
+
+    /**
+     * Starts Tasks only when they hold a lock. Tasks that can not acquire their lock wait behind the holder. The lock is
+     * released when the Task completed, failed or was cancelled. Must be set before Tasks are submitted.
+     *
+     * @param locks
+     *            returns a new lock of a {@link ReadWriteLockTable} for a Task, or null if the Task does not need a lock
+     */
+    public void setLocks(final Function<? super T, ReadWriteLockTable<?>.Lock> locks) {
+        this.lockClassifier = Objects.requireNonNull(locks, "Lock function is null");
+    }
+
+    /**
+     * Sets the threads that execute the Tasks. Must be set before Tasks are submitted, threads that already exist in
+     * the pool are not replaced.
+     *
+     * @param taskThreads
+     *            creates the threads of the pool
+     */
+    public void setTaskThreads(final TaskThreads taskThreads) {
+        this.taskThreads = Objects.requireNonNull(taskThreads, "Task threads are null");
+        threadPool.setThreadFactory(taskThreads.newThreadFactory(THREAD_NAME_PREFIX));
+    }
+
+    /**
+     * Returns the threads that execute the Tasks
+     *
+     * @return thread implementation
+     */
+    public TaskThreads getTaskThreads() {
+        return taskThreads;
+    }
+
+    /**
+     * Admits Tasks only if their estimated footprint fits into the budget. Must be set before Tasks are submitted.
+     *
+     * @param resourceBudget
+     *            global budget in bytes of heap memory
+     * @param footprint
+     *            estimates the footprint of a Task and receives its measured peak heap usage
+     */
+    public void setResourceBudget(final ResourceBudget resourceBudget, final TaskFootprint<? super T> footprint) {
+        if (this.resourceBudget != null) {
+            throw new IllegalStateException("Resource budget already set");
+        }
+        this.footprint = Objects.requireNonNull(footprint, "Footprint is null");
+        this.resourceBudget = Objects.requireNonNull(resourceBudget, "Resource budget is null");
+        reaper.scheduleWithFixedDelay(this::sampleHeap, HEAP_SAMPLING_INTERVAL, HEAP_SAMPLING_INTERVAL,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void sampleHeap() {
+        if (!measuring.isEmpty()) {
+            final long heapUsed = memoryBean.getHeapMemoryUsage().getUsed();
+            final int running = measuring.size();
+            for (final QueuedTask queuedTask : measuring) {
+                queuedTask.sample(heapUsed, running);
+            }
+        }
+    }
+
+    /**
+     * Returns the resource budget
+     *
+     * @return resource budget or null if Tasks are not admitted by footprint
+     */
+    public ResourceBudget getResourceBudget() {
+        return resourceBudget;
+    }
+
+    /**
+     * Returns the time queued Tasks waited until they have been started
+     *
+     * @return statistics by priority class
+     */
+    public QueueWaitStatistics getQueueWaitStatistics() {
+        return queueWaitStatistics;
+    }
+
     /**
      * Releases the object (by calling the release interface) and removes the it from the TaskPoolRegistry
      *
@@ -189,51 +852,124 @@ public class TaskPoolRegistry<R, T extends Task<R>> {
      * @param id
      *            task UUID
      */
-    public synchronized void release(final EID id) {
-        final T task = tasks.get(id);
-        if (!task.getState().isFinalizing()) {
-            tasks.get(id).release();
+    public void release(final EID id) {
+        final QueuedTask future = cancelMap.get(id);
+        if (future != null) {
+            release(future);
+        } else {
+            releaseTask(tasks.remove(id));
+        }
+    }
+
+    private void release(final QueuedTask future) {
+        final EID id = future.task.getId();
+        cancelMap.remove(id, future);
+        // only the thread that removes the Task releases it
+        if (tasks.remove(id, future.task)) {
+            releaseTask(future.task);
+        }
+    }
+
+    private void releaseTask(final T task) {
+        if (task != null && !task.getState().isFinalizing()) {
+            task.release();
         }
-        cancelMap.remove(id);
-        tasks.remove(id);
     }
 
     /**
-     * Tries to cancel a running task and releases it
+     * Cancels a task and releases it asynchronously.
+     *
+     * A queued task is removed from the queue. A running task is asked to cancel gently and is interrupted if it does not
+     * stop within the grace period. The call does not block.
      *
      * @param id
      *            task UUID
+     * @return future that completes when the task has been released
      */
-    public synchronized void cancelTask(final EID id) {
-        try {
-            final Future future = cancelMap.get(id);
-            if (!future.isDone()) {
-                try {
-                    // Try to cancel gently
-                    tasks.get(id).cancel();
-                } catch (Exception e) {
-                    ExcUtils.suppress(e);
-                }
-                Thread.sleep(1000);
-                try {
-                    release(id);
-                } catch (Exception e) {
-                    ExcUtils.suppress(e);
-                }
-                Thread.sleep(5000);
-                future.cancel(true);
-            }
-        } catch (Exception e) {
-            ExcUtils.suppress(e);
+    public CompletableFuture<Void> cancelTask(final EID id) {
+        final QueuedTask future = cancelMap.get(id);
+        if (future == null) {
+            return CompletableFuture.completedFuture(null);
         }
-        System.gc();
+        return future.cancelAsync();
+    }
+
+    /**
+     * Sets the time a cancelled task has to stop gently before it is interrupted
+     *
+     * @param gracePeriod
+     *            grace period
+     * @param unit
+     *            time unit of the grace period
+     */
+    public void setCancelGracePeriod(final long gracePeriod, final TimeUnit unit) {
+        this.cancelGracePeriod = unit.toMillis(gracePeriod);
     }
 
     /**
      * Kills all running threads
      */
-    public synchronized void killAll() {
+    public void killAll() {
         threadPool.shutdownNow();
+        reaper.shutdownNow();
+    }
+
+    /**
+     * Returns the number of threads the pool runs Tasks with
+     *
+     * @return pool size
+     */
+    public int getPoolSize() {
+        return threadPool.getCorePoolSize();
+    }
+
+    /**
+     * Changes the number of threads the pool runs Tasks with. If the pool size is decreased, running Tasks are not
+     * interrupted, surplus threads terminate after their Task completed.
+     *
+     * @param poolSize
+     *            new pool size, at least 1
+     */
+    public void setPoolSize(final int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1: " + poolSize);
+        }
+        synchronized (threadPool) {
+            if (poolSize > threadPool.getMaximumPoolSize()) {
+                threadPool.setMaximumPoolSize(poolSize);
+                threadPool.setCorePoolSize(poolSize);
+            } else {
+                threadPool.setCorePoolSize(poolSize);
+                threadPool.setMaximumPoolSize(poolSize);
+            }
+        }
+        synchronized (bulkheadLock) {
+            dispatchBulkheads();
+        }
+    }
+
+    /**
+     * Returns the number of queued Tasks that have not been started yet
+     *
+     * @return number of queued Tasks
+     */
+    public int getQueuedCount() {
+        int count = threadPool.getQueue().size() + lockWaiting.size() + getDelayedCount();
+        synchronized (bulkheadLock) {
+            for (final BulkheadPool bulkhead : bulkheads.values()) {
+                count += bulkhead.backlog.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the approximate number of completed Tasks
+     *
+     * @return number of completed tasks
+     */
+    public long getCompletedTaskCount() {
+        return threadPool.getCompletedTaskCount();
     }
 
     /**
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+/**
+ * Priority class of a Task submitted to the {@link TaskPoolRegistry}.
+ *
+ * Queued Tasks of a higher priority class are always started before Tasks of a lower priority class.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public enum TaskPriority {
+
+    /**
+     * Short running Tasks a user is waiting for, i.e. single file checks in the web interface
+     */
+    INTERACTIVE,
+
+    /**
+     * Default priority
+     */
+    NORMAL,
+
+    /**
+     * Tasks submitted in bulk that may wait
+     */
+    BATCH;
+
+    /**
+     * Returns the priority with the name, ignoring the case, or the default value
+     *
+     * @param name
+     *            priority name
+     * @param defaultPriority
+     *            returned if the name is null or unknown
+     * @return TaskPriority
+     */
+    public static TaskPriority fromString(final String name, final TaskPriority defaultPriority) {
+        if (name != null) {
+            for (final TaskPriority priority : values()) {
+                if (priority.name().equalsIgnoreCase(name.trim())) {
+                    return priority;
+                }
+            }
+        }
+        return defaultPriority;
+    }
+}
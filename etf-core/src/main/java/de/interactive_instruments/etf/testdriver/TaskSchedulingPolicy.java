@@ -0,0 +1,69 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+/**
+ * Determines the order in which queued Tasks of the same {@link TaskPriority} are started by the
+ * {@link TaskPoolRegistry}.
+ *
+ * The registry asks the policy for a rank when a Task is queued and informs the policy when the Task is started.
+ * Queued Tasks of one priority class are started in ascending rank order, Tasks with the same rank in submission
+ * order. Implementations must be thread safe.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public interface TaskSchedulingPolicy {
+
+    /**
+     * Called when a Task is queued
+     *
+     * @param priority
+     *            priority class of the Task
+     * @param client
+     *            the client that submitted the Task, may be null
+     * @return rank of the Task within its priority class
+     */
+    double queued(final TaskPriority priority, final String client);
+
+    /**
+     * Called when a queued Task is started
+     *
+     * @param priority
+     *            priority class of the Task
+     * @param client
+     *            the client that submitted the Task, may be null
+     * @param rank
+     *            the rank returned by {@link #queued(TaskPriority, String)}
+     */
+    void started(final TaskPriority priority, final String client, final double rank);
+
+    /**
+     * Returns a policy that starts the Tasks of a priority class in submission order
+     *
+     * @return first-in first-out policy
+     */
+    static TaskSchedulingPolicy fifo() {
+        return new TaskSchedulingPolicy() {
+            @Override
+            public double queued(final TaskPriority priority, final String client) {
+                return 0;
+            }
+
+            @Override
+            public void started(final TaskPriority priority, final String client, final double rank) {}
+        };
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.util.Locale;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.LoggerFactory;
+
+import de.interactive_instruments.exceptions.ExcUtils;
+
+/**
+ * Service provider interface for the threads that execute Test Runs and Test Tasks.
+ *
+ * The {@link TaskPoolRegistry} and the Test Runs create their threads with a thread factory of this interface. Two
+ * implementations are built in: {@value #PLATFORM}, which creates platform threads, and {@value #VIRTUAL}, which
+ * creates virtual threads if the Java runtime supports them. Virtual threads are cheap while they are blocked on I/O,
+ * so more Test Runs against remote services can be executed concurrently. Additional implementations can be registered
+ * as {@link ServiceLoader} services.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public interface TaskThreads {
+
+    /**
+     * Name of the implementation that creates platform threads
+     */
+    String PLATFORM = "platform";
+
+    /**
+     * Name of the implementation that creates virtual threads
+     */
+    String VIRTUAL = "virtual";
+
+    /**
+     * Selects virtual threads if they are supported, platform threads otherwise
+     */
+    String AUTO = "auto";
+
+    /**
+     * Configuration property with the thread mode of the Test Runs
+     */
+    String CONFIG_PROPERTY = "etf.testruns.threads";
+
+    /**
+     * Returns the name of the implementation, used for selecting it in the configuration
+     *
+     * @return name of the implementation
+     */
+    String getName();
+
+    /**
+     * Returns true if the threads are virtual threads
+     *
+     * @return true if virtual threads are created
+     */
+    boolean isVirtual();
+
+    /**
+     * Creates a new thread factory. The created threads are named with the prefix and an increasing number.
+     *
+     * @param namePrefix
+     *            prefix of the thread names
+     * @return new thread factory
+     */
+    ThreadFactory newThreadFactory(final String namePrefix);
+
+    /**
+     * Returns the default number of Test Runs that are executed in parallel on these threads
+     *
+     * @param platformParallelism
+     *            the number of parallel Test Runs on platform threads
+     * @return the number of parallel Test Runs
+     */
+    default int defaultParallelism(final int platformParallelism) {
+        return platformParallelism;
+    }
+
+    /**
+     * Creates a new executor that executes at most parallelism tasks concurrently
+     *
+     * @param parallelism
+     *            the maximum number of concurrently executed tasks
+     * @param namePrefix
+     *            prefix of the thread names
+     * @return new executor
+     */
+    default ExecutorService newExecutor(final int parallelism, final String namePrefix) {
+        return Executors.newFixedThreadPool(parallelism, newThreadFactory(namePrefix));
+    }
+
+    /**
+     * Returns the implementation that creates platform threads
+     *
+     * @return platform threads
+     */
+    static TaskThreads platform() {
+        return PlatformTaskThreads.INSTANCE;
+    }
+
+    /**
+     * Checks if the Java runtime supports virtual threads
+     *
+     * @return true if virtual threads can be created
+     */
+    static boolean isVirtualSupported() {
+        return VirtualTaskThreads.isSupported();
+    }
+
+    /**
+     * Returns the implementation for a configured mode. The mode is either the name of an implementation or
+     * {@value #AUTO}. If virtual threads are requested but not supported by the Java runtime, platform threads are
+     * used.
+     *
+     * @param mode
+     *            {@value #PLATFORM}, {@value #VIRTUAL}, {@value #AUTO} or the name of a registered implementation
+     * @return the selected implementation
+     * @throws IllegalArgumentException
+     *             if no implementation with that name exists
+     */
+    static TaskThreads forMode(final String mode) {
+        final String name = mode == null ? PLATFORM : mode.trim().toLowerCase(Locale.ENGLISH);
+        switch (name) {
+        case "":
+        case PLATFORM:
+            return platform();
+        case VIRTUAL:
+        case AUTO:
+            return isVirtualSupported() ? VirtualTaskThreads.INSTANCE : platform();
+        default:
+            try {
+                for (final TaskThreads taskThreads : ServiceLoader.load(TaskThreads.class)) {
+                    if (name.equalsIgnoreCase(taskThreads.getName())) {
+                        return taskThreads;
+                    }
+                }
+            } catch (final ServiceConfigurationError e) {
+                ExcUtils.suppress(e);
+            }
+            throw new IllegalArgumentException("Unknown thread mode '" + mode + "'");
+        }
+    }
+
+    /**
+     * Returns the implementation for the value of the configuration property {@value #CONFIG_PROPERTY}. Unlike
+     * {@link #forMode(String)}, an unknown mode is logged and platform threads are used. It is also logged if virtual
+     * threads are requested but not supported.
+     *
+     * @param mode
+     *            value of the configuration property, null for {@value #PLATFORM}
+     * @return the selected implementation
+     */
+    static TaskThreads configured(final String mode) {
+        try {
+            final TaskThreads taskThreads = forMode(mode);
+            if (!taskThreads.isVirtual() && mode != null && VIRTUAL.equalsIgnoreCase(mode.trim())) {
+                LoggerFactory.getLogger(TaskThreads.class).warn(
+                        "Virtual threads are not supported by this Java runtime, using platform threads");
+            }
+            return taskThreads;
+        } catch (final IllegalArgumentException e) {
+            LoggerFactory.getLogger(TaskThreads.class).error("Invalid property {} '{}', using platform threads",
+                    CONFIG_PROPERTY, mode);
+            return platform();
+        }
+    }
+}
@@ -69,6 +69,18 @@ public interface TestDriverManager extends Configurable, Releasable {
 
     List<ComponentInfo> getTestDriverInfo();
 
+    /**
+     * Returns the bulkhead that limits the parallel Test Runs of a Test Driver
+     *
+     * @param testDriverId
+     *            Test Driver id
+     * @return bulkhead definition, declared with {@link ComponentInitializer#bulkhead()}, or null if the Test Driver is
+     *         unknown
+     */
+    default BulkheadDefinition getBulkhead(final EID testDriverId) {
+        return null;
+    }
+
     void loadAll() throws ComponentLoadingException, ConfigurationException;
 
     void load(final EID testDriverId) throws ObjectWithIdNotFoundException, ComponentLoadingException, ConfigurationException;
@@ -42,5 +42,7 @@ public interface TestRun extends Task<TestRunDto> {
 
     void addTestRunEventListener(final TestRunEventListener testRunEventListener);
 
+    void removeTestRunEventListener(final TestRunEventListener testRunEventListener);
+
     TaskProgress getProgress();
 }
@@ -0,0 +1,32 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+/**
+ * Fired when new messages have been written to a Test Run log.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@FunctionalInterface
+public interface TestRunLogListener {
+    /**
+     * New log messages can be read. Called by the thread that writes the log, so implementations must return quickly.
+     *
+     * @param messageCount
+     *            total number of messages in the log
+     */
+    void logMessagesWritten(long messageCount);
+}
@@ -50,4 +50,21 @@ public interface TestRunLogReader {
      *            target output stream
      */
     void streamLogMessagesTo(final long knownPosition, final OutputStream outputStream);
+
+    /**
+     * Registers a listener that is notified when new messages can be read. Readers of logs that do not change anymore
+     * ignore the listener.
+     *
+     * @param listener
+     *            log listener
+     */
+    default void addLogListener(final TestRunLogListener listener) {}
+
+    /**
+     * Deregisters a log listener
+     *
+     * @param listener
+     *            log listener
+     */
+    default void removeLogListener(final TestRunLogListener listener) {}
 }
@@ -22,4 +22,11 @@ import org.slf4j.Logger;
  *
  * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
  */
-public interface TestRunLogger extends TestRunLogReader, Logger {}
+public interface TestRunLogger extends TestRunLogReader, Logger {
+
+    /**
+     * Blocks until all messages that were logged before are written to the log file and can be read with the
+     * {@link TestRunLogReader} methods.
+     */
+    default void flush() {}
+}
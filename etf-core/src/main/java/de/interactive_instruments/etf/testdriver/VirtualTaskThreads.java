@@ -0,0 +1,101 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+import de.interactive_instruments.exceptions.ExcUtils;
+
+/**
+ * Creates virtual threads.
+ *
+ * The project is compiled for Java 11, so the thread builder API is accessed by reflection. Virtual threads are only
+ * reported as supported if a thread factory could be created, which is not the case on runtimes without virtual
+ * threads or on runtimes where they are a disabled preview feature.
+ *
+ * Note: on some runtimes a virtual thread that blocks inside a synchronized block pins its carrier thread.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class VirtualTaskThreads implements TaskThreads {
+
+    static final VirtualTaskThreads INSTANCE = new VirtualTaskThreads();
+
+    // blocked virtual threads do not occupy a platform thread, so more I/O bound Test Runs can wait in parallel
+    static final int PARALLELISM_FACTOR = 4;
+
+    private static final class Support {
+        private static final Method ofVirtual;
+        private static final Method name;
+        private static final Method factory;
+        static {
+            Method ofVirtualMethod = null;
+            Method nameMethod = null;
+            Method factoryMethod = null;
+            try {
+                final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+                nameMethod = builderClass.getMethod("name", String.class, long.class);
+                factoryMethod = builderClass.getMethod("factory");
+                // fails if virtual threads are a disabled preview feature
+                factoryMethod.invoke(ofVirtualMethod.invoke(null));
+            } catch (final ClassNotFoundException | NoSuchMethodException | IllegalAccessException
+                    | InvocationTargetException | RuntimeException e) {
+                ExcUtils.suppress(e);
+                ofVirtualMethod = null;
+            }
+            ofVirtual = ofVirtualMethod;
+            name = nameMethod;
+            factory = factoryMethod;
+        }
+    }
+
+    private VirtualTaskThreads() {}
+
+    static boolean isSupported() {
+        return Support.ofVirtual != null;
+    }
+
+    @Override
+    public String getName() {
+        return VIRTUAL;
+    }
+
+    @Override
+    public boolean isVirtual() {
+        return true;
+    }
+
+    @Override
+    public int defaultParallelism(final int platformParallelism) {
+        return platformParallelism * PARALLELISM_FACTOR;
+    }
+
+    @Override
+    public ThreadFactory newThreadFactory(final String namePrefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this Java runtime");
+        }
+        try {
+            final Object builder = Support.name.invoke(Support.ofVirtual.invoke(null), namePrefix, 1L);
+            return (ThreadFactory) Support.factory.invoke(builder);
+        } catch (final IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException("Virtual threads can not be created", e);
+        }
+    }
+}
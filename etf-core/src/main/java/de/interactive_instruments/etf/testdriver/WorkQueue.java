@@ -0,0 +1,177 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service provider interface for distributing Test Runs across nodes.
+ *
+ * A node that accepts a Test Run publishes it as work item, worker nodes claim the items and execute them in their
+ * {@link TaskPoolRegistry}. A claimed item is leased by the worker for a limited time: the worker must renew the lease
+ * while the item is executed and complete it afterwards. Items with an expired lease, for instance of a crashed worker,
+ * are put back into the queue by {@link #recoverExpired()}, so an item is executed at least once.
+ *
+ * Implementations must be safe for use by several threads and several processes.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public interface WorkQueue {
+
+    /**
+     * A claimed work item
+     */
+    interface WorkItem {
+
+        /**
+         * Returns the ID of the item
+         *
+         * @return ID that was used for publishing the item
+         */
+        String getId();
+
+        /**
+         * Returns the published content of the item
+         *
+         * @return payload
+         */
+        byte[] getPayload();
+
+        /**
+         * Extends the lease by the lease time
+         *
+         * @return false if the lease has been lost because it expired and the item was recovered
+         * @throws IOException
+         *             if the lease could not be written
+         */
+        boolean renew() throws IOException;
+
+        /**
+         * Marks the item as executed
+         *
+         * @return false if the lease has been lost before
+         * @throws IOException
+         *             if the item could not be moved
+         */
+        boolean complete() throws IOException;
+
+        /**
+         * Marks the item as failed, it will not be executed again
+         *
+         * @return false if the lease has been lost before
+         * @throws IOException
+         *             if the item could not be moved
+         */
+        boolean fail() throws IOException;
+
+        /**
+         * Gives the item back to the queue, so that it can be claimed by another worker
+         *
+         * @return false if the lease has been lost before
+         * @throws IOException
+         *             if the item could not be moved
+         */
+        boolean abandon() throws IOException;
+    }
+
+    /**
+     * Publishes a new item
+     *
+     * @param id
+     *            unique ID of the item, consisting of letters, digits, '.', '_' and '-'
+     * @param payload
+     *            content of the item
+     * @throws IOException
+     *             if the item could not be written
+     */
+    void publish(final String id, final byte[] payload) throws IOException;
+
+    /**
+     * Claims the oldest pending item
+     *
+     * @param node
+     *            name of the claiming worker node
+     * @param leaseTime
+     *            time until the lease expires if it is not renewed
+     * @param unit
+     *            unit of the lease time
+     * @return the claimed item or null if no item is pending
+     * @throws IOException
+     *             if the queue could not be read
+     */
+    WorkItem claim(final String node, final long leaseTime, final TimeUnit unit) throws IOException;
+
+    /**
+     * Puts claimed items with an expired lease back into the queue
+     *
+     * @return number of recovered items
+     * @throws IOException
+     *             if the queue could not be read
+     */
+    int recoverExpired() throws IOException;
+
+    /**
+     * Checks if an item waits to be claimed. This is also the case if the item has been put back into the queue.
+     *
+     * @param id
+     *            ID of the item
+     * @return true if the item is pending
+     * @throws IOException
+     *             if the queue could not be read
+     */
+    boolean isPending(final String id) throws IOException;
+
+    /**
+     * Returns the node that claimed an item most recently. The node is kept after the item has been completed, so that
+     * requests for the results of the item can be directed to the node that executed it.
+     *
+     * @param id
+     *            ID of the item
+     * @return name of the node or null if the item has not been claimed
+     * @throws IOException
+     *             if the queue could not be read
+     */
+    String getNode(final String id) throws IOException;
+
+    /**
+     * Removes the node of an item, for instance after the results of the item have been deleted
+     *
+     * @param id
+     *            ID of the item
+     * @throws IOException
+     *             if the node could not be removed
+     */
+    void forget(final String id) throws IOException;
+
+    /**
+     * Returns the number of items that wait to be claimed
+     *
+     * @return number of pending items
+     * @throws IOException
+     *             if the queue could not be read
+     */
+    int getPendingCount() throws IOException;
+
+    /**
+     * Returns the number of claimed items
+     *
+     * @return number of claimed items
+     * @throws IOException
+     *             if the queue could not be read
+     */
+    int getClaimedCount() throws IOException;
+}
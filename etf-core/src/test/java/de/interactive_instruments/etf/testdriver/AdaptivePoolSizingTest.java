@@ -0,0 +1,93 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class AdaptivePoolSizingTest {
+
+    private final static AdaptivePoolSizing.Metrics IDLE = new AdaptivePoolSizing.Metrics(0.2, 0.8, 0.01);
+
+    private static void awaitActive(final TaskPoolRegistry<?, ?> registry, final int active)
+            throws InterruptedException {
+        for (int i = 0; i < 200 && registry.getActiveCount() < active; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(active, registry.getActiveCount());
+    }
+
+    @Test
+    void increaseAndDecrease() throws InterruptedException, ExecutionException {
+        final TaskPoolRegistry<String, TaskPoolRegistryTest.QueueTestTask> registry = new TaskPoolRegistry<>(4, 4, 0);
+        final AdaptivePoolSizing sizing = new AdaptivePoolSizing(registry, 1, 3);
+        // clamped to the upper bound
+        assertEquals(3, registry.getPoolSize());
+        assertEquals("Steady", sizing.update(IDLE).getReason());
+
+        final List<String> executionOrder = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch gate = new CountDownLatch(1);
+        final List<TaskPoolRegistryTest.QueueTestTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final TaskPoolRegistryTest.QueueTestTask task = new TaskPoolRegistryTest.QueueTestTask(
+                    String.valueOf(i), executionOrder, gate);
+            registry.submitTask(task);
+            tasks.add(task);
+        }
+        awaitActive(registry, 3);
+        assertEquals(2, registry.getQueuedCount());
+
+        // upper bound reached
+        AdaptivePoolSizing.Decision decision = sizing.update(IDLE);
+        assertFalse(decision.isChanged());
+        assertEquals(3, registry.getPoolSize());
+
+        // GC pressure: multiplicative decrease
+        decision = sizing.update(new AdaptivePoolSizing.Metrics(0.2, 0.8, 0.3));
+        assertTrue(decision.isChanged());
+        assertEquals(2, decision.getPoolSize());
+        assertEquals(2, registry.getPoolSize());
+        decision = sizing.update(new AdaptivePoolSizing.Metrics(0.2, 0.05, 0.01));
+        assertEquals(1, decision.getPoolSize());
+        // lower bound
+        decision = sizing.update(new AdaptivePoolSizing.Metrics(0.99, 0.8, 0.01));
+        assertEquals(1, decision.getPoolSize());
+        assertEquals("CPU load limit exceeded", decision.getReason());
+
+        // additive increase while Tasks are queued
+        decision = sizing.update(IDLE);
+        assertEquals(2, decision.getPoolSize());
+        assertEquals(2, registry.getPoolSize());
+        assertEquals(6, sizing.getDecisions().size());
+
+        gate.countDown();
+        for (final TaskPoolRegistryTest.QueueTestTask task : tasks) {
+            task.waitForResult();
+        }
+        assertEquals(5, executionOrder.size());
+        registry.killAll();
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class FileSystemWorkQueueTest {
+
+    private static final int ITEMS = 60;
+    private static final int WORKERS = 3;
+
+    /**
+     * Worker process: claims items until the queue is empty and the stop file exists and records each execution in the
+     * output directory. In crash mode the worker exits after claiming one item without completing it.
+     */
+    public static final class Worker {
+        public static void main(final String[] args) throws Exception {
+            final FileSystemWorkQueue queue = new FileSystemWorkQueue(Paths.get(args[0]));
+            final Path outDir = Paths.get(args[1]);
+            final String node = args[2];
+            final boolean crash = args.length > 3 && "crash".equals(args[3]);
+            final Path stopFile = outDir.resolve("stop");
+            while (true) {
+                queue.recoverExpired();
+                final WorkQueue.WorkItem item = queue.claim(node, 300, TimeUnit.MILLISECONDS);
+                if (item == null) {
+                    if (Files.exists(stopFile) && queue.getPendingCount() == 0 && queue.getClaimedCount() == 0) {
+                        return;
+                    }
+                    Thread.sleep(10);
+                    continue;
+                }
+                if (crash) {
+                    Runtime.getRuntime().halt(1);
+                }
+                assertTrue(item.renew());
+                Files.write(outDir.resolve(item.getId() + "." + node), item.getPayload());
+                item.complete();
+            }
+        }
+    }
+
+    private static String classPath() {
+        final Set<String> entries = new LinkedHashSet<>(
+                Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+        for (final Class<?> c : new Class<?>[]{Worker.class, FileSystemWorkQueue.class, Test.class}) {
+            entries.add(new File(c.getProtectionDomain().getCodeSource().getLocation().getPath()).getPath());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static Process startWorker(final Path queueDir, final Path outDir, final String node,
+            final String... options) throws IOException {
+        final List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", classPath(), Worker.class.getName(), queueDir.toString(), outDir.toString(), node));
+        command.addAll(Arrays.asList(options));
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(
+                outDir.resolve(node + ".log").toFile()).start();
+    }
+
+    @Test
+    void claimRenewAndComplete(@TempDir final Path dir) throws Exception {
+        final FileSystemWorkQueue queue = new FileSystemWorkQueue(dir);
+        assertNull(queue.claim("node1", 1, TimeUnit.SECONDS));
+        queue.publish("EID1", "first".getBytes(UTF_8));
+        queue.publish("EID2", "second".getBytes(UTF_8));
+        queue.publish("EID3", "third".getBytes(UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> queue.publish("../EID4", new byte[0]));
+        assertEquals(3, queue.getPendingCount());
+        assertTrue(queue.isPending("EID1"));
+        assertFalse(queue.isPending("EID4"));
+        assertFalse(queue.isPending("1"));
+
+        // items are claimed in publication order
+        final WorkQueue.WorkItem first = queue.claim("node1", 1, TimeUnit.SECONDS);
+        assertEquals("EID1", first.getId());
+        assertEquals("first", new String(first.getPayload(), UTF_8));
+        final WorkQueue.WorkItem second = queue.claim("node 2", 1, TimeUnit.SECONDS);
+        assertEquals("EID2", second.getId());
+        assertFalse(queue.isPending("EID1"));
+        assertEquals(1, queue.getPendingCount());
+        assertEquals(2, queue.getClaimedCount());
+        assertEquals(0, queue.recoverExpired());
+
+        assertTrue(first.renew());
+        assertTrue(first.complete());
+        assertFalse(first.complete());
+        assertTrue(second.fail());
+        assertEquals(Collections.singletonList("EID2"), queue.getFailedIds());
+
+        // an abandoned item is claimed again before newer items
+        final WorkQueue.WorkItem third = queue.claim("node1", 1, TimeUnit.SECONDS);
+        queue.publish("EID5", "fifth".getBytes(UTF_8));
+        assertTrue(third.abandon());
+        assertEquals("EID3", queue.claim("node2", 1, TimeUnit.SECONDS).getId());
+    }
+
+    @Test
+    void recoverExpiredLease(@TempDir final Path dir) throws Exception {
+        final FileSystemWorkQueue queue = new FileSystemWorkQueue(dir);
+        queue.publish("EID1", "first".getBytes(UTF_8));
+        final WorkQueue.WorkItem lost = queue.claim("node1", 20, TimeUnit.MILLISECONDS);
+        Thread.sleep(50);
+        assertEquals(1, queue.recoverExpired());
+        assertTrue(queue.isPending("EID1"));
+        assertFalse(lost.renew());
+        final WorkQueue.WorkItem recovered = queue.claim("node2", 1, TimeUnit.SECONDS);
+        assertEquals("EID1", recovered.getId());
+        assertFalse(lost.complete());
+        assertTrue(recovered.complete());
+        assertEquals(0, queue.getClaimedCount());
+        // the node that executed the item is kept after completion
+        assertEquals("node2", queue.getNode("EID1"));
+        queue.forget("EID1");
+        assertNull(queue.getNode("EID1"));
+        assertNull(queue.getNode("EID2"));
+    }
+
+    @Test
+    void multipleWorkerProcesses(@TempDir final Path dir) throws Exception {
+        final Path queueDir = Files.createDirectories(dir.resolve("queue"));
+        final Path outDir = Files.createDirectories(dir.resolve("out"));
+        final FileSystemWorkQueue queue = new FileSystemWorkQueue(queueDir);
+
+        // a crashing worker leaves a claimed item behind that must be recovered by the others
+        queue.publish("EID0", "0".getBytes(UTF_8));
+        final Process crashing = startWorker(queueDir, outDir, "crashing", "crash");
+        assertTrue(crashing.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(1, queue.getClaimedCount());
+
+        final List<Process> workers = new ArrayList<>();
+        for (int i = 1; i <= WORKERS; i++) {
+            workers.add(startWorker(queueDir, outDir, "node" + i));
+        }
+        for (int i = 1; i < ITEMS; i++) {
+            queue.publish("EID" + i, String.valueOf(i).getBytes(UTF_8));
+        }
+        Files.createFile(outDir.resolve("stop"));
+        for (final Process worker : workers) {
+            assertTrue(worker.waitFor(60, TimeUnit.SECONDS));
+            assertEquals(0, worker.exitValue());
+        }
+
+        final Map<String, List<String>> executions;
+        try (final Stream<Path> files = Files.list(outDir)) {
+            executions = files.map(p -> p.getFileName().toString()).filter(n -> n.startsWith("EID"))
+                    .collect(Collectors.groupingBy(n -> n.substring(0, n.indexOf('.'))));
+        }
+        assertEquals(ITEMS, executions.size());
+        for (final Map.Entry<String, List<String>> execution : executions.entrySet()) {
+            assertEquals(1, execution.getValue().size(), execution.getKey() + " executed more than once");
+        }
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(0, queue.getClaimedCount());
+    }
+}
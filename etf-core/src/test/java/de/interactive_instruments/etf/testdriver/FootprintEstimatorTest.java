@@ -0,0 +1,65 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class FootprintEstimatorTest {
+
+    @Test
+    void learnEstimates() {
+        final FootprintEstimator estimator = new FootprintEstimator(1000, 4);
+        // no history
+        assertEquals(1000, estimator.estimate(0, "ets", "driver"));
+        assertEquals(40000, estimator.estimate(10000, "ets", "driver"));
+
+        estimator.record(10000, 20000, "ets", "driver");
+        assertEquals(20000, estimator.estimate(10000, "ets", "driver"));
+        assertEquals(40000, estimator.estimate(20000, "other", "driver"));
+        // fixed footprint of small inputs still unknown
+        assertEquals(1000, estimator.estimate(10, "ets"));
+
+        estimator.record(10, 5000, "ets");
+        assertEquals(5000, estimator.estimate(10, "ets", "driver"));
+        // smoothed
+        estimator.record(10, 15000, "ets");
+        assertEquals(8000, estimator.estimate(10, "ets"));
+    }
+
+    @Test
+    void storeAndLoad() throws IOException {
+        final FootprintEstimator estimator = new FootprintEstimator(1000, 4);
+        estimator.record(10000, 30000, "ets");
+        final File file = File.createTempFile("footprints", ".properties");
+        try {
+            estimator.store(file);
+            final FootprintEstimator loaded = new FootprintEstimator(1000, 4);
+            loaded.load(file);
+            assertEquals(30000, loaded.estimate(10000, "ets"));
+            assertEquals(1000, loaded.estimate(10, "ets"));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class ReadWriteLockTableTest {
+
+    @Test
+    void sharedAndExclusiveLocks() {
+        final ReadWriteLockTable<String> table = new ReadWriteLockTable<>();
+        final List<String> granted = new ArrayList<>();
+
+        final ReadWriteLockTable<String>.Lock read1 = table.newLock("a", true);
+        final ReadWriteLockTable<String>.Lock read2 = table.newLock("a", true);
+        assertTrue(read1.acquire(() -> granted.add("read1")));
+        assertTrue(read2.acquire(() -> granted.add("read2")));
+        assertTrue(table.isLocked("a"));
+
+        // other keys are independent
+        final ReadWriteLockTable<String>.Lock writeB = table.newLock("b", false);
+        assertTrue(writeB.acquire(() -> granted.add("writeB")));
+
+        final ReadWriteLockTable<String>.Lock write = table.newLock("a", false);
+        assertFalse(write.acquire(() -> granted.add("write")));
+        // a reader must not overtake a waiting writer
+        final ReadWriteLockTable<String>.Lock read3 = table.newLock("a", true);
+        final ReadWriteLockTable<String>.Lock read4 = table.newLock("a", true);
+        assertFalse(read3.acquire(() -> granted.add("read3")));
+        assertFalse(read4.acquire(() -> granted.add("read4")));
+        assertEquals(3, table.getWaitingCount());
+        assertThrows(IllegalStateException.class, () -> read3.acquire(() -> {}));
+
+        read1.release();
+        assertTrue(granted.isEmpty());
+        read2.release();
+        assertEquals(1, granted.size());
+        assertEquals("write", granted.get(0));
+        assertTrue(write.isHeld());
+
+        write.release();
+        // all waiting readers are granted together
+        assertEquals(3, granted.size());
+        assertTrue(read3.isHeld());
+        assertTrue(read4.isHeld());
+        assertEquals(0, table.getWaitingCount());
+
+        read3.release();
+        read4.release();
+        read4.release();
+        writeB.release();
+        assertFalse(table.isLocked("a"));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void releaseWaitingLock() {
+        final ReadWriteLockTable<String> table = new ReadWriteLockTable<>();
+        final List<String> granted = new ArrayList<>();
+        final ReadWriteLockTable<String>.Lock read = table.newLock("a", true);
+        final ReadWriteLockTable<String>.Lock write = table.newLock("a", false);
+        final ReadWriteLockTable<String>.Lock read2 = table.newLock("a", true);
+        assertTrue(read.acquire(() -> granted.add("read")));
+        assertFalse(write.acquire(() -> granted.add("write")));
+        assertFalse(read2.acquire(() -> granted.add("read2")));
+
+        // the reader waiting behind the writer is granted when the writer gives up
+        write.release();
+        assertFalse(write.isWaiting());
+        assertEquals(1, granted.size());
+        assertEquals("read2", granted.get(0));
+        read.release();
+        read2.release();
+        assertEquals(0, table.size());
+    }
+}
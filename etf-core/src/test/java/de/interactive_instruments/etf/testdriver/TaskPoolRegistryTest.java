@@ -0,0 +1,500 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import de.interactive_instruments.etf.model.EID;
+import de.interactive_instruments.etf.model.EidFactory;
+
+/**
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+public class TaskPoolRegistryTest {
+
+    static class QueueTestTask implements Task<String> {
+
+        private final EID id = EidFactory.getDefault().createRandomId();
+        private final String label;
+        private final List<String> executionOrder;
+        private final CountDownLatch gate;
+        private Future<String> future;
+        private volatile STATE state = STATE.CREATED;
+
+        QueueTestTask(final String label, final List<String> executionOrder, final CountDownLatch gate) {
+            this.label = label;
+            this.executionOrder = executionOrder;
+            this.gate = gate;
+        }
+
+        @Override
+        public String call() throws Exception {
+            state = STATE.RUNNING;
+            gate.await();
+            executionOrder.add(label);
+            state = STATE.COMPLETED;
+            return label;
+        }
+
+        @Override
+        public EID getId() {
+            return id;
+        }
+
+        @Override
+        public String getResult() {
+            return label;
+        }
+
+        @Override
+        public void setFuture(final Future<String> future) throws IllegalStateException {
+            if (this.future != null) {
+                throw new IllegalStateException("Future already set");
+            }
+            this.future = future;
+        }
+
+        @Override
+        public String waitForResult() throws InterruptedException, ExecutionException {
+            return future.get();
+        }
+
+        @Override
+        public STATE getState() {
+            return state;
+        }
+
+        @Override
+        public void cancel() {
+            state = STATE.CANCELED;
+        }
+
+        @Override
+        public void init() {
+            state = STATE.INITIALIZED;
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return state != STATE.CREATED;
+        }
+
+        @Override
+        public void release() {}
+    }
+
+    private static final class Submitter {
+        private final TaskPoolRegistry<String, QueueTestTask> registry;
+        private final List<String> executionOrder = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final List<QueueTestTask> tasks = new ArrayList<>();
+
+        private Submitter(final TaskPoolRegistry<String, QueueTestTask> registry) throws InterruptedException {
+            this.registry = registry;
+            // occupy the only thread
+            submit("blocker", TaskPriority.NORMAL, null);
+            while (registry.getActiveCount() == 0) {
+                Thread.sleep(5);
+            }
+        }
+
+        private void submit(final String label, final TaskPriority priority, final String client) {
+            final QueueTestTask task = new QueueTestTask(label, executionOrder, gate);
+            registry.submitTask(task, priority, client);
+            tasks.add(task);
+        }
+
+        private List<String> run() throws ExecutionException, InterruptedException {
+            gate.countDown();
+            for (final QueueTestTask task : tasks) {
+                task.waitForResult();
+            }
+            registry.killAll();
+            return executionOrder.subList(1, executionOrder.size());
+        }
+    }
+
+    @Test
+    void t1_priorityClasses() throws InterruptedException, ExecutionException {
+        final TaskPoolRegistry<String, QueueTestTask> registry = new TaskPoolRegistry<>(1, 1, 0,
+                TaskSchedulingPolicy.fifo());
+        final Submitter submitter = new Submitter(registry);
+        submitter.submit("b1", TaskPriority.BATCH, "a");
+        submitter.submit("b2", TaskPriority.BATCH, "a");
+        submitter.submit("n1", TaskPriority.NORMAL, "a");
+        submitter.submit("i1", TaskPriority.INTERACTIVE, "b");
+        submitter.submit("b3", TaskPriority.BATCH, "b");
+        submitter.submit("i2", TaskPriority.INTERACTIVE, "a");
+        assertEquals(3, registry.getQueuedCount(TaskPriority.BATCH));
+        assertEquals(2, registry.getQueuedCount(TaskPriority.INTERACTIVE));
+        Thread.sleep(50);
+
+        assertEquals(Arrays.asList("i1", "i2", "n1", "b1", "b2", "b3"), submitter.run());
+
+        final QueueWaitStatistics statistics = registry.getQueueWaitStatistics();
+        assertEquals(3, statistics.getCount(TaskPriority.BATCH));
+        assertEquals(2, statistics.getCount(TaskPriority.NORMAL));
+        assertTrue(statistics.getPercentile(TaskPriority.INTERACTIVE, 50) >= 40);
+        assertTrue(statistics.getPercentile(TaskPriority.BATCH, 99) >= statistics.getPercentile(TaskPriority.BATCH, 1));
+        assertTrue(statistics.getPercentile(TaskPriority.NORMAL, 0) >= 0);
+    }
+
+    @Test
+    void t2_fairShare() throws InterruptedException, ExecutionException {
+        final TaskPoolRegistry<String, QueueTestTask> registry = new TaskPoolRegistry<>(1, 1, 0,
+                new FairShareSchedulingPolicy());
+        final Submitter submitter = new Submitter(registry);
+        for (int i = 1; i <= 5; i++) {
+            submitter.submit("a" + i, TaskPriority.NORMAL, "a");
+        }
+        submitter.submit("b1", TaskPriority.NORMAL, "b");
+        submitter.submit("b2", TaskPriority.NORMAL, "b");
+
+        assertEquals(Arrays.asList("a1", "b1", "a2", "b2", "a3", "a4", "a5"), submitter.run());
+    }
+
+    @Test
+    void t3_weightedFairShare() throws InterruptedException, ExecutionException {
+        final TaskPoolRegistry<String, QueueTestTask> registry = new TaskPoolRegistry<>(1, 1, 0,
+                new FairShareSchedulingPolicy(client -> "b".equals(client) ? 2 : 1));
+        final Submitter submitter = new Submitter(registry);
+        for (int i = 1; i <= 3; i++) {
+            submitter.submit("a" + i, TaskPriority.NORMAL, "a");
+        }
+        for (int i = 1; i <= 4; i++) {
+            submitter.submit("b" + i, TaskPriority.NORMAL, "b");
+        }
+
+        assertEquals(Arrays.asList("a1", "b1", "b2", "a2", "b3", "b4", "a3"), submitter.run());
+    }
+
+    @Test
+    void t4_boundedQueue() throws InterruptedException, ExecutionException {
+        final TaskPoolRegistry<String, QueueTestTask> registry = new TaskPoolRegistry<>(1, 1, 2);
+        final Submitter submitter = new Submitter(registry);
+        submitter.submit("1", TaskPriority.NORMAL, null);
+        submitter.submit("2", TaskPriority.NORMAL, null);
+        assertThrows(RejectedExecutionException.class, () -> submitter.submit("3", TaskPriority.NORMAL, null));
+        assertEquals(Arrays.asList("1", "2"), submitter.run());
+    }
+
+    @Test
+    void t5_cancelQueuedTask() throws InterruptedException, ExecutionException, TimeoutException {
+        final TaskPoolRegistry<String, QueueTestTask> registry = new TaskPoolRegistry<>(1, 1, 0);
+        final Submitter submitter = new Submitter(registry);
+        submitter.submit("1", TaskPriority.NORMAL, null);
+        final QueueTestTask cancelled = submitter.tasks.remove(1);
+
+        registry.cancelTask(cancelled.getId()).get(1, TimeUnit.SECONDS);
+        assertFalse(registry.contains(cancelled.getId()));
+        assertEquals(0, registry.getQueuedCount(TaskPriority.NORMAL));
+        assertThrows(CancellationException.class, cancelled::waitForResult);
+        assertEquals(Collections.emptyList(), submitter.run());
+    }
+
+    @Test
+    void t6_concurrentSubmitPollAndCancel() throws Exception {
+        final TaskPoolRegistry<String, QueueTestTask> registry = new TaskPoolRegistry<>(4, 4, 0,
+                new FairShareSchedulingPolicy());
+        registry.setCancelGracePeriod(50, TimeUnit.MILLISECONDS);
+        final List<String> executionOrder = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch gate = new CountDownLatch(1);
+        final CountDownLatch start = new CountDownLatch(1);
+        final int clientCount = 8;
+        final int tasksPerClient = 100;
+        final ExecutorService clients = Executors.newFixedThreadPool(clientCount + 1);
+        final List<QueueTestTask> kept = Collections.synchronizedList(new ArrayList<>());
+        final List<QueueTestTask> cancelled = Collections.synchronizedList(new ArrayList<>());
+        final List<CompletableFuture<Void>> cancellations = Collections.synchronizedList(new ArrayList<>());
+        final AtomicLong maxCancelCallTime = new AtomicLong();
+        final AtomicBoolean submitting = new AtomicBoolean(true);
+
+        final List<Future<?>> submissions = new ArrayList<>();
+        for (int c = 0; c < clientCount; c++) {
+            final String client = "client" + (c % 3);
+            submissions.add(clients.submit(() -> {
+                start.await();
+                for (int i = 0; i < tasksPerClient; i++) {
+                    final QueueTestTask task = new QueueTestTask(client + "." + i, executionOrder, gate);
+                    registry.submitTask(task, TaskPriority.values()[i % TaskPriority.values().length], client);
+                    assertSame(task, registry.getTaskById(task.getId()));
+                    if (i % 2 == 0) {
+                        final long startTime = System.nanoTime();
+                        cancellations.add(registry.cancelTask(task.getId()));
+                        maxCancelCallTime.accumulateAndGet(System.nanoTime() - startTime, Math::max);
+                        cancelled.add(task);
+                    } else {
+                        kept.add(task);
+                    }
+                }
+                return null;
+            }));
+        }
+        final Future<Integer> poller = clients.submit(() -> {
+            int polls = 0;
+            start.await();
+            while (submitting.get()) {
+                for (final QueueTestTask task : registry.getTasks()) {
+                    task.getState();
+                    registry.contains(task.getId());
+                }
+                for (final TaskPriority priority : TaskPriority.values()) {
+                    assertTrue(registry.getQueuedCount(priority) >= 0);
+                }
+                polls++;
+            }
+            return polls;
+        });
+
+        start.countDown();
+        for (final Future<?> submission : submissions) {
+            submission.get(30, TimeUnit.SECONDS);
+        }
+        submitting.set(false);
+        assertTrue(poller.get(30, TimeUnit.SECONDS) > 0);
+
+        CompletableFuture.allOf(cancellations.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        // the cancel calls must not wait for the tasks
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(maxCancelCallTime.get()) < 1000);
+        for (final QueueTestTask task : cancelled) {
+            assertFalse(registry.contains(task.getId()));
+        }
+
+        gate.countDown();
+        for (final QueueTestTask task : kept) {
+            assertEquals(task.label, task.waitForResult());
+        }
+        assertEquals(clientCount * tasksPerClient / 2, kept.size());
+        assertEquals(kept.size(), executionOrder.size());
+        registry.removeDone();
+        assertTrue(registry.getTasks().isEmpty());
+        registry.killAll();
+        clients.shutdownNow();
+    }
+
+    private static void awaitState(final QueueTestTask task, final TaskState.STATE state) throws InterruptedException {
+        for (int i = 0; i < 200 && task.getState() != state; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(state, task.getState());
+    }
+
+    private static void awaitWaiting(final TaskPoolRegistry<?, ?> registry, final int waiting)
+            throws InterruptedException {
+        for (int i = 0; i < 200 && registry.getDelayedCount() < waiting; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void t7_resourceBudget() throws Exception {
+        final TaskPoolRegistry<String, QueueTestTask> registry = new TaskPoolRegistry<>(4, 4, 0);
+        final List<String> measured = Collections.synchronizedList(new ArrayList<>());
+        registry.setResourceBudget(new ResourceBudget(100), new TaskFootprint<QueueTestTask>() {
+            @Override
+            public long estimate(final QueueTestTask task) {
+                return task.label.startsWith("big") ? 80 : 20;
+            }
+
+            @Override
+            public void measured(final QueueTestTask task, final long estimate, final long peak) {
+                measured.add(task.label);
+            }
+        });
+        final List<String> executionOrder = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch gate = new CountDownLatch(1);
+        final QueueTestTask big1 = new QueueTestTask("big1", executionOrder, gate);
+        final QueueTestTask big2 = new QueueTestTask("big2", executionOrder, gate);
+        final QueueTestTask small = new QueueTestTask("small", executionOrder, gate);
+        registry.submitTask(big1);
+        awaitState(big1, TaskState.STATE.RUNNING);
+        registry.submitTask(big2);
+        awaitWaiting(registry, 1);
+        registry.submitTask(small);
+
+        // big2 does not fit and the small task is not allowed to overtake it
+        awaitWaiting(registry, 2);
+        Thread.sleep(50);
+        assertEquals(2, registry.getDelayedCount());
+        assertEquals(2, registry.getQueuedCount());
+        // delayed Tasks do not occupy a thread of the pool
+        assertEquals(1, registry.getActiveCount());
+        assertEquals(TaskState.STATE.CREATED, big2.getState());
+        assertEquals(TaskState.STATE.CREATED, small.getState());
+
+        // cancelling a delayed Task admits the next one
+        registry.cancelTask(big2.getId()).get(5, TimeUnit.SECONDS);
+        awaitState(small, TaskState.STATE.RUNNING);
+        assertEquals(100, registry.getResourceBudget().getUsed());
+
+        gate.countDown();
+        assertEquals("big1", big1.waitForResult());
+        assertEquals("small", small.waitForResult());
+        for (int i = 0; i < 200 && measured.size() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(Arrays.asList("big1", "small"), measured.stream().sorted().collect(Collectors.toList()));
+        assertEquals(0, registry.getResourceBudget().getUsed());
+        registry.killAll();
+    }
+
+    private static TaskPoolRegistry<String, QueueTestTask> createBulkheadRegistry() {
+        final TaskPoolRegistry<String, QueueTestTask> registry = new TaskPoolRegistry<>(3, 3, 0);
+        registry.setBulkheads(task -> {
+            if (task.label.startsWith("slow")) {
+                return new BulkheadDefinition("slow", 1);
+            } else if (task.label.startsWith("fast")) {
+                return new BulkheadDefinition("fast", 2);
+            }
+            return null;
+        });
+        return registry;
+    }
+
+    private static QueueTestTask submit(final TaskPoolRegistry<String, QueueTestTask> registry, final String label,
+            final CountDownLatch gate) {
+        final QueueTestTask task = new QueueTestTask(label, Collections.synchronizedList(new ArrayList<>()), gate);
+        registry.submitTask(task);
+        return task;
+    }
+
+    @Test
+    void t8_bulkheadIsolation() throws Exception {
+        final TaskPoolRegistry<String, QueueTestTask> registry = createBulkheadRegistry();
+        final CountDownLatch gate = new CountDownLatch(1);
+        final QueueTestTask fast1 = submit(registry, "fast1", gate);
+        awaitState(fast1, TaskState.STATE.RUNNING);
+        final List<QueueTestTask> slow = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            slow.add(submit(registry, "slow" + i, gate));
+        }
+        awaitState(slow.get(0), TaskState.STATE.RUNNING);
+        // the slow tasks must not occupy the thread reserved for the fast bulkhead
+        final QueueTestTask fast2 = submit(registry, "fast2", gate);
+        awaitState(fast2, TaskState.STATE.RUNNING);
+        assertEquals(TaskState.STATE.CREATED, slow.get(1).getState());
+        assertEquals(2, registry.getQueuedCount());
+
+        List<BulkheadStatus> status = registry.getBulkheadStatus();
+        assertEquals("fast", status.get(0).getName());
+        assertEquals(2, status.get(0).getRunning());
+        assertEquals(1.0, status.get(0).getUtilization());
+        assertEquals("slow", status.get(1).getName());
+        assertEquals(1, status.get(1).getRunning());
+        assertEquals(2, status.get(1).getQueued());
+        assertEquals(0, status.get(1).getBorrowed());
+
+        // a cancelled Task leaves the bulkhead queue
+        registry.cancelTask(slow.get(2).getId()).get(5, TimeUnit.SECONDS);
+        assertEquals(1, registry.getBulkheadStatus().get(1).getQueued());
+
+        gate.countDown();
+        fast1.waitForResult();
+        fast2.waitForResult();
+        slow.get(0).waitForResult();
+        slow.get(1).waitForResult();
+        for (int i = 0; i < 200 && (registry.getBulkheadStatus().get(0).getCompleted() < 2
+                || registry.getBulkheadStatus().get(1).getCompleted() < 2); i++) {
+            Thread.sleep(10);
+        }
+        status = registry.getBulkheadStatus();
+        assertEquals(0, status.get(0).getRunning());
+        assertEquals(2, status.get(0).getCompleted());
+        assertEquals(0, status.get(1).getRunning());
+        assertEquals(0, status.get(1).getQueued());
+        registry.killAll();
+    }
+
+    @Test
+    void t9_bulkheadBorrowing() throws Exception {
+        final TaskPoolRegistry<String, QueueTestTask> registry = createBulkheadRegistry();
+        final CountDownLatch gate = new CountDownLatch(1);
+        final List<QueueTestTask> slow = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            slow.add(submit(registry, "slow" + i, gate));
+        }
+        // idle threads are borrowed
+        for (int i = 0; i < 3; i++) {
+            awaitState(slow.get(i), TaskState.STATE.RUNNING);
+        }
+        final BulkheadStatus status = registry.getBulkheadStatus().get(0);
+        assertEquals(3, status.getRunning());
+        assertEquals(2, status.getBorrowed());
+        assertEquals(1, status.getQueued());
+
+        // Tasks without bulkhead are only limited by the pool size
+        final QueueTestTask other = submit(registry, "other", gate);
+        assertEquals(TaskState.STATE.CREATED, other.getState());
+
+        gate.countDown();
+        for (final QueueTestTask task : slow) {
+            task.waitForResult();
+        }
+        other.waitForResult();
+        registry.killAll();
+    }
+
+    @Test
+    void t10_testObjectLocks() throws Exception {
+        final TaskPoolRegistry<String, QueueTestTask> registry = new TaskPoolRegistry<>(4, 4, 0);
+        final ReadWriteLockTable<String> lockTable = new ReadWriteLockTable<>();
+        registry.setLocks(task -> lockTable.newLock("testObject", task.label.startsWith("read")));
+        final CountDownLatch readGate = new CountDownLatch(1);
+        final CountDownLatch writeGate = new CountDownLatch(1);
+        final QueueTestTask read1 = submit(registry, "read1", readGate);
+        final QueueTestTask read2 = submit(registry, "read2", readGate);
+        awaitState(read1, TaskState.STATE.RUNNING);
+        awaitState(read2, TaskState.STATE.RUNNING);
+
+        // conflicting Tasks are queued, later readers wait behind the writer
+        final QueueTestTask write1 = submit(registry, "write1", writeGate);
+        final QueueTestTask write2 = submit(registry, "write2", writeGate);
+        final QueueTestTask read3 = submit(registry, "read3", writeGate);
+        assertEquals(3, registry.getQueuedCount());
+        assertEquals(3, lockTable.getWaitingCount());
+        assertEquals(TaskState.STATE.CREATED, write1.getState());
+
+        // a cancelled waiting Task leaves the lock queue
+        registry.cancelTask(write2.getId()).get(5, TimeUnit.SECONDS);
+        assertEquals(2, lockTable.getWaitingCount());
+
+        readGate.countDown();
+        awaitState(write1, TaskState.STATE.RUNNING);
+        assertEquals(TaskState.STATE.CREATED, read3.getState());
+        writeGate.countDown();
+        read3.waitForResult();
+        for (int i = 0; i < 200 && lockTable.size() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, lockTable.size());
+        assertEquals(0, registry.getQueuedCount());
+        registry.killAll();
+    }
+}
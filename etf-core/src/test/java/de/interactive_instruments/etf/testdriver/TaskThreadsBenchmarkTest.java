@@ -0,0 +1,196 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import de.interactive_instruments.etf.model.EID;
+import de.interactive_instruments.etf.model.EidFactory;
+
+/**
+ * Compares the number of concurrently executed, I/O bound Test Runs with platform and virtual threads. The Test Runs
+ * query a local mock service that answers with a fixed latency. The pools are sized like in the webapp with the
+ * default number of parallel Test Runs of each thread mode. Run with the benchmark task.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@Tag("benchmark")
+public class TaskThreadsBenchmarkTest {
+
+    private static final int LATENCY_MS = 50;
+    private static final int REQUESTS_PER_RUN = 4;
+    // default of ETF_MAX_PARALLEL_RUNS
+    private static final int PLATFORM_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int RUNS = 32 * PLATFORM_PARALLELISM;
+
+    private static HttpServer mockService;
+    private static URL mockServiceUrl;
+
+    private static final class HttpTestRun implements Task<Integer> {
+
+        private final EID id = EidFactory.getDefault().createRandomId();
+        private Future<Integer> future;
+        private volatile int responses;
+        private volatile STATE state = STATE.CREATED;
+
+        @Override
+        public Integer call() throws Exception {
+            state = STATE.RUNNING;
+            for (int i = 0; i < REQUESTS_PER_RUN; i++) {
+                final HttpURLConnection connection = (HttpURLConnection) mockServiceUrl.openConnection();
+                try (final InputStream in = connection.getInputStream()) {
+                    while (in.read() != -1) {}
+                    if (connection.getResponseCode() == 200) {
+                        responses++;
+                    }
+                }
+            }
+            state = STATE.COMPLETED;
+            return responses;
+        }
+
+        @Override
+        public EID getId() {
+            return id;
+        }
+
+        @Override
+        public Integer getResult() {
+            return responses;
+        }
+
+        @Override
+        public void setFuture(final Future<Integer> future) throws IllegalStateException {
+            this.future = future;
+        }
+
+        @Override
+        public Integer waitForResult() throws InterruptedException, ExecutionException {
+            return future.get();
+        }
+
+        @Override
+        public STATE getState() {
+            return state;
+        }
+
+        @Override
+        public void cancel() {
+            state = STATE.CANCELED;
+        }
+
+        @Override
+        public void init() {
+            state = STATE.INITIALIZED;
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return state != STATE.CREATED;
+        }
+
+        @Override
+        public void release() {}
+    }
+
+    @BeforeAll
+    static void startMockService() throws IOException {
+        mockService = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), RUNS);
+        mockService.createContext("/wfs", exchange -> {
+            try {
+                Thread.sleep(LATENCY_MS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            final byte[] body = "<wfs:FeatureCollection/>".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        mockService.setExecutor(Executors.newCachedThreadPool());
+        mockService.start();
+        mockServiceUrl = new URL("http://127.0.0.1:" + mockService.getAddress().getPort() + "/wfs");
+    }
+
+    @AfterAll
+    static void stopMockService() {
+        mockService.stop(0);
+        ((ExecutorService) mockService.getExecutor()).shutdownNow();
+    }
+
+    /**
+     * Executes the Test Runs and returns the number of Test Runs completed per second
+     */
+    private static double benchmark(final TaskThreads taskThreads) throws Exception {
+        final int poolSize = taskThreads.defaultParallelism(PLATFORM_PARALLELISM);
+        final TaskPoolRegistry<Integer, HttpTestRun> registry = new TaskPoolRegistry<>(poolSize, poolSize, 0);
+        registry.setTaskThreads(taskThreads);
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        final int threadsBefore = threadBean.getThreadCount();
+        threadBean.resetPeakThreadCount();
+
+        final long start = System.nanoTime();
+        final List<HttpTestRun> runs = new ArrayList<>(RUNS);
+        for (int i = 0; i < RUNS; i++) {
+            final HttpTestRun run = new HttpTestRun();
+            registry.submitTask(run);
+            runs.add(run);
+        }
+        for (final HttpTestRun run : runs) {
+            assertEquals(REQUESTS_PER_RUN, run.waitForResult().intValue());
+        }
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        final double throughput = RUNS * 1000.0 / Math.max(1, elapsed);
+        registry.killAll();
+
+        System.out.printf("%s threads, %d parallel: %d Test Runs with %d requests in %d ms, %.1f Test Runs/s, "
+                + "%d additional platform threads at peak (mock service threads included)%n",
+                taskThreads.getName(), poolSize, RUNS, REQUESTS_PER_RUN, elapsed, throughput,
+                threadBean.getPeakThreadCount() - threadsBefore);
+        return throughput;
+    }
+
+    @Test
+    void platformThreadCapacity() throws Exception {
+        assertTrue(benchmark(TaskThreads.platform()) > 0);
+    }
+
+    @Test
+    void virtualThreadCapacity() throws Exception {
+        Assumptions.assumeTrue(TaskThreads.isVirtualSupported(), "Virtual threads are not supported");
+        assertTrue(benchmark(TaskThreads.forMode(TaskThreads.VIRTUAL)) > 0);
+    }
+}
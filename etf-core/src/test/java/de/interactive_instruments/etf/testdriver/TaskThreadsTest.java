@@ -0,0 +1,66 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the selection of the thread mode and the names of the Test Task threads. The throughput is compared in the
+ * {@link TaskThreadsBenchmarkTest}.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class TaskThreadsTest {
+
+    @Test
+    void modeSelection() {
+        assertSame(TaskThreads.platform(), TaskThreads.forMode(null));
+        assertSame(TaskThreads.platform(), TaskThreads.forMode(" Platform "));
+        assertEquals(TaskThreads.isVirtualSupported(), TaskThreads.forMode(TaskThreads.VIRTUAL).isVirtual());
+        assertEquals(TaskThreads.isVirtualSupported(), TaskThreads.forMode(TaskThreads.AUTO).isVirtual());
+        assertThrows(IllegalArgumentException.class, () -> TaskThreads.forMode("green"));
+        assertSame(TaskThreads.platform(), TaskThreads.configured("green"));
+        assertSame(TaskThreads.forMode(TaskThreads.AUTO), TaskThreads.configured(TaskThreads.VIRTUAL));
+    }
+
+    @Test
+    void parallelism() {
+        assertEquals(4, TaskThreads.platform().defaultParallelism(4));
+        assertEquals(4 * VirtualTaskThreads.PARALLELISM_FACTOR, VirtualTaskThreads.INSTANCE.defaultParallelism(4));
+    }
+
+    @Test
+    void threadNames() throws Exception {
+        final Thread thread = TaskThreads.platform().newThreadFactory("TestRun.1.").newThread(() -> {});
+        assertEquals("TestRun.1.1", thread.getName());
+        assertFalse(thread.isDaemon());
+
+        final TaskPoolRegistry<Integer, Task<Integer>> registry = new TaskPoolRegistry<>(1, 1, 0);
+        assertSame(TaskThreads.platform(), registry.getTaskThreads());
+        final CompletableFuture<String> threadName = new CompletableFuture<>();
+        final ExecutorService executor = TaskThreads.forMode(TaskThreads.AUTO).newExecutor(1, "TestRun.2.");
+        executor.execute(() -> threadName.complete(Thread.currentThread().getName()));
+        assertEquals("TestRun.2.1", threadName.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        registry.killAll();
+    }
+}
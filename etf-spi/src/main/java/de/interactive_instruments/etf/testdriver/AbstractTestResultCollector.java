@@ -17,6 +17,8 @@ package de.interactive_instruments.etf.testdriver;
 
 import static de.interactive_instruments.etf.testdriver.AbstractTestResultCollector.ResultCollectorState.*;
 
+import de.interactive_instruments.etf.dal.dto.result.ResultStatistics;
+
 /**
  *
  * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
@@ -58,6 +60,7 @@ public abstract class AbstractTestResultCollector extends AbstractTestCollector
     private ResultCollectorState currentState = ResultCollectorState.READY;
     private AbstractTestTaskProgress taskProgress;
     private String testTaskResultId;
+    private final ResultStatistics resultStatistics = new ResultStatistics();
 
     private void setState(final ResultCollectorState newState) {
         logger.trace("Switching from state {} to state {} ", this.currentState, newState);
@@ -75,6 +78,16 @@ public abstract class AbstractTestResultCollector extends AbstractTestCollector
         return testTaskResultId;
     }
 
+    /**
+     * Returns the statistics of all results that have been ended so far. The Test Task result is counted before
+     * {@link #endTestTaskResult(String, int, long)} is invoked, so the statistics are complete in that method.
+     *
+     * @return result statistics
+     */
+    public ResultStatistics getResultStatistics() {
+        return resultStatistics;
+    }
+
     @Override
     final public String doStartTestTask(final String testModelItemId, final long startTimestamp)
             throws IllegalArgumentException, IllegalStateException {
@@ -199,30 +212,36 @@ public abstract class AbstractTestResultCollector extends AbstractTestCollector
             switch (currentState) {
             case TEST_MODULE_RESULT_FINISHED:
                 setState(TEST_TASK_RESULT_FINISHED);
+                resultStatistics.count(ResultStatistics.TEST_TASK_RESULT, status);
                 return endTestTaskResult(testModelItemId, status, stopTimestamp);
             case TEST_CASE_RESULT_FINISHED:
                 setState(TEST_MODULE_RESULT_FINISHED);
+                resultStatistics.count(ResultStatistics.TEST_MODULE_RESULT, status);
                 return endTestModuleResult(testModelItemId, status, stopTimestamp);
             case TEST_STEP_RESULT_FINISHED:
             case WRITING_TEST_CASE_RESULT:
                 setState(TEST_CASE_RESULT_FINISHED);
+                resultStatistics.count(ResultStatistics.TEST_CASE_RESULT, status);
                 return endTestCaseResult(testModelItemId, status, stopTimestamp);
             case CALLED_TEST_CASE_RESULT_FINISHED:
             case CALLED_TEST_STEP_RESULT_FINISHED:
                 endInvokedTests();
                 setState(TEST_STEP_RESULT_FINISHED);
+                resultStatistics.count(ResultStatistics.TEST_STEP_RESULT, status);
                 return endTestStepResult(testModelItemId, status, stopTimestamp);
             case TEST_ASSERTION_RESULT_FINISHED:
                 endTestAssertionResults();
             case WRITING_TEST_STEP_RESULT:
                 // no assertions or invoked tests added
                 setState(TEST_STEP_RESULT_FINISHED);
+                resultStatistics.count(ResultStatistics.TEST_STEP_RESULT, status);
                 return endTestStepResult(testModelItemId, status, stopTimestamp);
             case WRITING_TEST_ASSERTION_RESULT:
                 setState(TEST_ASSERTION_RESULT_FINISHED);
                 if (taskProgress != null) {
                     taskProgress.advance();
                 }
+                resultStatistics.count(ResultStatistics.TEST_ASSERTION_RESULT, status);
                 return endTestAssertionResult(testModelItemId, status, stopTimestamp);
             case WRITING_CALLED_TEST_CASE_RESULT:
             case WRITING_CALLED_TEST_STEP_RESULT:
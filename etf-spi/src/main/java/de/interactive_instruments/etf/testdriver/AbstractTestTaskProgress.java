@@ -17,42 +17,44 @@ package de.interactive_instruments.etf.testdriver;
 
 import java.time.Instant;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
  */
 public class AbstractTestTaskProgress implements TaskProgress {
 
-    private STATE currentState = STATE.CREATED;
-    private STATE oldState = null;
-    protected Instant startInstant;
-    protected Instant stopInstant;
-    private long stepsCompleted = 0;
-    private long maxSteps = -1;
-    private TestRunLogReader logReader;
+    private volatile STATE currentState = STATE.CREATED;
+    private volatile STATE oldState = null;
+    protected volatile Instant startInstant;
+    protected volatile Instant stopInstant;
+    // updated concurrently if a test driver evaluates assertions on several threads
+    private final AtomicLong stepsCompleted = new AtomicLong(0);
+    private final AtomicLong maxSteps = new AtomicLong(-1);
+    private volatile TestRunLogReader logReader;
 
     void setLogReader(TestRunLogReader logReader) {
         this.logReader = logReader;
     }
 
     protected void initMaxSteps(final long maxSteps) {
-        if (this.maxSteps != -1) {
+        if (this.maxSteps.get() != -1) {
             throw new IllegalArgumentException("Max steps already set");
         }
         if (maxSteps <= 0) {
             throw new IllegalArgumentException("Invalid max value: " + maxSteps);
         }
-        this.maxSteps = maxSteps;
+        if (!this.maxSteps.compareAndSet(-1, maxSteps)) {
+            throw new IllegalArgumentException("Max steps already set");
+        }
     }
 
     protected void advance() {
-        stepsCompleted++;
-        if (stepsCompleted >= maxSteps) {
-            maxSteps = stepsCompleted + 1;
-        }
+        final long completed = stepsCompleted.incrementAndGet();
+        maxSteps.updateAndGet(max -> completed >= max ? completed + 1 : max);
     }
 
-    void setState(final STATE currentState) {
+    synchronized void setState(final STATE currentState) {
         this.oldState = this.currentState;
         this.currentState = currentState;
     }
@@ -67,12 +69,12 @@ public class AbstractTestTaskProgress implements TaskProgress {
 
     @Override
     public long getMaxSteps() {
-        return maxSteps;
+        return maxSteps.get();
     }
 
     @Override
     public long getCurrentStepsCompleted() {
-        return stepsCompleted;
+        return stepsCompleted.get();
     }
 
     @Override
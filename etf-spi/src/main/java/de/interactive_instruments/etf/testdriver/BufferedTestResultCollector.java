@@ -0,0 +1,310 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.*;
+
+import de.interactive_instruments.IFile;
+import de.interactive_instruments.etf.dal.dto.result.TestResultStatus;
+
+/**
+ * Records the results of a worker thread of a {@link ConcurrentTestResultCollector}.
+ *
+ * The recorded calls are replayed on the collector of the Test Task, when the buffer is merged. As the result items
+ * are created during the merge, the start and end methods of this collector return {@code null} instead of a result
+ * item EID. The timestamps of the calls are recorded, so the durations of the results are not affected by the merge.
+ * Attachments are saved during the merge as well, the attachment methods therefore also return {@code null}. The
+ * content of readers, streams and strings is held in memory until the buffer is merged, large attachments should be
+ * written to a file and recorded with {@link #markAttachment(String, String, String, String, String)}.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public final class BufferedTestResultCollector implements TestResultCollector {
+
+    @FunctionalInterface
+    private interface RecordedCall {
+        void replay(final TestResultCollector collector) throws Exception;
+    }
+
+    private final ConcurrentTestResultCollector parent;
+    private final List<RecordedCall> calls = new ArrayList<>();
+    private final Deque<Integer> modelTypes = new ArrayDeque<>();
+    private final Map<String, Integer> endedItems = new HashMap<>();
+    private final int baseModelType;
+    private volatile boolean completed = false;
+
+    BufferedTestResultCollector(final ConcurrentTestResultCollector parent, final int baseModelType) {
+        this.parent = parent;
+        this.baseModelType = baseModelType;
+    }
+
+    /**
+     * Marks the buffer as completed. Must be called by the worker thread after the last result has been recorded.
+     *
+     * @throws IllegalStateException
+     *             if the buffer is already completed
+     */
+    public void complete() throws IllegalStateException {
+        if (completed) {
+            throw new IllegalStateException("Buffer already completed");
+        }
+        completed = true;
+        parent.bufferCompleted();
+    }
+
+    boolean isCompleted() {
+        return completed;
+    }
+
+    void replay(final TestResultCollector collector) throws Exception {
+        for (final RecordedCall call : calls) {
+            call.replay(collector);
+        }
+        calls.clear();
+    }
+
+    private void record(final RecordedCall call) {
+        if (completed) {
+            throw new IllegalStateException("Buffer already completed");
+        }
+        calls.add(call);
+    }
+
+    private String recordStart(final int modelType, final RecordedCall call) {
+        record(call);
+        modelTypes.push(modelType);
+        return null;
+    }
+
+    private String recordEnd(final String testModelItemId, final int status, final RecordedCall call) {
+        if (modelTypes.isEmpty()) {
+            throw new IllegalStateException("No result structure started in buffer: " + testModelItemId);
+        }
+        record(call);
+        modelTypes.pop();
+        endedItems.put(testModelItemId, status);
+        return null;
+    }
+
+    @Override
+    @Deprecated
+    public IFile getAttachmentDir() {
+        return parent.getAttachmentDir();
+    }
+
+    @Override
+    @Deprecated
+    public IFile getResultFile() {
+        return parent.getResultFile();
+    }
+
+    @Override
+    public String getTestTaskResultId() {
+        return parent.getTestTaskResultId();
+    }
+
+    @Override
+    public String startTestTask(final String testTaskId, final long startTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        throw new IllegalStateException("Test Task results can not be recorded by a worker thread");
+    }
+
+    @Override
+    public String startTestModule(final String testModuleId, final long startTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        return recordStart(2, c -> c.startTestModule(testModuleId, startTimestamp));
+    }
+
+    @Override
+    public String startTestCase(final String testCaseId, final long startTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        return recordStart(3, c -> c.startTestCase(testCaseId, startTimestamp));
+    }
+
+    @Override
+    public String startTestStep(final String testStepId, final long startTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        return recordStart(4, c -> c.startTestStep(testStepId, startTimestamp));
+    }
+
+    @Override
+    public String startTestAssertion(final String testAssertionId, final long startTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        return recordStart(5, c -> c.startTestAssertion(testAssertionId, startTimestamp));
+    }
+
+    @Override
+    public String end(final String testModelItemId, final int status, final long stopTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        return recordEnd(testModelItemId, status, c -> c.end(testModelItemId, status, stopTimestamp));
+    }
+
+    /**
+     * The status is determined by the collector of the Test Task when the buffer is merged. Until then,
+     * {@link #status(String)} reports the item as {@link TestResultStatus#UNDEFINED}.
+     */
+    @Override
+    public String end(final String testModelItemId, final long stopTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        return recordEnd(testModelItemId, TestResultStatus.UNDEFINED.value(), c -> c.end(testModelItemId, stopTimestamp));
+    }
+
+    /**
+     * The check is deferred until the buffer is merged, this method therefore always returns {@code false}.
+     */
+    @Override
+    public boolean endWithSkippedIfTestCasesFailed(final String... testCaseIds)
+            throws IllegalArgumentException, IllegalStateException {
+        record(c -> c.endWithSkippedIfTestCasesFailed(testCaseIds));
+        return false;
+    }
+
+    @Override
+    public void addMessage(final String translationTemplateId) {
+        record(c -> c.addMessage(translationTemplateId));
+    }
+
+    @Override
+    public void addMessage(final String translationTemplateId, final Map<String, String> tokenValuePairs) {
+        final Map<String, String> copy = tokenValuePairs != null ? new LinkedHashMap<>(tokenValuePairs) : null;
+        record(c -> c.addMessage(translationTemplateId, copy));
+    }
+
+    @Override
+    public void addMessage(final String translationTemplateId, final String... tokensAndValues) {
+        record(c -> c.addMessage(translationTemplateId, tokensAndValues));
+    }
+
+    @Override
+    public int currentModelType() {
+        return modelTypes.isEmpty() ? baseModelType : modelTypes.peek();
+    }
+
+    @Override
+    public TestResultStatus status(final String testModelItemId) throws IllegalArgumentException {
+        final Integer status = endedItems.get(testModelItemId);
+        if (status != null) {
+            return TestResultStatus.valueOf(status);
+        }
+        return parent.delegateStatus(testModelItemId);
+    }
+
+    @Override
+    public boolean statusEqualsAny(final String testModelItemId, final String... testResultStatus)
+            throws IllegalArgumentException {
+        final Integer status = endedItems.get(testModelItemId);
+        if (status != null) {
+            final String statusStr = TestResultStatus.toString(status);
+            for (final String s : testResultStatus) {
+                if (statusStr.equals(s)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return parent.delegateStatusEqualsAny(testModelItemId, testResultStatus);
+    }
+
+    /**
+     * Messages that exceed the error limit are discarded by the collector of the Test Task during the merge.
+     */
+    @Override
+    public boolean isErrorLimitExceeded() {
+        return false;
+    }
+
+    /**
+     * The file is marked when the buffer is merged, it must not be deleted before.
+     */
+    @Override
+    public String markAttachment(final String fileName, final String label, final String encoding, final String mimeType,
+            final String type) {
+        record(c -> c.markAttachment(fileName, label, encoding, mimeType, type));
+        return null;
+    }
+
+    /**
+     * The content of the reader is read into memory and saved when the buffer is merged.
+     */
+    @Override
+    public String saveAttachment(final Reader reader, final String label, final String mimeType, final String type)
+            throws IOException {
+        final StringWriter content = new StringWriter();
+        reader.transferTo(content);
+        record(c -> c.saveAttachment(new StringReader(content.toString()), label, mimeType, type));
+        return null;
+    }
+
+    /**
+     * The content of the stream is read into memory and saved when the buffer is merged.
+     */
+    @Override
+    public String saveAttachment(final InputStream inputStream, final String label, final String mimeType,
+            final String type) throws IOException {
+        final byte[] content = inputStream.readAllBytes();
+        record(c -> c.saveAttachment(new ByteArrayInputStream(content), label, mimeType, type));
+        return null;
+    }
+
+    @Override
+    public String saveAttachment(final String content, final String label, final String mimeType, final String type) {
+        record(c -> c.saveAttachment(content, label, mimeType, type));
+        return null;
+    }
+
+    @Override
+    public File getTempDir() {
+        return parent.getTempDir();
+    }
+
+    @Override
+    public void internalError(final String translationTemplateId, final Map<String, String> tokenValuePairs,
+            final Throwable e) {
+        parent.internalError(translationTemplateId, tokenValuePairs, e);
+    }
+
+    @Override
+    public void internalError(final Throwable e) {
+        parent.internalError(e);
+    }
+
+    @Override
+    public String internalError(final String errorMessage, final byte[] bytes, final String mimeType) {
+        return parent.internalError(errorMessage, bytes, mimeType);
+    }
+
+    @Override
+    public TestRunLogger getLogger() {
+        return parent.getLogger();
+    }
+
+    @Override
+    public void registerTestTaskEndListener(final TestTaskEndListener listener) {
+        parent.registerTestTaskEndListener(listener);
+    }
+
+    @Override
+    public void release() {
+        // released by the parent collector
+    }
+}
@@ -43,6 +43,7 @@ import de.interactive_instruments.properties.PropertyHolder;
 final class ComponentContainer implements Releasable {
     private final File componentJar;
     private String id;
+    private BulkheadDefinition bulkhead;
 
     private Class<?> clasz;
     private TestDriver testDriver;
@@ -85,7 +86,11 @@ final class ComponentContainer implements Releasable {
                     final Class clasz = cl.loadClass(className);
                     final Annotation a = clasz.getAnnotation(ComponentInitializer.class);
                     if (a != null) {
-                        this.id = ((ComponentInitializer) a).id();
+                        final ComponentInitializer initializer = (ComponentInitializer) a;
+                        this.id = initializer.id();
+                        this.bulkhead = new BulkheadDefinition(
+                                initializer.bulkhead().isEmpty() ? this.id : initializer.bulkhead(),
+                                initializer.bulkheadLimit());
                         testDriverInitializerClass = clasz;
                         break;
                     }
@@ -146,6 +151,10 @@ final class ComponentContainer implements Releasable {
         return id;
     }
 
+    BulkheadDefinition getBulkhead() {
+        return bulkhead;
+    }
+
     ComponentInfo getInfo() {
         return this.testDriver == null ? null : this.testDriver.getInfo();
     }
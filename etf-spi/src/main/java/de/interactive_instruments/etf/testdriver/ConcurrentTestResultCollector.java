@@ -0,0 +1,512 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.interactive_instruments.IFile;
+import de.interactive_instruments.etf.dal.dto.result.TestResultStatus;
+
+/**
+ * A TestResultCollector that enables a test driver to evaluate independent Test Cases or Test Assertions on several
+ * threads while reporting into the single collector of the Test Task.
+ *
+ * Calls from the thread that drives the Test Task are passed to the wrapped collector. Before work is handed over to a
+ * worker thread, a {@link BufferedTestResultCollector} must be reserved in test model order, either explicitly with
+ * {@link #newBuffer()} or implicitly with {@link #submit(ExecutorService, Callable)}. Each worker records its results
+ * into its own buffer. Completed buffers are merged into the wrapped collector in the order of their reservation, so
+ * the result is the same as if the Test Cases had been executed one after another.
+ *
+ * Result structure calls of the driving thread wait until all reserved buffers have been merged.
+ *
+ * This collector is an opt-in SPI: the Test Task collectors of the framework are not wrapped automatically. A test
+ * driver that evaluates Test Cases concurrently wraps the collector of its Test Task and submits the work with
+ * {@link #submit(ExecutorService, Callable)}. Attachments saved by worker threads are recorded in the buffer and saved
+ * when the buffer is merged, see {@link BufferedTestResultCollector}.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class ConcurrentTestResultCollector implements TestResultCollector {
+
+    private final static Logger logger = LoggerFactory.getLogger(ConcurrentTestResultCollector.class);
+    private final static long ABANDONED_CHECK_INTERVAL_MS = 1000;
+
+    private final TestResultCollector delegate;
+    private final Deque<BufferedTestResultCollector> reserved = new ArrayDeque<>();
+    private final ThreadLocal<BufferedTestResultCollector> workerBuffer = new ThreadLocal<>();
+    // submitted work that has not been started yet
+    private final Map<BufferedTestResultCollector, BufferedTask<?>> pending = new IdentityHashMap<>();
+    private Exception mergeException;
+
+    public ConcurrentTestResultCollector(final TestResultCollector delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Records the results of the work in the reserved buffer. The buffer is completed when the work returns, or if the
+     * task is cancelled or abandoned by its executor before the work has been started.
+     */
+    private final class BufferedTask<V> extends FutureTask<V> {
+        private final BufferedTestResultCollector buffer;
+        private final ExecutorService executor;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+        private BufferedTask(final Callable<V> work, final BufferedTestResultCollector buffer,
+                final ExecutorService executor) {
+            super(work);
+            this.buffer = buffer;
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            started(buffer);
+            workerBuffer.set(buffer);
+            try {
+                super.run();
+            } finally {
+                workerBuffer.remove();
+                buffer.complete();
+            }
+        }
+
+        @Override
+        protected void done() {
+            // not started: the empty buffer would block the merge of all following buffers
+            if (claimed.compareAndSet(false, true)) {
+                started(buffer);
+                buffer.complete();
+            }
+        }
+
+        /**
+         * A terminated executor will not start the task anymore, for instance after shutdownNow()
+         */
+        private boolean isAbandoned() {
+            return executor.isTerminated() && !claimed.get();
+        }
+    }
+
+    /**
+     * Reserves a buffer for results that are recorded by a worker thread. Buffers must be reserved in test model order
+     * by the thread that drives the Test Task.
+     *
+     * @return new buffer
+     */
+    public synchronized BufferedTestResultCollector newBuffer() {
+        final BufferedTestResultCollector buffer = new BufferedTestResultCollector(this, delegate.currentModelType());
+        reserved.addLast(buffer);
+        return buffer;
+    }
+
+    /**
+     * Reserves a buffer and executes the Callable with the executor. While the Callable is executed, all calls to this
+     * collector from the worker thread are recorded in the reserved buffer. The buffer is completed after the Callable
+     * returned, or if the Future is cancelled or the executor terminates before the Callable has been started.
+     *
+     * @param executor
+     *            executor for the worker
+     * @param work
+     *            Callable that records results into this collector
+     * @param <V>
+     *            result type of the Callable
+     *
+     * @return Future of the Callable
+     *
+     * @throws RejectedExecutionException
+     *             if the executor does not accept the Callable. The reserved buffer is released.
+     */
+    public <V> Future<V> submit(final ExecutorService executor, final Callable<V> work) {
+        final BufferedTestResultCollector buffer = newBuffer();
+        final BufferedTask<V> task = new BufferedTask<>(work, buffer, executor);
+        synchronized (this) {
+            pending.put(buffer, task);
+        }
+        try {
+            executor.execute(task);
+        } catch (final RejectedExecutionException e) {
+            task.cancel(false);
+            throw e;
+        }
+        return task;
+    }
+
+    private synchronized void started(final BufferedTestResultCollector buffer) {
+        pending.remove(buffer);
+    }
+
+    /**
+     * Waits for the merge of the next buffer. Tasks that have been abandoned by their executor are cancelled, so that
+     * their buffers do not block the merge.
+     */
+    private void awaitNextMerge() throws InterruptedException {
+        for (final BufferedTask<?> task : pending.values().toArray(new BufferedTask<?>[0])) {
+            if (task.isAbandoned()) {
+                task.cancel(false);
+            }
+        }
+        if (!reserved.isEmpty()) {
+            wait(ABANDONED_CHECK_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Blocks until all reserved buffers have been merged into the wrapped collector
+     *
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting
+     */
+    public synchronized void awaitMerged() throws InterruptedException {
+        while (!reserved.isEmpty()) {
+            awaitNextMerge();
+        }
+    }
+
+    /**
+     * Called by a buffer after the worker finished recording. Merges all completed buffers from the head of the
+     * reservation queue.
+     */
+    synchronized void bufferCompleted() {
+        while (!reserved.isEmpty() && reserved.getFirst().isCompleted()) {
+            final BufferedTestResultCollector buffer = reserved.removeFirst();
+            if (mergeException == null) {
+                try {
+                    buffer.replay(delegate);
+                } catch (final Exception e) {
+                    logger.error("Failed to merge buffered results ", e);
+                    mergeException = e;
+                    delegate.internalError(e);
+                }
+            }
+        }
+        notifyAll();
+    }
+
+    synchronized TestResultStatus delegateStatus(final String testModelItemId) {
+        return delegate.status(testModelItemId);
+    }
+
+    synchronized boolean delegateStatusEqualsAny(final String testModelItemId, final String... testResultStatus) {
+        return delegate.statusEqualsAny(testModelItemId, testResultStatus);
+    }
+
+    private TestResultCollector target() {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer;
+        }
+        // the driving thread must wait until all results of the worker threads are merged
+        while (!reserved.isEmpty()) {
+            try {
+                awaitNextMerge();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for buffered results", e);
+            }
+        }
+        if (mergeException != null) {
+            throw new IllegalStateException("Merging buffered results failed", mergeException);
+        }
+        return delegate;
+    }
+
+    @Override
+    @Deprecated
+    public IFile getAttachmentDir() {
+        return delegate.getAttachmentDir();
+    }
+
+    @Override
+    @Deprecated
+    public IFile getResultFile() {
+        return delegate.getResultFile();
+    }
+
+    @Override
+    public String getTestTaskResultId() {
+        return delegate.getTestTaskResultId();
+    }
+
+    @Override
+    public synchronized String startTestTask(final String testTaskId, final long startTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        return target().startTestTask(testTaskId, startTimestamp);
+    }
+
+    @Override
+    public String startTestModule(final String testModuleId, final long startTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.startTestModule(testModuleId, startTimestamp);
+        }
+        synchronized (this) {
+            return target().startTestModule(testModuleId, startTimestamp);
+        }
+    }
+
+    @Override
+    public String startTestCase(final String testCaseId, final long startTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.startTestCase(testCaseId, startTimestamp);
+        }
+        synchronized (this) {
+            return target().startTestCase(testCaseId, startTimestamp);
+        }
+    }
+
+    @Override
+    public String startTestStep(final String testStepId, final long startTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.startTestStep(testStepId, startTimestamp);
+        }
+        synchronized (this) {
+            return target().startTestStep(testStepId, startTimestamp);
+        }
+    }
+
+    @Override
+    public String startTestAssertion(final String testAssertionId, final long startTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.startTestAssertion(testAssertionId, startTimestamp);
+        }
+        synchronized (this) {
+            return target().startTestAssertion(testAssertionId, startTimestamp);
+        }
+    }
+
+    @Override
+    public String end(final String testModelItemId, final int status, final long stopTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.end(testModelItemId, status, stopTimestamp);
+        }
+        synchronized (this) {
+            return target().end(testModelItemId, status, stopTimestamp);
+        }
+    }
+
+    @Override
+    public String end(final String testModelItemId, final long stopTimestamp)
+            throws IllegalArgumentException, IllegalStateException {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.end(testModelItemId, stopTimestamp);
+        }
+        synchronized (this) {
+            return target().end(testModelItemId, stopTimestamp);
+        }
+    }
+
+    @Override
+    public boolean endWithSkippedIfTestCasesFailed(final String... testCaseIds)
+            throws IllegalArgumentException, IllegalStateException {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.endWithSkippedIfTestCasesFailed(testCaseIds);
+        }
+        synchronized (this) {
+            return target().endWithSkippedIfTestCasesFailed(testCaseIds);
+        }
+    }
+
+    @Override
+    public void addMessage(final String translationTemplateId) {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            buffer.addMessage(translationTemplateId);
+        } else {
+            synchronized (this) {
+                target().addMessage(translationTemplateId);
+            }
+        }
+    }
+
+    @Override
+    public void addMessage(final String translationTemplateId, final Map<String, String> tokenValuePairs) {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            buffer.addMessage(translationTemplateId, tokenValuePairs);
+        } else {
+            synchronized (this) {
+                target().addMessage(translationTemplateId, tokenValuePairs);
+            }
+        }
+    }
+
+    @Override
+    public void addMessage(final String translationTemplateId, final String... tokensAndValues) {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            buffer.addMessage(translationTemplateId, tokensAndValues);
+        } else {
+            synchronized (this) {
+                target().addMessage(translationTemplateId, tokensAndValues);
+            }
+        }
+    }
+
+    @Override
+    public int currentModelType() {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.currentModelType();
+        }
+        synchronized (this) {
+            return delegate.currentModelType();
+        }
+    }
+
+    @Override
+    public TestResultStatus status(final String testModelItemId) throws IllegalArgumentException {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.status(testModelItemId);
+        }
+        return delegateStatus(testModelItemId);
+    }
+
+    @Override
+    public boolean statusEqualsAny(final String testModelItemId, final String... testResultStatus)
+            throws IllegalArgumentException {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.statusEqualsAny(testModelItemId, testResultStatus);
+        }
+        return delegateStatusEqualsAny(testModelItemId, testResultStatus);
+    }
+
+    @Override
+    public boolean isErrorLimitExceeded() {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.isErrorLimitExceeded();
+        }
+        synchronized (this) {
+            return delegate.isErrorLimitExceeded();
+        }
+    }
+
+    @Override
+    public String markAttachment(final String fileName, final String label, final String encoding, final String mimeType,
+            final String type) throws IOException {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.markAttachment(fileName, label, encoding, mimeType, type);
+        }
+        synchronized (this) {
+            return target().markAttachment(fileName, label, encoding, mimeType, type);
+        }
+    }
+
+    @Override
+    public String saveAttachment(final Reader reader, final String label, final String mimeType, final String type)
+            throws IOException {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.saveAttachment(reader, label, mimeType, type);
+        }
+        synchronized (this) {
+            return target().saveAttachment(reader, label, mimeType, type);
+        }
+    }
+
+    @Override
+    public String saveAttachment(final InputStream inputStream, final String label, final String mimeType,
+            final String type) throws IOException {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.saveAttachment(inputStream, label, mimeType, type);
+        }
+        synchronized (this) {
+            return target().saveAttachment(inputStream, label, mimeType, type);
+        }
+    }
+
+    @Override
+    public String saveAttachment(final String content, final String label, final String mimeType, final String type)
+            throws IOException {
+        final BufferedTestResultCollector buffer = workerBuffer.get();
+        if (buffer != null) {
+            return buffer.saveAttachment(content, label, mimeType, type);
+        }
+        synchronized (this) {
+            return target().saveAttachment(content, label, mimeType, type);
+        }
+    }
+
+    @Override
+    public File getTempDir() {
+        return delegate.getTempDir();
+    }
+
+    @Override
+    public synchronized void internalError(final String translationTemplateId, final Map<String, String> tokenValuePairs,
+            final Throwable e) {
+        delegate.internalError(translationTemplateId, tokenValuePairs, e);
+    }
+
+    @Override
+    public synchronized void internalError(final Throwable e) {
+        delegate.internalError(e);
+    }
+
+    @Override
+    public synchronized String internalError(final String errorMessage, final byte[] bytes, final String mimeType) {
+        return delegate.internalError(errorMessage, bytes, mimeType);
+    }
+
+    @Override
+    public TestRunLogger getLogger() {
+        return delegate.getLogger();
+    }
+
+    @Override
+    public void registerTestTaskEndListener(final TestTaskEndListener listener) {
+        delegate.registerTestTaskEndListener(listener);
+    }
+
+    @Override
+    public void release() {
+        delegate.release();
+    }
+}
@@ -40,6 +40,7 @@ import de.interactive_instruments.etf.model.*;
 import de.interactive_instruments.exceptions.InitializationException;
 import de.interactive_instruments.exceptions.ObjectWithIdNotFoundException;
 import de.interactive_instruments.exceptions.config.ConfigurationException;
+import de.interactive_instruments.exceptions.config.InvalidPropertyException;
 import de.interactive_instruments.properties.ConfigProperties;
 import de.interactive_instruments.properties.ConfigPropertyHolder;
 
@@ -50,6 +51,22 @@ import de.interactive_instruments.properties.ConfigPropertyHolder;
  */
 public class DefaultTestDriverManager implements TestDriverManager {
 
+    /**
+     * Maximum number of independent Test Tasks of a Test Run that are executed concurrently
+     */
+    public static final String ETF_TESTRUN_MAX_PARALLEL_TASKS_PK = ETF_PK_PREFIX + "testruns.tasks.parallel.max";
+
+    /**
+     * Threads that execute Test Runs and Test Tasks: platform, virtual or auto, see {@link TaskThreads}
+     */
+    public static final String ETF_TESTRUN_THREADS_PK = TaskThreads.CONFIG_PROPERTY;
+
+    /**
+     * Minimum size in bytes of a Test Run log that is compressed after the Test Run, negative to disable, see
+     * {@link TestRunLogArchive}
+     */
+    public static final String ETF_TESTRUN_LOG_ARCHIVE_MIN_SIZE_PK = ETF_PK_PREFIX + "testruns.logs.archive.min";
+
     final private ConfigProperties configProperties = new ConfigProperties(ETF_DATA_STORAGE_NAME, ETF_TESTDRIVERS_DIR,
             ETF_ATTACHMENT_DIR);
     protected TestDriverLoader loader;
@@ -62,6 +79,11 @@ public class DefaultTestDriverManager implements TestDriverManager {
         return loader.getTestDrivers().stream().map(TestDriver::getInfo).collect(Collectors.toList());
     }
 
+    @Override
+    public BulkheadDefinition getBulkhead(final EID testDriverId) {
+        return loader.getBulkhead(testDriverId.getId());
+    }
+
     @Override
     public void loadAll() throws ComponentLoadingException, ConfigurationException {
         loader.load();
@@ -122,6 +144,33 @@ public class DefaultTestDriverManager implements TestDriverManager {
         initialized = false;
     }
 
+    private int getMaxParallelTasks() {
+        final int defaultMaxParallelTasks = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        try {
+            return configProperties.getPropertyOrDefaultAsInt(ETF_TESTRUN_MAX_PARALLEL_TASKS_PK, defaultMaxParallelTasks);
+        } catch (final InvalidPropertyException e) {
+            logger.warn("Invalid property {}, using default value {}", ETF_TESTRUN_MAX_PARALLEL_TASKS_PK,
+                    defaultMaxParallelTasks);
+            return defaultMaxParallelTasks;
+        }
+    }
+
+    private long getLogArchiveMinSize() {
+        final long defaultMinSize = 1048576;
+        try {
+            return Long.parseLong(configProperties.getPropertyOrDefault(
+                    ETF_TESTRUN_LOG_ARCHIVE_MIN_SIZE_PK, String.valueOf(defaultMinSize)).trim());
+        } catch (final NumberFormatException e) {
+            logger.warn("Invalid property {}, using default value {}", ETF_TESTRUN_LOG_ARCHIVE_MIN_SIZE_PK,
+                    defaultMinSize);
+            return defaultMinSize;
+        }
+    }
+
+    private TaskThreads getTaskThreads() {
+        return TaskThreads.configured(configProperties.getPropertyOrDefault(ETF_TESTRUN_THREADS_PK, TaskThreads.PLATFORM));
+    }
+
     private static void addUnique(final TestTaskDto newTestTask, final List<TestTaskDto> reorganizedTestTasks) {
         for (final TestTaskDto testTask : reorganizedTestTasks) {
             if (testTask.getTestObject().getId().equals(newTestTask.getTestObject().getId()) &&
@@ -153,7 +202,7 @@ public class DefaultTestDriverManager implements TestDriverManager {
             tmpDir.mkdir();
 
             final TestRunLogger testRunLogger = new DefaultTestRunLogger(
-                    testRunAttachmentDir, "tr-" + testRunDto.getId().getId());
+                    testRunAttachmentDir, "tr-" + testRunDto.getId().getId(), getLogArchiveMinSize());
             final TestRun testRun = new DefaultTestRun(testRunDto, testRunLogger, testRunAttachmentDir);
             testRunLogger.info("Preparing Test Run {} (initiated {})", testRun.getLabel(), testRunDto.getStartTimestamp());
             testRunLogger.info("Resolving Executable Test Suite dependencies");
@@ -174,6 +223,7 @@ public class DefaultTestDriverManager implements TestDriverManager {
                     resolvedEtss.asCollection());
             // does not include the base ETS
             final List<ExecutableTestSuiteDto> sortedEts = dependencyGraph.sortIgnoreCylce();
+            final Map<ExecutableTestSuiteDto, Integer> etsLevels = dependencyGraph.levels(sortedEts);
             for (final ExecutableTestSuiteDto ets : sortedEts) {
                 try {
                     ets.ensureBasicValidity();
@@ -204,6 +254,7 @@ public class DefaultTestDriverManager implements TestDriverManager {
                 testRunLogger.info("Preparing {} Test Task:", testRunDto.getTestTasks().size());
             }
             final List<TestTask> testTasks = new ArrayList<>();
+            final int[] testTaskLevels = new int[testRunDto.getTestTasks().size()];
             int counter = 0;
             for (final TestTaskDto testTaskDto : testRunDto.getTestTasks()) {
                 testRunLogger.info(" TestTask {} ({})", ++counter, testTaskDto.getId());
@@ -220,13 +271,15 @@ public class DefaultTestDriverManager implements TestDriverManager {
                                 testTaskDto.getExecutableTestSuite().getTestDriver(), "Test Driver unloaded during startup")
                                 .getId().toString());
                 final TestTask testTask = tD.createTestTask(testTaskDto);
+                testTaskLevels[counter - 1] = etsLevels.getOrDefault(testTaskDto.getExecutableTestSuite(), 0);
 
                 testTask.setResulPersistor(new DefaultTestTaskPersistor(testTaskDto,
                         collectorFactory.createTestResultCollector(testRunLogger, testTaskDto),
                         (StreamWriteDao) DataStorageRegistry.instance().get("default").getDao(TestTaskResultDto.class)));
                 testTasks.add(testTask);
             }
-            ((DefaultTestRun) testRun).setTestTasks(testTasks);
+            ((DefaultTestRun) testRun).setTestTasks(testTasks, testTaskLevels, getMaxParallelTasks());
+            ((DefaultTestRun) testRun).setTaskThreads(getTaskThreads());
             testRunLogger.info("Test Tasks prepared and ready to be executed. Waiting for the scheduler to start.");
             return testRun;
         } catch (TestTaskInitializationException | IncompleteDtoException | ComponentNotLoadedException | ConfigurationException
@@ -18,13 +18,13 @@ package de.interactive_instruments.etf.testdriver;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.*;
 
 import org.slf4j.LoggerFactory;
 
 import de.interactive_instruments.IFile;
 import de.interactive_instruments.LogUtils;
+import de.interactive_instruments.Releasable;
 import de.interactive_instruments.SUtils;
 import de.interactive_instruments.TimeUtils;
 import de.interactive_instruments.etf.dal.dto.run.TestRunDto;
@@ -45,9 +45,14 @@ final class DefaultTestRun implements TestRun, TaskProgress {
     private STATE oldState;
     private TestRunLogger testRunLogger;
     private List<TestTask> testTasks;
-    private List<TestRunEventListener> eventListeners = new ArrayList<>(3);
-    private final static long waitTime = 1500;
-    private int currentRunIndex = 0;
+    // Test Tasks grouped by dependency level, Test Tasks of one level are independent
+    private List<List<TestTask>> taskLevels;
+    private int maxParallelTasks = 1;
+    private ExecutorService taskExecutor;
+    private TaskThreads taskThreads = TaskThreads.platform();
+    private final Set<TestTask> finishedTasks = ConcurrentHashMap.newKeySet();
+    // listeners may be added by other threads, for instance by web clients that watch the progress
+    private final List<TestRunEventListener> eventListeners = new CopyOnWriteArrayList<>();
     private boolean initialized = false;
     private Instant startInstant;
     private Instant stopInstant;
@@ -96,7 +101,33 @@ final class DefaultTestRun implements TestRun, TaskProgress {
     }
 
     void setTestTasks(final List<TestTask> testTasks) {
+        final int[] levels = new int[testTasks.size()];
+        Arrays.setAll(levels, i -> i);
+        setTestTasks(testTasks, levels, 1);
+    }
+
+    /**
+     * Set the Test Tasks and their dependency levels. Test Tasks are executed level by level, Test Tasks of the same
+     * level are executed concurrently.
+     *
+     * @param testTasks
+     *            Test Tasks in the order of the Test Run
+     * @param levels
+     *            dependency level of each Test Task, see {@link DependencyGraph#levels(List)}
+     * @param maxParallelTasks
+     *            maximum number of Test Tasks that are executed concurrently
+     */
+    void setTestTasks(final List<TestTask> testTasks, final int[] levels, final int maxParallelTasks) {
+        if (testTasks.size() != levels.length) {
+            throw new IllegalArgumentException("Number of Test Tasks and levels differ");
+        }
+        final SortedMap<Integer, List<TestTask>> tasksByLevel = new TreeMap<>();
+        for (int i = 0; i < levels.length; i++) {
+            tasksByLevel.computeIfAbsent(levels[i], l -> new ArrayList<>()).add(testTasks.get(i));
+        }
         this.testTasks = testTasks;
+        this.taskLevels = new ArrayList<>(tasksByLevel.values());
+        this.maxParallelTasks = Math.max(1, maxParallelTasks);
     }
 
     @Override
@@ -105,43 +136,100 @@ final class DefaultTestRun implements TestRun, TaskProgress {
         if (!SUtils.isNullOrEmpty(this.testRunDto.getDefaultLang())) {
             new ThreadLocal<Locale>().set(new Locale(this.testRunDto.getDefaultLang()));
         }
-        for (; currentRunIndex < testTasks.size(); currentRunIndex++) {
-            fireTestTaskInitializing(testTasks.get(currentRunIndex));
-            testTasks.get(currentRunIndex).init();
-            fireTestTaskRunning(testTasks.get(currentRunIndex));
-            testTasks.get(currentRunIndex).run();
-            fireTestTaskCompleted(testTasks.get(currentRunIndex));
-            testTasks.get(currentRunIndex).release();
+        for (final List<TestTask> level : taskLevels) {
+            if (level.size() == 1 || maxParallelTasks == 1) {
+                for (final TestTask testTask : level) {
+                    runTestTask(testTask);
+                }
+            } else {
+                runConcurrently(level);
+            }
         }
+        testRunLogger.flush();
         fireCompleted();
     }
 
-    private void fireTestTaskCompleted(final TestTask testTask) {
+    private void runTestTask(final TestTask testTask) throws Exception {
+        fireTestTaskInitializing(testTask);
+        testTask.init();
+        fireTestTaskRunning(testTask);
+        testTask.run();
+        testRunLogger.flush();
+        fireTestTaskCompleted(testTask);
+        testTask.release();
+        finishedTasks.add(testTask);
+    }
+
+    /**
+     * Runs independent Test Tasks on the executor of this Test Run and waits until all Test Tasks finished. If one
+     * Test Task throws an exception or the Test Run thread is interrupted, the remaining Test Tasks are interrupted.
+     */
+    private void runConcurrently(final List<TestTask> level) throws Exception {
+        final CompletionService<TestTask> completionService = new ExecutorCompletionService<>(getTaskExecutor());
+        final List<Future<TestTask>> futures = new ArrayList<>(level.size());
+        for (final TestTask testTask : level) {
+            futures.add(completionService.submit(() -> {
+                runTestTask(testTask);
+                return testTask;
+            }));
+        }
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                completionService.take().get();
+            }
+        } catch (final ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        } catch (final InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw e;
+        }
+    }
+
+    private synchronized ExecutorService getTaskExecutor() {
+        if (taskExecutor == null) {
+            taskExecutor = taskThreads.newExecutor(maxParallelTasks, "TestRun." + getId() + ".");
+        }
+        return taskExecutor;
+    }
+
+    private synchronized void fireTestTaskCompleted(final TestTask testTask) {
         for (final TestRunEventListener eventListener : eventListeners) {
             eventListener.taskStateChangedEvent(testTask, STATE.COMPLETED, STATE.RUNNING);
         }
 
     }
 
-    private void fireTestTaskRunning(final TestTask testTask) {
+    private synchronized void fireTestTaskRunning(final TestTask testTask) {
         for (final TestRunEventListener eventListener : eventListeners) {
             eventListener.taskStateChangedEvent(testTask, STATE.RUNNING, STATE.INITIALIZED);
         }
     }
 
-    private void fireTestTaskInitializing(final TestTask testTask) {
+    private synchronized void fireTestTaskInitializing(final TestTask testTask) {
         for (final TestRunEventListener eventListener : eventListeners) {
             eventListener.taskStateChangedEvent(testTask, STATE.INITIALIZING, STATE.CREATED);
         }
     }
 
+    /**
+     * Set the threads that execute concurrent Test Tasks
+     *
+     * @param taskThreads
+     *            creates the threads of the Test Task executor
+     */
+    void setTaskThreads(final TaskThreads taskThreads) {
+        this.taskThreads = Objects.requireNonNull(taskThreads);
+    }
+
     @Override
     public final TestRunDto call() throws Exception {
         Thread.currentThread().setName("TestRun." + getId());
         try {
-            testRunLogger.info("Starting TestRun." + getId() + " at " +
-                    TimeUtils.dateToIsoString(new Date(System.currentTimeMillis() + waitTime)));
-            Thread.sleep(waitTime);
+            testRunLogger.info("Starting TestRun." + getId() + " at " + TimeUtils.dateToIsoString(new Date()));
             start();
             return testRunDto.createCopy();
         } catch (Exception e) {
@@ -172,11 +260,13 @@ final class DefaultTestRun implements TestRun, TaskProgress {
     }
 
     protected void doCancel() throws InvalidStateTransitionException {
-        for (int i = currentRunIndex; i < testTasks.size(); i++) {
-            try {
-                testTasks.get(i).cancel();
-            } catch (InvalidStateTransitionException e) {
-                ExcUtils.suppress(e);
+        for (final TestTask testTask : testTasks) {
+            if (!finishedTasks.contains(testTask)) {
+                try {
+                    testTask.cancel();
+                } catch (InvalidStateTransitionException e) {
+                    ExcUtils.suppress(e);
+                }
             }
         }
     }
@@ -215,6 +305,11 @@ final class DefaultTestRun implements TestRun, TaskProgress {
         this.eventListeners.add(testRunEventListener);
     }
 
+    @Override
+    public void removeTestRunEventListener(final TestRunEventListener testRunEventListener) {
+        this.eventListeners.remove(testRunEventListener);
+    }
+
     @Override
     public TaskProgress getProgress() {
         return this;
@@ -239,16 +334,25 @@ final class DefaultTestRun implements TestRun, TaskProgress {
         } catch (final InvalidStateTransitionException e) {
             ExcUtils.suppress(e);
         }
-        for (int i = currentRunIndex; i < testTasks.size(); i++) {
+        synchronized (this) {
+            if (taskExecutor != null) {
+                taskExecutor.shutdownNow();
+                taskExecutor = null;
+            }
+        }
+        for (final TestTask testTask : testTasks) {
+            if (finishedTasks.contains(testTask)) {
+                continue;
+            }
             try {
-                if (testTasks.get(i).getState().isRunningOrInitializing()) {
-                    testTasks.get(i).cancel();
+                if (testTask.getState().isRunningOrInitializing()) {
+                    testTask.cancel();
                 }
             } catch (InvalidStateTransitionException e) {
                 ExcUtils.suppress(e);
             }
             try {
-                testTasks.get(i).release();
+                testTask.release();
             } catch (Exception e) {
                 ExcUtils.suppress(e);
             }
@@ -256,7 +360,10 @@ final class DefaultTestRun implements TestRun, TaskProgress {
         this.future = null;
         this.testTasks = Collections.EMPTY_LIST;
         this.testRunDto.setTestTasks(Collections.emptyList());
-        this.eventListeners = null;
+        this.eventListeners.clear();
+        if (this.testRunLogger instanceof Releasable) {
+            ((Releasable) this.testRunLogger).release();
+        }
         this.testRunLogger = null;
         Thread.currentThread().setContextClassLoader(null);
     }
@@ -373,12 +480,12 @@ final class DefaultTestRun implements TestRun, TaskProgress {
 
     @Override
     public long getMaxSteps() {
-        return Math.max(testTasks.size(), currentRunIndex);
+        return Math.max(testTasks.size(), finishedTasks.size());
     }
 
     @Override
     public long getCurrentStepsCompleted() {
-        return currentRunIndex;
+        return finishedTasks.size();
     }
 
     @Override
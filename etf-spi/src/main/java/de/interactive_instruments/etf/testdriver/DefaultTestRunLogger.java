@@ -16,11 +16,21 @@
 package de.interactive_instruments.etf.testdriver;
 
 import java.io.*;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
 
 import org.slf4j.event.LoggingEvent;
 import org.slf4j.helpers.FormattingTuple;
@@ -29,10 +39,26 @@ import org.slf4j.helpers.MessageFormatter;
 import org.slf4j.spi.LocationAwareLogger;
 
 import de.interactive_instruments.IFile;
+import de.interactive_instruments.Releasable;
+import de.interactive_instruments.exceptions.ExcUtils;
 
 /**
  * Default Test Run Logger based on the slf4j SimpleLogger
  *
+ * The logger maintains a line offset index of the log file and keeps the most recent lines in memory, so that polling
+ * clients only pay for the lines they have not seen yet. The index is persisted as sidecar file on release, see
+ * {@link TestRunLogIndex}.
+ *
+ * Log calls only format the message and put it into a lock-free ring buffer. A single writer thread, shared by all
+ * Test Run loggers, writes the buffered messages in batches, after {@value #BATCH_SIZE} messages or
+ * {@value #FLUSH_INTERVAL_MS} ms. Readers do not wait for the writer thread, they only see the lines that have
+ * already been written and indexed. {@link #flush()} is a barrier that waits until all messages logged before are
+ * written, it is used at the end of a Test Task and of the Test Run. Registered {@link TestRunLogListener}s are
+ * notified by the writer thread after each written batch.
+ *
+ * Large logs are compressed after the release on a background thread, readers switch to the archive once it has been
+ * written.
+ *
  * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
  *
  *
@@ -48,14 +74,32 @@ import de.interactive_instruments.IFile;
  * @author C&eacute;drik LIME
  *
  */
-public class DefaultTestRunLogger extends MarkerIgnoringBase implements TestRunLogger {
+public class DefaultTestRunLogger extends MarkerIgnoringBase implements TestRunLogger, Releasable {
 
     private final String name;
     private final IFile logFile;
-    private final PrintStream logFileStream;
+    // only accessed by the writer thread
+    private final OutputStream logFileStream;
     private final int currentLogLevel = LOG_LEVEL_INFO;
     private transient String shortLogName = null;
 
+    private final LogRingBuffer<LogEntry> pending = new LogRingBuffer<>(RING_CAPACITY);
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+    private volatile boolean released;
+    // notified by the writer thread after a batch has been indexed
+    private final List<TestRunLogListener> logListeners = new CopyOnWriteArrayList<>();
+
+    // guarded by this
+    private final TestRunLogIndex index = new TestRunLogIndex();
+    private final ArrayDeque<String> tail = new ArrayDeque<>(TAIL_CAPACITY);
+
+    // Logs of at least this size are archived on release, negative to disable
+    private final long archiveMinSize;
+    // set after the log has been archived
+    private volatile TestRunLogArchive archive;
+    private volatile Future<?> archiving = CompletableFuture.completedFuture(null);
+
     private static final long START_TIME = System.currentTimeMillis();
     private static final int LOG_LEVEL_TRACE = LocationAwareLogger.TRACE_INT;
     private static final int LOG_LEVEL_DEBUG = LocationAwareLogger.DEBUG_INT;
@@ -65,19 +109,81 @@ public class DefaultTestRunLogger extends MarkerIgnoringBase implements TestRunL
 
     private static final boolean SHOW_DATE_TIME = true;
     private static final String DATE_TIME_FORMAT_STR = "dd.MM.yyyy HH:mm:ss";
-    private static final DateFormat DATE_FORMATTER = new SimpleDateFormat(DATE_TIME_FORMAT_STR);
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern(DATE_TIME_FORMAT_STR);
     private static final boolean SHOW_THREAD_NAME = false;
     private static final boolean SHOW_LOG_NAME = false;
     private static final boolean SHOW_SHORT_LOG_NAME = false;
     private static final boolean LEVEL_IN_BRACKETS = false;
     private static final String WARN_LEVEL_STRING = "WARN";
 
+    // Number of most recent lines that are served from memory
+    static final int TAIL_CAPACITY = 512;
+    private static final Pattern LINE_BREAK = Pattern.compile("\\r\\n|\\r|\\n");
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    // Log calls that can be buffered before callers have to wait for the writer thread
+    private static final int RING_CAPACITY = 1024;
+    // Number of buffered log calls that trigger an immediate write
+    private static final int BATCH_SIZE = 128;
+    // Maximum time a log call is buffered before it is written
+    private static final long FLUSH_INTERVAL_MS = 100;
+    private static final long BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int WRITE_BUFFER_SIZE = 65536;
+
+    // Single thread that writes the log files of all Test Runs
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "test-run-log-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Single thread that compresses the released logs, so that releasing a Test Run does not wait for the compression
+    private static final ExecutorService ARCHIVER = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "test-run-log-archiver");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private static final class LogEntry {
+        private final List<String> lines;
+        private final byte[] bytes;
+        private final int[] lineLengths;
+
+        private LogEntry(final List<String> lines) {
+            this.lines = lines;
+            this.lineLengths = new int[lines.size()];
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(64 * lineLengths.length);
+            for (int i = 0; i < lineLengths.length; i++) {
+                final byte[] line = lines.get(i).getBytes(StandardCharsets.UTF_8);
+                out.write(line, 0, line.length);
+                out.write(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+                lineLengths[i] = line.length + LINE_SEPARATOR.length;
+            }
+            this.bytes = out.toByteArray();
+        }
+    }
+
     public DefaultTestRunLogger(final IFile logDir, final String name) {
+        this(logDir, name, -1);
+    }
+
+    /**
+     * Create a logger that compresses the log on release
+     *
+     * @param logDir
+     *            log directory
+     * @param name
+     *            name of the log file
+     * @param archiveMinSize
+     *            minimum size in bytes of a log that is archived, see {@link TestRunLogArchive}. A negative value
+     *            disables the archiving.
+     */
+    public DefaultTestRunLogger(final IFile logDir, final String name, final long archiveMinSize) {
         this.name = name;
+        this.archiveMinSize = archiveMinSize;
         this.logFile = logDir.expandPath(name + ".log");
         try {
-            final FileOutputStream fos = new FileOutputStream(logFile);
-            this.logFileStream = new PrintStream(fos);
+            this.logFileStream = new BufferedOutputStream(new FileOutputStream(logFile), WRITE_BUFFER_SIZE);
         } catch (FileNotFoundException e) {
             throw new IllegalArgumentException("Can not open log path");
         }
@@ -89,36 +195,149 @@ public class DefaultTestRunLogger extends MarkerIgnoringBase implements TestRunL
     }
 
     @Override
-    public List<String> getLogMessages(final long firstMessagePos) {
-        final List<String> output = new ArrayList<>(48);
-        long skip = 0;
-        try (final BufferedReader br = new BufferedReader(new FileReader(logFile))) {
-            while (skip++ < firstMessagePos && br.readLine() != null) {
-                // skip lines
+    public List<String> getLogMessages(final long knownPosition) {
+        if (archive != null) {
+            return archive.getLogMessages(knownPosition);
+        }
+        final long firstMessagePos = Math.max(0, knownPosition);
+        final long from;
+        final long to;
+        final long lines;
+        synchronized (this) {
+            final int lineCount = index.getLineCount();
+            if (firstMessagePos >= lineCount) {
+                return new ArrayList<>(0);
             }
-            for (String line; (line = br.readLine()) != null;) {
-                output.add(line);
+            final int tailStart = lineCount - tail.size();
+            if (firstMessagePos >= tailStart) {
+                final List<String> output = new ArrayList<>((int) (lineCount - firstMessagePos));
+                final Iterator<String> it = tail.descendingIterator();
+                for (long i = lineCount - 1; i >= firstMessagePos; i--) {
+                    output.add(it.next());
+                }
+                Collections.reverse(output);
+                return output;
             }
+            from = index.getOffset(firstMessagePos);
+            to = index.getLength();
+            lines = lineCount - firstMessagePos;
+        }
+        try {
+            return TestRunLogIndex.readRange(logFile, from, to, lines);
         } catch (IOException e) {
+            if (archive != null) {
+                // archived in the meantime
+                return archive.getLogMessages(firstMessagePos);
+            }
             throw new IllegalArgumentException(e);
         }
-        return output;
     }
 
     @Override
     public void streamLogMessagesTo(final long position, final OutputStream outputStream) {
-        long skip = 0;
-        try (final BufferedReader br = new BufferedReader(new FileReader(logFile))) {
-            while (skip++ < position && br.readLine() != null) {}
-            for (String line; (line = br.readLine()) != null;) {
-                outputStream.write(line.getBytes());
-            }
-            outputStream.flush();
+        if (archive != null) {
+            archive.streamLogMessagesTo(position, outputStream);
+            return;
+        }
+        final long from;
+        final long to;
+        synchronized (this) {
+            from = index.getOffset(position);
+            to = index.getLength();
+        }
+        try {
+            TestRunLogIndex.transferTo(logFile, from, to, outputStream);
         } catch (IOException e) {
             throw new IllegalArgumentException(e);
         }
     }
 
+    @Override
+    public void addLogListener(final TestRunLogListener listener) {
+        if (!released) {
+            logListeners.add(listener);
+        }
+    }
+
+    @Override
+    public void removeLogListener(final TestRunLogListener listener) {
+        logListeners.remove(listener);
+    }
+
+    /**
+     * Waits until the writer thread has written all messages that were logged before
+     */
+    @Override
+    public void flush() {
+        if (!released) {
+            runOnWriter(this::drain);
+        }
+    }
+
+    /**
+     * Writes all pending messages, closes the log file and persists the line index as sidecar file. The log is
+     * archived in the background if it is at least as large as the configured minimum size.
+     */
+    @Override
+    public void release() {
+        synchronized (this) {
+            if (released) {
+                return;
+            }
+            released = true;
+        }
+        runOnWriter(() -> {
+            drain();
+            logListeners.clear();
+            try {
+                logFileStream.close();
+                synchronized (this) {
+                    index.store(logFile);
+                }
+            } catch (IOException e) {
+                ExcUtils.suppress(e);
+            }
+        });
+        if (archiveMinSize >= 0 && logFile.length() >= archiveMinSize) {
+            final TestRunLogIndex completeIndex;
+            synchronized (this) {
+                completeIndex = index;
+            }
+            if (completeIndex.getLength() == logFile.length()) {
+                archiving = ARCHIVER.submit(() -> archive(completeIndex));
+            }
+        }
+    }
+
+    private void archive(final TestRunLogIndex completeIndex) {
+        try {
+            // readers use the plain log file until the archive exists
+            archive = TestRunLogArchive.write(logFile, completeIndex);
+            TestRunLogArchive.deletePlainLog(logFile);
+        } catch (IOException e) {
+            ExcUtils.suppress(e);
+        }
+    }
+
+    /**
+     * Returns the background compression of the released log
+     *
+     * @return future that completes when the log has been archived or if it is not archived
+     */
+    Future<?> getArchiving() {
+        return archiving;
+    }
+
+    private static void runOnWriter(final Runnable runnable) {
+        try {
+            WRITER.submit(runnable).get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
+            ExcUtils.suppress(e);
+        }
+    }
+
     /**
      * This is our internal implementation for logging regular (non-parameterized) log messages.
      *
@@ -197,20 +416,90 @@ public class DefaultTestRunLogger extends MarkerIgnoringBase implements TestRunL
     }
 
     void write(StringBuilder buf, Throwable t) {
-        logFileStream.println(buf.toString());
+        if (released) {
+            return;
+        }
+        final List<String> lines;
+        if (t == null && buf.indexOf("\n") == -1 && buf.indexOf("\r") == -1) {
+            lines = Collections.singletonList(buf.toString());
+        } else {
+            lines = new ArrayList<>(Arrays.asList(LINE_BREAK.split(buf, -1)));
+        }
         if (t != null) {
-            t.printStackTrace(logFileStream);
+            final StringWriter stackTrace = new StringWriter();
+            t.printStackTrace(new PrintWriter(stackTrace));
+            // the stack trace ends with a line separator
+            final String[] traceLines = LINE_BREAK.split(stackTrace.getBuffer());
+            lines.addAll(Arrays.asList(traceLines));
+        }
+        final LogEntry entry = new LogEntry(lines);
+        while (!pending.offer(entry)) {
+            // full, wait for the writer thread
+            requestDrain();
+            LockSupport.parkNanos(BACKOFF_NANOS);
+            if (released) {
+                return;
+            }
+        }
+        if (pending.size() >= BATCH_SIZE) {
+            requestDrain();
+        } else if (drainScheduled.compareAndSet(false, true)) {
+            WRITER.schedule(this::drain, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
         }
-        logFileStream.flush();
     }
 
-    private String getFormattedDate() {
-        Date now = new Date();
-        String dateText;
-        synchronized (DATE_FORMATTER) {
-            dateText = DATE_FORMATTER.format(now);
+    private void requestDrain() {
+        if (drainRequested.compareAndSet(false, true)) {
+            WRITER.execute(this::drain);
         }
-        return dateText;
+    }
+
+    /**
+     * Writes a batch of pending messages to the log file and indexes the lines. Only called by the writer thread.
+     */
+    private void drain() {
+        // reset first, messages that are published afterwards schedule the next drain
+        drainScheduled.set(false);
+        drainRequested.set(false);
+        LogEntry entry = pending.poll();
+        if (entry == null) {
+            return;
+        }
+        final List<LogEntry> batch = new ArrayList<>(Math.max(16, pending.size() + 1));
+        try {
+            do {
+                logFileStream.write(entry.bytes);
+                batch.add(entry);
+            } while ((entry = pending.poll()) != null);
+            logFileStream.flush();
+        } catch (IOException e) {
+            ExcUtils.suppress(e);
+            return;
+        }
+        final int lineCount;
+        synchronized (this) {
+            for (final LogEntry written : batch) {
+                for (int i = 0; i < written.lineLengths.length; i++) {
+                    index.addLine(written.lineLengths[i]);
+                    if (tail.size() == TAIL_CAPACITY) {
+                        tail.removeFirst();
+                    }
+                    tail.addLast(written.lines.get(i));
+                }
+            }
+            lineCount = index.getLineCount();
+        }
+        for (final TestRunLogListener listener : logListeners) {
+            try {
+                listener.logMessagesWritten(lineCount);
+            } catch (final RuntimeException e) {
+                ExcUtils.suppress(e);
+            }
+        }
+    }
+
+    private String getFormattedDate() {
+        return DATE_FORMATTER.format(LocalDateTime.now());
     }
 
     private String computeShortName() {
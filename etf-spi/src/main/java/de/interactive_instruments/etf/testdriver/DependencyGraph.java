@@ -150,6 +150,36 @@ final public class DependencyGraph<T extends NestedDependencyHolder<T>> {
         return Collections.unmodifiableList(orderedResult);
     }
 
+    /**
+     * Assigns the nodes of a sorted list to levels of independent nodes.
+     *
+     * Level 0 contains the nodes that do not depend on other nodes of the list. A node in level n depends on at least
+     * one node in level n-1. The nodes of one level can be processed concurrently, after all nodes of the previous
+     * levels have been processed. Dependencies that are not in the list, i.e. nodes removed by
+     * {@link #sortIgnoreCylce()}, are ignored.
+     *
+     * @param sortedNodes
+     *            list returned by {@link #sort()} or {@link #sortIgnoreCylce()}
+     * @return nodes mapped to their level, in the order dependencies first
+     */
+    public Map<T, Integer> levels(final List<T> sortedNodes) {
+        final Map<T, Integer> levels = new LinkedHashMap<>();
+        for (int i = sortedNodes.size() - 1; i >= 0; i--) {
+            final T node = sortedNodes.get(i);
+            int level = 0;
+            if (dependencyNodes.containsKey(node)) {
+                for (final T dependency : edgesFrom(node)) {
+                    final Integer dependencyLevel = levels.get(dependency);
+                    if (dependencyLevel != null && dependencyLevel >= level) {
+                        level = dependencyLevel + 1;
+                    }
+                }
+            }
+            levels.put(node, level);
+        }
+        return levels;
+    }
+
     private DependencyGraph<T> reverseGraph() {
         final DependencyGraph<T> result = new DependencyGraph<T>();
         this.dependencyNodes.keySet().forEach(result::addNode);
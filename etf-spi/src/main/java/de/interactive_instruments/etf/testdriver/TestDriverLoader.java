@@ -186,6 +186,18 @@ final class TestDriverLoader implements Releasable {
         return this.driverContainer.get(id).getInfo();
     }
 
+    /**
+     * Returns the bulkhead declared by the Test Driver
+     *
+     * @param id
+     *            Test Driver id
+     * @return bulkhead definition or null if the Test Driver is unknown
+     */
+    public BulkheadDefinition getBulkhead(final String id) {
+        final ComponentContainer container = this.driverContainer.get(id);
+        return container != null ? container.getBulkhead() : null;
+    }
+
     public Collection<ComponentInfo> getInfo() {
         final ArrayList<ComponentInfo> i = new ArrayList();
         this.driverContainer.values().forEach(d -> {
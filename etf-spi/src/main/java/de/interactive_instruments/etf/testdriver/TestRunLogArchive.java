@@ -0,0 +1,358 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Block compressed archive of a completed Test Run log.
+ *
+ * The log is cut at line boundaries into blocks of about {@value #BLOCK_SIZE} bytes, each block is compressed as an
+ * independent gzip member. The archive is therefore a valid gzip file that can be decompressed with standard tools.
+ * A sidecar file holds the line index of the log and the compressed offset of each block, so that a read from a
+ * line position only decompresses the blocks from the block containing the line.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public final class TestRunLogArchive implements TestRunLogReader {
+
+    public static final String ARCHIVE_SUFFIX = ".gz";
+    static final int BLOCK_SIZE = 65536;
+
+    private static final int MAGIC = 0x45544642; // ETFB
+
+    private final File archiveFile;
+    private final TestRunLogIndex index;
+    // offsets of the blocks in the log
+    private final long[] blockOffsets;
+    // offsets of the blocks in the archive
+    private final long[] compressedOffsets;
+
+    private TestRunLogArchive(final File archiveFile, final TestRunLogIndex index, final long[] blockOffsets,
+            final long[] compressedOffsets) {
+        this.archiveFile = archiveFile;
+        this.index = index;
+        this.blockOffsets = blockOffsets;
+        this.compressedOffsets = compressedOffsets;
+    }
+
+    static File getArchiveFile(final File logFile) {
+        return new File(logFile.getPath() + ARCHIVE_SUFFIX);
+    }
+
+    /**
+     * Check if a log file has been archived
+     *
+     * @param logFile
+     *            path of the plain log file
+     * @return true if an archive exists
+     */
+    public static boolean isArchived(final File logFile) {
+        return getArchiveFile(logFile).exists() && TestRunLogIndex.getSidecarFile(getArchiveFile(logFile)).exists();
+    }
+
+    /**
+     * Compress a completed log file and delete the plain log file and its index
+     *
+     * @param logFile
+     *            completed log file
+     * @param index
+     *            index of the log file
+     * @return archive
+     * @throws IOException
+     *             if the archive can not be written, the plain log file is kept in this case
+     */
+    public static TestRunLogArchive create(final File logFile, final TestRunLogIndex index) throws IOException {
+        final TestRunLogArchive logArchive = write(logFile, index);
+        deletePlainLog(logFile);
+        return logArchive;
+    }
+
+    /**
+     * Compress a completed log file and keep the plain log file, so that readers can switch to the archive before the
+     * plain log file is deleted with {@link #deletePlainLog(File)}
+     *
+     * @param logFile
+     *            completed log file
+     * @param index
+     *            index of the log file
+     * @return archive
+     * @throws IOException
+     *             if the archive can not be written
+     */
+    static TestRunLogArchive write(final File logFile, final TestRunLogIndex index) throws IOException {
+        final File archiveFile = getArchiveFile(logFile);
+        final File tmpArchive = new File(archiveFile.getPath() + ".tmp");
+        final List<long[]> blocks = new ArrayList<>();
+        try (final FileChannel in = FileChannel.open(logFile.toPath(), StandardOpenOption.READ);
+                final OutputStream archive = new BufferedOutputStream(new FileOutputStream(tmpArchive))) {
+            final CountingOutputStream out = new CountingOutputStream(archive);
+            final InputStream log = new BufferedInputStream(Channels.newInputStream(in));
+            int line = 0;
+            final byte[] buffer = new byte[8192];
+            while (line < index.getLineCount()) {
+                final long blockStart = index.getOffset(line);
+                // extend the block by whole lines
+                long blockEnd;
+                do {
+                    blockEnd = index.getOffset(++line);
+                } while (line < index.getLineCount() && blockEnd - blockStart < BLOCK_SIZE);
+                blocks.add(new long[]{blockStart, out.count});
+                final GZIPOutputStream member = new GZIPOutputStream(new NonClosingOutputStream(out), 8192) {
+                    {
+                        def.setLevel(Deflater.BEST_COMPRESSION);
+                    }
+                };
+                for (long remaining = blockEnd - blockStart; remaining > 0;) {
+                    final int read = log.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read == -1) {
+                        throw new EOFException("Log file is shorter than its index: " + logFile);
+                    }
+                    member.write(buffer, 0, read);
+                    remaining -= read;
+                }
+                member.close();
+            }
+        }
+        final long[] blockOffsets = new long[blocks.size()];
+        final long[] compressedOffsets = new long[blocks.size()];
+        for (int i = 0; i < blockOffsets.length; i++) {
+            blockOffsets[i] = blocks.get(i)[0];
+            compressedOffsets[i] = blocks.get(i)[1];
+        }
+        final TestRunLogArchive logArchive = new TestRunLogArchive(archiveFile, index, blockOffsets, compressedOffsets);
+        logArchive.storeIndex(tmpArchive);
+        Files.move(tmpArchive.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        Files.move(TestRunLogIndex.getSidecarFile(tmpArchive).toPath(),
+                TestRunLogIndex.getSidecarFile(archiveFile).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return logArchive;
+    }
+
+    /**
+     * Delete the plain log file and its index after the log has been archived
+     *
+     * @param logFile
+     *            archived log file
+     * @throws IOException
+     *             if the files can not be deleted
+     */
+    static void deletePlainLog(final File logFile) throws IOException {
+        Files.deleteIfExists(TestRunLogIndex.getSidecarFile(logFile).toPath());
+        Files.deleteIfExists(logFile.toPath());
+    }
+
+    private void storeIndex(final File archive) throws IOException {
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(TestRunLogIndex.getSidecarFile(archive))))) {
+            out.writeInt(MAGIC);
+            out.writeLong(index.getLength());
+            out.writeInt(index.getLineCount());
+            for (int i = 0; i < index.getLineCount(); i++) {
+                out.writeLong(index.getOffset(i));
+            }
+            out.writeInt(blockOffsets.length);
+            for (int i = 0; i < blockOffsets.length; i++) {
+                out.writeLong(blockOffsets[i]);
+                out.writeLong(compressedOffsets[i]);
+            }
+        }
+    }
+
+    /**
+     * Open the archive of a log file
+     *
+     * @param logFile
+     *            path of the plain log file
+     * @return archive
+     * @throws IOException
+     *             if the archive or its index can not be read
+     */
+    public static TestRunLogArchive open(final File logFile) throws IOException {
+        final File archiveFile = getArchiveFile(logFile);
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(TestRunLogIndex.getSidecarFile(archiveFile))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Invalid log archive index: " + archiveFile);
+            }
+            final long length = in.readLong();
+            final int lineCount = in.readInt();
+            final long[] lineOffsets = new long[Math.max(1, lineCount)];
+            for (int i = 0; i < lineCount; i++) {
+                lineOffsets[i] = in.readLong();
+            }
+            final int blockCount = in.readInt();
+            final long[] blockOffsets = new long[blockCount];
+            final long[] compressedOffsets = new long[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = in.readLong();
+                compressedOffsets[i] = in.readLong();
+            }
+            return new TestRunLogArchive(archiveFile, new TestRunLogIndex(lineOffsets, lineCount, length),
+                    blockOffsets, compressedOffsets);
+        }
+    }
+
+    /**
+     * Number of lines in the log
+     *
+     * @return line count
+     */
+    public int getLineCount() {
+        return index.getLineCount();
+    }
+
+    /**
+     * Length of the uncompressed log
+     *
+     * @return length in bytes
+     */
+    public long getLength() {
+        return index.getLength();
+    }
+
+    /**
+     * Number of compressed blocks
+     *
+     * @return block count
+     */
+    public int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    /**
+     * Open a stream of the uncompressed log, starting at an offset. Only the blocks from the block containing the
+     * offset are decompressed.
+     *
+     * @param offset
+     *            offset in the uncompressed log
+     * @return uncompressed bytes from the offset to the end of the log
+     * @throws IOException
+     *             if the archive can not be read
+     */
+    public InputStream openStream(final long offset) throws IOException {
+        if (offset >= index.getLength() || blockOffsets.length == 0) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        int block = Arrays.binarySearch(blockOffsets, Math.max(0, offset));
+        if (block < 0) {
+            block = -block - 2;
+        }
+        final FileChannel channel = FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ);
+        try {
+            channel.position(compressedOffsets[block]);
+            // reads the following gzip members as well
+            final InputStream in = new GZIPInputStream(Channels.newInputStream(channel), 8192);
+            for (long skip = Math.max(0, offset) - blockOffsets[block]; skip > 0;) {
+                final long skipped = in.skip(skip);
+                if (skipped <= 0) {
+                    throw new EOFException("Log archive is shorter than its index: " + archiveFile);
+                }
+                skip -= skipped;
+            }
+            return in;
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public File getLogFile() {
+        return archiveFile;
+    }
+
+    @Override
+    public List<String> getLogMessages(final long knownPosition) {
+        final long firstLine = Math.max(0, knownPosition);
+        if (firstLine >= index.getLineCount()) {
+            return Collections.emptyList();
+        }
+        final List<String> output = new ArrayList<>((int) Math.min(index.getLineCount() - firstLine, 4096));
+        try (final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(openStream(index.getOffset(firstLine)), StandardCharsets.UTF_8))) {
+            for (String line; (line = reader.readLine()) != null;) {
+                output.add(line);
+            }
+        } catch (final IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return output;
+    }
+
+    @Override
+    public void streamLogMessagesTo(final long knownPosition, final OutputStream outputStream) {
+        try (final InputStream in = openStream(index.getOffset(knownPosition))) {
+            final byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) != -1;) {
+                outputStream.write(buffer, 0, read);
+            }
+            outputStream.flush();
+        } catch (final IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        private NonClosingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
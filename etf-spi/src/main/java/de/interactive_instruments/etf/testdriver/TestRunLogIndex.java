@@ -0,0 +1,325 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Line offset index of a Test Run log file.
+ *
+ * The index holds the byte offset of every line start, so that the messages following a known position can be read
+ * with one seek instead of re-reading the log from the beginning. A line is terminated by a line feed, a carriage
+ * return or a carriage return followed by a line feed, like it is counted by {@link BufferedReader#readLine()}.
+ *
+ * After a Test Run completed, the index is persisted as sidecar file next to the log file.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public final class TestRunLogIndex {
+
+    public static final String SIDECAR_SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x45544649; // ETFI
+    private static final int INITIAL_CAPACITY = 256;
+
+    private long[] lineOffsets;
+    private int lineCount;
+    private long length;
+
+    public TestRunLogIndex() {
+        this.lineOffsets = new long[INITIAL_CAPACITY];
+    }
+
+    TestRunLogIndex(final long[] lineOffsets, final int lineCount, final long length) {
+        this.lineOffsets = lineOffsets;
+        this.lineCount = lineCount;
+        this.length = length;
+    }
+
+    /**
+     * Append a line
+     *
+     * @param lineLength
+     *            length of the line in bytes, including the line terminator
+     */
+    public void addLine(final long lineLength) {
+        if (lineCount == lineOffsets.length) {
+            lineOffsets = Arrays.copyOf(lineOffsets, lineCount * 2);
+        }
+        lineOffsets[lineCount++] = length;
+        length += lineLength;
+    }
+
+    /**
+     * Number of indexed lines
+     *
+     * @return number of lines
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Length of the indexed part of the log file in bytes
+     *
+     * @return end offset of the last indexed line
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Byte offset of a line
+     *
+     * @param line
+     *            zero based line number
+     * @return offset of the line start or the length of the log file if the line number exceeds the number of lines
+     */
+    public long getOffset(final long line) {
+        if (line >= lineCount) {
+            return length;
+        }
+        return lineOffsets[(int) Math.max(0, line)];
+    }
+
+    /**
+     * Read all lines from a position to the end of the index
+     *
+     * @param logFile
+     *            indexed log file
+     * @param firstLine
+     *            number of lines to skip
+     * @return lines, without line terminators
+     * @throws IOException
+     *             if the log file can not be read
+     */
+    public List<String> readLines(final File logFile, final long firstLine) throws IOException {
+        return readRange(logFile, getOffset(firstLine), length, lineCount - firstLine);
+    }
+
+    static List<String> readRange(final File logFile, final long from, final long to, final long lines)
+            throws IOException {
+        if (lines <= 0 || to <= from) {
+            return Collections.emptyList();
+        }
+        final List<String> output = new ArrayList<>((int) Math.min(lines, 4096));
+        try (final FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+            while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) != -1) {
+                // read range
+            }
+            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new ByteArrayInputStream(buffer.array(), 0, buffer.position()), StandardCharsets.UTF_8))) {
+                for (String line; (line = reader.readLine()) != null;) {
+                    output.add(line);
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Copy all bytes from a line position to the end of the index to a stream
+     *
+     * @param logFile
+     *            indexed log file
+     * @param firstLine
+     *            number of lines to skip
+     * @param outputStream
+     *            target stream
+     * @throws IOException
+     *             if the log file can not be read or the stream can not be written
+     */
+    public void transferTo(final File logFile, final long firstLine, final OutputStream outputStream) throws IOException {
+        transferTo(logFile, getOffset(firstLine), length, outputStream);
+    }
+
+    static void transferTo(final File logFile, final long from, final long to, final OutputStream outputStream)
+            throws IOException {
+        if (to > from) {
+            try (final FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+                channel.transferTo(from, to - from, Channels.newChannel(outputStream));
+            }
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Persist the index as sidecar file of the log file
+     *
+     * @param logFile
+     *            indexed log file
+     * @throws IOException
+     *             if the sidecar file can not be written
+     */
+    public void store(final File logFile) throws IOException {
+        final File sidecar = getSidecarFile(logFile);
+        final File tmp = new File(sidecar.getPath() + ".tmp");
+        try (final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(length);
+            out.writeInt(lineCount);
+            for (int i = 0; i < lineCount; i++) {
+                out.writeLong(lineOffsets[i]);
+            }
+        }
+        Files.move(tmp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load the index of a log file from its sidecar file.
+     *
+     * If the sidecar file does not exist or does not match the length of the log file, the index is rebuilt by scanning
+     * the log file once.
+     *
+     * @param logFile
+     *            log file
+     * @return index of the log file
+     * @throws IOException
+     *             if the log file can not be read
+     */
+    public static TestRunLogIndex load(final File logFile) throws IOException {
+        final File sidecar = getSidecarFile(logFile);
+        if (sidecar.exists()) {
+            try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)))) {
+                if (in.readInt() == MAGIC) {
+                    final long length = in.readLong();
+                    final int lineCount = in.readInt();
+                    if (length == logFile.length() && lineCount >= 0) {
+                        final long[] offsets = new long[Math.max(lineCount, INITIAL_CAPACITY)];
+                        for (int i = 0; i < lineCount; i++) {
+                            offsets[i] = in.readLong();
+                        }
+                        return new TestRunLogIndex(offsets, lineCount, length);
+                    }
+                }
+            } catch (final EOFException ignore) {
+                // truncated sidecar, rebuild
+            }
+        }
+        return build(logFile);
+    }
+
+    /**
+     * Build the index by scanning a log file
+     *
+     * @param logFile
+     *            log file
+     * @return index of the log file
+     * @throws IOException
+     *             if the log file can not be read
+     */
+    public static TestRunLogIndex build(final File logFile) throws IOException {
+        final TestRunLogIndex index = new TestRunLogIndex();
+        try (final InputStream in = new BufferedInputStream(new FileInputStream(logFile))) {
+            long lineLength = 0;
+            boolean cr = false;
+            for (int b; (b = in.read()) != -1;) {
+                if (cr) {
+                    cr = false;
+                    if (b == '\n') {
+                        index.length++;
+                        continue;
+                    }
+                }
+                lineLength++;
+                if (b == '\n' || b == '\r') {
+                    index.addLine(lineLength);
+                    lineLength = 0;
+                    cr = b == '\r';
+                }
+            }
+            if (lineLength > 0) {
+                index.addLine(lineLength);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Open a reader for a completed log file
+     *
+     * If the log file has been archived, the archive is read, see {@link TestRunLogArchive}.
+     *
+     * @param logFile
+     *            log file
+     * @return reader that seeks to requested positions
+     * @throws IOException
+     *             if the log file can not be read
+     */
+    public static TestRunLogReader openReader(final File logFile) throws IOException {
+        if (!logFile.exists() && TestRunLogArchive.isArchived(logFile)) {
+            return TestRunLogArchive.open(logFile);
+        }
+        final TestRunLogIndex index = load(logFile);
+        return new TestRunLogReader() {
+            @Override
+            public File getLogFile() {
+                return logFile;
+            }
+
+            @Override
+            public List<String> getLogMessages(final long knownPosition) {
+                try {
+                    return index.readLines(logFile, knownPosition);
+                } catch (final IOException e) {
+                    throw new IllegalArgumentException(e);
+                }
+            }
+
+            @Override
+            public void streamLogMessagesTo(final long knownPosition, final OutputStream outputStream) {
+                try {
+                    index.transferTo(logFile, knownPosition, outputStream);
+                } catch (final IOException e) {
+                    throw new IllegalArgumentException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Number of lines of a completed log file, which may have been archived
+     *
+     * @param logFile
+     *            log file
+     * @return number of lines
+     * @throws IOException
+     *             if the log file can not be read
+     */
+    public static int countLines(final File logFile) throws IOException {
+        if (!logFile.exists() && TestRunLogArchive.isArchived(logFile)) {
+            return TestRunLogArchive.open(logFile).getLineCount();
+        }
+        return load(logFile).getLineCount();
+    }
+
+    static File getSidecarFile(final File logFile) {
+        return new File(logFile.getPath() + SIDECAR_SUFFIX);
+    }
+}
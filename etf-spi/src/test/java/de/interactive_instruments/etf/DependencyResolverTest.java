@@ -18,7 +18,10 @@ package de.interactive_instruments.etf;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.*;
 
@@ -91,6 +94,41 @@ public class DependencyResolverTest {
 
     }
 
+    @Test
+    public void testLevels() throws CyclicDependencyException {
+        final DependencyGraph<ExecutableTestSuiteDto> dependencyResolver = new DependencyGraph();
+
+        final ExecutableTestSuiteDto ets1 = TestUtils.createEts(1);
+        final ExecutableTestSuiteDto ets2 = TestUtils.createEts(2);
+        final ExecutableTestSuiteDto ets3 = TestUtils.createEts(3);
+        final ExecutableTestSuiteDto ets4 = TestUtils.createEts(4);
+        final ExecutableTestSuiteDto ets5 = TestUtils.createEts(5);
+        final ExecutableTestSuiteDto ets6 = TestUtils.createEts(6);
+
+        ets1.addDependency(ets2);
+        ets1.addDependency(ets3);
+        ets4.addDependency(ets1);
+        ets5.addDependency(ets3);
+
+        dependencyResolver.addAllDependencies(Arrays.asList(ets1, ets2, ets3, ets4, ets5, ets6));
+        final Map<ExecutableTestSuiteDto, Integer> levels = dependencyResolver.levels(dependencyResolver.sort());
+
+        assertEquals(6, levels.size());
+        assertEquals(0, levels.get(ets2));
+        assertEquals(0, levels.get(ets3));
+        assertEquals(0, levels.get(ets6));
+        assertEquals(1, levels.get(ets1));
+        assertEquals(1, levels.get(ets5));
+        assertEquals(2, levels.get(ets4));
+
+        // dependencies first
+        final List<String> ordered = levels.keySet().stream().map(ExecutableTestSuiteDto::getLabel)
+                .collect(Collectors.toList());
+        assertTrue(ordered.indexOf("ETS.1") > ordered.indexOf("ETS.2"));
+        assertTrue(ordered.indexOf("ETS.1") > ordered.indexOf("ETS.3"));
+        assertTrue(ordered.indexOf("ETS.4") > ordered.indexOf("ETS.1"));
+    }
+
     @Test
     public void testCycleDetection() {
 
@@ -0,0 +1,208 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class ConcurrentTestResultCollectorTest {
+
+    private static TestResultCollector recordingCollector(final List<String> calls) {
+        return (TestResultCollector) Proxy.newProxyInstance(
+                ConcurrentTestResultCollectorTest.class.getClassLoader(),
+                new Class[]{TestResultCollector.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("start") || method.getName().equals("end")
+                            || method.getName().equals("addMessage")) {
+                        calls.add(method.getName() + ":" + args[0]);
+                    } else if (method.getName().equals("saveAttachment")) {
+                        calls.add(method.getName() + ":" + args[1]);
+                    }
+                    if (method.getReturnType() == int.class) {
+                        return 2;
+                    } else if (method.getReturnType() == boolean.class) {
+                        return false;
+                    }
+                    return null;
+                });
+    }
+
+    @Test
+    public void mergeInModelOrder() throws Exception {
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        final ConcurrentTestResultCollector collector = new ConcurrentTestResultCollector(recordingCollector(calls));
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        final CountDownLatch thirdFinished = new CountDownLatch(1);
+        final CountDownLatch secondFinished = new CountDownLatch(1);
+        try {
+            collector.startTestModule("M1");
+            final Future<?> f1 = collector.submit(executor, () -> {
+                secondFinished.await(10, TimeUnit.SECONDS);
+                collector.startTestCase("C1");
+                collector.addMessage("MSG1");
+                collector.end("C1", 1);
+                return null;
+            });
+            final Future<?> f2 = collector.submit(executor, () -> {
+                thirdFinished.await(10, TimeUnit.SECONDS);
+                collector.startTestCase("C2");
+                collector.end("C2", 0);
+                secondFinished.countDown();
+                return null;
+            });
+            final Future<?> f3 = collector.submit(executor, () -> {
+                collector.startTestCase("C3");
+                collector.end("C3", 0);
+                thirdFinished.countDown();
+                return null;
+            });
+            f1.get(10, TimeUnit.SECONDS);
+            f2.get(10, TimeUnit.SECONDS);
+            f3.get(10, TimeUnit.SECONDS);
+            // waits for the merge of all buffers
+            collector.end("M1", 1);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(Arrays.asList(
+                "startTestModule:M1",
+                "startTestCase:C1", "addMessage:MSG1", "end:C1",
+                "startTestCase:C2", "end:C2",
+                "startTestCase:C3", "end:C3",
+                "end:M1"), calls);
+    }
+
+    @Test
+    public void rejectedSubmitReleasesBuffer() throws Exception {
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        final ConcurrentTestResultCollector collector = new ConcurrentTestResultCollector(recordingCollector(calls));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        collector.startTestModule("M1");
+        assertThrows(RejectedExecutionException.class, () -> collector.submit(executor, () -> null));
+        // must not block on the rejected buffer
+        collector.end("M1", 1);
+        assertEquals(Arrays.asList("startTestModule:M1", "end:M1"), calls);
+    }
+
+    @Test
+    public void attachmentsInWorker() throws Exception {
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        final ConcurrentTestResultCollector collector = new ConcurrentTestResultCollector(recordingCollector(calls));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            collector.startTestModule("M1");
+            final Future<?> f = collector.submit(executor, () -> {
+                collector.startTestCase("C1");
+                assertNull(collector.saveAttachment("content", "A1", null, null));
+                assertNull(collector.saveAttachment(new ByteArrayInputStream(new byte[]{1}), "A2", null, null));
+                collector.end("C1", 0);
+                return null;
+            });
+            f.get(10, TimeUnit.SECONDS);
+            collector.end("M1", 1);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(Arrays.asList("startTestModule:M1", "startTestCase:C1", "saveAttachment:A1",
+                "saveAttachment:A2", "end:C1", "end:M1"), calls);
+    }
+
+    @Test
+    public void cancelledSubmitReleasesBuffer() throws Exception {
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        final ConcurrentTestResultCollector collector = new ConcurrentTestResultCollector(recordingCollector(calls));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        try {
+            collector.startTestModule("M1");
+            // occupies the only thread, so that the next task stays queued
+            executor.submit(() -> {
+                blocked.await(10, TimeUnit.SECONDS);
+                return null;
+            });
+            final Future<?> f = collector.submit(executor, () -> {
+                collector.startTestCase("C1");
+                collector.end("C1", 0);
+                return null;
+            });
+            assertTrue(f.cancel(false));
+            // must not block on the cancelled buffer
+            collector.end("M1", 1);
+        } finally {
+            blocked.countDown();
+            executor.shutdownNow();
+        }
+        assertEquals(Arrays.asList("startTestModule:M1", "end:M1"), calls);
+    }
+
+    @Test
+    public void shutdownNowReleasesBuffer() throws Exception {
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        final ConcurrentTestResultCollector collector = new ConcurrentTestResultCollector(recordingCollector(calls));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        collector.startTestModule("M1");
+        executor.submit(() -> {
+            blocked.await(10, TimeUnit.SECONDS);
+            return null;
+        });
+        collector.submit(executor, () -> {
+            collector.startTestCase("C1");
+            collector.end("C1", 0);
+            return null;
+        });
+        // the queued task is returned but not cancelled
+        assertEquals(1, executor.shutdownNow().size());
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        collector.end("M1", 1);
+        assertEquals(Arrays.asList("startTestModule:M1", "end:M1"), calls);
+    }
+
+    @Test
+    public void concurrentProgress() throws Exception {
+        final UnitTestTestTaskProgress progress = new UnitTestTestTaskProgress();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    progress.advance();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(40000, progress.getCurrentStepsCompleted());
+        assertEquals(40001, progress.getMaxSteps());
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.MessageFormatter;
+
+import de.interactive_instruments.IFile;
+
+/**
+ * Compares the throughput of the {@link DefaultTestRunLogger} with synchronous logging. Run with the benchmark task.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@Tag("benchmark")
+public class DefaultTestRunLoggerBenchmarkTest {
+
+    /**
+     * The previous implementation: one synchronized write and flush per message
+     */
+    private static final class SynchronousLog {
+        private final PrintStream out;
+        private final DateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
+
+        private SynchronousLog(final File file) throws IOException {
+            this.out = new PrintStream(new FileOutputStream(file));
+        }
+
+        private void info(final String format, final Object arg1, final Object arg2) {
+            final String date;
+            synchronized (dateFormat) {
+                date = dateFormat.format(new Date());
+            }
+            out.println(date + " - " + MessageFormatter.format(format, arg1, arg2).getMessage());
+            out.flush();
+        }
+    }
+
+    private static long measure(final int threads, final int messages, final BiConsumer<Integer, Integer> log)
+            throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final long start = System.nanoTime();
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < messages; i++) {
+                    log.accept(thread, i);
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void benchmarkAgainstSynchronousLogging() throws Exception {
+        final int threads = 4;
+        final int messages = 25000;
+        final IFile dir = IFile.createTempDir("etf-unittest");
+        // warm up
+        final SynchronousLog synchronousWarmup = new SynchronousLog(dir.expandPath("warmup1.log"));
+        measure(threads, 1000, (t, i) -> synchronousWarmup.info("T{} {}", t, i));
+        final DefaultTestRunLogger warmup = new DefaultTestRunLogger(dir, "warmup2");
+        measure(threads, 1000, (t, i) -> warmup.info("T{} {}", t, i));
+        warmup.release();
+
+        final SynchronousLog synchronousLog = new SynchronousLog(dir.expandPath("sync.log"));
+        final long synchronousNanos = measure(threads, messages,
+                (t, i) -> synchronousLog.info("T{} {}", t, i));
+
+        final DefaultTestRunLogger logger = new DefaultTestRunLogger(dir, "async");
+        final long asyncNanos = measure(threads, messages, (t, i) -> logger.info("T{} {}", t, i));
+        final long start = System.nanoTime();
+        logger.flush();
+        final long flushNanos = System.nanoTime() - start;
+
+        assertEquals(threads * messages, TestRunLogIndex.build(logger.getLogFile()).getLineCount());
+        final double total = threads * messages;
+        System.out.printf("Synchronous logging: %.0f messages/s, asynchronous logging: %.0f messages/s "
+                + "(final flush %d ms)%n",
+                total / synchronousNanos * 1e9, total / (asyncNanos + flushNanos) * 1e9,
+                TimeUnit.NANOSECONDS.toMillis(flushNanos));
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import de.interactive_instruments.IFile;
+
+/**
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class DefaultTestRunLoggerTest {
+
+    private static List<String> readAllLines(final File file) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        try (final BufferedReader br = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            for (String line; (line = br.readLine()) != null;) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static DefaultTestRunLogger createLogger() throws IOException {
+        return new DefaultTestRunLogger(IFile.createTempDir("etf-unittest"), "tr");
+    }
+
+    @Test
+    public void readFromPositions() throws IOException {
+        final DefaultTestRunLogger logger = createLogger();
+        final int messages = DefaultTestRunLogger.TAIL_CAPACITY * 3;
+        for (int i = 0; i < messages; i++) {
+            if (i % 100 == 0) {
+                logger.error("Message " + i + " \u00fc", new IllegalStateException("multi\nline"));
+            } else {
+                logger.info("Message {}", i);
+            }
+        }
+        logger.flush();
+        final List<String> expected = readAllLines(logger.getLogFile());
+        assertTrue(expected.size() > messages);
+
+        // tail, seek and boundary positions
+        for (final int pos : new int[]{0, 1, 99, 100, 101, expected.size() - DefaultTestRunLogger.TAIL_CAPACITY - 1,
+                expected.size() - DefaultTestRunLogger.TAIL_CAPACITY, expected.size() - 1}) {
+            assertEquals(expected.subList(pos, expected.size()), logger.getLogMessages(pos), "Position " + pos);
+        }
+        assertTrue(logger.getLogMessages(expected.size()).isEmpty());
+        assertTrue(logger.getLogMessages(expected.size() + 10).isEmpty());
+        assertEquals(expected, logger.getLogMessages(-1));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        logger.streamLogMessagesTo(expected.size() - 2, out);
+        assertEquals(expected.get(expected.size() - 2) + System.lineSeparator()
+                + expected.get(expected.size() - 1) + System.lineSeparator(), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void incrementalPolling() throws IOException {
+        final DefaultTestRunLogger logger = createLogger();
+        final List<String> received = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            logger.info("Message {}", i);
+            if (i % 7 == 0) {
+                received.addAll(logger.getLogMessages(received.size()));
+            }
+        }
+        // reads do not wait for the writer thread
+        logger.flush();
+        received.addAll(logger.getLogMessages(received.size()));
+        assertEquals(readAllLines(logger.getLogFile()), received);
+    }
+
+    @Test
+    public void logListener() throws IOException {
+        final DefaultTestRunLogger logger = createLogger();
+        final AtomicLong notified = new AtomicLong();
+        final TestRunLogListener listener = notified::set;
+        logger.addLogListener(listener);
+        for (int i = 0; i < 300; i++) {
+            logger.info("Message {}", i);
+        }
+        logger.flush();
+        // the listener has been notified about all written messages before the barrier returns
+        assertEquals(300, notified.get());
+        assertEquals(300, logger.getLogMessages(0).size());
+
+        logger.removeLogListener(listener);
+        logger.info("Not notified");
+        logger.flush();
+        assertEquals(300, notified.get());
+        logger.release();
+    }
+
+    @Test
+    public void sidecarIndex() throws IOException {
+        final DefaultTestRunLogger logger = createLogger();
+        logger.info("First");
+        logger.info("");
+        logger.info("Multi\r\nline\rmessage");
+        logger.error("Failure", new Exception());
+        final File logFile = logger.getLogFile();
+        logger.flush();
+        final List<String> expected = readAllLines(logFile);
+
+        assertFalse(TestRunLogIndex.getSidecarFile(logFile).exists());
+        logger.release();
+        assertTrue(TestRunLogIndex.getSidecarFile(logFile).exists());
+        // ignored after release
+        logger.info("Released");
+        assertEquals(expected, readAllLines(logFile));
+
+        final TestRunLogIndex stored = TestRunLogIndex.load(logFile);
+        final TestRunLogIndex scanned = TestRunLogIndex.build(logFile);
+        assertEquals(expected.size(), stored.getLineCount());
+        assertEquals(logFile.length(), stored.getLength());
+        assertEquals(scanned.getLineCount(), stored.getLineCount());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(scanned.getOffset(i), stored.getOffset(i));
+        }
+
+        final TestRunLogReader reader = TestRunLogIndex.openReader(logFile);
+        for (int pos = 0; pos <= expected.size(); pos++) {
+            assertEquals(expected.subList(pos, expected.size()), reader.getLogMessages(pos));
+        }
+    }
+
+    @Test
+    public void scanMixedLineTerminators() throws IOException {
+        final IFile file = IFile.createTempDir("etf-unittest").expandPath("mixed.log");
+        java.nio.file.Files.write(file.toPath(), "a\r\nb\rc\n\nd".getBytes(StandardCharsets.UTF_8));
+        final TestRunLogIndex index = TestRunLogIndex.load(file);
+        assertEquals(readAllLines(file).size(), index.getLineCount());
+        assertEquals(3, index.getOffset(1));
+        assertEquals(5, index.getOffset(2));
+        assertEquals(List.of("c", "", "d"), index.readLines(file, 2));
+    }
+
+    @Test
+    public void concurrentProducers() throws Exception {
+        final DefaultTestRunLogger logger = createLogger();
+        final int threads = 8;
+        final int messages = 5000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < messages; i++) {
+                    logger.info("T{} {}", thread, i);
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        logger.flush();
+
+        final List<String> lines = logger.getLogMessages(0);
+        assertEquals(readAllLines(logger.getLogFile()), lines);
+        assertEquals(threads * messages, lines.size());
+        // the order of each producer is preserved
+        final int[] next = new int[threads];
+        for (final String line : lines) {
+            final String[] parts = line.substring(line.indexOf('T') + 1).split(" ");
+            final int thread = Integer.parseInt(parts[0]);
+            assertEquals(next[thread]++, Integer.parseInt(parts[1]));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.testdriver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import de.interactive_instruments.IFile;
+
+/**
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class TestRunLogArchiveTest {
+
+    private static List<String> readLines(final InputStream in) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        try (final BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            for (String line; (line = br.readLine()) != null;) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static DefaultTestRunLogger writeLog(final long archiveMinSize, final int messages) throws IOException {
+        final DefaultTestRunLogger logger = new DefaultTestRunLogger(IFile.createTempDir("etf-unittest"), "tr",
+                archiveMinSize);
+        for (int i = 0; i < messages; i++) {
+            if (i % 1000 == 0) {
+                logger.error("Assertion {} failed", i, new IllegalStateException("Unexpected value"));
+            } else {
+                logger.info("Assertion {} of Test Step {} passed", i, i / 100);
+            }
+        }
+        logger.flush();
+        return logger;
+    }
+
+    @Test
+    public void archiveOnRelease() throws Exception {
+        final DefaultTestRunLogger logger = writeLog(0, 20000);
+        final File logFile = logger.getLogFile();
+        final List<String> expected = readLines(new FileInputStream(logFile));
+        final long plainLength = logFile.length();
+        logger.release();
+        // the log is compressed in the background
+        logger.getArchiving().get(30, TimeUnit.SECONDS);
+
+        final File archiveFile = TestRunLogArchive.getArchiveFile(logFile);
+        assertFalse(logFile.exists());
+        assertFalse(TestRunLogIndex.getSidecarFile(logFile).exists());
+        assertTrue(archiveFile.exists());
+        assertTrue(TestRunLogArchive.isArchived(logFile));
+        assertTrue(archiveFile.length() * 5 < plainLength,
+                "Compressed " + archiveFile.length() + " bytes, plain " + plainLength + " bytes");
+
+        // a standard gzip file
+        assertEquals(expected, readLines(new GZIPInputStream(new FileInputStream(archiveFile))));
+
+        final TestRunLogArchive archive = TestRunLogArchive.open(logFile);
+        assertTrue(archive.getBlockCount() > 1);
+        assertEquals(plainLength, archive.getLength());
+        assertEquals(expected.size(), TestRunLogIndex.countLines(logFile));
+
+        final TestRunLogReader reader = TestRunLogIndex.openReader(logFile);
+        for (final int pos : new int[]{0, 1, 999, 1000, expected.size() / 2, expected.size() - 1, expected.size()}) {
+            assertEquals(expected.subList(pos, expected.size()), reader.getLogMessages(pos), "Position " + pos);
+            // the released logger reads the archive
+            assertEquals(expected.subList(pos, expected.size()), logger.getLogMessages(pos), "Position " + pos);
+        }
+        final ByteArrayOutputStream tail = new ByteArrayOutputStream();
+        reader.streamLogMessagesTo(expected.size() - 2, tail);
+        assertEquals(expected.get(expected.size() - 2) + System.lineSeparator()
+                + expected.get(expected.size() - 1) + System.lineSeparator(), tail.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void blockBoundaries() throws IOException {
+        final DefaultTestRunLogger logger = writeLog(-1, 5000);
+        final File logFile = logger.getLogFile();
+        logger.release();
+        final byte[] plain = Files.readAllBytes(logFile.toPath());
+        final TestRunLogArchive archive = TestRunLogArchive.create(logFile, TestRunLogIndex.load(logFile));
+        assertFalse(logFile.exists());
+        for (final int offset : new int[]{0, 1, TestRunLogArchive.BLOCK_SIZE - 1, TestRunLogArchive.BLOCK_SIZE,
+                TestRunLogArchive.BLOCK_SIZE + 1, plain.length - 1}) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (final InputStream in = archive.openStream(offset)) {
+                in.transferTo(out);
+            }
+            assertArrayEquals(Arrays.copyOfRange(plain, offset, plain.length), out.toByteArray(),
+                    "Offset " + offset);
+        }
+        try (final InputStream in = archive.openStream(plain.length)) {
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void smallLogsStayPlain() throws IOException {
+        final DefaultTestRunLogger logger = writeLog(1048576, 10);
+        logger.release();
+        assertTrue(logger.getLogFile().exists());
+        assertFalse(TestRunLogArchive.isArchived(logger.getLogFile()));
+        assertEquals(TestRunLogIndex.countLines(logger.getLogFile()), logger.getLogMessages(0).size());
+    }
+}
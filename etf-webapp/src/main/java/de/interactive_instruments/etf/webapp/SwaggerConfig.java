@@ -18,6 +18,7 @@ package de.interactive_instruments.etf.webapp;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import springfox.documentation.builders.ApiInfoBuilder;
 import springfox.documentation.builders.PathSelectors;
@@ -97,6 +98,8 @@ public class SwaggerConfig {
                 .paths(PathSelectors.any())
                 .build()
                 .pathMapping("/")
+                // responses written asynchronously are documented like responses written to the servlet response
+                .directModelSubstitute(StreamingResponseBody.class, Void.class)
                 .tags(statusTag, capabilitiesTag, testRunsTag, testObjectsTag, testResultsTag)
                 .useDefaultResponseMessages(false).groupName("ETF-v2");
     }
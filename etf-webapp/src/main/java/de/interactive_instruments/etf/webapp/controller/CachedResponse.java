@@ -0,0 +1,158 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.webapp.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * A prepared response body that is kept in the identity and the gzip representation.
+ *
+ * Both representations and a strong entity tag are computed once, when the entry is created. Serving an entry writes
+ * the stored bytes without copying or compressing them again and answers a matching If-None-Match header with 304.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class CachedResponse {
+
+    // Bodies smaller than this are not worth the gzip header overhead
+    private static final int MIN_COMPRESS_SIZE = 1024;
+    private static final String GZIP = "gzip";
+
+    private final String contentType;
+    private final byte[] identity;
+    private final byte[] gzip;
+    private final String etag;
+    private final String gzipEtag;
+
+    CachedResponse(final String contentType, final byte[] identity) {
+        this.contentType = contentType;
+        this.identity = identity;
+        this.gzip = compress(identity);
+        final String hash = hash(identity);
+        this.etag = "\"" + hash + "\"";
+        // the encoded representation is a different entity and requires a different strong validator
+        this.gzipEtag = "\"" + hash + "-gz\"";
+    }
+
+    private static byte[] compress(final byte[] identity) {
+        if (identity.length < MIN_COMPRESS_SIZE) {
+            return null;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(identity.length / 4);
+        try (final GZIPOutputStream gzipOut = new GZIPOutputStream(bytes, 8192) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzipOut.write(identity);
+        } catch (final IOException e) {
+            // not thrown by a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        final byte[] compressed = bytes.toByteArray();
+        return compressed.length < identity.length ? compressed : null;
+    }
+
+    private static String hash(final byte[] identity) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(identity);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 27);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    byte[] getIdentity() {
+        return identity;
+    }
+
+    int size() {
+        return identity.length + (gzip != null ? gzip.length : 0);
+    }
+
+    static boolean acceptsGzip(final HttpServletRequest request) {
+        final String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (final String coding : acceptEncoding.split(",")) {
+            final String[] params = coding.trim().split(";");
+            if (GZIP.equalsIgnoreCase(params[0].trim()) || "*".equals(params[0].trim())) {
+                return params.length < 2 || !params[1].trim().matches("q\\s*=\\s*0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private boolean matches(final String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (final String tag : ifNoneMatch.split(",")) {
+            final String t = tag.trim();
+            // If-None-Match uses the weak comparison
+            final String opaque = t.startsWith("W/") ? t.substring(2) : t;
+            if ("*".equals(opaque) || etag.equals(opaque) || gzipEtag.equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the representation the client accepts, or only the status 304 if the client already has the entity.
+     */
+    void writeTo(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        final boolean encode = gzip != null && acceptsGzip(request);
+        response.setHeader(HttpHeaders.ETAG, encode ? gzipEtag : etag);
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(contentType);
+        final byte[] body;
+        if (encode) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            body = gzip;
+        } else {
+            body = identity;
+        }
+        response.setContentLength(body.length);
+        final ServletOutputStream out = response.getOutputStream();
+        out.write(body);
+    }
+}
@@ -41,6 +41,7 @@ import org.springframework.web.multipart.commons.CommonsMultipartResolver;
 
 import de.interactive_instruments.*;
 import de.interactive_instruments.etf.EtfConstants;
+import de.interactive_instruments.etf.testdriver.TaskThreads;
 import de.interactive_instruments.exceptions.ExcUtils;
 import de.interactive_instruments.exceptions.config.InvalidPropertyException;
 import de.interactive_instruments.exceptions.config.MissingPropertyException;
@@ -71,6 +72,7 @@ public class EtfConfig implements PropertyHolder {
     public static final String ETF_REPORT_COMPARISON = "etf.report.comparison";
     // in minutes
     public static final String ETF_TESTREPORTS_LIFETIME_EXPIRATION = "etf.testreports.lifetime.expiration";
+    public static final String ETF_TESTREPORTS_CACHE_COMPRESS = "etf.testreports.cache.compress";
     public static final String ETF_TEST_RUN_TEMPLATES_ALLOW_CREATION = "etf.testruntemplates.allow.creation";
     public static final String ETF_WORKFLOWS = "etf.workflows";
     public static final String ETF_TESTDATA_DIR = "etf.testdata.dir";
@@ -91,7 +93,29 @@ public class EtfConfig implements PropertyHolder {
     public static final String ETF_STACKTRACE_SHOW = "etf.stacktrace.show";
     public static final String ETF_MAX_UPLOAD_SIZE = "etf.max.upload.size";
     public static final String ETF_TEST_OBJECT_MAX_SIZE = "etf.testobject.max.size";
+    public static final String ETF_TESTOBJECT_DOWNLOADS_MAX_SIZE = "etf.testobject.downloads.max.size";
     public static final String ETF_ALLOWED_ENCODINGS = "etf.testobject.allow.encodings";
+    public static final String ETF_TESTRUNS_QUEUE_MAX = "etf.testruns.queue.max";
+    public static final String ETF_TESTRUNS_SCHEDULING = "etf.testruns.scheduling";
+    public static final String ETF_TESTRUNS_SCHEDULING_CLIENT = "etf.testruns.scheduling.client";
+    public static final String ETF_TESTRUNS_SCHEDULING_WEIGHTS = "etf.testruns.scheduling.weights";
+    public static final String ETF_TESTRUNS_MEMORY_BUDGET = "etf.testruns.memory.budget";
+    public static final String ETF_TESTRUNS_FOOTPRINT_RATIO = "etf.testruns.footprint.ratio";
+    public static final String ETF_TESTRUNS_PARALLEL_ADAPTIVE = "etf.testruns.parallel.adaptive";
+    public static final String ETF_TESTRUNS_PARALLEL_MIN = "etf.testruns.parallel.min";
+    public static final String ETF_TESTRUNS_PARALLEL_MAX = "etf.testruns.parallel.max";
+    public static final String ETF_TESTRUNS_BULKHEADS = "etf.testruns.bulkheads";
+    public static final String ETF_TESTRUNS_THREADS = TaskThreads.CONFIG_PROPERTY;
+    public static final String ETF_TESTRUNS_PARALLEL_VIRTUAL = "etf.testruns.parallel.virtual";
+    public static final String ETF_TESTRUNS_TESTOBJECT_SHARED = "etf.testruns.testobject.shared";
+    public static final String ETF_TESTRUNS_DISTRIBUTION = "etf.testruns.distribution";
+    public static final String ETF_TESTRUNS_DISTRIBUTION_DIR = "etf.testruns.distribution.dir";
+    public static final String ETF_TESTRUNS_DISTRIBUTION_WORKER = "etf.testruns.distribution.worker";
+    public static final String ETF_TESTRUNS_DISTRIBUTION_NODE_URL = "etf.testruns.distribution.node.url";
+    public static final String ETF_TESTRUNS_LOGS_ARCHIVE_MIN = "etf.testruns.logs.archive.min";
+    public static final String ETF_RENDERING_THREADS = "etf.rendering.threads";
+    public static final String ETF_RENDERING_QUEUE_MAX = "etf.rendering.queue.max";
+    public static final String ETF_RENDERING_TIMEOUT = "etf.rendering.timeout";
 
     private static final String ETF_CONFIG_PROPERTY_FILENAME = "etf-config.properties";
     private static final String ETF_CONFIG_DIR_NAME = "config";
@@ -121,11 +145,15 @@ public class EtfConfig implements PropertyHolder {
             put(ETF_BRANDING_TEXT, "ETF");
             put(ETF_TESTOBJECT_ALLOW_PRIVATENET_ACCESS, "false");
             put(ETF_TEST_OBJECT_MAX_SIZE, "5368709120");
+            // maximum size in bytes of the kept Test Object download archives, the least recently used are deleted
+            put(ETF_TESTOBJECT_DOWNLOADS_MAX_SIZE, "1073741824");
             put(ETF_REPORT_COMPARISON, "false");
             // 8 h
             put(ETF_TESTOBJECT_UPLOADED_LIFETIME_EXPIRATION, "480");
             // 8 days
             put(ETF_TESTREPORTS_LIFETIME_EXPIRATION, "11520");
+            // store rendered HTML reports gzip compressed
+            put(ETF_TESTREPORTS_CACHE_COMPRESS, "true");
             put(ETF_HELP_PAGE_URL,
                     "https://docs.etf-validator.net/v2.0/User_manuals/Simplified_workflows.html");
             put(ETF_TCONF_PAGE_URL, "false");
@@ -144,6 +172,44 @@ public class EtfConfig implements PropertyHolder {
             put(ETF_TESTDATA_DIR, "testdata");
             put(ETF_TESTDATA_UPLOAD_DIR, "http_uploads");
             put(ETF_ALLOWED_ENCODINGS, "all");
+            // unbounded
+            put(ETF_TESTRUNS_QUEUE_MAX, "0");
+            // fifo or fairshare, which shares the Test Run slots among the clients
+            put(ETF_TESTRUNS_SCHEDULING, "fifo");
+            // fair share clients: address (remote user or client address), apikey or label. Clients behind
+            // a proxy that does not forward their address share one quota
+            put(ETF_TESTRUNS_SCHEDULING_CLIENT, "address");
+            // heap memory in bytes that queued Test Runs are admitted within, auto for 3/4 of the maximum heap,
+            // 0 disables the admission by memory footprint
+            put(ETF_TESTRUNS_MEMORY_BUDGET, "0");
+            put(ETF_TESTRUNS_FOOTPRINT_RATIO, "3");
+            put(ETF_TESTRUNS_PARALLEL_ADAPTIVE, "false");
+            put(ETF_TESTRUNS_PARALLEL_MIN, "1");
+            // twice the number of parallel Test Runs
+            put(ETF_TESTRUNS_PARALLEL_MAX, "auto");
+            // platform, virtual or auto
+            put(ETF_TESTRUNS_THREADS, TaskThreads.PLATFORM);
+            // parallel Test Runs on virtual threads, auto for four times ETF_MAX_PARALLEL_RUNS
+            put(ETF_TESTRUNS_PARALLEL_VIRTUAL, "auto");
+            // IDs of the Test Drivers that only read Test Objects, * for all
+            put(ETF_TESTRUNS_TESTOBJECT_SHARED, "");
+            // local or filesystem. With filesystem, the results are only stored by the node that executed a Test Run,
+            // the other nodes redirect requests for them to this node. The results are not available while the node is
+            // down and are lost with its data directory.
+            put(ETF_TESTRUNS_DISTRIBUTION, "local");
+            // shared queue directory, defaults to a directory in the internal database directory
+            put(ETF_TESTRUNS_DISTRIBUTION_DIR, "");
+            put(ETF_TESTRUNS_DISTRIBUTION_WORKER, "true");
+            // URL under which other nodes reach this node directly, defaults to the webapp base URL
+            put(ETF_TESTRUNS_DISTRIBUTION_NODE_URL, "");
+            // minimum size in bytes of Test Run logs that are compressed, -1 disables the compression
+            put(ETF_TESTRUNS_LOGS_ARCHIVE_MIN, "1048576");
+            // threads that render reports and list exports, "auto" uses one thread per processor
+            put(ETF_RENDERING_THREADS, "auto");
+            // maximum number of waiting responses, further requests are rejected with status 503
+            put(ETF_RENDERING_QUEUE_MAX, "64");
+            // seconds after which a response that is processed asynchronously times out, 0 disables the timeout
+            put(ETF_RENDERING_TIMEOUT, "600");
         }
     });
 
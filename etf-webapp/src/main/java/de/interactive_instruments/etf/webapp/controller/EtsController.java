@@ -34,6 +34,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import de.interactive_instruments.etf.dal.dao.Dao;
 import de.interactive_instruments.etf.dal.dto.test.ExecutableTestSuiteDto;
@@ -96,14 +97,14 @@ public class EtsController {
             @ApiResponse(code = 200, message = "EtfItemCollection with multiple Executable Test Suite"),
     })
     @RequestMapping(value = {ETS_URL, ETS_URL + ".json"}, method = RequestMethod.GET)
-    public void listExecutableTestSuitesJson(
+    public StreamingResponseBody listExecutableTestSuitesJson(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             @ApiParam(value = FIELDS_DESCRIPTION) @RequestParam(required = false, defaultValue = "*") String fields,
             HttpServletRequest request,
             HttpServletResponse response)
             throws IOException, ObjectWithIdNotFoundException {
-        streaming.asJson2(etsDao, request, response, SimpleFilter.filterItems(offset, limit, fields));
+        return streaming.asJson2(etsDao, request, response, SimpleFilter.filterItems(offset, limit, fields));
     }
 
     @ApiOperation(value = "Get multiple Executable Test Suites as XML", notes = ETS_MODEL_DESCRIPTION, tags = {
@@ -112,13 +113,13 @@ public class EtsController {
             @ApiResponse(code = 200, message = "EtfItemCollection with multiple Executable Test Suite"),
     })
     @RequestMapping(value = {ETS_URL + ".xml"}, method = RequestMethod.GET)
-    public void listExecutableTestSuitesXml(
+    public StreamingResponseBody listExecutableTestSuitesXml(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             @ApiParam(value = FIELDS_DESCRIPTION) @RequestParam(required = false, defaultValue = "*") String fields,
             HttpServletRequest request,
             HttpServletResponse response) throws IOException, ObjectWithIdNotFoundException {
-        streaming.asXml2(etsDao, request, response, SimpleFilter.filterItems(offset, limit, fields));
+        return streaming.asXml2(etsDao, request, response, SimpleFilter.filterItems(offset, limit, fields));
     }
 
     @ApiOperation(value = "Get Executable Test Suite as XML", notes = ETS_MODEL_DESCRIPTION, tags = {SERVICE_CAP_TAG_NAME})
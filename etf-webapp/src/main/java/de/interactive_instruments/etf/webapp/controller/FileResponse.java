@@ -0,0 +1,321 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.webapp.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Writes files with support for conditional requests and byte range requests.
+ *
+ * The entity tag is derived from the length and the modification date of the file. Single ranges and complete files
+ * are handed over to the container if it supports sendfile, so the bytes are copied by the kernel. Otherwise and for
+ * multipart/byteranges responses, the file is transferred with a file channel.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class FileResponse {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // More ranges, after overlapping ones are merged, are answered with the complete file
+    private static final int MAX_RANGES = 32;
+    private static final String BYTES_UNIT = "bytes";
+
+    private FileResponse() {}
+
+    /**
+     * Writes the file, the requested ranges of the file or only the status if the client already has the file or
+     * a precondition failed.
+     *
+     * @param file
+     *            file to write
+     * @param contentType
+     *            content type of the file
+     * @param request
+     *            request with optional Range, If-Range and conditional headers
+     * @param response
+     *            response
+     * @throws IOException
+     *             if the file can not be read or the response can not be written
+     */
+    static void write(final File file, final String contentType, final HttpServletRequest request,
+            final HttpServletResponse response) throws IOException {
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        final String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES_UNIT);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        final String ifMatch = request.getHeader(HttpHeaders.IF_MATCH);
+        final long ifUnmodifiedSince = dateHeader(request, HttpHeaders.IF_UNMODIFIED_SINCE);
+        if (ifMatch != null ? !matches(ifMatch, etag, false)
+                : ifUnmodifiedSince != -1 && isModifiedSince(lastModified, ifUnmodifiedSince)) {
+            response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+            return;
+        }
+        final String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        final long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        if (ifNoneMatch != null ? matches(ifNoneMatch, etag, true)
+                : ifModifiedSince != -1 && !isModifiedSince(lastModified, ifModifiedSince)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        final List<long[]> ranges;
+        if (isRangeApplicable(request, etag, lastModified)) {
+            ranges = parseRanges(request.getHeader(HttpHeaders.RANGE), length);
+        } else {
+            ranges = null;
+        }
+        response.setContentType(contentType);
+        if (ranges == null) {
+            response.setContentLengthLong(length);
+            transfer(file, 0, length, request, response);
+        } else if (ranges.isEmpty()) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES_UNIT + " */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        } else if (ranges.size() == 1) {
+            final long[] range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, length));
+            response.setContentLengthLong(range[1] - range[0] + 1);
+            transfer(file, range[0], range[1] + 1, request, response);
+        } else {
+            writeMultipart(file, contentType, ranges, length, request, response);
+        }
+    }
+
+    private static void writeMultipart(final File file, final String contentType, final List<long[]> ranges,
+            final long length, final HttpServletRequest request, final HttpServletResponse response)
+            throws IOException {
+        final String boundary = UUID.randomUUID().toString().replace("-", "");
+        final List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (final long[] range : ranges) {
+            final byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, length) + "\r\n\r\n")
+                            .getBytes(StandardCharsets.ISO_8859_1);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range[1] - range[0] + 1;
+        }
+        final byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        contentLength += end.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        final ServletOutputStream out = response.getOutputStream();
+        try (final FileChannel channel = FileChannel.open(file.toPath())) {
+            final WritableByteChannel outChannel = Channels.newChannel(out);
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                transfer(channel, ranges.get(i)[0], ranges.get(i)[1] + 1, outChannel);
+            }
+        }
+        out.write(end);
+    }
+
+    /**
+     * Transfers a part of a file to the response. The file is handed over to the container if it supports sendfile,
+     * otherwise it is transferred with a file channel.
+     *
+     * @param file
+     *            file to transfer
+     * @param start
+     *            first byte
+     * @param end
+     *            position after the last byte
+     */
+    static void transfer(final File file, final long start, final long end, final HttpServletRequest request,
+            final HttpServletResponse response) throws IOException {
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        // sendfile is only applied by the container after a synchronous request has been processed
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)) && !request.isAsyncStarted()) {
+            request.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        try (final FileChannel channel = FileChannel.open(file.toPath())) {
+            transfer(channel, start, end, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private static void transfer(final FileChannel channel, final long start, final long end,
+            final WritableByteChannel out) throws IOException {
+        for (long position = start; position < end;) {
+            final long transferred = channel.transferTo(position, end - position, out);
+            if (transferred <= 0 && position >= channel.size()) {
+                throw new IOException("File truncated during transfer");
+            }
+            position += transferred;
+        }
+    }
+
+    private static String contentRange(final long[] range, final long length) {
+        return BYTES_UNIT + " " + range[0] + "-" + range[1] + "/" + length;
+    }
+
+    /**
+     * Parses a Range header
+     *
+     * @param header
+     *            Range header value
+     * @param length
+     *            length of the file
+     * @return null if the whole file shall be returned, an empty list if no range can be satisfied, otherwise
+     *         sorted and merged ranges with the first and the last byte position
+     */
+    static List<long[]> parseRanges(final String header, final long length) {
+        if (header == null) {
+            return null;
+        }
+        final int equals = header.indexOf('=');
+        if (equals == -1 || !BYTES_UNIT.equalsIgnoreCase(header.substring(0, equals).trim())) {
+            // unknown units are ignored
+            return null;
+        }
+        final List<long[]> ranges = new ArrayList<>();
+        for (final String spec : header.substring(equals + 1).split(",")) {
+            final String s = spec.trim();
+            if (s.isEmpty()) {
+                continue;
+            }
+            final int dash = s.indexOf('-');
+            if (dash == -1) {
+                return null;
+            }
+            final long first;
+            final long last;
+            try {
+                if (dash == 0) {
+                    final long suffixLength = Long.parseLong(s.substring(1));
+                    if (suffixLength <= 0) {
+                        continue;
+                    }
+                    first = Math.max(0, length - suffixLength);
+                    last = length - 1;
+                } else {
+                    first = Long.parseLong(s.substring(0, dash));
+                    if (dash == s.length() - 1) {
+                        last = length - 1;
+                    } else {
+                        final long lastPos = Long.parseLong(s.substring(dash + 1));
+                        if (lastPos < first) {
+                            // syntactically invalid, the header is ignored
+                            return null;
+                        }
+                        last = Math.min(length - 1, lastPos);
+                    }
+                }
+            } catch (final NumberFormatException e) {
+                return null;
+            }
+            if (first < 0) {
+                return null;
+            }
+            if (first < length) {
+                ranges.add(new long[]{first, last});
+            }
+        }
+        if (ranges.size() > 1) {
+            ranges.sort(Comparator.comparingLong(r -> r[0]));
+            final List<long[]> merged = new ArrayList<>();
+            long[] current = ranges.get(0);
+            for (int i = 1; i < ranges.size(); i++) {
+                final long[] next = ranges.get(i);
+                if (next[0] <= current[1] + 1) {
+                    current[1] = Math.max(current[1], next[1]);
+                } else {
+                    merged.add(current);
+                    current = next;
+                }
+            }
+            merged.add(current);
+            if (merged.size() > MAX_RANGES) {
+                return null;
+            }
+            return merged;
+        }
+        return ranges;
+    }
+
+    private static boolean isRangeApplicable(final HttpServletRequest request, final String etag,
+            final long lastModified) {
+        if (request.getHeader(HttpHeaders.RANGE) == null) {
+            return false;
+        }
+        final String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range uses the strong comparison
+            return etag.equals(ifRange.trim());
+        }
+        final long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date != -1 && lastModified / 1000 == date / 1000;
+    }
+
+    private static boolean matches(final String header, final String etag, final boolean weak) {
+        for (final String tag : header.split(",")) {
+            final String t = tag.trim();
+            if ("*".equals(t) || etag.equals(weak && t.startsWith("W/") ? t.substring(2) : t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isModifiedSince(final long lastModified, final long date) {
+        // HTTP dates have a resolution of seconds
+        return lastModified / 1000 > date / 1000;
+    }
+
+    private static long dateHeader(final HttpServletRequest request, final String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (final IllegalArgumentException e) {
+            // invalid dates are ignored
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.webapp.controller;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.interactive_instruments.etf.dal.dao.Dao;
+import de.interactive_instruments.etf.dal.dao.Filter;
+import de.interactive_instruments.etf.dal.dao.PreparedDto;
+import de.interactive_instruments.etf.dal.dao.WriteDao;
+import de.interactive_instruments.etf.dal.dao.WriteDaoListener;
+import de.interactive_instruments.etf.dal.dto.Dto;
+import de.interactive_instruments.etf.dal.dto.capabilities.TestObjectDto;
+import de.interactive_instruments.etf.dal.dto.run.TestRunDto;
+import de.interactive_instruments.etf.dal.dto.run.TestTaskDto;
+import de.interactive_instruments.etf.dal.dto.test.ExecutableTestSuiteDto;
+import de.interactive_instruments.etf.model.EID;
+import de.interactive_instruments.exceptions.ObjectWithIdNotFoundException;
+import de.interactive_instruments.exceptions.StorageException;
+import de.interactive_instruments.properties.PropertyUtils;
+
+/**
+ * Second level cache for the transformed representations of single items that do not change anymore: completed Test
+ * Runs and released Executable Test Suites.
+ *
+ * Entries are weighted by their size in bytes and are only invalidated by write events of the DAOs. As the
+ * representation of a Test Run includes the Test Objects, the entries of a Test Run are also invalidated if one of its
+ * Test Objects is changed or deleted. Optionally the entries are also persisted in a directory, so that they survive
+ * restarts. Entries loaded from the directory are revalidated against the item version once, as write events may have
+ * been missed while the service was down.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class ItemResponseCache implements WriteDaoListener<Dto> {
+
+    private static final String COMPLETED = "completed";
+
+    private final Logger logger = LoggerFactory.getLogger(ItemResponseCache.class);
+
+    private static final class Entry {
+        private final String version;
+        private final CachedResponse response;
+
+        private Entry(final String version, final CachedResponse response) {
+            this.version = version;
+            this.response = response;
+        }
+    }
+
+    private final Cache<String, Entry> cache;
+    private final File persistenceDir;
+    private final Set<Dao<?>> watchedDaos = Collections.newSetFromMap(new WeakHashMap<>());
+    // IDs of referenced items mapped to the IDs of the cached items that include them
+    private final ConcurrentHashMap<String, Set<String>> referrers = new ConcurrentHashMap<>();
+    // incremented with each write event, to not cache responses that were computed concurrently to a write
+    private final AtomicLong generation = new AtomicLong();
+
+    ItemResponseCache() {
+        final long maxSizeMb = PropertyUtils.getenvOrProperty("ETF_ITEM_CACHE_SIZE_MB", 64);
+        final String dir = PropertyUtils.getenvOrProperty("ETF_ITEM_CACHE_DIR", null);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSizeMb * 1024 * 1024)
+                .weigher((final String k, final Entry e) -> e.response.size())
+                .build();
+        if (dir != null && !dir.isEmpty()) {
+            this.persistenceDir = new File(dir);
+            this.persistenceDir.mkdirs();
+            logger.info("Item response cache size set to {} MB, persisted in {}", maxSizeMb, dir);
+        } else {
+            this.persistenceDir = null;
+        }
+    }
+
+    static String keyFor(final EID eid, final String format, final Filter filter) {
+        final StringBuilder k = new StringBuilder(eid.getId());
+        k.append(".").append(format);
+        if (filter != null) {
+            k.append(".").append(filter.levelOfDetail());
+            k.append(".").append(filter.fields());
+        }
+        return k.toString();
+    }
+
+    /**
+     * Returns true if items of this type may be cached. Other items are not loaded to check their version.
+     */
+    static boolean isCacheable(final Class<? extends Dto> dtoType) {
+        return TestRunDto.class.isAssignableFrom(dtoType) || ExecutableTestSuiteDto.class.isAssignableFrom(dtoType);
+    }
+
+    /**
+     * Returns a version string if the item does not change anymore or null if the item must not be cached.
+     */
+    static String immutableVersionOf(final Dto dto) {
+        if (dto instanceof TestRunDto) {
+            final TestRunDto testRun = (TestRunDto) dto;
+            if (testRun.getTestTasks() == null || testRun.getTestTasks().isEmpty()) {
+                return null;
+            }
+            final StringBuilder version = new StringBuilder(COMPLETED);
+            for (final TestTaskDto testTask : testRun.getTestTasks()) {
+                if (testTask.getTestTaskResult() == null) {
+                    return null;
+                }
+                final TestObjectDto testObject = testTask.getTestObject();
+                if (testObject != null && testObject.getLastUpdateDate() != null) {
+                    version.append(".").append(testObject.getLastUpdateDate().getTime());
+                }
+            }
+            return version.toString();
+        } else if (dto instanceof ExecutableTestSuiteDto) {
+            final ExecutableTestSuiteDto ets = (ExecutableTestSuiteDto) dto;
+            if (ets.isDisabled() || ets.getItemHash() == null || ets.getVersionAsStr() == null
+                    || ets.getVersionAsStr().endsWith("-SNAPSHOT")) {
+                return null;
+            }
+            return ets.getVersionAsStr() + "." + ets.getItemHash();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the IDs of the items that are included in the representation of the item
+     */
+    static Set<String> referencesOf(final Dto dto) {
+        if (dto instanceof TestRunDto && ((TestRunDto) dto).getTestTasks() != null) {
+            final Set<String> references = new HashSet<>();
+            for (final TestTaskDto testTask : ((TestRunDto) dto).getTestTasks()) {
+                if (testTask.getTestObject() != null) {
+                    references.add(testTask.getTestObject().getId().getId());
+                }
+            }
+            return references;
+        }
+        return Collections.emptySet();
+    }
+
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Returns the cached response or null if the item is not cached.
+     */
+    CachedResponse get(final Dao<? extends Dto> dao, final EID eid, final String key) {
+        final Entry entry = cache.getIfPresent(key);
+        if (entry != null) {
+            return entry.response;
+        }
+        if (persistenceDir != null) {
+            final long currentGeneration = generation.get();
+            final Entry persisted = load(eid, key);
+            final Dto current = persisted != null ? currentDto(dao, eid) : null;
+            if (current != null && persisted.version.equals(immutableVersionOf(current))) {
+                put(dao, eid, key, persisted, referencesOf(current), currentGeneration, false);
+                return persisted.response;
+            }
+        }
+        return null;
+    }
+
+    private static Dto currentDto(final Dao<? extends Dto> dao, final EID eid) {
+        try {
+            return dao.getById(eid).getDto();
+        } catch (final StorageException | ObjectWithIdNotFoundException e) {
+            return null;
+        }
+    }
+
+    void put(final Dao<? extends Dto> dao, final EID eid, final String key, final String version,
+            final Set<String> references, final CachedResponse response, final long computedInGeneration) {
+        put(dao, eid, key, new Entry(version, response), references, computedInGeneration, true);
+    }
+
+    private void put(final Dao<? extends Dto> dao, final EID eid, final String key, final Entry entry,
+            final Set<String> references, final long computedInGeneration, final boolean persist) {
+        watch(dao);
+        for (final String reference : references) {
+            referrers.computeIfAbsent(reference, r -> ConcurrentHashMap.newKeySet()).add(eid.getId());
+        }
+        if (generation.get() != computedInGeneration) {
+            return;
+        }
+        cache.put(key, entry);
+        if (persist && persistenceDir != null) {
+            store(eid, key, entry);
+        }
+    }
+
+    /**
+     * Invalidates the entries of the items that include items of this DAO, if they are changed or deleted
+     */
+    void watch(final Dao<? extends Dto> dao) {
+        synchronized (watchedDaos) {
+            if (dao instanceof WriteDao && watchedDaos.add(dao)) {
+                ((WriteDao) dao).registerListener(this);
+            }
+        }
+    }
+
+    @Override
+    public void writeOperationPerformed(final EventType event, final PreparedDto<Dto> dto) {
+        generation.incrementAndGet();
+        invalidate(dto.getDtoId());
+    }
+
+    void invalidate(final EID eid) {
+        invalidate(eid.getId());
+        final Set<String> itemIds = referrers.remove(eid.getId());
+        if (itemIds != null) {
+            itemIds.forEach(this::invalidate);
+        }
+    }
+
+    private void invalidate(final String id) {
+        final String prefix = id + ".";
+        cache.asMap().keySet().removeIf(k -> k.startsWith(prefix));
+        if (persistenceDir != null) {
+            final File itemDir = new File(persistenceDir, id);
+            final File[] files = itemDir.listFiles();
+            if (files != null) {
+                for (final File file : files) {
+                    file.delete();
+                }
+                itemDir.delete();
+            }
+        }
+    }
+
+    private File fileFor(final EID eid, final String key) {
+        return new File(new File(persistenceDir, eid.getId()), Integer.toHexString(key.hashCode()));
+    }
+
+    private Entry load(final EID eid, final String key) {
+        final File file = fileFor(eid, key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (!key.equals(in.readUTF())) {
+                return null;
+            }
+            final String version = in.readUTF();
+            final String contentType = in.readUTF();
+            final byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Entry(version, new CachedResponse(contentType, body));
+        } catch (final IOException e) {
+            logger.warn("Ignoring unreadable cache file {}", file, e);
+            return null;
+        }
+    }
+
+    private void store(final EID eid, final String key, final Entry entry) {
+        final File file = fileFor(eid, key);
+        file.getParentFile().mkdirs();
+        final File tmp = new File(file.getPath() + ".tmp");
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeUTF(key);
+            out.writeUTF(entry.version);
+            out.writeUTF(entry.response.getContentType());
+            final byte[] body = entry.response.getIdentity();
+            out.writeInt(body.length);
+            out.write(body);
+        } catch (final IOException e) {
+            logger.warn("Could not persist cache file {}", file, e);
+            tmp.delete();
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            logger.warn("Could not persist cache file {}", file, e);
+            tmp.delete();
+        }
+    }
+}
@@ -32,6 +32,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import de.interactive_instruments.etf.dal.dao.Dao;
 import de.interactive_instruments.etf.dal.dto.capabilities.ComponentDto;
@@ -120,25 +121,25 @@ public class MetaTypeController {
             SERVICE_CAP_TAG_NAME})
     @ApiResponses(@ApiResponse(code = 200, message = "EtfItemCollection with multiple Test Item Types"))
     @RequestMapping(value = TEST_ITEM_TYPES_URL + ".json", method = RequestMethod.GET)
-    public void listTestItemTypesJson(
+    public StreamingResponseBody listTestItemTypesJson(
             @ApiParam(value = OFFSET_DESCRIPTION, example = "0") @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response)
             throws IOException, ObjectWithIdNotFoundException {
-        streaming.asJson2(testItemTypeDao, request, response, new SimpleFilter(offset, limit));
+        return streaming.asJson2(testItemTypeDao, request, response, new SimpleFilter(offset, limit));
     }
 
     @ApiOperation(value = "Get multiple Test Item Types as XML", notes = TEST_ITEM_TYPEL_DESCRIPTION, tags = {
             SERVICE_CAP_TAG_NAME}, produces = "text/xml")
     @ApiResponses(@ApiResponse(code = 200, message = "EtfItemCollection with multiple Test Item Types"))
     @RequestMapping(value = {TEST_ITEM_TYPES_URL + ".xml"}, method = RequestMethod.GET)
-    public void listTestItemTypesXml(
+    public StreamingResponseBody listTestItemTypesXml(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response) throws IOException, ObjectWithIdNotFoundException {
-        streaming.asXml2(testItemTypeDao, request, response, new SimpleFilter(offset, limit));
+        return streaming.asXml2(testItemTypeDao, request, response, new SimpleFilter(offset, limit));
     }
 
     @ApiOperation(value = "Get Test Item Type as XML", notes = TEST_ITEM_TYPEL_DESCRIPTION, tags = {
@@ -192,13 +193,13 @@ public class MetaTypeController {
             @ApiResponse(code = 200, message = "EtfItemCollection with multiple Translation Template Bundles"),
     })
     @RequestMapping(value = {TRANSLATION_TEMP_BUNDLE_URL, TRANSLATION_TEMP_BUNDLE_URL + ".json"}, method = RequestMethod.GET)
-    public void listTranslationTemplateBundlesJson(
+    public StreamingResponseBody listTranslationTemplateBundlesJson(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response)
             throws ConfigurationException, IOException, ObjectWithIdNotFoundException {
-        streaming.asJson2(translationTemplateBundleDao, request, response, new SimpleFilter(offset, limit));
+        return streaming.asJson2(translationTemplateBundleDao, request, response, new SimpleFilter(offset, limit));
     }
 
     @ApiOperation(value = "Get multiple Translation Template Bundles as XML", notes = TRANSLATION_TEMP_BUNDLE_DESCRIPTION, tags = {
@@ -207,12 +208,12 @@ public class MetaTypeController {
             @ApiResponse(code = 200, message = "EtfItemCollection with multiple Translation Template Bundles"),
     })
     @RequestMapping(value = {TRANSLATION_TEMP_BUNDLE_URL + ".xml"}, method = RequestMethod.GET)
-    public void listTranslationTemplateBundlesXml(
+    public StreamingResponseBody listTranslationTemplateBundlesXml(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response) throws IOException, ObjectWithIdNotFoundException {
-        streaming.asXml2(translationTemplateBundleDao, request, response, new SimpleFilter(offset, limit));
+        return streaming.asXml2(translationTemplateBundleDao, request, response, new SimpleFilter(offset, limit));
     }
 
     @ApiOperation(value = "Get Translation Template Bundle as XML", notes = TRANSLATION_TEMP_BUNDLE_DESCRIPTION, tags = {
@@ -264,13 +265,13 @@ public class MetaTypeController {
             @ApiResponse(code = 200, message = "EtfItemCollection with multiple Components"),
     })
     @RequestMapping(value = {COMPONENTS_URL, COMPONENTS_URL + ".json"}, method = RequestMethod.GET)
-    public void listComponentsJson(
+    public StreamingResponseBody listComponentsJson(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response)
             throws IOException, ObjectWithIdNotFoundException {
-        streaming.asJson2(componentDao, request, response, new SimpleFilter(offset, limit));
+        return streaming.asJson2(componentDao, request, response, new SimpleFilter(offset, limit));
     }
 
     @ApiOperation(value = "Get multiple Framework Components as XML", notes = COMPONENT_DESCRIPTION, tags = {
@@ -279,12 +280,12 @@ public class MetaTypeController {
             @ApiResponse(code = 200, message = "EtfItemCollection with multiple Components"),
     })
     @RequestMapping(value = {COMPONENTS_URL + ".xml"}, method = RequestMethod.GET)
-    public void listComponentsXml(
+    public StreamingResponseBody listComponentsXml(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response) throws IOException, ObjectWithIdNotFoundException {
-        streaming.asXml2(componentDao, request, response, new SimpleFilter(offset, limit));
+        return streaming.asXml2(componentDao, request, response, new SimpleFilter(offset, limit));
     }
 
     @ApiOperation(value = "Get Framework Component as XML", notes = COMPONENT_DESCRIPTION, tags = {
@@ -335,13 +336,13 @@ public class MetaTypeController {
             @ApiResponse(code = 200, message = "EtfItemCollection with multiple Tags")
     })
     @RequestMapping(value = {TAGS_URL, TAGS_URL + ".json"}, method = RequestMethod.GET)
-    public void listTagsJson(
+    public StreamingResponseBody listTagsJson(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response)
             throws IOException, ObjectWithIdNotFoundException {
-        streaming.asJson2(tagDao, request, response, new SimpleFilter(offset, limit));
+        return streaming.asJson2(tagDao, request, response, new SimpleFilter(offset, limit));
     }
 
     @ApiOperation(value = "Get multiple Tags as XML", notes = TAG_DESCRIPTION, tags = {
@@ -350,12 +351,12 @@ public class MetaTypeController {
             @ApiResponse(code = 200, message = "EtfItemCollection with multiple Tags")
     })
     @RequestMapping(value = {TAGS_URL + ".xml"}, method = RequestMethod.GET)
-    public void listTagsXml(
+    public StreamingResponseBody listTagsXml(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response) throws IOException, ObjectWithIdNotFoundException {
-        streaming.asXml2(tagDao, request, response, new SimpleFilter(offset, limit));
+        return streaming.asXml2(tagDao, request, response, new SimpleFilter(offset, limit));
     }
 
     @ApiOperation(value = "Get Tag as XML", notes = TAG_DESCRIPTION, tags = {SERVICE_CAP_TAG_NAME}, produces = "text/xml")
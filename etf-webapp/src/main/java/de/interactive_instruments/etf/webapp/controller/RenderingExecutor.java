@@ -0,0 +1,393 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.webapp.controller;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.CallableProcessingInterceptorAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Bounded executor for responses that are expensive to produce, like rendered reports, list exports and
+ * compressed Test Object resources.
+ *
+ * Controllers return these responses as {@link StreamingResponseBody}. Spring MVC writes them asynchronously
+ * with this executor (see webmvc-config.xml), so that a servlet container thread is only occupied until the
+ * request has been accepted. Responses that are cheap to produce, like cached responses, are written directly
+ * and do not enter the rendering queue.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@Component("renderingExecutor")
+public class RenderingExecutor implements AsyncTaskExecutor {
+
+    @Autowired
+    private EtfConfig etfConfig;
+
+    private ThreadPoolExecutor executor;
+    private int queueLimit;
+    private long timeout;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final Durations waitTimes = new Durations();
+    private final Durations renderTimes = new Durations();
+    private final Logger logger = LoggerFactory.getLogger(RenderingExecutor.class);
+    private static final String RENDERING_ATTRIBUTE = RenderingExecutor.class.getName() + ".rendering";
+
+    /**
+     * The rendering thread of a request, which is interrupted if the request times out
+     */
+    private static final class Rendering {
+        private Thread thread;
+        private boolean timedOut;
+
+        synchronized void start() {
+            if (timedOut) {
+                throw new CancellationException("The request timed out before the response was rendered");
+            }
+            thread = Thread.currentThread();
+        }
+
+        synchronized void stop() {
+            thread = null;
+        }
+
+        synchronized void cancel() {
+            timedOut = true;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Durations in nanoseconds, collected between two samples
+     */
+    private static final class Durations {
+        private long count;
+        private long sum;
+        private long max;
+
+        synchronized void add(final long duration) {
+            count++;
+            sum += duration;
+            max = Math.max(max, duration);
+        }
+
+        /**
+         * Returns the average and the maximum duration in milliseconds and resets the durations
+         */
+        synchronized long[] sample() {
+            final long[] sample = new long[]{
+                    count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(sum / count),
+                    TimeUnit.NANOSECONDS.toMillis(max)};
+            count = 0;
+            sum = 0;
+            max = 0;
+            return sample;
+        }
+    }
+
+    /**
+     * Utilization of the rendering executor
+     */
+    static final class Metrics {
+        private final int threads;
+        private final int active;
+        private final int queued;
+        private final int queueLimit;
+        private final long completed;
+        private final long rejected;
+        private final long timedOut;
+        private final long averageWaitTime;
+        private final long maxWaitTime;
+        private final long averageRenderTime;
+        private final long maxRenderTime;
+
+        private Metrics(final RenderingExecutor renderingExecutor) {
+            this.threads = renderingExecutor.executor.getMaximumPoolSize();
+            this.active = renderingExecutor.executor.getActiveCount();
+            this.queued = renderingExecutor.executor.getQueue().size();
+            this.queueLimit = renderingExecutor.queueLimit;
+            this.completed = renderingExecutor.completed.sum();
+            this.rejected = renderingExecutor.rejected.sum();
+            this.timedOut = renderingExecutor.timedOut.sum();
+            final long[] waitTime = renderingExecutor.waitTimes.sample();
+            this.averageWaitTime = waitTime[0];
+            this.maxWaitTime = waitTime[1];
+            final long[] renderTime = renderingExecutor.renderTimes.sample();
+            this.averageRenderTime = renderTime[0];
+            this.maxRenderTime = renderTime[1];
+        }
+
+        int getThreads() {
+            return threads;
+        }
+
+        int getActive() {
+            return active;
+        }
+
+        int getQueued() {
+            return queued;
+        }
+
+        int getQueueLimit() {
+            return queueLimit;
+        }
+
+        long getCompleted() {
+            return completed;
+        }
+
+        long getRejected() {
+            return rejected;
+        }
+
+        long getTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * @return average time in milliseconds the responses waited in the queue since the last sample
+         */
+        long getAverageWaitTime() {
+            return averageWaitTime;
+        }
+
+        long getMaxWaitTime() {
+            return maxWaitTime;
+        }
+
+        /**
+         * @return average time in milliseconds needed to write the responses since the last sample
+         */
+        long getAverageRenderTime() {
+            return averageRenderTime;
+        }
+
+        long getMaxRenderTime() {
+            return maxRenderTime;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String prefix) {
+        return new ThreadFactory() {
+            private int counter;
+
+            @Override
+            public synchronized Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, prefix + ++counter);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    @PostConstruct
+    void init() {
+        int threads;
+        try {
+            final String threadsProperty = etfConfig.getPropertyOrDefault(EtfConfig.ETF_RENDERING_THREADS, "auto");
+            threads = "auto".equalsIgnoreCase(threadsProperty) ? Runtime.getRuntime().availableProcessors()
+                    : Integer.parseInt(threadsProperty);
+            queueLimit = Integer.parseInt(etfConfig.getPropertyOrDefault(EtfConfig.ETF_RENDERING_QUEUE_MAX, "64"));
+            timeout = TimeUnit.SECONDS.toMillis(
+                    Long.parseLong(etfConfig.getPropertyOrDefault(EtfConfig.ETF_RENDERING_TIMEOUT, "600")));
+        } catch (final NumberFormatException e) {
+            logger.error("Invalid rendering executor configuration, using the defaults");
+            threads = Runtime.getRuntime().availableProcessors();
+            queueLimit = 64;
+            timeout = TimeUnit.SECONDS.toMillis(600);
+        }
+        threads = Math.max(1, threads);
+        queueLimit = Math.max(1, queueLimit);
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueLimit), daemonThreads("rendering-"));
+        executor.allowCoreThreadTimeOut(true);
+        logger.info("Rendering executor initialized with {} threads and a queue of {} responses", threads,
+                queueLimit);
+    }
+
+    @PreDestroy
+    void release() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Checks that the rendering queue can accept another response, before the request is processed
+     * asynchronously. A rejected request is answered with status 503 by the {@link RestExceptionHandler}.
+     *
+     * @param body
+     *            response body that is written by a rendering thread
+     * @return the response body
+     * @throws TaskRejectedException
+     *             if the rendering queue is full
+     */
+    StreamingResponseBody admit(final StreamingResponseBody body) {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            rejected.increment();
+            throw new TaskRejectedException("The rendering queue is full");
+        }
+        return body;
+    }
+
+    /**
+     * Returns the utilization of the executor. The wait and render times are collected since the last call.
+     *
+     * @return current metrics
+     */
+    Metrics sample() {
+        return new Metrics(this);
+    }
+
+    /**
+     * Returns the interceptor that applies the configured timeout to requests that are processed
+     * asynchronously and counts the timed out requests. The rendering thread of a timed out request is
+     * interrupted, a request that times out while waiting in the queue is not rendered anymore. It is
+     * registered in webmvc-config.xml.
+     *
+     * @return timeout interceptor
+     */
+    public CallableProcessingInterceptor timeoutInterceptor() {
+        return new CallableProcessingInterceptorAdapter() {
+            @Override
+            public <T> void beforeConcurrentHandling(final NativeWebRequest request, final Callable<T> task) {
+                if (request instanceof AsyncWebRequest) {
+                    ((AsyncWebRequest) request).setTimeout(timeout);
+                }
+                request.setAttribute(RENDERING_ATTRIBUTE, new Rendering(), RequestAttributes.SCOPE_REQUEST);
+            }
+
+            @Override
+            public <T> void preProcess(final NativeWebRequest request, final Callable<T> task) {
+                final Rendering rendering = (Rendering) request.getAttribute(RENDERING_ATTRIBUTE,
+                        RequestAttributes.SCOPE_REQUEST);
+                if (rendering != null) {
+                    rendering.start();
+                }
+            }
+
+            @Override
+            public <T> void postProcess(final NativeWebRequest request, final Callable<T> task,
+                    final Object concurrentResult) {
+                final Rendering rendering = (Rendering) request.getAttribute(RENDERING_ATTRIBUTE,
+                        RequestAttributes.SCOPE_REQUEST);
+                if (rendering != null) {
+                    rendering.stop();
+                }
+            }
+
+            @Override
+            public <T> Object handleTimeout(final NativeWebRequest request, final Callable<T> task) {
+                timedOut.increment();
+                final Rendering rendering = (Rendering) request.getAttribute(RENDERING_ATTRIBUTE,
+                        RequestAttributes.SCOPE_REQUEST);
+                if (rendering != null) {
+                    rendering.cancel();
+                }
+                return RESULT_NONE;
+            }
+        };
+    }
+
+    private Runnable measured(final Runnable task) {
+        final long submitted = System.nanoTime();
+        return () -> {
+            final long started = System.nanoTime();
+            waitTimes.add(started - submitted);
+            try {
+                task.run();
+            } finally {
+                renderTimes.add(System.nanoTime() - started);
+                completed.increment();
+            }
+        };
+    }
+
+    private <T> Callable<T> measured(final Callable<T> task) {
+        final long submitted = System.nanoTime();
+        return () -> {
+            final long started = System.nanoTime();
+            waitTimes.add(started - submitted);
+            try {
+                return task.call();
+            } finally {
+                renderTimes.add(System.nanoTime() - started);
+                completed.increment();
+            }
+        };
+    }
+
+    private TaskRejectedException rejected(final RejectedExecutionException e) {
+        rejected.increment();
+        return new TaskRejectedException("The rendering queue is full", e);
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        try {
+            executor.execute(measured(task));
+        } catch (final RejectedExecutionException e) {
+            throw rejected(e);
+        }
+    }
+
+    @Override
+    public void execute(final Runnable task, final long startTimeout) {
+        execute(task);
+    }
+
+    @Override
+    public Future<?> submit(final Runnable task) {
+        try {
+            return executor.submit(measured(task));
+        } catch (final RejectedExecutionException e) {
+            throw rejected(e);
+        }
+    }
+
+    @Override
+    public <T> Future<T> submit(final Callable<T> task) {
+        try {
+            return executor.submit(measured(task));
+        } catch (final RejectedExecutionException e) {
+            throw rejected(e);
+        }
+    }
+}
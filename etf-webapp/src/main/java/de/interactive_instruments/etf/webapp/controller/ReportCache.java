@@ -0,0 +1,280 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.webapp.controller;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+
+import de.interactive_instruments.etf.dal.dao.Dao;
+import de.interactive_instruments.etf.dal.dao.PreparedDto;
+import de.interactive_instruments.etf.dal.dao.WriteDao;
+import de.interactive_instruments.etf.dal.dao.WriteDaoListener;
+import de.interactive_instruments.etf.dal.dto.Dto;
+import de.interactive_instruments.etf.dal.dto.result.TestTaskResultDto;
+import de.interactive_instruments.etf.model.EID;
+import de.interactive_instruments.etf.model.OutputFormat;
+import de.interactive_instruments.properties.Properties;
+
+/**
+ * Stores rendered HTML reports as files, one per item, language and revision of the report output format.
+ *
+ * A report is rendered on demand when a language is requested for the first time. When a Test Run completes, its
+ * report is rendered in the background for all languages that have been requested before. Only the languages of
+ * the report stylesheet are accepted, all other languages are replaced with the default language. Reports are only stored
+ * for items that do not change anymore and are removed with write events of the DAOs.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class ReportCache implements WriteDaoListener<Dto> {
+
+    private final Logger logger = LoggerFactory.getLogger(ReportCache.class);
+
+    private static final String UI_TEXT = "xslt/default/ui-text.xml";
+
+    private final File dir;
+    private final OutputFormat reportFormat;
+    private final boolean compress;
+    // languages of the report stylesheet, the first one is the default language
+    private final Set<String> languages;
+    private final String defaultLanguage;
+    private final Set<String> requestedLanguages = ConcurrentHashMap.newKeySet();
+    private final ExecutorService renderer = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "report-renderer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    ReportCache(final File dir, final OutputFormat reportFormat, final boolean compress) {
+        this.dir = dir;
+        this.reportFormat = reportFormat;
+        this.compress = compress;
+        this.languages = loadLanguages();
+        this.defaultLanguage = languages.iterator().next();
+        dir.mkdirs();
+    }
+
+    /**
+     * Reads the languages from the texts of the default report stylesheet. The stylesheet falls back to the first
+     * language for all other languages.
+     */
+    private Set<String> loadLanguages() {
+        final Set<String> langs = new LinkedHashSet<>();
+        try (final InputStream in = ReportCache.class.getClassLoader().getResourceAsStream(UI_TEXT)) {
+            if (in != null) {
+                final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamReader.START_ELEMENT && "lang".equals(reader.getLocalName())) {
+                        final String lang = reader.getAttributeValue(XMLConstants.XML_NS_URI, "lang");
+                        if (lang != null) {
+                            langs.add(lang);
+                        }
+                    }
+                }
+                reader.close();
+            }
+        } catch (final IOException | XMLStreamException e) {
+            logger.warn("Could not read the languages of the report stylesheet", e);
+        }
+        if (langs.isEmpty()) {
+            langs.add("en");
+        }
+        return Collections.unmodifiableSet(langs);
+    }
+
+    /**
+     * Returns the language if the report stylesheet supports it, otherwise the default language
+     */
+    String supportedLanguage(final String language) {
+        return language != null && languages.contains(language) ? language : defaultLanguage;
+    }
+
+    /**
+     * Removes the reports of the items that are changed or deleted in the DAO
+     */
+    void watch(final Dao<? extends Dto> dao) {
+        if (dao instanceof WriteDao) {
+            ((WriteDao) dao).registerListener(this);
+        }
+    }
+
+    /**
+     * Returns true if the report of the item does not change anymore
+     */
+    static boolean isCacheable(final Dto dto) {
+        return dto instanceof TestTaskResultDto || ItemResponseCache.immutableVersionOf(dto) != null;
+    }
+
+    private File fileFor(final EID eid, final String language, final String revision) {
+        return new File(new File(dir, eid.getId()),
+                language + "-" + revision + (compress ? ".html.gz" : ".html"));
+    }
+
+    /**
+     * Returns the stored report or null if the report has not been rendered in this language yet
+     */
+    File get(final EID eid, final String language) {
+        final String revision = reportFormat.getRevision();
+        if (revision == null) {
+            return null;
+        }
+        final String lang = supportedLanguage(language);
+        requestedLanguages.add(lang);
+        final File file = fileFor(eid, lang, revision);
+        return file.exists() ? file : null;
+    }
+
+    /**
+     * Renders and stores the report. The item must be cacheable.
+     *
+     * @return the stored report or null if the output format can not be cached
+     */
+    File render(final PreparedDto<? extends Dto> preparedDto, final String language) throws IOException {
+        final String revision = reportFormat.getRevision();
+        if (revision == null) {
+            return null;
+        }
+        final String lang = supportedLanguage(language);
+        requestedLanguages.add(lang);
+        final File file = fileFor(preparedDto.getDtoId(), lang, revision);
+        file.getParentFile().mkdirs();
+        final File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            try (final OutputStream out = compress
+                    ? new GZIPOutputStream(new FileOutputStream(tmp), 65536)
+                    : new BufferedOutputStream(new FileOutputStream(tmp), 65536)) {
+                preparedDto.streamTo(reportFormat, new Properties().setProperty("language", lang), out);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmp.delete();
+        }
+        return file;
+    }
+
+    /**
+     * Renders the report of a completed item in the background, in all languages that have been requested before
+     */
+    void prerender(final Dao<? extends Dto> dao, final EID eid, final String defaultLanguage) {
+        if (reportFormat.getRevision() == null) {
+            return;
+        }
+        if (defaultLanguage != null) {
+            requestedLanguages.add(supportedLanguage(defaultLanguage));
+        }
+        renderer.execute(() -> {
+            try {
+                final PreparedDto<? extends Dto> preparedDto = dao.getById(eid);
+                if (!isCacheable(preparedDto.getDto())) {
+                    return;
+                }
+                for (final String language : requestedLanguages) {
+                    if (get(eid, language) == null) {
+                        render(preparedDto, language);
+                    }
+                }
+                logger.debug("Rendered reports of {} in {}", eid, requestedLanguages);
+            } catch (final Exception e) {
+                logger.warn("Could not render the report of {}", eid, e);
+            }
+        });
+    }
+
+    /**
+     * Writes a stored report, decompressed if the client does not accept gzip
+     */
+    void writeTo(final File report, final HttpServletRequest request, final HttpServletResponse response)
+            throws IOException {
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (compress && !CachedResponse.acceptsGzip(request)) {
+            try (final InputStream in = new GZIPInputStream(new FileInputStream(report), 65536)) {
+                IOUtils.copy(in, response.getOutputStream());
+            }
+            return;
+        }
+        if (compress) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        final long length = report.length();
+        response.setContentLengthLong(length);
+        FileResponse.transfer(report, 0, length, request, response);
+    }
+
+    /**
+     * Sets the headers for a report that is written later by a rendering thread
+     *
+     * @return true if the body has to be written gzip encoded
+     */
+    boolean setEncodingHeaders(final HttpServletRequest request, final HttpServletResponse response) {
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        final boolean encoded = compress && CachedResponse.acceptsGzip(request);
+        if (encoded) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return encoded;
+    }
+
+    /**
+     * Writes a stored report to a response body, in the encoding returned by
+     * {@link #setEncodingHeaders(HttpServletRequest, HttpServletResponse)}
+     */
+    void writeBody(final File report, final boolean encoded, final OutputStream out) throws IOException {
+        if (compress && !encoded) {
+            try (final InputStream in = new GZIPInputStream(new FileInputStream(report), 65536)) {
+                IOUtils.copy(in, out);
+            }
+        } else {
+            Files.copy(report.toPath(), out);
+        }
+    }
+
+    @Override
+    public void writeOperationPerformed(final EventType event, final PreparedDto<Dto> dto) {
+        final File itemDir = new File(dir, dto.getDtoId().getId());
+        final File[] files = itemDir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+            itemDir.delete();
+        }
+    }
+
+    void release() {
+        renderer.shutdownNow();
+    }
+}
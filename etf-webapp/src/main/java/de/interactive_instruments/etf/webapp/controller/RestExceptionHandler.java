@@ -17,6 +17,7 @@ package de.interactive_instruments.etf.webapp.controller;
 
 import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -34,6 +35,7 @@ import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
 
 import de.interactive_instruments.etf.model.exceptions.IllegalEidException;
 import de.interactive_instruments.etf.webapp.dto.ApiError;
@@ -109,6 +111,14 @@ class RestExceptionHandler {
             final LocalizableApiError e = new LocalizableApiError((FileUploadBase.SizeLimitExceededException) exception);
             conv = new ApiError(e, request.getRequestURL().toString(), applicationContext);
             status = e.sc;
+        } else if (exception instanceof RejectedExecutionException
+                || exception instanceof AsyncRequestTimeoutException) {
+            // the rendering queue is full or the response could not be rendered in time
+            final LocalizableApiError e = new LocalizableApiError(
+                    exception instanceof RejectedExecutionException ? "l.rendering.queue.full" : "l.rendering.timeout",
+                    false, HttpServletResponse.SC_SERVICE_UNAVAILABLE, exception);
+            conv = new ApiError(e, request.getRequestURL().toString(), applicationContext);
+            status = e.sc;
         } else {
             status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
             conv = null;
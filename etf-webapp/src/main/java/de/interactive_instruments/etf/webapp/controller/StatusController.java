@@ -19,12 +19,14 @@ import static de.interactive_instruments.etf.EtfConstants.ETF_TESTDRIVERS_STORAG
 import static de.interactive_instruments.etf.webapp.SwaggerConfig.STATUS_TAG_NAME;
 import static de.interactive_instruments.etf.webapp.controller.EtfConfig.ETF_TEST_OBJECT_MAX_SIZE;
 
+import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import javax.annotation.PostConstruct;
 
@@ -45,6 +47,8 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
 import de.interactive_instruments.IFile;
+import de.interactive_instruments.etf.testdriver.AdaptivePoolSizing;
+import de.interactive_instruments.etf.testdriver.BulkheadStatus;
 import de.interactive_instruments.exceptions.ExcUtils;
 import de.interactive_instruments.exceptions.config.InvalidPropertyException;
 import de.interactive_instruments.exceptions.config.MissingPropertyException;
@@ -61,6 +65,9 @@ public class StatusController {
     @Autowired
     private EtfConfig etfConfig;
 
+    @Autowired
+    private RenderingExecutor renderingExecutor;
+
     private final static String STATUS_DESCRIPTION = "Status MINOR indicates that "
             + "the service encounters an increased workload." +
             " Status MAJOR indicates that framework internal errors "
@@ -85,6 +92,8 @@ public class StatusController {
             "totalSpace",
             "freeSpace",
             "cpuLoad",
+            "testDriverUtilization",
+            "rendering",
             "messages",
     })
     @ApiModel(description = "Extended status information about the service")
@@ -127,13 +136,20 @@ public class StatusController {
         @ApiModelProperty(value = "Returns the recent cpu usage for the service.", example = "786432000")
         private final String cpuLoad;
 
+        @ApiModelProperty(value = "Utilization of the Test Driver bulkheads that limit the number of parallel Test Runs")
+        private final List<BulkheadUtilization> testDriverUtilization;
+
+        @ApiModelProperty(value = "Utilization of the executor that renders reports and list exports")
+        private final RenderingUtilization rendering;
+
         @ApiModelProperty(value = "Service warning and/or error messages", example = "[\"Less than 10% RAM available\"]")
         private final List<String> messages;
 
         private ExtendedServiceStatus(final String name, final String status, final long heartbeat,
                 final long willExpireAt, final String version, final long allocatedMemory,
                 final long presumableFreeMemory, final long totalSpace, final long freeSpace,
-                final String cpuLoad, final List<String> messages) {
+                final String cpuLoad, final List<BulkheadUtilization> testDriverUtilization,
+                final RenderingUtilization rendering, final List<String> messages) {
             this.name = name;
             this.status = status;
             this.heartbeat = String.valueOf(heartbeat);
@@ -145,6 +161,10 @@ public class StatusController {
             this.totalSpace = String.valueOf(totalSpace);
             this.freeSpace = String.valueOf(freeSpace);
             this.cpuLoad = cpuLoad;
+            this.testDriverUtilization = testDriverUtilization != null && !testDriverUtilization.isEmpty()
+                    ? testDriverUtilization
+                    : null;
+            this.rendering = rendering;
             if (messages != null && !messages.isEmpty()) {
                 this.messages = messages;
             } else {
@@ -153,11 +173,121 @@ public class StatusController {
         }
     }
 
+    @ApiModel(description = "Utilization of a bulkhead that limits the parallel Test Runs of one or more Test Drivers")
+    private final static class BulkheadUtilization {
+
+        @ApiModelProperty(value = "Bulkhead name, the Test Driver id or the name of a group of Test Drivers", example = "EID4dddc9e2-1b21-40b7-af70-6a2d156ad130")
+        private final String name;
+
+        @ApiModelProperty(value = "Maximum number of parallel Test Runs", example = "2")
+        private final int limit;
+
+        @ApiModelProperty(value = "Number of running Test Runs", example = "3")
+        private final int running;
+
+        @ApiModelProperty(value = "Number of running Test Runs that exceed the limit and use idle threads", example = "1")
+        private final int borrowed;
+
+        @ApiModelProperty(value = "Number of queued Test Runs", example = "5")
+        private final int queued;
+
+        @ApiModelProperty(value = "Number of completed Test Runs", example = "120")
+        private final long completed;
+
+        @ApiModelProperty(value = "Running Test Runs divided by the limit", example = "1.5")
+        private final String utilization;
+
+        private BulkheadUtilization(final BulkheadStatus status) {
+            this.name = status.getName();
+            this.limit = status.getLimit();
+            this.running = status.getRunning();
+            this.borrowed = status.getBorrowed();
+            this.queued = status.getQueued();
+            this.completed = status.getCompleted();
+            this.utilization = String.format(Locale.ENGLISH, "%.2f", status.getUtilization());
+        }
+    }
+
+    @ApiModel(description = "Utilization of the executor that renders reports, list exports and Test Object downloads")
+    private final static class RenderingUtilization {
+
+        @ApiModelProperty(value = "Number of rendering threads", example = "4")
+        private final int threads;
+
+        @ApiModelProperty(value = "Number of responses that are currently rendered", example = "2")
+        private final int active;
+
+        @ApiModelProperty(value = "Number of responses waiting in the rendering queue", example = "0")
+        private final int queued;
+
+        @ApiModelProperty(value = "Maximum number of waiting responses", example = "64")
+        private final int queueLimit;
+
+        @ApiModelProperty(value = "Number of rendered responses", example = "1200")
+        private final long completed;
+
+        @ApiModelProperty(value = "Number of requests rejected because the rendering queue was full", example = "0")
+        private final long rejected;
+
+        @ApiModelProperty(value = "Number of requests that timed out", example = "0")
+        private final long timedOut;
+
+        @ApiModelProperty(value = "Average time in milliseconds the responses waited in the queue since the last status update", example = "15")
+        private final long averageWaitTime;
+
+        @ApiModelProperty(value = "Maximum time in milliseconds a response waited in the queue since the last status update", example = "120")
+        private final long maxWaitTime;
+
+        @ApiModelProperty(value = "Average time in milliseconds needed to render a response since the last status update", example = "350")
+        private final long averageRenderTime;
+
+        @ApiModelProperty(value = "Maximum time in milliseconds needed to render a response since the last status update", example = "2100")
+        private final long maxRenderTime;
+
+        private RenderingUtilization(final RenderingExecutor.Metrics metrics) {
+            this.threads = metrics.getThreads();
+            this.active = metrics.getActive();
+            this.queued = metrics.getQueued();
+            this.queueLimit = metrics.getQueueLimit();
+            this.completed = metrics.getCompleted();
+            this.rejected = metrics.getRejected();
+            this.timedOut = metrics.getTimedOut();
+            this.averageWaitTime = metrics.getAverageWaitTime();
+            this.maxWaitTime = metrics.getMaxWaitTime();
+            this.averageRenderTime = metrics.getAverageRenderTime();
+            this.maxRenderTime = metrics.getMaxRenderTime();
+        }
+    }
+
+    private volatile Supplier<List<BulkheadStatus>> bulkheadStatusSupplier;
+
+    /**
+     * Sets the source of the Test Driver bulkhead utilization reported in the extended status
+     *
+     * @param bulkheadStatusSupplier
+     *            supplier of the bulkhead status
+     */
+    void setBulkheadStatusSupplier(final Supplier<List<BulkheadStatus>> bulkheadStatusSupplier) {
+        this.bulkheadStatusSupplier = bulkheadStatusSupplier;
+    }
+
+    private List<BulkheadUtilization> getBulkheadUtilization() {
+        final Supplier<List<BulkheadStatus>> supplier = bulkheadStatusSupplier;
+        if (supplier == null) {
+            return null;
+        }
+        final List<BulkheadUtilization> utilization = new ArrayList<>();
+        supplier.get().forEach(status -> utilization.add(new BulkheadUtilization(status)));
+        return utilization;
+    }
+
     @PostConstruct
     public void init() throws MissingPropertyException {
         tdDir = etfConfig.getPropertyAsFile(ETF_TESTDRIVERS_STORAGE_DIR);
         startTimeMillis = System.currentTimeMillis();
         mbean = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        lastGcTime = getGcTime();
+        lastGcSample = System.currentTimeMillis();
         logger.info("Status controller initialized!");
     }
 
@@ -174,6 +304,11 @@ public class StatusController {
 
     private OperatingSystemMXBean mbean;
 
+    private long lastGcTime;
+    private long lastGcSample;
+    private final AtomicReference<AdaptivePoolSizing.Metrics> resourceMetrics = new AtomicReference<>(
+            new AdaptivePoolSizing.Metrics(-1, 1, 0));
+
     private final static int updateInterval = 20000;
     // 5 GB
     private final static long defaultDiskSpaceAlarm = 5368709120L;
@@ -183,6 +318,7 @@ public class StatusController {
 
         final long allocatedMemory = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
         final long presumableFreeMemory = Runtime.getRuntime().maxMemory() - allocatedMemory;
+        sampleResourceMetrics(presumableFreeMemory);
 
         final List<String> statusWarningMessages = new ArrayList<>();
         ServiceStatus nextStatus = ServiceStatus.GOOD;
@@ -224,6 +360,13 @@ public class StatusController {
             statusWarningMessages.add("Less than 512 MB RAM available");
             nextStatus = ServiceStatus.MAJOR;
         }
+        final RenderingExecutor.Metrics renderingMetrics = renderingExecutor.sample();
+        if (renderingMetrics.getQueued() >= renderingMetrics.getQueueLimit()) {
+            statusWarningMessages.add("Rendering queue is full");
+            if (nextStatus != ServiceStatus.MAJOR) {
+                nextStatus = ServiceStatus.MINOR;
+            }
+        }
 
         final long modified = System.currentTimeMillis();
         final long expires;
@@ -263,6 +406,8 @@ public class StatusController {
                 tdDir.getTotalSpace(),
                 tdDir.getFreeSpace(),
                 String.format(Locale.ENGLISH, "%3f", mbean.getProcessCpuLoad()),
+                getBulkheadUtilization(),
+                new RenderingUtilization(renderingMetrics),
                 statusWarningMessages));
     }
 
@@ -296,6 +441,35 @@ public class StatusController {
         return serviceStatus.get();
     }
 
+    private static long getGcTime() {
+        long gcTime = 0;
+        for (final GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcTime += Math.max(0, gcBean.getCollectionTime());
+        }
+        return gcTime;
+    }
+
+    private void sampleResourceMetrics(final long presumableFreeMemory) {
+        final long gcTime = getGcTime();
+        final long now = System.currentTimeMillis();
+        final double gcTimeRatio = ((double) (gcTime - lastGcTime)) / Math.max(1, now - lastGcSample);
+        lastGcTime = gcTime;
+        lastGcSample = now;
+        resourceMetrics.set(new AdaptivePoolSizing.Metrics(
+                mbean.getProcessCpuLoad(),
+                ((double) presumableFreeMemory) / Runtime.getRuntime().maxMemory(),
+                gcTimeRatio));
+    }
+
+    /**
+     * Returns the CPU load, heap headroom and GC time sampled during the last update interval
+     *
+     * @return resource metrics
+     */
+    public AdaptivePoolSizing.Metrics getResourceMetrics() {
+        return resourceMetrics.get();
+    }
+
     public void ensureStatusNotMajor() throws LocalizableApiError {
         if (ServiceStatus.valueOf(serviceStatus.get().status) == ServiceStatus.MAJOR) {
             throw new LocalizableApiError("l.system.status.major", false, 503);
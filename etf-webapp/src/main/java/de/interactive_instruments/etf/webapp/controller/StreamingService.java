@@ -15,9 +15,9 @@
  */
 package de.interactive_instruments.etf.webapp.controller;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -29,15 +29,18 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import de.interactive_instruments.etf.dal.dao.Dao;
 import de.interactive_instruments.etf.dal.dao.Filter;
+import de.interactive_instruments.etf.dal.dao.PreparedDto;
 import de.interactive_instruments.etf.dal.dto.Dto;
+import de.interactive_instruments.etf.dal.dto.capabilities.TestObjectDto;
+import de.interactive_instruments.etf.model.EID;
 import de.interactive_instruments.etf.model.EidFactory;
 import de.interactive_instruments.etf.model.OutputFormat;
 import de.interactive_instruments.etf.webapp.conversion.EidConverter;
@@ -56,6 +59,18 @@ public class StreamingService {
     @Autowired
     private ObjectMapperFactory objectMapperFactory;
 
+    @Autowired
+    private RenderingExecutor renderingExecutor;
+
+    @Autowired
+    private DataStorageService dataStorageService;
+
+    @Autowired
+    private EtfConfig etfConfig;
+
+    // seconds clients may reuse cached items without revalidating them
+    private long itemMaxAge = TimeUnit.DAYS.toSeconds(1);
+
     private ObjectMapper mapper;
 
     private long initCacheSize() {
@@ -67,11 +82,18 @@ public class StreamingService {
         return size;
     }
 
-    private final Cache<String, byte[]> bigResponseCache = Caffeine.newBuilder().maximumSize(initCacheSize()).build();
+    private final Cache<String, CachedResponse> bigResponseCache = Caffeine.newBuilder().maximumSize(initCacheSize()).build();
+
+    private final ItemResponseCache itemResponseCache = new ItemResponseCache();
 
     @PostConstruct
     void init() throws Exception {
         mapper = objectMapperFactory.getObject();
+        itemResponseCache.watch(dataStorageService.getDao(TestObjectDto.class));
+        final long exp = etfConfig.getPropertyAsLong(EtfConfig.ETF_TESTREPORTS_LIFETIME_EXPIRATION);
+        if (exp > 0 && TimeUnit.MINUTES.toSeconds(exp) < itemMaxAge) {
+            itemMaxAge = TimeUnit.MINUTES.toSeconds(exp);
+        }
     }
 
     @PreDestroy
@@ -79,36 +101,74 @@ public class StreamingService {
         com.fasterxml.jackson.databind.type.TypeFactory.defaultInstance().clearCache();
     }
 
-    void asXml2(
+    /**
+     * Streams multiple items as XML. The items are queried and written by the {@link RenderingExecutor}.
+     *
+     * @return the response body that is written asynchronously or null if the client's copy is up to date
+     */
+    StreamingResponseBody asXml2(
             final Dao<? extends Dto> dao, final HttpServletRequest request, final HttpServletResponse response,
-            final Filter filter)
-            throws IOException {
+            final Filter filter) {
         if (CacheControl.clientNeedsUpdate(dao, request, response)) {
-            final ServletOutputStream out = response.getOutputStream();
             response.setContentType(MediaType.TEXT_XML_VALUE);
             final OutputFormat xml = dao.getOutputFormats()
                     .get(EidFactory.getDefault().createUUID(dao.getDtoType().getSimpleName() + "DsResult2Xml"));
-            dao.getAll(filter).streamTo(xml, null, out);
+            return renderingExecutor.admit(out -> dao.getAll(filter).streamTo(xml, null, out));
         }
+        return null;
     }
 
     void asXml2(
             final Dao<? extends Dto> dao, final HttpServletRequest request, final HttpServletResponse response, final String id)
             throws IOException, ObjectWithIdNotFoundException {
-        if (CacheControl.clientNeedsUpdate(dao, request, response)) {
-            asXml2(dao, request, response, id, null);
-        }
+        asItem(dao, request, response, id, null, "DsResult2Xml", MediaType.TEXT_XML_VALUE, true);
     }
 
     void asXml2(
             final Dao<? extends Dto> dao, final HttpServletRequest request, final HttpServletResponse response,
             final String id, final Filter filter)
             throws IOException, ObjectWithIdNotFoundException {
-        final ServletOutputStream out = response.getOutputStream();
-        response.setContentType(MediaType.TEXT_XML_VALUE);
-        final OutputFormat xml = dao.getOutputFormats()
-                .get(EidFactory.getDefault().createUUID(dao.getDtoType().getSimpleName() + "DsResult2Xml"));
-        dao.getById(EidConverter.toEid(id), filter).streamTo(xml, null, out);
+        asItem(dao, request, response, id, filter, "DsResult2Xml", MediaType.TEXT_XML_VALUE, false);
+    }
+
+    /**
+     * Streams a single item. Representations of items that do not change anymore are served from the
+     * {@link ItemResponseCache} with a strong ETag, so that clients only need to revalidate them after the
+     * max-age.
+     */
+    private void asItem(
+            final Dao<? extends Dto> dao, final HttpServletRequest request, final HttpServletResponse response,
+            final String id, final Filter filter, final String format, final String contentType,
+            final boolean checkLastModified)
+            throws IOException, ObjectWithIdNotFoundException {
+        final EID eid = EidConverter.toEid(id);
+        final boolean cacheable = ItemResponseCache.isCacheable(dao.getDtoType());
+        final String key = ItemResponseCache.keyFor(eid, format, filter);
+        CachedResponse cached = cacheable ? itemResponseCache.get(dao, eid, key) : null;
+        if (cached == null) {
+            if (checkLastModified && !CacheControl.clientNeedsUpdate(dao, request, response)) {
+                return;
+            }
+            final long generation = itemResponseCache.generation();
+            final OutputFormat outputFormat = dao.getOutputFormats()
+                    .get(EidFactory.getDefault().createUUID(dao.getDtoType().getSimpleName() + format));
+            final PreparedDto<? extends Dto> preparedDto = dao.getById(eid, filter);
+            final String version = cacheable ? ItemResponseCache.immutableVersionOf(preparedDto.getDto()) : null;
+            if (version == null) {
+                final ServletOutputStream out = response.getOutputStream();
+                response.setContentType(contentType);
+                preparedDto.streamTo(outputFormat, null, out);
+                return;
+            }
+            try (ByteArrayOutputStream byteCache = new ByteArrayOutputStream()) {
+                preparedDto.streamTo(outputFormat, null, byteCache);
+                cached = new CachedResponse(contentType, byteCache.toByteArray());
+            }
+            itemResponseCache.put(dao, eid, key, version,
+                    ItemResponseCache.referencesOf(preparedDto.getDto()), cached, generation);
+        }
+        CacheControl.setMaxAge(itemMaxAge, response);
+        cached.writeTo(request, response);
     }
 
     private static String keyFor(final Dao<? extends Dto> dao, final Filter filter) {
@@ -120,65 +180,68 @@ public class StreamingService {
         return k.toString();
     }
 
-    public void prepareCache(final Dao<? extends Dto> dao, final Filter filter) {
+    private static CachedResponse prepareJson(final Dao<? extends Dto> dao, final Filter filter) throws IOException {
         try (ByteArrayOutputStream byteCache = new ByteArrayOutputStream()) {
             final OutputFormat json = dao.getOutputFormats().get(
                     EidFactory.getDefault().createUUID(dao.getDtoType().getSimpleName() + "DsResult2Json"));
             dao.getAll(filter).streamTo(json, null, byteCache);
-            bigResponseCache.put(keyFor(dao, filter), byteCache.toByteArray());
+            return new CachedResponse(MediaType.APPLICATION_JSON_UTF8_VALUE, byteCache.toByteArray());
+        }
+    }
+
+    public void prepareCache(final Dao<? extends Dto> dao, final Filter filter) {
+        try {
+            bigResponseCache.put(keyFor(dao, filter), prepareJson(dao, filter));
         } catch (IOException e) {
             ExcUtils.suppress(e);
         }
     }
 
-    void asJson2(final Dao<? extends Dto> dao, final HttpServletRequest request, final HttpServletResponse response,
-            final Filter filter) throws IOException {
-        asJson2(dao, request, response, filter, 120);
+    StreamingResponseBody asJson2(final Dao<? extends Dto> dao, final HttpServletRequest request,
+            final HttpServletResponse response, final Filter filter) throws IOException {
+        return asJson2(dao, request, response, filter, 120);
     }
 
-    void asJson2(
+    /**
+     * Writes multiple items as JSON. Cached responses are written directly, otherwise the response is
+     * prepared and written by the {@link RenderingExecutor}.
+     *
+     * @return the response body that is written asynchronously or null if the response has been written
+     */
+    StreamingResponseBody asJson2(
             final Dao<? extends Dto> dao, final HttpServletRequest request, final HttpServletResponse response,
             final Filter filter, final long maxAge)
             throws IOException {
         if (CacheControl.clientNeedsUpdate(dao, request, response, maxAge)) {
-            final ServletOutputStream out = response.getOutputStream();
-            response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
-
             // Check if response is in cache
             final String k = keyFor(dao, filter);
-            byte[] preparedResponse = bigResponseCache.getIfPresent(k);
-            if (preparedResponse == null) {
-                // save in cache
-                try (ByteArrayOutputStream byteCache = new ByteArrayOutputStream()) {
-                    final OutputFormat json = dao.getOutputFormats()
-                            .get(EidFactory.getDefault().createUUID(dao.getDtoType().getSimpleName() + "DsResult2Json"));
-                    dao.getAll(filter).streamTo(json, null, byteCache);
-                    preparedResponse = byteCache.toByteArray();
-                    bigResponseCache.put(k, preparedResponse);
-                }
-            }
-            try (ByteArrayInputStream byteStream = new ByteArrayInputStream(preparedResponse)) {
-                IOUtils.copy(byteStream, out);
+            final CachedResponse cachedResponse = bigResponseCache.getIfPresent(k);
+            if (cachedResponse != null) {
+                cachedResponse.writeTo(request, response);
+                return null;
             }
+            // the entity tag is only known after rendering, it is sent with the cached response to later requests
+            response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+            return renderingExecutor.admit(out -> {
+                // save in cache
+                final CachedResponse preparedResponse = prepareJson(dao, filter);
+                bigResponseCache.put(k, preparedResponse);
+                out.write(preparedResponse.getIdentity());
+            });
         }
+        return null;
     }
 
     void asJson2(
             final Dao<? extends Dto> dao, final HttpServletRequest request, final HttpServletResponse response,
             final String id) throws IOException, ObjectWithIdNotFoundException {
-        if (CacheControl.clientNeedsUpdate(dao, request, response)) {
-            asJson2(dao, request, response, id, null);
-        }
+        asItem(dao, request, response, id, null, "DsResult2Json", MediaType.APPLICATION_JSON_UTF8_VALUE, true);
     }
 
     void asJson2(
             final Dao<? extends Dto> dao, final HttpServletRequest request, final HttpServletResponse response,
             final String id, final Filter filter) throws IOException, ObjectWithIdNotFoundException {
-        final ServletOutputStream out = response.getOutputStream();
-        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
-        final OutputFormat json = dao.getOutputFormats()
-                .get(EidFactory.getDefault().createUUID(dao.getDtoType().getSimpleName() + "DsResult2Json"));
-        dao.getById(EidConverter.toEid(id), filter).streamTo(json, null, out);
+        asItem(dao, request, response, id, filter, "DsResult2Json", MediaType.APPLICATION_JSON_UTF8_VALUE, false);
     }
 
     void asJson2(
@@ -47,6 +47,7 @@ import de.interactive_instruments.etf.dal.dto.run.TestTaskDto;
 import de.interactive_instruments.etf.dal.dto.test.ExecutableTestSuiteDto;
 import de.interactive_instruments.etf.model.EID;
 import de.interactive_instruments.etf.model.EidFactory;
+import de.interactive_instruments.etf.testdriver.BulkheadDefinition;
 import de.interactive_instruments.etf.testdriver.TestDriverManager;
 import de.interactive_instruments.etf.testdriver.TestRun;
 import de.interactive_instruments.etf.testdriver.TestRunInitializationException;
@@ -132,6 +133,10 @@ public class TestDriverController implements PreparedDtoResolver<ExecutableTestS
         return driverManager.createTestRun(testRunDto);
     }
 
+    BulkheadDefinition getBulkhead(final EID testDriverId) {
+        return driverManager.getBulkhead(testDriverId);
+    }
+
     Collection<ExecutableTestSuiteDto> getExecutableTestSuites() throws ConfigurationException, StorageException {
         return etsDao.getAll(SimpleFilter.allItems()).asCollection();
     }
@@ -18,21 +18,27 @@ package de.interactive_instruments.etf.webapp.controller;
 import static de.interactive_instruments.etf.webapp.SwaggerConfig.TEST_OBJECTS_TAG_NAME;
 import static de.interactive_instruments.etf.webapp.dto.DocumentationConstants.*;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileOwnerAttributeView;
 import java.nio.file.attribute.UserPrincipal;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -57,12 +63,14 @@ import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import springfox.documentation.annotations.ApiIgnore;
 
 import de.interactive_instruments.*;
+import de.interactive_instruments.etf.EtfConstants;
 import de.interactive_instruments.etf.dal.dao.*;
 import de.interactive_instruments.etf.dal.dto.capabilities.ResourceDto;
 import de.interactive_instruments.etf.dal.dto.capabilities.TestObjectDto;
@@ -104,6 +112,9 @@ public class TestObjectController implements DtoResolver<TestObjectDto> {
     @Autowired
     private StreamingService streaming;
 
+    @Autowired
+    private RenderingExecutor renderingExecutor;
+
     @Autowired
     private TestObjectTypeDetectionService testObjectTypeDetectionService;
 
@@ -128,6 +139,11 @@ public class TestObjectController implements DtoResolver<TestObjectDto> {
     private FileStorage fileStorage;
     private FileContentFilterHolder baseFilter;
     private WriteDao<TestObjectDto> testObjectDao;
+    // compressed resources of Test Objects, removed when the Test Object changes
+    private IFile downloadDir;
+    private long maxDownloadsSize;
+    private final WriteDaoListener<TestObjectDto> archiveRemover = (eventType, dto) -> deleteArchives(dto.getDtoId(),
+            null);
     private final Cache<EID, TestObjectDto> transientTestObjects = Caffeine.newBuilder().expireAfterWrite(
             T_CREATION_WINDOW, TimeUnit.MINUTES).build();
 
@@ -289,6 +305,7 @@ public class TestObjectController implements DtoResolver<TestObjectDto> {
 
     @PreDestroy
     private void shutdown() {
+        testObjectDao.deregisterListener(archiveRemover);
         testObjectDao.release();
         if (this.cleanTimer != null) {
             cleanTimer.cancel();
@@ -346,6 +363,10 @@ public class TestObjectController implements DtoResolver<TestObjectDto> {
         logger.info("TMP_HTTP_UPLOADS: " + tmpUploadDir.getAbsolutePath());
 
         testObjectDao = ((WriteDao<TestObjectDto>) dataStorageService.getDao(TestObjectDto.class));
+        downloadDir = etfConfig.getPropertyAsFile(EtfConstants.ETF_INTERNAL_DATABASE_DIR).expandPath("downloads");
+        downloadDir.ensureDir();
+        maxDownloadsSize = etfConfig.getPropertyAsLong(EtfConfig.ETF_TESTOBJECT_DOWNLOADS_MAX_SIZE);
+        testObjectDao.registerListener(archiveRemover);
 
         final long exp = etfConfig.getPropertyAsLong(EtfConfig.ETF_TESTOBJECT_UPLOADED_LIFETIME_EXPIRATION);
         if (exp > 0) {
@@ -571,13 +592,13 @@ public class TestObjectController implements DtoResolver<TestObjectDto> {
 
     @ApiOperation(value = "Get multiple Test Objects as JSON", notes = TEST_OBJECT_DESCRIPTION, tags = {TEST_OBJECTS_TAG_NAME})
     @RequestMapping(value = {TESTOBJECTS_URL, TESTOBJECTS_URL + ".json"}, method = RequestMethod.GET)
-    public void listTestObjectsJson(
+    public StreamingResponseBody listTestObjectsJson(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response)
             throws IOException {
-        streaming.asJson2(testObjectDao, request, response, new SimpleFilter(offset, limit), 20);
+        return streaming.asJson2(testObjectDao, request, response, new SimpleFilter(offset, limit), 20);
     }
 
     @ApiOperation(value = "Get multiple Test Objects as XML", notes = TEST_OBJECT_DESCRIPTION, tags = {
@@ -586,12 +607,12 @@ public class TestObjectController implements DtoResolver<TestObjectDto> {
             @ApiResponse(code = 200, message = "EtfItemCollection with multiple Test Objects", reference = "www.interactive-instruments.de")
     })
     @RequestMapping(value = {TESTOBJECTS_URL + ".xml"}, method = RequestMethod.GET)
-    public void listTestObjectXml(
+    public StreamingResponseBody listTestObjectXml(
             @RequestParam(required = false, defaultValue = "0") int offset,
             @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response) throws IOException {
-        streaming.asXml2(testObjectDao, request, response, new SimpleFilter(offset, limit));
+        return streaming.asXml2(testObjectDao, request, response, new SimpleFilter(offset, limit));
     }
 
     @ApiOperation(value = "Get Test Object as XML", notes = TEST_OBJECT_DESCRIPTION, tags = {
@@ -772,37 +793,41 @@ public class TestObjectController implements DtoResolver<TestObjectDto> {
                     TEST_OBJECTS_TAG_NAME})
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Test Object resources returned"),
+            @ApiResponse(code = 206, message = "Requested byte ranges of the compressed Test Object resources", response = Void.class),
             @ApiResponse(code = 400, message = "Invalid Test Object ID", response = ApiError.class),
             @ApiResponse(code = 403, message = "Resource download forbidden"),
             @ApiResponse(code = 404, message = "Test Object not found", response = ApiError.class)
     })
     @RequestMapping(value = {TESTOBJECTS_URL + "/{id}/data"}, method = RequestMethod.GET)
-    public void getResources(
+    public StreamingResponseBody getResources(
             @ApiParam(value = EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id,
+            final HttpServletRequest request,
             final HttpServletResponse response)
             throws IOException, ObjectWithIdNotFoundException, LocalizableApiError {
         final TestObjectDto testObject = testObjectDao.getById(EidConverter.toEid(id)).getDto();
         if ("true".equals(testObject.properties().getPropertyOrDefault("data.downloadable", "false"))) {
-            if (testObject.getResourcesSize() == 1) {
-                final URI uri = testObject.getResourceCollection().iterator().next().getUri();
-                if (!UriUtils.isFile(uri)) {
-                    // stream url
-                    UriUtils.stream(uri, response.getOutputStream());
-                } else {
-                    // compress one file/dir
-                    final IFile file = new IFile(uri);
-                    response.setContentType("application/zip");
-                    response.setHeader("Content-disposition",
-                            "attachment; filename=\"TestObject." + id + ".zip\"");
-                    file.compressTo(response.getOutputStream());
-                }
-            } else {
-                // compress multiple files
+            final List<URI> uris = new ArrayList<>();
+            for (final ResourceDto resource : testObject.getResourceCollection()) {
+                uris.add(resource.getUri());
+            }
+            if (uris.size() == 1 && !UriUtils.isFile(uris.get(0))) {
+                // stream url
+                return renderingExecutor.admit(out -> UriUtils.stream(uris.get(0), out));
+            }
+            if (uris.stream().allMatch(UriUtils::isFile)) {
+                // compress local files/dirs
+                return writeArchive(testObject,
+                        uris.stream().map(IFile::new).collect(Collectors.toList()), request, response);
+            }
+            // compress multiple files, remote resources may change, so the archive is not kept
+            response.setContentType("application/zip");
+            response.setHeader("Content-disposition",
+                    "attachment; filename=\"TestObject." + id + ".zip\"");
+            return renderingExecutor.admit(out -> {
                 final List<IFile> tmpDownloadedFiles = new ArrayList<>();
                 try {
                     final List<IFile> files = new ArrayList<>();
-                    for (final ResourceDto resource : testObject.getResourceCollection()) {
-                        final URI uri = resource.getUri();
+                    for (final URI uri : uris) {
                         if (!UriUtils.isFile(uri)) {
                             // download
                             final IFile tmpFile = UriUtils.download(uri);
@@ -812,18 +837,125 @@ public class TestObjectController implements DtoResolver<TestObjectDto> {
                             files.add(new IFile(uri));
                         }
                     }
-                    response.setContentType("application/zip");
-                    response.setHeader("Content-disposition",
-                            "attachment; filename=\"TestObject." + id + ".zip\"");
-                    IFile.compressTo(files, response.getOutputStream());
+                    IFile.compressTo(files, out);
                 } finally {
                     tmpDownloadedFiles.forEach(f -> f.delete());
                 }
-            }
+            });
         } else {
             response.setStatus(403);
             response.getWriter().print(
                     "Data download forbidden through \"data.downloadable\" property");
+            return null;
+        }
+    }
+
+    /**
+     * Compresses local Test Object resources once into the download directory and
+     * serves the archive with support for conditional and range requests.
+     *
+     * The archive name is derived from the last update of the Test Object and from
+     * the paths, sizes and modification times of all files in its resources, so a
+     * changed Test Object results in a new archive. Existing archives are written
+     * directly, new ones are created by the {@link RenderingExecutor}.
+     */
+    private StreamingResponseBody writeArchive(final TestObjectDto testObject, final List<IFile> files,
+            final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        final String id = testObject.getId().getId();
+        final File archive = new File(downloadDir, id + "-" + archiveVersion(testObject, files) + ".zip");
+        response.setHeader("Content-disposition",
+                "attachment; filename=\"TestObject." + id + ".zip\"");
+        if (archive.isFile()) {
+            // mark as recently used
+            archive.setLastModified(System.currentTimeMillis());
+            FileResponse.write(archive, "application/zip", request, response);
+            return null;
+        }
+        return renderingExecutor.admit(out -> {
+            if (!archive.isFile()) {
+                final File tmpArchive = File.createTempFile(id, ".tmp", downloadDir);
+                try (final OutputStream archiveOut = new BufferedOutputStream(new FileOutputStream(tmpArchive))) {
+                    if (files.size() == 1) {
+                        files.get(0).compressTo(archiveOut);
+                    } else {
+                        IFile.compressTo(files, archiveOut);
+                    }
+                } catch (final IOException e) {
+                    tmpArchive.delete();
+                    throw e;
+                }
+                Files.move(tmpArchive.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                deleteArchives(testObject.getId(), archive);
+                pruneArchives(archive);
+            }
+            FileResponse.write(archive, "application/zip", request, response);
+        });
+    }
+
+    /**
+     * Returns a version of the Test Object resources that changes if a file in the
+     * resource directories is added, removed, renamed or modified
+     */
+    private static String archiveVersion(final TestObjectDto testObject, final List<IFile> files) throws IOException {
+        long lastModified = testObject.getLastUpdateDate() != null ? testObject.getLastUpdateDate().getTime() : 0;
+        long hash = 1;
+        for (final IFile file : files) {
+            final Path root = file.toPath();
+            try (final Stream<Path> paths = Files.walk(root)) {
+                for (final Iterator<Path> it = paths.iterator(); it.hasNext();) {
+                    final Path path = it.next();
+                    final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    final long modified = attributes.lastModifiedTime().toMillis();
+                    lastModified = Math.max(lastModified, modified);
+                    hash = 31 * hash + root.relativize(path).toString().hashCode();
+                    hash = 31 * hash + attributes.size();
+                    hash = 31 * hash + modified;
+                }
+            }
+        }
+        return Long.toHexString(lastModified) + "-" + Long.toHexString(hash);
+    }
+
+    /**
+     * Deletes the least recently used archives of all Test Objects until the
+     * download directory does not exceed the configured maximum size
+     */
+    private void pruneArchives(final File keep) {
+        final File[] archives = downloadDir.listFiles((dir, name) -> name.endsWith(".zip"));
+        if (archives == null) {
+            return;
+        }
+        long size = 0;
+        for (final File archive : archives) {
+            size += archive.length();
+        }
+        Arrays.sort(archives, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < archives.length && size > maxDownloadsSize; i++) {
+            if (!archives[i].equals(keep)) {
+                final long length = archives[i].length();
+                if (archives[i].delete()) {
+                    size -= length;
+                } else {
+                    logger.warn("Could not delete archive {}", archives[i].getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes all archives of a Test Object, except the one passed
+     */
+    private void deleteArchives(final EID id, final File except) {
+        final String prefix = id.getId() + "-";
+        final File[] archives = downloadDir.listFiles(
+                (dir, name) -> name.startsWith(prefix) && name.endsWith(".zip"));
+        if (archives != null) {
+            for (final File archive : archives) {
+                if (!archive.equals(except) && !archive.delete()) {
+                    logger.warn("Could not delete archive {}", archive.getAbsolutePath());
+                }
+            }
         }
     }
 }
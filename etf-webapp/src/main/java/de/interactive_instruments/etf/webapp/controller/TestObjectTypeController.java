@@ -30,6 +30,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import de.interactive_instruments.etf.component.loaders.LoadingContext;
 import de.interactive_instruments.etf.dal.dao.*;
@@ -121,13 +122,13 @@ public class TestObjectTypeController implements DtoResolver<TestObjectTypeDto>
             @ApiResponse(code = 200, message = "EtfItemCollection with multiple Test Object Types")
     })
     @RequestMapping(value = {TEST_OBJECT_TYPES_URL, TEST_OBJECT_TYPES_URL + ".json"}, method = RequestMethod.GET)
-    public void listTestObjectTypesJson(
+    public StreamingResponseBody listTestObjectTypesJson(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response)
             throws ConfigurationException, IOException, ObjectWithIdNotFoundException {
-        streaming.asJson2(testObjectTypeDao, request, response, new SimpleFilter(offset, limit));
+        return streaming.asJson2(testObjectTypeDao, request, response, new SimpleFilter(offset, limit));
     }
 
     @ApiOperation(value = "Get multiple Test Object Types as XML", notes = TEST_OBJECT_TYPE_DESCRIPTION, tags = {
@@ -136,12 +137,12 @@ public class TestObjectTypeController implements DtoResolver<TestObjectTypeDto>
             @ApiResponse(code = 200, message = "EtfItemCollection with multiple Test Object Types")
     })
     @RequestMapping(value = {TEST_OBJECT_TYPES_URL + ".xml"}, method = RequestMethod.GET)
-    public void listTestObjectTypesXml(
+    public StreamingResponseBody listTestObjectTypesXml(
             @RequestParam(required = false, defaultValue = "0") int offset,
             @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response) throws IOException, ObjectWithIdNotFoundException {
-        streaming.asXml2(testObjectTypeDao, request, response, new SimpleFilter(offset, limit));
+        return streaming.asXml2(testObjectTypeDao, request, response, new SimpleFilter(offset, limit));
     }
 
     @ApiOperation(value = "Get Test Object Type as XML", notes = TEST_OBJECT_TYPE_DESCRIPTION, tags = {
@@ -19,20 +19,19 @@ import static de.interactive_instruments.etf.webapp.SwaggerConfig.TEST_RESULTS_T
 import static de.interactive_instruments.etf.webapp.WebAppConstants.API_BASE_URL;
 import static de.interactive_instruments.etf.webapp.dto.DocumentationConstants.*;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.servlet.ServletContext;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.xml.transform.TransformerConfigurationException;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -41,17 +40,22 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import de.interactive_instruments.*;
 import de.interactive_instruments.etf.EtfConstants;
 import de.interactive_instruments.etf.dal.dao.Dao;
+import de.interactive_instruments.etf.dal.dao.PartialResultProvider;
 import de.interactive_instruments.etf.dal.dao.PreparedDto;
 import de.interactive_instruments.etf.dal.dao.PreparedDtoCollection;
+import de.interactive_instruments.etf.dal.dao.ResultStatisticsProvider;
+import de.interactive_instruments.etf.dal.dao.TestModuleResultProvider;
 import de.interactive_instruments.etf.dal.dao.WriteDao;
 import de.interactive_instruments.etf.dal.dao.basex.BsxPreparedDtoException;
 import de.interactive_instruments.etf.dal.dto.Dto;
 import de.interactive_instruments.etf.dal.dto.capabilities.TestObjectDto;
 import de.interactive_instruments.etf.dal.dto.result.AttachmentDto;
+import de.interactive_instruments.etf.dal.dto.result.ResultStatistics;
 import de.interactive_instruments.etf.dal.dto.result.TestResultStatus;
 import de.interactive_instruments.etf.dal.dto.result.TestTaskResultDto;
 import de.interactive_instruments.etf.dal.dto.run.TestRunDto;
@@ -60,8 +64,11 @@ import de.interactive_instruments.etf.model.EID;
 import de.interactive_instruments.etf.model.EidFactory;
 import de.interactive_instruments.etf.model.OutputFormat;
 import de.interactive_instruments.etf.testdriver.TestRun;
+import de.interactive_instruments.etf.testdriver.TestRunLogIndex;
+import de.interactive_instruments.etf.testdriver.TestRunLogReader;
 import de.interactive_instruments.etf.webapp.conversion.EidConverter;
 import de.interactive_instruments.etf.webapp.dto.AttachmentCollection;
+import de.interactive_instruments.etf.webapp.dto.ResultStatisticsView;
 import de.interactive_instruments.etf.webapp.helpers.CacheControl;
 import de.interactive_instruments.etf.webapp.helpers.SimpleFilter;
 import de.interactive_instruments.exceptions.*;
@@ -91,6 +98,9 @@ public class TestResultController {
     @Autowired
     private StreamingService streaming;
 
+    @Autowired
+    private RenderingExecutor renderingExecutor;
+
     private Timer cleanTimer;
     // 5 minutes after start
     private final long initialDelay = 300000;
@@ -101,8 +111,10 @@ public class TestResultController {
     private Dao<TestRunDto> testRunDao;
     private Dao<TestTaskResultDto> testTaskResultDao;
     private OutputFormat testRunHtmlReportFormat;
+    private ReportCache reportCache;
     private final static String TEST_RUNS_URL = API_BASE_URL + "/TestRuns";
     private final static String TEST_TASKS_URL = API_BASE_URL + "/TestTaskResults";
+    private final static String PARTIAL_RESULT_HEADER = "X-ETF-Partial-Result";
 
     // TODO report comparison output format
     // private XslReportTransformer comparisonTransformer;
@@ -212,6 +224,13 @@ public class TestResultController {
         }
         streaming.prepareCache(testRunDao, SimpleFilter.allItems());
 
+        reportCache = new ReportCache(
+                etfConfig.getPropertyAsFile(EtfConstants.ETF_INTERNAL_DATABASE_DIR).expandPath("reports"),
+                testRunHtmlReportFormat,
+                "true".equals(etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTREPORTS_CACHE_COMPRESS, "true")));
+        reportCache.watch(testRunDao);
+        reportCache.watch(testTaskResultDao);
+
         final long exp = etfConfig.getPropertyAsLong(EtfConfig.ETF_TESTREPORTS_LIFETIME_EXPIRATION);
         if (exp > 0) {
             cleanTimer = new Timer(true);
@@ -235,6 +254,7 @@ public class TestResultController {
     @PreDestroy
     private void shutdown() {
         testRunDao.release();
+        reportCache.release();
 
         if (this.cleanTimer != null) {
             cleanTimer.cancel();
@@ -254,9 +274,16 @@ public class TestResultController {
 
     public void updateTestRun(final TestRun testRunDto) throws ObjectWithIdNotFoundException, StorageException {
         ((WriteDao<TestRunDto>) testRunDao).replace(testRunDto.getResult());
+        reportCache.prerender(testRunDao, testRunDto.getId(), testRunDto.getResult().getDefaultLang());
     }
 
-    private void getByIdHtml(
+    /**
+     * Writes a stored report directly. Reports that need to be rendered are written by the
+     * {@link RenderingExecutor}.
+     *
+     * @return the response body that is written asynchronously or null if the response has been written
+     */
+    private StreamingResponseBody getByIdHtml(
             final Dao<? extends Dto> dao,
             final String id,
             final String download,
@@ -264,8 +291,7 @@ public class TestResultController {
             final HttpServletResponse response) throws LocalizableApiError {
         if (CacheControl.clientNeedsUpdate(dao, request, response, TimeUnit.SECONDS.toDays(31)))
             try {
-                final ServletOutputStream out = response.getOutputStream();
-                final PreparedDto preparedDto = dao.getById(EidConverter.toEid(id));
+                final EID eid = EidConverter.toEid(id);
 
                 // Set language
                 final Locale locale;
@@ -275,22 +301,34 @@ public class TestResultController {
                 } else {
                     locale = LocaleContextHolder.getLocale();
                 }
-                final PropertyHolder properties = new Properties().setProperty("language", locale.getLanguage());
+                // only languages of the report stylesheet are used, the language is part of the file name
+                final String language = reportCache.supportedLanguage(locale.getLanguage());
+                final PropertyHolder properties = new Properties().setProperty("language", language);
+
+                final boolean isDownload = Objects.equals(download, "true");
+                // stored reports exist only for completed items
+                final File storedReport = isDownload ? null : reportCache.get(eid, language);
+                if (storedReport != null) {
+                    response.setContentType(MediaType.TEXT_HTML_VALUE);
+                    reportCache.writeTo(storedReport, request, response);
+                    return null;
+                }
 
-                if (Objects.equals(download, "true")) {
+                final PreparedDto preparedDto = dao.getById(eid);
+                if (isDownload) {
                     final String reportFileName;
                     if (preparedDto.getDto() instanceof TestRunDto) {
                         final TestRunDto testRunDto = (TestRunDto) preparedDto.getDto();
                         if (TestResultStatus.valueOf(testRunDto.getTestResultStatus()) == TestResultStatus.UNDEFINED) {
                             response.sendError(HttpServletResponse.SC_NOT_ACCEPTABLE);
-                            return;
+                            return null;
                         }
                         reportFileName = testRunDto.getLabel();
                     } else if (preparedDto.getDto() instanceof TestTaskResultDto) {
                         final TestTaskResultDto testTaskResultDto = (TestTaskResultDto) preparedDto.getDto();
                         if (testTaskResultDto.getResultStatus() == TestResultStatus.UNDEFINED) {
                             response.sendError(HttpServletResponse.SC_NOT_ACCEPTABLE);
-                            return;
+                            return null;
                         }
                         reportFileName = testTaskResultDto.getId().getId();
                     } else {
@@ -300,11 +338,29 @@ public class TestResultController {
                     response.setContentType(MediaType.TEXT_HTML_VALUE);
                     response.setHeader("Content-Disposition",
                             "attachment; filename=\"" + IFile.sanitize(reportFileName) + ".html\"");
-                    preparedDto.streamTo(testRunHtmlReportFormat, properties, out);
                 } else {
                     response.setContentType(MediaType.TEXT_HTML_VALUE);
-                    preparedDto.streamTo(testRunHtmlReportFormat, properties, out);
                 }
+                // the rendering thread only writes the body
+                final boolean encoded = reportCache.setEncodingHeaders(request, response);
+                return renderingExecutor.admit(out -> {
+                    File report = null;
+                    if (ReportCache.isCacheable(preparedDto.getDto())) {
+                        report = reportCache.get(eid, language);
+                        if (report == null) {
+                            report = reportCache.render(preparedDto, language);
+                        }
+                    }
+                    if (report != null) {
+                        reportCache.writeBody(report, encoded, out);
+                    } else if (encoded) {
+                        final GZIPOutputStream gzipOut = new GZIPOutputStream(out, 65536);
+                        preparedDto.streamTo(testRunHtmlReportFormat, properties, gzipOut);
+                        gzipOut.finish();
+                    } else {
+                        preparedDto.streamTo(testRunHtmlReportFormat, properties, out);
+                    }
+                });
             } catch (final ObjectWithIdNotFoundException e) {
                 response.setStatus(HttpServletResponse.SC_NOT_FOUND);
                 logger.error("Report not found: ", e);
@@ -313,6 +369,7 @@ public class TestResultController {
             } catch (final IOException e) {
                 throw new LocalizableApiError(e);
             }
+        return null;
     }
 
     private void setMaxAgeHeader(final HttpServletResponse response) {
@@ -332,13 +389,13 @@ public class TestResultController {
 
     @ApiOperation(value = "Get multiple Test Results as XML", notes = TEST_RUN_DESCRIPTION, tags = {TEST_RESULTS_TAG_NAME})
     @RequestMapping(value = {TEST_RUNS_URL + ".xml"}, method = RequestMethod.GET)
-    public void testRunsXml(
+    public StreamingResponseBody testRunsXml(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response) throws IOException, ObjectWithIdNotFoundException {
         setMaxAgeHeader(response);
-        streaming.asXml2(testRunDao, request, response, new SimpleFilter(offset, limit));
+        return streaming.asXml2(testRunDao, request, response, new SimpleFilter(offset, limit));
     }
 
     @ApiOperation(value = "Get a single Test Result as XML", notes = TEST_RUN_DESCRIPTION, tags = {TEST_RESULTS_TAG_NAME})
@@ -348,6 +405,9 @@ public class TestResultController {
                     + EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id,
             HttpServletRequest request, HttpServletResponse response)
             throws IOException, ObjectWithIdNotFoundException {
+        if (testRunController.redirectToExecutingNode(EidConverter.toEid(id), request, response)) {
+            return;
+        }
         setMaxAgeHeader(response);
         streaming.asXml2(testRunDao, request, response, id);
     }
@@ -359,6 +419,9 @@ public class TestResultController {
                     + EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id,
             HttpServletRequest request, HttpServletResponse response)
             throws IOException, ObjectWithIdNotFoundException {
+        if (testRunController.redirectToExecutingNode(EidConverter.toEid(id), request, response)) {
+            return;
+        }
         final PreparedDto<TestRunDto> preparedDto = this.testRunDao.getById(EidConverter.toEid(id));
         setMaxAgeHeader(response);
         response.setContentType("text/csv");
@@ -373,13 +436,13 @@ public class TestResultController {
     @ApiOperation(value = "Get multiple Test Results as JSON", notes = "Transforms multiple Test Run Results to JSON. "
             + TEST_RUN_DESCRIPTION, tags = {TEST_RESULTS_TAG_NAME})
     @RequestMapping(value = {TEST_RUNS_URL, TEST_RUNS_URL + ".json"}, method = RequestMethod.GET)
-    public void testRunsJson(
+    public StreamingResponseBody testRunsJson(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             HttpServletRequest request,
             HttpServletResponse response) throws IOException, ObjectWithIdNotFoundException {
         setMaxAgeHeader(response);
-        streaming.asJson2(testRunDao, request, response, new SimpleFilter(offset, limit));
+        return streaming.asJson2(testRunDao, request, response, new SimpleFilter(offset, limit));
     }
 
     @ApiOperation(value = "Get a single Test Result as JSON", notes = "Transforms one Test Run Results to JSON. "
@@ -390,6 +453,9 @@ public class TestResultController {
                     + EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id,
             HttpServletRequest request,
             HttpServletResponse response) throws IOException, ObjectWithIdNotFoundException {
+        if (testRunController.redirectToExecutingNode(EidConverter.toEid(id), request, response)) {
+            return;
+        }
         setMaxAgeHeader(response);
         streaming.asJson2(testRunDao, request, response, id);
     }
@@ -405,31 +471,58 @@ public class TestResultController {
             @ApiResponse(code = 406, message = "Test Run not finished yet", response = Void.class),
     })
     @RequestMapping(value = {TEST_RUNS_URL + "/{id}.html"}, method = RequestMethod.GET)
-    public void getReportById(
+    public StreamingResponseBody getReportById(
             @ApiParam(value = "Test Run ID. "
                     + EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id,
             @ApiParam(value = "Download report", example = "true", allowableValues = "true,false", defaultValue = "false") @RequestParam(value = "download", required = false) String download,
             HttpServletRequest request,
             HttpServletResponse response) throws LocalizableApiError {
+        if (testRunController.redirectToExecutingNode(EidConverter.toEid(id), request, response)) {
+            return null;
+        }
         setMaxAgeHeader(response);
-        getByIdHtml(testRunDao, id, download, request, response);
+        return getByIdHtml(testRunDao, id, download, request, response);
     }
 
-    @ApiOperation(value = "Get a Test Run's log by ID", notes = "Retrieves all messages that were logged during a Test Run.", tags = {
-            TEST_RESULTS_TAG_NAME})
+    @ApiOperation(value = "Get a Test Run's log by ID", notes = "Retrieves all messages that were logged during a Test Run. "
+            + "Large logs are stored compressed, a part of the log can be requested with the 'pos' or 'tail' parameter "
+            + "without decompressing the whole log. Logs that are not compressed support HTTP range requests.", tags = {
+                    TEST_RESULTS_TAG_NAME})
     @RequestMapping(value = {TEST_RUNS_URL + "/{id}.log", TEST_RUNS_URL + "/{id}/log"}, method = RequestMethod.GET)
     public void testRunLog(
             @ApiParam(value = "Test Run ID. "
                     + EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id,
+            @ApiParam(value = "Number of log messages to skip", example = "100", required = false) @RequestParam(value = "pos", required = false) String strPos,
+            @ApiParam(value = "Return only the last log messages", example = "50", required = false) @RequestParam(value = "tail", required = false) String strTail,
+            HttpServletRequest request,
             HttpServletResponse response) throws IOException, LocalizableApiError {
+        if (testRunController.redirectToExecutingNode(EidConverter.toEid(id), request, response)) {
+            return;
+        }
         setMaxAgeHeader(response);
         try {
             final TestRunDto dto = testRunDao.getById(EidConverter.toEid(id)).getDto();
             if (dto.getLogPath() != null) {
+                final File logFile = new File(dto.getLogPath());
+                if (SUtils.isNullOrEmpty(strPos) && SUtils.isNullOrEmpty(strTail) && logFile.isFile()) {
+                    // plain log, supports byte ranges
+                    FileResponse.write(logFile, MediaType.TEXT_PLAIN_VALUE, request, response);
+                    return;
+                }
+                long position = 0;
+                try {
+                    if (!SUtils.isNullOrEmpty(strPos)) {
+                        position = Math.max(0, Long.parseLong(strPos));
+                    }
+                    if (!SUtils.isNullOrEmpty(strTail)) {
+                        position = Math.max(position, TestRunLogIndex.countLines(logFile) - Long.parseLong(strTail));
+                    }
+                } catch (final NumberFormatException e) {
+                    throw new LocalizableApiError("l.invalid.log.position", false, 400);
+                }
+                final TestRunLogReader logReader = TestRunLogIndex.openReader(logFile);
                 response.setContentType(MediaType.TEXT_PLAIN_VALUE);
-                final ServletOutputStream out = response.getOutputStream();
-                // FIXME log path
-                IOUtils.copy(new FileInputStream(dto.getLogPath()), out);
+                logReader.streamLogMessagesTo(position, response.getOutputStream());
             }
         } catch (ObjectWithIdNotFoundException e) {
             throw new LocalizableApiError(e);
@@ -446,15 +539,76 @@ public class TestResultController {
             API_BASE_URL + "/TestTaskResults/{id}/Attachments"}, method = RequestMethod.GET, produces = "application/json")
     public @ResponseBody Collection<AttachmentCollection.Attachment> getAttachmentsAsJson(
             @PathVariable String id) throws ObjectWithIdNotFoundException, IOException {
-        final TestTaskResultDto testTaskResultDto = testTaskResultDao.getById(EidConverter.toEid(id)).getDto();
+        final TestTaskResultDto testTaskResultDto = getTestTaskResultWithoutTestModules(EidConverter.toEid(id));
         return AttachmentCollection.create(testTaskResultDto.getAttachments());
     }
 
+    @ApiOperation(value = "Get the statistics of a Test Task Result as JSON", notes = "Retrieves the number of results per result type and status, "
+            + "without loading the Test Task Result.", tags = {TEST_RESULTS_TAG_NAME})
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Statistics exist", response = ResultStatisticsView.class),
+            @ApiResponse(code = 404, message = "No statistics exist for the Test Task Result", response = Void.class),
+    })
+    @RequestMapping(value = {
+            API_BASE_URL + "/TestTaskResults/{id}/Statistics"}, method = RequestMethod.GET, produces = "application/json")
+    public @ResponseBody ResultStatisticsView getTestTaskResultStatisticsAsJson(
+            @PathVariable String id,
+            HttpServletResponse response) throws ObjectWithIdNotFoundException, StorageException {
+        setMaxAgeHeader(response);
+        return new ResultStatisticsView(getResultStatistics(EidConverter.toEid(id)));
+    }
+
+    @ApiOperation(value = "Get the statistics of a Test Run as JSON", notes = "Retrieves the number of results per result type and status "
+            + "of all Test Tasks in a Test Run.", tags = {TEST_RESULTS_TAG_NAME})
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Statistics exist", response = ResultStatisticsView.class),
+            @ApiResponse(code = 404, message = "Test Run does not exist or no statistics exist", response = Void.class),
+    })
+    @RequestMapping(value = {TEST_RUNS_URL + "/{id}/Statistics"}, method = RequestMethod.GET, produces = "application/json")
+    public @ResponseBody ResultStatisticsView getTestRunStatisticsAsJson(
+            @ApiParam(value = "Test Run ID. "
+                    + EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id,
+            HttpServletRequest request,
+            HttpServletResponse response) throws ObjectWithIdNotFoundException, StorageException {
+        if (testRunController.redirectToExecutingNode(EidConverter.toEid(id), request, response)) {
+            return null;
+        }
+        setMaxAgeHeader(response);
+        final TestRunDto testRunDto = testRunDao.getById(EidConverter.toEid(id)).getDto();
+        final ResultStatistics statistics = new ResultStatistics();
+        for (final TestTaskDto testTaskDto : testRunDto.getTestTasks()) {
+            if (testTaskDto.getTestTaskResult() != null) {
+                statistics.add(getResultStatistics(testTaskDto.getTestTaskResult().getId()));
+            }
+        }
+        return new ResultStatisticsView(statistics);
+    }
+
+    private ResultStatistics getResultStatistics(final EID testTaskResultId)
+            throws ObjectWithIdNotFoundException, StorageException {
+        if (!(testTaskResultDao instanceof ResultStatisticsProvider)) {
+            throw new ObjectWithIdNotFoundException(testTaskResultId.getId());
+        }
+        return ((ResultStatisticsProvider) testTaskResultDao).getResultStatistics(testTaskResultId)
+                .orElseThrow(() -> new ObjectWithIdNotFoundException(testTaskResultId.getId()));
+    }
+
+    private TestTaskResultDto getTestTaskResultWithoutTestModules(final EID testTaskResultId)
+            throws ObjectWithIdNotFoundException, StorageException {
+        if (testTaskResultDao instanceof TestModuleResultProvider) {
+            // the attachments are listed in the header of the Test Task Result
+            return ((TestModuleResultProvider) testTaskResultDao)
+                    .getByIdWithTestModules(testTaskResultId, Collections.emptyList()).getDto();
+        }
+        return testTaskResultDao.getById(testTaskResultId).getDto();
+    }
+
     @ApiOperation(value = "Get a Test Result's attachment by ID", notes = "Get an attachment which was saved during a Test Run. The mime type can not be predicted, "
             + "but text/plain will be used as fallback if the mime type could not be detected during the test run.", tags = {
                     TEST_RESULTS_TAG_NAME})
     @ApiResponses(value = {
             @ApiResponse(code = 204, message = "Attachment exists", response = Void.class),
+            @ApiResponse(code = 206, message = "Requested byte ranges of the attachment", response = Void.class),
             @ApiResponse(code = 404, message = "Attachment does not exist", response = Void.class),
     })
     @RequestMapping(value = {
@@ -462,19 +616,31 @@ public class TestResultController {
     public void getAttachmentById(
             @PathVariable String id,
             @PathVariable String attachmentId,
+            HttpServletRequest request,
             HttpServletResponse response) throws ObjectWithIdNotFoundException, IOException {
         setMaxAgeHeader(response);
-        final TestTaskResultDto testTaskResultDto = testTaskResultDao.getById(EidConverter.toEid(id)).getDto();
+        final TestTaskResultDto testTaskResultDto = getTestTaskResultWithoutTestModules(EidConverter.toEid(id));
         final AttachmentDto attachmentDto = testTaskResultDto.getAttachmentById(EidConverter.toEid(attachmentId));
         if (attachmentDto == null) {
             throw new ObjectWithIdNotFoundException(attachmentId);
         }
 
-        if (SUtils.isNullOrEmpty(attachmentDto.getMimeType())) {
-            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
-        } else {
-            response.setContentType(attachmentDto.getMimeType());
+        final String contentType = SUtils.isNullOrEmpty(attachmentDto.getMimeType()) ? MediaType.TEXT_PLAIN_VALUE
+                : attachmentDto.getMimeType();
+        if ("file".equals(attachmentDto.getReferencedData().getScheme())) {
+            final File file = new File(attachmentDto.getReferencedData());
+            if (file.isFile()) {
+                FileResponse.write(file, contentType, request, response);
+                return;
+            }
+            if ("LogFile".equals(attachmentDto.getType())) {
+                // the log has been archived
+                response.setContentType(contentType);
+                TestRunLogIndex.openReader(file).streamLogMessagesTo(0, response.getOutputStream());
+                return;
+            }
         }
+        response.setContentType(contentType);
         UriUtils.stream(attachmentDto.getReferencedData(), response.getOutputStream());
     }
 
@@ -485,13 +651,48 @@ public class TestResultController {
             @ApiResponse(code = 404, message = "Test Task does not exist", response = Void.class),
     })
     @RequestMapping(value = {TEST_TASKS_URL + "/{id}.xml"}, method = RequestMethod.GET)
-    public void testTaskResultByIdXml(
+    public StreamingResponseBody testTaskResultByIdXml(
             @ApiParam(value = "Test Task ID. "
                     + EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id,
+            @ApiParam(value = "Return the completed Test Module results if the Test Task is still running. "
+                    + "The Test Task ID or the Test Task Result ID can be used. "
+                    + "The response header '" + PARTIAL_RESULT_HEADER
+                    + "' is set to true if an incomplete result is returned. "
+                    + "Partial results are only available as XML.", example = "true", allowableValues = "true,false", defaultValue = "false") @RequestParam(value = "partial", required = false) String partial,
+            @ApiParam(value = "Comma separated IDs of Test Modules. "
+                    + "Only the Test Module results that were derived from these Test Modules are returned. "
+                    + "The results of other Test Modules are not loaded.", example = EID_EXAMPLE) @RequestParam(value = "testModules", required = false) String testModules,
             HttpServletRequest request, HttpServletResponse response)
             throws IOException, ObjectWithIdNotFoundException {
+        if ("true".equals(partial) && testTaskResultDao instanceof PartialResultProvider) {
+            final PartialResultProvider partialResultProvider = (PartialResultProvider) testTaskResultDao;
+            final EID eid = EidConverter.toEid(id);
+            final PartialResultProvider.PartialResult partialResult = partialResultProvider.getPartialResult(eid);
+            if (partialResult != null) {
+                // The result changes with every completed Test Module
+                response.setHeader("Cache-Control", "no-cache");
+                response.setHeader(PARTIAL_RESULT_HEADER, "true");
+                response.setContentType(MediaType.TEXT_XML_VALUE);
+                // the fragments are copied from the result file without buffering the document
+                return renderingExecutor.admit(partialResult::writeTo);
+            }
+        }
+        if (!SUtils.isNullOrEmpty(testModules) && testTaskResultDao instanceof TestModuleResultProvider) {
+            final List<EID> testModuleIds = new ArrayList<>();
+            for (final String testModuleId : testModules.split(",")) {
+                testModuleIds.add(EidConverter.toEid(testModuleId.trim()));
+            }
+            final PreparedDto<TestTaskResultDto> preparedDto = ((TestModuleResultProvider) testTaskResultDao)
+                    .getByIdWithTestModules(EidConverter.toEid(id), testModuleIds);
+            final OutputFormat xml = testTaskResultDao.getOutputFormats()
+                    .get(EidFactory.getDefault().createUUID("TestTaskResultDsResult2Xml"));
+            setMaxAgeHeader(response);
+            response.setContentType(MediaType.TEXT_XML_VALUE);
+            return renderingExecutor.admit(out -> preparedDto.streamTo(xml, null, out));
+        }
         setMaxAgeHeader(response);
         streaming.asXml2(testTaskResultDao, request, response, id);
+        return null;
     }
 
     @ApiOperation(value = "Get the result from a single Test Task within a Test Run as JSON", notes = "Transforms the result from a single Test Task to JSON. "
@@ -520,14 +721,14 @@ public class TestResultController {
             @ApiResponse(code = 406, message = "Test Task not finished yet", response = Void.class),
     })
     @RequestMapping(value = {TEST_TASKS_URL + "/{id}.html"}, method = RequestMethod.GET)
-    public void testTaskResultByIdHtml(
+    public StreamingResponseBody testTaskResultByIdHtml(
             @ApiParam(value = "Test Task ID. "
                     + EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id,
             @ApiParam(value = "Download report", example = "true", allowableValues = "true,false", defaultValue = "false") @RequestParam(value = "download", required = false) String download,
             HttpServletRequest request,
             HttpServletResponse response) throws LocalizableApiError {
         setMaxAgeHeader(response);
-        getByIdHtml(testTaskResultDao, id, download, request, response);
+        return getByIdHtml(testTaskResultDao, id, download, request, response);
     }
 
     @ApiOperation(value = "Check if the Test Task exists", notes = "Checks if a Test Task has been completed and saved. "
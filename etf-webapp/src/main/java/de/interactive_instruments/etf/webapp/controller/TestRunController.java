@@ -20,10 +20,12 @@ import static de.interactive_instruments.etf.webapp.SwaggerConfig.TEST_RUNS_TAG_
 import static de.interactive_instruments.etf.webapp.WebAppConstants.API_BASE_URL;
 import static de.interactive_instruments.etf.webapp.dto.DocumentationConstants.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
@@ -32,16 +34,22 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.*;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import de.interactive_instruments.SUtils;
 import de.interactive_instruments.TimedExpiredItemsRemover;
@@ -52,6 +60,7 @@ import de.interactive_instruments.etf.dal.dto.capabilities.TestObjectDto;
 import de.interactive_instruments.etf.dal.dto.run.TestRunDto;
 import de.interactive_instruments.etf.dal.dto.test.ExecutableTestSuiteDto;
 import de.interactive_instruments.etf.model.EID;
+import de.interactive_instruments.etf.model.EidFactory;
 import de.interactive_instruments.etf.model.EidHolder;
 import de.interactive_instruments.etf.model.EidHolderWithParent;
 import de.interactive_instruments.etf.testdriver.*;
@@ -97,6 +106,9 @@ public class TestRunController implements TestRunEventListener {
     @Autowired
     private StreamingService streamingService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     private Timer timer;
 
     boolean simplifiedWorkflows;
@@ -108,8 +120,43 @@ public class TestRunController implements TestRunEventListener {
     public final static int MAX_PARALLEL_RUNS = PropertyUtils.getenvOrProperty(
             "ETF_MAX_PARALLEL_RUNS", Runtime.getRuntime().availableProcessors());
 
-    private final TaskPoolRegistry<TestRunDto, TestRun> taskPoolRegistry = new TaskPoolRegistry<>(
-            MAX_PARALLEL_RUNS, MAX_PARALLEL_RUNS, 2 * MAX_PARALLEL_RUNS);
+    // number of parallel Test Runs in the configured thread mode
+    private int parallelRuns = MAX_PARALLEL_RUNS;
+
+    /**
+     * Request header with the priority class of a Test Run: INTERACTIVE, NORMAL or BATCH
+     */
+    public final static String PRIORITY_HEADER = "X-ETF-Priority";
+
+    /**
+     * Request header with the API key that identifies a client, if the Test Runs are scheduled by API key
+     */
+    public final static String API_KEY_HEADER = "X-API-Key";
+
+    private TaskPoolRegistry<TestRunDto, TestRun> taskPoolRegistry;
+    // Test Runs lock their Test Object, conflicting Test Runs are queued
+    private final ReadWriteLockTable<EID> testObjectLocks = new ReadWriteLockTable<>();
+
+    // Distributed execution, null if Test Runs are only executed locally
+    private WorkQueue workQueue;
+    // URL of this node, the results of the Test Runs claimed by this node are requested from this URL
+    private String workerNode;
+    private final Map<EID, ClaimedTestRun> claimedTestRuns = new ConcurrentHashMap<>();
+    // IDs of claimed Test Runs that are being initialized and are not yet known to the task pool
+    private final Set<String> startingTestRuns = ConcurrentHashMap.newKeySet();
+    private final static long WORK_QUEUE_POLL_INTERVAL = 2000;
+    private final static long WORK_ITEM_LEASE_TIME = 60000;
+    private final static long WORK_ITEM_RENEW_INTERVAL = WORK_ITEM_LEASE_TIME / 3;
+    private String schedulingClient;
+
+    private AdaptivePoolSizing adaptivePoolSizing;
+    // Pushes progress and log messages to web clients
+    private TestRunEventStream eventStream;
+    // Same interval as the status update
+    private final static long POOL_SIZING_INTERVAL = 20000;
+
+    // Minimum memory footprint of a Test Run: 64 MB
+    private final static long MIN_TEST_RUN_FOOTPRINT = 67108864;
     private final Logger logger = LoggerFactory.getLogger(TestRunController.class);
 
     final static class TaskProgressDto {
@@ -143,6 +190,11 @@ public class TestRunController implements TestRunEventListener {
             });
         }
 
+        // Waiting in the queue of the distributed execution
+        static TaskProgressDto createQueuedMsg() {
+            return new TaskProgressDto("0", new ArrayList<>());
+        }
+
         static TaskProgressDto createTerminateddMsg(int max) {
             return new TaskProgressDto(String.valueOf(max), new ArrayList<String>(1) {
                 {
@@ -151,15 +203,23 @@ public class TestRunController implements TestRunEventListener {
             });
         }
 
+        static TaskProgressDto createRunningMsg(TaskProgress p, List<String> log) {
+            return new TaskProgressDto(p, log);
+        }
+
         // Still running
         private TaskProgressDto(final TaskProgress p, final long pos) {
+            this(p, p.getLogReader().getLogMessages(pos));
+        }
+
+        private TaskProgressDto(final TaskProgress p, final List<String> log) {
             this.val = String.valueOf(p.getCurrentStepsCompleted());
             if (p.getCurrentStepsCompleted() >= p.getMaxSteps()) {
                 this.max = String.valueOf(p.getMaxSteps() + p.getCurrentStepsCompleted());
             } else {
                 this.max = String.valueOf(p.getMaxSteps());
             }
-            this.log = p.getLogReader().getLogMessages(pos);
+            this.log = log;
         }
 
         public String getVal() {
@@ -203,10 +263,564 @@ public class TestRunController implements TestRunEventListener {
         }
     }
 
+    @ApiModel(description = "Queue wait times of Test Runs in a priority class")
+    private static class TestRunQueueJsonView {
+        @ApiModelProperty(value = "Priority class", example = "NORMAL")
+        public final String priority;
+
+        @ApiModelProperty(value = "Number of queued Test Runs", example = "3", dataType = "int")
+        public final int queued;
+
+        @ApiModelProperty(value = "Number of started Test Runs", example = "120")
+        public final long started;
+
+        @ApiModelProperty(value = "Median wait time in milliseconds of the recently started Test Runs, -1 if no Test Run has been started", example = "1500")
+        public final long waitP50;
+
+        @ApiModelProperty(value = "90th percentile wait time in milliseconds", example = "35000")
+        public final long waitP90;
+
+        @ApiModelProperty(value = "99th percentile wait time in milliseconds", example = "60000")
+        public final long waitP99;
+
+        public TestRunQueueJsonView(final TaskPriority priority, final TaskPoolRegistry<?, ?> registry) {
+            this.priority = priority.name();
+            this.queued = registry.getQueuedCount(priority);
+            final QueueWaitStatistics statistics = registry.getQueueWaitStatistics();
+            this.started = statistics.getCount(priority);
+            this.waitP50 = statistics.getPercentile(priority, 50);
+            this.waitP90 = statistics.getPercentile(priority, 90);
+            this.waitP99 = statistics.getPercentile(priority, 99);
+        }
+    }
+
+    private TaskSchedulingPolicy createSchedulingPolicy() {
+        final String policy = etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_SCHEDULING, "fifo");
+        if (!"fairshare".equalsIgnoreCase(policy)) {
+            if (!"fifo".equalsIgnoreCase(policy)) {
+                logger.warn("Unknown scheduling policy '{}', using FIFO scheduling", policy);
+            }
+            return TaskSchedulingPolicy.fifo();
+        }
+        logger.info("Test Runs are scheduled by fair share");
+        // Format: client1=weight1,client2=weight2
+        final Map<String, Integer> weights = new HashMap<>();
+        final String weightsProperty = etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_SCHEDULING_WEIGHTS, "");
+        for (final String clientWeight : weightsProperty.split(",")) {
+            final int separator = clientWeight.lastIndexOf('=');
+            if (separator > 0) {
+                try {
+                    weights.put(clientWeight.substring(0, separator).trim(),
+                            Integer.parseInt(clientWeight.substring(separator + 1).trim()));
+                } catch (final NumberFormatException e) {
+                    logger.warn("Ignoring invalid scheduling weight '{}'", clientWeight);
+                }
+            }
+        }
+        return new FairShareSchedulingPolicy(client -> weights.getOrDefault(client, 1));
+    }
+
+    /**
+     * Estimates the heap memory a Test Run occupies from the size of the Test Object and the measured peak usage of
+     * previous runs with the same Executable Test Suites or Test Driver.
+     */
+    private final static class TestRunFootprint implements TaskFootprint<TestRun> {
+        private final FootprintEstimator estimator;
+        private final File storeFile;
+        private final Logger logger = LoggerFactory.getLogger(TestRunFootprint.class);
+
+        private TestRunFootprint(final FootprintEstimator estimator, final File storeFile) {
+            this.estimator = estimator;
+            this.storeFile = storeFile;
+        }
+
+        private static long getTestObjectSize(final TestRunDto testRunDto) {
+            final TestObjectDto testObject = testRunDto.getTestObjects().get(0);
+            try {
+                return Long.parseLong(testObject.properties().getPropertyOrDefault("size", "0"));
+            } catch (final NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        private static String[] getKeys(final TestRunDto testRunDto) {
+            final List<String> etsIds = new ArrayList<>();
+            String testDriverKey = null;
+            for (final ExecutableTestSuiteDto ets : testRunDto.getExecutableTestSuites()) {
+                etsIds.add(ets.getId().getId());
+                if (testDriverKey == null && ets.getTestDriver() != null) {
+                    testDriverKey = "TestDriver." + ets.getTestDriver().getId().getId();
+                }
+            }
+            Collections.sort(etsIds);
+            return new String[]{"ETS." + String.join(".", etsIds), testDriverKey};
+        }
+
+        @Override
+        public long estimate(final TestRun testRun) {
+            final TestRunDto testRunDto = testRun.getResult();
+            final long estimate = estimator.estimate(getTestObjectSize(testRunDto), getKeys(testRunDto));
+            logger.debug("Estimated footprint of Test Run {}: {} MB", testRunDto.getId(), estimate / 1048576);
+            return estimate;
+        }
+
+        @Override
+        public void measured(final TestRun testRun, final long estimate, final long peak) {
+            final TestRunDto testRunDto = testRun.getResult();
+            if (testRunDto == null || !testRun.getState().isCompleted()) {
+                // canceled or failed runs do not reflect the footprint
+                return;
+            }
+            logger.debug("Measured footprint of Test Run {}: {} MB, estimated {} MB", testRunDto.getId(),
+                    peak / 1048576, estimate / 1048576);
+            estimator.record(getTestObjectSize(testRunDto), peak, getKeys(testRunDto));
+            try {
+                estimator.store(storeFile);
+            } catch (final IOException e) {
+                logger.warn("Could not store the learned Test Run footprints: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void initResourceBudget() {
+        final String budgetProperty = etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_MEMORY_BUDGET, "0");
+        final long budget;
+        if ("auto".equalsIgnoreCase(budgetProperty)) {
+            budget = Runtime.getRuntime().maxMemory() / 4 * 3;
+        } else {
+            try {
+                budget = Long.parseLong(budgetProperty.trim());
+            } catch (final NumberFormatException e) {
+                logger.error("Invalid Test Run memory budget '{}', admission by memory footprint disabled",
+                        budgetProperty);
+                return;
+            }
+        }
+        if (budget <= 0) {
+            logger.info("Admission of Test Runs by memory footprint disabled");
+            return;
+        }
+        double ratio;
+        try {
+            ratio = Double.parseDouble(etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_FOOTPRINT_RATIO, "3"));
+        } catch (final NumberFormatException e) {
+            logger.error("Invalid Test Run footprint ratio, using 3");
+            ratio = 3;
+        }
+        final FootprintEstimator estimator = new FootprintEstimator(MIN_TEST_RUN_FOOTPRINT, ratio);
+        final File storeFile = etfConfig.getPropertyAsFile(EtfConstants.ETF_INTERNAL_DATABASE_DIR)
+                .expandPath("testrun-footprints.properties");
+        if (storeFile.exists()) {
+            try {
+                estimator.load(storeFile);
+            } catch (final IOException e) {
+                logger.warn("Could not load the learned Test Run footprints: {}", e.getMessage());
+            }
+        }
+        taskPoolRegistry.setResourceBudget(new ResourceBudget(budget), new TestRunFootprint(estimator, storeFile));
+        logger.info("Test Runs are admitted within a memory budget of {} MB", budget / 1048576);
+    }
+
+    @ApiModel(description = "Decision of the adaptive Test Run pool sizing")
+    private static class PoolSizingDecisionJsonView {
+        @ApiModelProperty(value = "Timestamp in milliseconds", example = "1488469744783")
+        public final long timestamp;
+
+        @ApiModelProperty(value = "Number of parallel Test Runs before the decision", example = "4")
+        public final int previousPoolSize;
+
+        @ApiModelProperty(value = "Number of parallel Test Runs after the decision", example = "3")
+        public final int poolSize;
+
+        @ApiModelProperty(value = "Reason for the decision", example = "CPU load limit exceeded")
+        public final String reason;
+
+        @ApiModelProperty(value = "Recent CPU load of the service between 0 and 1", example = "0.93")
+        public final double cpuLoad;
+
+        @ApiModelProperty(value = "Fraction of the heap that is free", example = "0.4")
+        public final double heapHeadroom;
+
+        @ApiModelProperty(value = "Fraction of time spent in garbage collection", example = "0.02")
+        public final double gcTimeRatio;
+
+        @ApiModelProperty(value = "Completed Test Runs per minute, smoothed", example = "1.5")
+        public final double throughput;
+
+        public PoolSizingDecisionJsonView(final AdaptivePoolSizing.Decision decision) {
+            this.timestamp = decision.getTimestamp();
+            this.previousPoolSize = decision.getPreviousPoolSize();
+            this.poolSize = decision.getPoolSize();
+            this.reason = decision.getReason();
+            this.cpuLoad = decision.getMetrics().getCpuLoad();
+            this.heapHeadroom = decision.getMetrics().getHeapHeadroom();
+            this.gcTimeRatio = decision.getMetrics().getGcTimeRatio();
+            this.throughput = decision.getThroughput();
+        }
+    }
+
+    private void initAdaptivePoolSizing() {
+        if (!"true".equals(etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_PARALLEL_ADAPTIVE, "false"))) {
+            return;
+        }
+        int minPoolSize;
+        int maxPoolSize;
+        try {
+            minPoolSize = Integer.parseInt(etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_PARALLEL_MIN, "1"));
+            final String max = etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_PARALLEL_MAX, "auto");
+            maxPoolSize = "auto".equalsIgnoreCase(max) ? 2 * parallelRuns : Integer.parseInt(max);
+        } catch (final NumberFormatException e) {
+            logger.error("Invalid bounds for the number of parallel Test Runs, using 1 - {}", 2 * parallelRuns);
+            minPoolSize = 1;
+            maxPoolSize = 2 * parallelRuns;
+        }
+        minPoolSize = Math.max(1, minPoolSize);
+        maxPoolSize = Math.max(minPoolSize, maxPoolSize);
+        adaptivePoolSizing = new AdaptivePoolSizing(taskPoolRegistry, minPoolSize, maxPoolSize);
+        timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    final AdaptivePoolSizing.Decision decision = adaptivePoolSizing
+                            .update(statusController.getResourceMetrics());
+                    if (decision.isChanged()) {
+                        logger.info("Adaptive Test Run pool sizing: {}", decision);
+                    } else {
+                        logger.debug("Adaptive Test Run pool sizing: {}", decision);
+                    }
+                } catch (final Exception e) {
+                    logger.error("Adaptive Test Run pool sizing failed", e);
+                }
+            }
+        }, POOL_SIZING_INTERVAL, POOL_SIZING_INTERVAL);
+        logger.info("Adaptive Test Run pool sizing enabled, running between {} and {} Test Runs in parallel",
+                minPoolSize, maxPoolSize);
+    }
+
+    private void initBulkheads() {
+        // Format: bulkhead1=limit1,bulkhead2=limit2 , overrides the limits declared by the Test Drivers
+        final Map<String, Integer> configuredLimits = new HashMap<>();
+        final String bulkheadsProperty = etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_BULKHEADS, "");
+        for (final String bulkheadLimit : bulkheadsProperty.split(",")) {
+            final int separator = bulkheadLimit.lastIndexOf('=');
+            if (separator > 0) {
+                try {
+                    configuredLimits.put(bulkheadLimit.substring(0, separator).trim(),
+                            Integer.parseInt(bulkheadLimit.substring(separator + 1).trim()));
+                } catch (final NumberFormatException e) {
+                    logger.warn("Ignoring invalid bulkhead limit '{}'", bulkheadLimit);
+                }
+            }
+        }
+        taskPoolRegistry.setBulkheads(testRun -> {
+            // Test Runs are assigned to the bulkhead of the Test Driver of the first Executable Test Suite
+            final List<ExecutableTestSuiteDto> executableTestSuites = testRun.getResult().getExecutableTestSuites();
+            if (executableTestSuites == null || executableTestSuites.isEmpty()
+                    || executableTestSuites.get(0).getTestDriver() == null) {
+                return null;
+            }
+            final BulkheadDefinition declared = testDriverController.getBulkhead(
+                    executableTestSuites.get(0).getTestDriver().getId());
+            if (declared == null) {
+                return null;
+            }
+            final Integer configuredLimit = configuredLimits.get(declared.getName());
+            return configuredLimit != null ? new BulkheadDefinition(declared.getName(), configuredLimit) : declared;
+        });
+        statusController.setBulkheadStatusSupplier(taskPoolRegistry::getBulkheadStatus);
+    }
+
+    private void initTestObjectLocks() {
+        final Set<String> sharingTestDrivers = new HashSet<>();
+        for (final String testDriverId : etfConfig.getPropertyOrDefault(
+                EtfConfig.ETF_TESTRUNS_TESTOBJECT_SHARED, "").split(",")) {
+            if (!SUtils.isNullOrEmpty(testDriverId.trim())) {
+                sharingTestDrivers.add(testDriverId.trim());
+            }
+        }
+        taskPoolRegistry.setLocks(testRun -> {
+            final List<TestObjectDto> testObjects = testRun.getResult().getTestObjects();
+            if (testObjects == null || testObjects.isEmpty() || testObjects.get(0) == null) {
+                return null;
+            }
+            // Test Runs share the Test Object, if all Test Drivers of the Executable Test Suites only read it
+            boolean shared = !sharingTestDrivers.isEmpty();
+            if (!sharingTestDrivers.contains("*")) {
+                for (final ExecutableTestSuiteDto ets : testRun.getResult().getExecutableTestSuites()) {
+                    if (ets.getTestDriver() == null
+                            || !sharingTestDrivers.contains(ets.getTestDriver().getId().getId())) {
+                        shared = false;
+                        break;
+                    }
+                }
+            }
+            return testObjectLocks.newLock(testObjects.get(0).getId(), shared);
+        });
+    }
+
+    private static class ClaimedTestRun {
+        private final WorkQueue.WorkItem item;
+        private long renewed = System.currentTimeMillis();
+
+        private ClaimedTestRun(final WorkQueue.WorkItem item) {
+            this.item = item;
+        }
+    }
+
+    private void initWorkQueue() throws IOException {
+        final String distribution = etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_DISTRIBUTION, "local");
+        if (!"filesystem".equalsIgnoreCase(distribution.trim())) {
+            return;
+        }
+        final String queueDir = etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_DISTRIBUTION_DIR, "");
+        final File dir = SUtils.isNullOrEmpty(queueDir.trim())
+                ? etfConfig.getPropertyAsFile(EtfConstants.ETF_INTERNAL_DATABASE_DIR).expandPath("testrun-queue")
+                : new File(queueDir.trim());
+        workQueue = new FileSystemWorkQueue(dir.toPath());
+        final String nodeUrl = etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_DISTRIBUTION_NODE_URL, "").trim();
+        workerNode = SUtils.isNullOrEmpty(nodeUrl) ? etfConfig.getProperty(EtfConfig.ETF_WEBAPP_BASE_URL) : nodeUrl;
+        if (!"true".equals(etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_DISTRIBUTION_WORKER, "true"))) {
+            logger.info("Publishing Test Runs to the queue {}", dir);
+            return;
+        }
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    pollWorkQueue();
+                } catch (final Exception e) {
+                    logger.error("Polling the Test Run queue failed", e);
+                }
+            }
+        }, WORK_QUEUE_POLL_INTERVAL, WORK_QUEUE_POLL_INTERVAL);
+        logger.info("Publishing Test Runs to and executing Test Runs from the queue {} as worker {}", dir, workerNode);
+    }
+
+    /**
+     * Completes the work items of finished Test Runs, renews the leases of the running ones and claims new Test Runs if
+     * threads are idle.
+     */
+    private void pollWorkQueue() throws IOException {
+        final long now = System.currentTimeMillis();
+        for (final Map.Entry<EID, ClaimedTestRun> entry : claimedTestRuns.entrySet()) {
+            final ClaimedTestRun claimed = entry.getValue();
+            final TestRun testRun = getTaskOrNull(entry.getKey());
+            if (testRun == null || testRun.getState().isCompletedFailedOrCanceled()) {
+                claimed.item.complete();
+                claimedTestRuns.remove(entry.getKey());
+            } else if (now - claimed.renewed > WORK_ITEM_RENEW_INTERVAL) {
+                if (claimed.item.renew()) {
+                    claimed.renewed = now;
+                } else {
+                    logger.warn("Lost the lease of Test Run {}, it may be executed by another worker", entry.getKey());
+                    claimedTestRuns.remove(entry.getKey());
+                }
+            }
+        }
+        final int recovered = workQueue.recoverExpired();
+        if (recovered > 0) {
+            logger.info("Recovered {} Test Runs of unresponsive workers", recovered);
+        }
+        while (taskPoolRegistry.getActiveCount() + taskPoolRegistry.getQueuedCount() < taskPoolRegistry.getPoolSize()) {
+            final WorkQueue.WorkItem item = workQueue.claim(workerNode, WORK_ITEM_LEASE_TIME, TimeUnit.MILLISECONDS);
+            if (item == null) {
+                return;
+            }
+            startingTestRuns.add(item.getId());
+            try {
+                final EID id = startClaimedTestRun(item.getPayload());
+                claimedTestRuns.put(id, new ClaimedTestRun(item));
+            } catch (final Exception e) {
+                logger.error("Claimed Test Run {} could not be started", item.getId(), e);
+                item.fail();
+            } finally {
+                startingTestRuns.remove(item.getId());
+            }
+        }
+    }
+
+    /**
+     * Checks if a Test Run has been accepted for the distributed execution but is not yet executed, because it waits in
+     * the queue or is being initialized by this node after it has been claimed.
+     *
+     * @param id
+     *            Test Run ID
+     * @return true if the Test Run is queued
+     */
+    private boolean isQueued(final EID id) {
+        if (workQueue == null) {
+            return false;
+        }
+        if (startingTestRuns.contains(id.getId())) {
+            return true;
+        }
+        try {
+            return workQueue.isPending(id.getId());
+        } catch (final IOException | IllegalArgumentException e) {
+            logger.warn("Could not determine if Test Run {} is queued", id, e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the URL of the request on the worker node that executed a Test Run, if the Test Run has been claimed
+     * from the queue by another node. The results of a Test Run are only stored by the node that executed it.
+     *
+     * @param id
+     *            Test Run ID
+     * @param request
+     *            request for the Test Run
+     * @return URL on the executing node or null if the Test Run has not been executed by another node
+     */
+    private String getExecutingNodeLocation(final EID id, final HttpServletRequest request) {
+        if (workQueue == null) {
+            return null;
+        }
+        final String node;
+        try {
+            node = workQueue.getNode(id.getId());
+        } catch (final IOException | IllegalArgumentException e) {
+            logger.warn("Could not determine the node that executed Test Run {}", id, e);
+            return null;
+        }
+        // a queued Test Run may have been put back into the queue by a node that is not responding anymore
+        if (node == null || node.equals(workerNode) || testRunDao.exists(id) || isQueued(id)) {
+            return null;
+        }
+        final String query = request.getQueryString();
+        return node + request.getRequestURI().substring(request.getContextPath().length())
+                + (query != null ? "?" + query : "");
+    }
+
+    /**
+     * Redirects a request for a Test Run that is unknown to this node to the worker node that executed the Test Run
+     *
+     * @param id
+     *            Test Run ID
+     * @param request
+     *            request for the Test Run
+     * @param response
+     *            response
+     * @return true if the request has been redirected
+     */
+    boolean redirectToExecutingNode(final EID id, final HttpServletRequest request,
+            final HttpServletResponse response) {
+        final String location = getExecutingNodeLocation(id, request);
+        if (location == null) {
+            return false;
+        }
+        response.setStatus(HttpServletResponse.SC_TEMPORARY_REDIRECT);
+        response.setHeader(HttpHeaders.LOCATION, location);
+        return true;
+    }
+
+    private void forgetExecutingNode(final EID id) {
+        if (workQueue != null) {
+            try {
+                workQueue.forget(id.getId());
+            } catch (final IOException e) {
+                logger.warn("Could not remove the executing node of deleted Test Run {}", id, e);
+            }
+        }
+    }
+
+    private TestRun getTaskOrNull(final EID id) {
+        try {
+            return taskPoolRegistry.getTaskById(id);
+        } catch (final ObjectWithIdNotFoundException e) {
+            return null;
+        }
+    }
+
+    private void publishTestRun(final AbstractTestRunRequest testRunRequest, final TestRunDto testRunDto,
+            final TaskPriority priority, final String client, final String author) throws IOException {
+        final ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("id", testRunDto.getId().getId());
+        payload.put("lang", testRunDto.getDefaultLang());
+        payload.put("priority", priority.name());
+        payload.put("client", client);
+        payload.put("author", author);
+        payload.set("request", objectMapper.valueToTree(testRunRequest));
+        workQueue.publish(testRunDto.getId().getId(), objectMapper.writeValueAsBytes(payload));
+        logger.debug("Published Test Run {} with priority {} for client {}", testRunDto.getId(), priority, client);
+    }
+
+    private EID startClaimedTestRun(final byte[] payload) throws Exception {
+        final JsonNode node = objectMapper.readTree(payload);
+        final AbstractTestRunRequest testRunRequest = objectMapper.treeToValue(node.get("request"),
+                AbstractTestRunRequest.class);
+        testRunRequest.inject(testObjectController, dataStorageService);
+        final TestRunDto testRunDto = testRunRequest.toTestRun();
+        // keep the ID that has been returned to the client
+        testRunDto.setId(EidFactory.getDefault().createAndPreserveStr(node.get("id").asText()));
+        testRunDto.setDefaultLang(node.path("lang").asText(null));
+        initTestObject(testRunDto, node.path("author").asText(null));
+        initAndSubmit(testRunDto, TaskPriority.fromString(node.path("priority").asText(null), TaskPriority.NORMAL),
+                node.path("client").asText(null));
+        logger.info("Started Test Run {} claimed from the queue", testRunDto.getId());
+        return testRunDto.getId();
+    }
+
+    private String getSchedulingClient(final TestRunDto testRunDto, final HttpServletRequest request) {
+        switch (schedulingClient) {
+        case "apikey":
+            return request.getHeader(API_KEY_HEADER);
+        case "label":
+            final String label = testRunDto.getLabel();
+            if (label == null) {
+                return null;
+            }
+            final String prefix = SUtils.leftOfSubStrOrNull(label.trim(), " ");
+            return prefix != null ? prefix : label.trim();
+        default:
+            return User.getClient(request);
+        }
+    }
+
+    /**
+     * Returns the number of parallel Test Runs for the thread mode. Virtual threads are cheap while a Test Run waits
+     * for a remote service, so more Test Runs are executed in parallel by default.
+     */
+    private int getParallelRuns(final TaskThreads taskThreads) {
+        if (!taskThreads.isVirtual()) {
+            return MAX_PARALLEL_RUNS;
+        }
+        final String virtualMax = etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_PARALLEL_VIRTUAL, "auto");
+        if (!"auto".equalsIgnoreCase(virtualMax.trim())) {
+            try {
+                return Math.max(1, Integer.parseInt(virtualMax.trim()));
+            } catch (final NumberFormatException e) {
+                logger.error("Invalid number of parallel Test Runs on virtual threads '{}', using the default",
+                        virtualMax);
+            }
+        }
+        return taskThreads.defaultParallelism(MAX_PARALLEL_RUNS);
+    }
+
     @PostConstruct
     public void init() throws ParseException, ConfigurationException, IOException {
         logger.info(Runtime.getRuntime().availableProcessors() + " cores available.");
 
+        int maxQueueSize;
+        try {
+            maxQueueSize = (int) etfConfig.getPropertyAsLong(EtfConfig.ETF_TESTRUNS_QUEUE_MAX);
+        } catch (final InvalidPropertyException e) {
+            logger.error("Invalid maximum Test Run queue size, using an unbounded queue", e);
+            maxQueueSize = 0;
+        }
+        final TaskThreads taskThreads = TaskThreads.configured(
+                etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_THREADS, TaskThreads.PLATFORM));
+        parallelRuns = getParallelRuns(taskThreads);
+        taskPoolRegistry = new TaskPoolRegistry<>(
+                parallelRuns, parallelRuns, maxQueueSize, createSchedulingPolicy());
+        taskPoolRegistry.setTaskThreads(taskThreads);
+        logger.info("Executing up to {} Test Runs in parallel on {} threads", parallelRuns, taskThreads.getName());
+        schedulingClient = etfConfig.getPropertyOrDefault(EtfConfig.ETF_TESTRUNS_SCHEDULING_CLIENT, "address")
+                .toLowerCase(Locale.ENGLISH);
+        initResourceBudget();
+        initBulkheads();
+        initTestObjectLocks();
+
         // SEL dir
         System.setProperty("ETF_SEL_GROOVY",
                 etfConfig.getPropertyAsFile(EtfConstants.ETF_PROJECTS_DIR).expandPath("sui").getPath());
@@ -221,6 +835,9 @@ public class TestRunController implements TestRunEventListener {
                 0, TimeUnit.HOURS);
         // 7,5 minutes
         timer.scheduleAtFixedRate(timedExpiredItemsRemover, 450000, 450000);
+        initAdaptivePoolSizing();
+        initWorkQueue();
+        eventStream = new TestRunEventStream(objectMapper, 2);
 
         logger.info("Test Run controller initialized!");
     }
@@ -231,6 +848,9 @@ public class TestRunController implements TestRunEventListener {
         if (this.timer != null) {
             timer.cancel();
         }
+        if (this.eventStream != null) {
+            eventStream.shutdown();
+        }
     }
 
     void addMetaData(final Model model) {
@@ -238,7 +858,8 @@ public class TestRunController implements TestRunEventListener {
         model.addAttribute("testDriversInfo", testDriverController.getTestDriverInfo());
     }
 
-    private void initAndSubmit(TestRunDto testRunDto) throws LocalizableApiError {
+    private void initAndSubmit(final TestRunDto testRunDto, final TaskPriority priority, final String client)
+            throws LocalizableApiError {
         try {
             final TestRun testRun = testDriverController.create(testRunDto);
             Objects.requireNonNull(testRun, "Test Driver created invalid TestRun").addTestRunEventListener(this);
@@ -253,7 +874,8 @@ public class TestRunController implements TestRunEventListener {
              * testObjectController.getTestObjStore().exists(tO.getId())) { testObjectController.getTestObjStore().update(tO); }
              */
             testResultController.storeTestRun(testRunDto);
-            taskPoolRegistry.submitTask(testRun);
+            taskPoolRegistry.submitTask(testRun, priority, client);
+            logger.debug("Queued Test Run {} with priority {} for client {}", testRunDto.getId(), priority, client);
         } catch (Exception e) {
             throw new LocalizableApiError(
                     "l.internal.testrun.initialization.error",
@@ -295,47 +917,25 @@ public class TestRunController implements TestRunEventListener {
         try {
             final TestRunDto testRunDto = testRunRequest.toTestRun();
             testRunDto.setDefaultLang(LocaleContextHolder.getLocale().getLanguage());
-
-            final TestObjectDto tO = testRunDto.getTestObjects().get(0);
-
-            if ("true".equals(tO.properties().getProperty("temporary"))) {
-                tO.setAuthor(User.getUser(request));
-                tO.setReference(testRunDto.getId().getId());
-
-                // Add all Test Object Types supported by the first ETS
-                final Set<EID> requiredTestObjectTypeIds = new HashSet<>();
-                final Iterator<ExecutableTestSuiteDto> etsIterator = testRunDto.getExecutableTestSuites().iterator();
-
-                requiredTestObjectTypeIds
-                        .addAll(EidHolderWithParent.getAllIdsAndParentIds(etsIterator.next().getSupportedTestObjectTypes()));
-                // now iterate over the other ETS and delete all Test Object Types that are not supported by the first ETS
-                while (etsIterator.hasNext()) {
-                    final Set<EID> supportedIds = EidHolder.getAllIds(etsIterator.next().getSupportedTestObjectTypes());
-                    requiredTestObjectTypeIds.removeIf(eid -> !supportedIds.contains(eid));
-                }
-                // if the list is now empty, the Test Suites are incompatible
-                if (requiredTestObjectTypeIds.isEmpty()) {
-                    throw new LocalizableApiError("l.ets.supported.testObject.type.incompatible", false, 400);
-                }
-                testObjectController.initResourcesAndAdd(tO, requiredTestObjectTypeIds);
-            } else {
-                tO.setLocalPath(".");
-            }
-
-            // Check if test object is already in use
-            for (TestRun tR : taskPoolRegistry.getTasks()) {
-                if (!tR.getProgress().getState().isCompletedFailedCanceledOrFinalizing() &&
-                        tR.getResult() != null && tR.getResult().getTestObjects() != null &&
-                        tR.getResult().getTestObjects().get(0) != null &&
-                        tO.getId().equals(tR.getResult().getTestObjects().get(0).getId())) {
-                    logger.info("Rejecting test start: test object " + tO.getId() + " is in use");
-                    throw new LocalizableApiError("l.testObject.lock", false, 409,
-                            tO.getLabel(), tR.getLabel());
-                }
+            final TaskPriority priority = TaskPriority.fromString(request.getHeader(PRIORITY_HEADER),
+                    TaskPriority.NORMAL);
+            final String client = getSchedulingClient(testRunDto, request);
+
+            if (workQueue != null) {
+                // a worker node initializes the Test Object and executes the Test Run
+                publishTestRun(testRunRequest, testRunDto, priority, client, User.getUser(request));
+                response.setStatus(HttpStatus.ACCEPTED.value());
+                response.setHeader("Location", TEST_RUNS_URL + "/" + testRunDto.getId().getId());
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                objectMapper.writeValue(response.getOutputStream(),
+                        Collections.singletonMap("id", testRunDto.getId().getId()));
+                return;
             }
 
+            initTestObject(testRunDto, User.getUser(request));
+
             // this will save the Dto
-            initAndSubmit(testRunDto);
+            initAndSubmit(testRunDto, priority, client);
 
             response.setStatus(HttpStatus.CREATED.value());
             streamingService.asJson2(testRunDao, request, response, testRunDto.getId().getId(),
@@ -351,6 +951,39 @@ public class TestRunController implements TestRunEventListener {
         }
     }
 
+    private void initTestObject(final TestRunDto testRunDto, final String author)
+            throws LocalizableApiError, IOException, ObjectWithIdNotFoundException, InvalidPropertyException {
+        final TestObjectDto tO = testRunDto.getTestObjects().get(0);
+
+        if ("true".equals(tO.properties().getProperty("temporary"))) {
+            tO.setAuthor(author);
+            tO.setReference(testRunDto.getId().getId());
+
+            // Add all Test Object Types supported by the first ETS
+            final Set<EID> requiredTestObjectTypeIds = new HashSet<>();
+            final Iterator<ExecutableTestSuiteDto> etsIterator = testRunDto.getExecutableTestSuites().iterator();
+
+            requiredTestObjectTypeIds
+                    .addAll(EidHolderWithParent.getAllIdsAndParentIds(etsIterator.next().getSupportedTestObjectTypes()));
+            // now iterate over the other ETS and delete all Test Object Types that are not supported by the first ETS
+            while (etsIterator.hasNext()) {
+                final Set<EID> supportedIds = EidHolder.getAllIds(etsIterator.next().getSupportedTestObjectTypes());
+                requiredTestObjectTypeIds.removeIf(eid -> !supportedIds.contains(eid));
+            }
+            // if the list is now empty, the Test Suites are incompatible
+            if (requiredTestObjectTypeIds.isEmpty()) {
+                throw new LocalizableApiError("l.ets.supported.testObject.type.incompatible", false, 400);
+            }
+            testObjectController.initResourcesAndAdd(tO, requiredTestObjectTypeIds);
+        } else {
+            tO.setLocalPath(".");
+        }
+
+        if (testObjectLocks.isLocked(tO.getId())) {
+            logger.info("Test Object {} is in use, queuing the Test Run", tO.getId());
+        }
+    }
+
     //
     // Rest interfaces
     ///////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -358,7 +991,8 @@ public class TestRunController implements TestRunEventListener {
     @ApiOperation(value = "Get the Test Run progress as JSON", notes = "Retrieve one Test Run status including log messages, the estimated total number of Test Steps and the number of already executed Test Steps", produces = "application/json", tags = {
             TEST_RUNS_TAG_NAME})
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Task progress returned", response = TaskProgressDto.class),
+            @ApiResponse(code = 200, message = "Task progress returned. If the Test Run waits in the queue of the "
+                    + "distributed execution, the values of the val and max properties are 0.", response = TaskProgressDto.class),
             @ApiResponse(code = 404, message = "Test Run not found", response = Void.class),
     })
     @RequestMapping(value = API_BASE_URL + "/TestRuns/{id}/progress", method = RequestMethod.GET)
@@ -373,6 +1007,7 @@ public class TestRunController implements TestRunEventListener {
                     + "In the meantime the service logged a total of 13 messages. As the client knows the first three "
                     + "messages the service will skip the first 3 messages and return the 10 new messages."
                     + "The test run completed when the value of the val property and the value of the pos property are equal. ", example = "13", required = false, defaultValue = "0") @RequestParam(value = "pos", required = false) String strPos,
+            final HttpServletRequest request,
             final HttpServletResponse response) throws StorageException {
 
         long position = 0;
@@ -391,7 +1026,9 @@ public class TestRunController implements TestRunEventListener {
             if (testRunDao.exists(eid)) {
                 logger.info("Notifying web client about already finished Test Run");
                 return TaskProgressDto.createAlreadyCompleted();
-            } else {
+            } else if (isQueued(eid)) {
+                return TaskProgressDto.createQueuedMsg();
+            } else if (!redirectToExecutingNode(eid, request, response)) {
                 response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             }
             return null;
@@ -426,6 +1063,59 @@ public class TestRunController implements TestRunEventListener {
         return new TaskProgressDto();
     }
 
+    @ApiOperation(value = "Stream the Test Run progress as server-sent events", notes = "Pushes the Test Run status "
+            + "including new log messages, the estimated total number of Test Steps and the number of already executed "
+            + "Test Steps as 'progress' events, each with the same JSON structure as the progress interface. "
+            + "The id of an event is the number of log messages sent so far. A reconnecting client sends the last "
+            + "received id in the 'Last-Event-ID' header and resumes from this position. The stream is closed after the "
+            + "Test Run finished. If the Test Run waits in the queue of the distributed execution, one event with val and "
+            + "max set to 0 is sent and the stream is closed, so that the client reconnects.", produces = "text/event-stream", tags = {
+                    TEST_RUNS_TAG_NAME})
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Event stream opened"),
+            @ApiResponse(code = 404, message = "Test Run not found", response = Void.class),
+    })
+    @RequestMapping(value = API_BASE_URL + "/TestRuns/{id}/progress/stream", method = RequestMethod.GET, produces = "text/event-stream")
+    public SseEmitter progressStream(
+            @ApiParam(value = "Test Run ID. "
+                    + EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id,
+            @ApiParam(value = "The position in the logs from where to start, see the progress interface. "
+                    + "Ignored if the 'Last-Event-ID' header is set.", example = "13", required = false, defaultValue = "0") @RequestParam(value = "pos", required = false) String strPos,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            final HttpServletRequest request,
+            final HttpServletResponse response) throws StorageException {
+
+        long position = 0;
+        final String resumePosition = !SUtils.isNullOrEmpty(lastEventId) ? lastEventId : strPos;
+        if (!SUtils.isNullOrEmpty(resumePosition)) {
+            try {
+                position = Math.max(0, Long.parseLong(resumePosition.trim()));
+            } catch (final NumberFormatException e) {
+                position = 0;
+            }
+        }
+
+        final EID eid = EidConverter.toEid(id);
+        final TestRun testRun;
+        try {
+            testRun = taskPoolRegistry.getTaskById(eid);
+        } catch (ObjectWithIdNotFoundException e) {
+            if (testRunDao.exists(eid)) {
+                return eventStream.single(TaskProgressDto.createAlreadyCompleted());
+            }
+            if (isQueued(eid)) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+                return eventStream.single(TaskProgressDto.createQueuedMsg());
+            }
+            if (!redirectToExecutingNode(eid, request, response)) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            }
+            return null;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        return eventStream.subscribe(testRun, position);
+    }
+
     @ApiOperation(value = "Get the progress of all Test Runs", notes = "Retrieve status information about all non-completed Test Runs", tags = {
             TEST_RUNS_TAG_NAME})
     @ApiResponses(value = {
@@ -438,7 +1128,40 @@ public class TestRunController implements TestRunEventListener {
         return testRunsJsonViews;
     }
 
-    @ApiOperation(value = "Check if the Test Run exists", notes = "Checks whether a Test Run is running or has already been completed and a report has been saved. ", tags = {
+    @ApiOperation(value = "Get the queue wait times of Test Runs", notes = "Retrieve the number of queued Test Runs and "
+            + "the wait time percentiles of recently started Test Runs for each priority class. The priority class of a "
+            + "Test Run can be set with the '" + PRIORITY_HEADER + "' header when the Test Run is started.", tags = {
+                    TEST_RUNS_TAG_NAME})
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK"),
+    })
+    @RequestMapping(value = API_BASE_URL + "/TestRuns", params = "view=queue", method = RequestMethod.GET)
+    public @ResponseBody List<TestRunQueueJsonView> listTestRunQueueJson() {
+        final List<TestRunQueueJsonView> queueJsonViews = new ArrayList<>();
+        for (final TaskPriority priority : TaskPriority.values()) {
+            queueJsonViews.add(new TestRunQueueJsonView(priority, taskPoolRegistry));
+        }
+        return queueJsonViews;
+    }
+
+    @ApiOperation(value = "Get the decisions of the adaptive Test Run pool sizing", notes = "Retrieve the recent "
+            + "decisions which changed or kept the number of parallel Test Runs, together with the resource metrics "
+            + "they were based on. The list is empty if the adaptive pool sizing is disabled.", tags = {
+                    TEST_RUNS_TAG_NAME})
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK"),
+    })
+    @RequestMapping(value = API_BASE_URL + "/TestRuns", params = "view=pool", method = RequestMethod.GET)
+    public @ResponseBody List<PoolSizingDecisionJsonView> listPoolSizingDecisionsJson() {
+        final List<PoolSizingDecisionJsonView> decisionJsonViews = new ArrayList<>();
+        if (adaptivePoolSizing != null) {
+            adaptivePoolSizing.getDecisions().forEach(d -> decisionJsonViews.add(new PoolSizingDecisionJsonView(d)));
+        }
+        return decisionJsonViews;
+    }
+
+    @ApiOperation(value = "Check if the Test Run exists", notes = "Checks whether a Test Run is running, waits in the queue "
+            + "of the distributed execution or has already been completed and a report has been saved. ", tags = {
             TEST_RESULTS_TAG_NAME, TEST_RUNS_TAG_NAME})
     @ApiResponses(value = {
             @ApiResponse(code = 204, message = "Test Run exists", response = Void.class),
@@ -447,10 +1170,23 @@ public class TestRunController implements TestRunEventListener {
     @RequestMapping(value = {TEST_RUNS_URL + "/{id}"}, method = RequestMethod.HEAD)
     public ResponseEntity exists(
             @ApiParam(value = "Test Run ID. "
-                    + EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id) {
+                    + EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id,
+            final HttpServletRequest request) {
         final EID eid = EidConverter.toEid(id);
-        return taskPoolRegistry.contains(eid) || testRunDao.exists(eid) ? new ResponseEntity(HttpStatus.NO_CONTENT)
-                : new ResponseEntity(HttpStatus.NOT_FOUND);
+        if (taskPoolRegistry.contains(eid) || testRunDao.exists(eid) || isQueued(eid)) {
+            return new ResponseEntity(HttpStatus.NO_CONTENT);
+        }
+        return notFoundOrRedirect(eid, request);
+    }
+
+    private ResponseEntity notFoundOrRedirect(final EID eid, final HttpServletRequest request) {
+        final String location = getExecutingNodeLocation(eid, request);
+        if (location != null) {
+            final HttpHeaders responseHeaders = new HttpHeaders();
+            responseHeaders.set(HttpHeaders.LOCATION, location);
+            return new ResponseEntity(responseHeaders, HttpStatus.TEMPORARY_REDIRECT);
+        }
+        return new ResponseEntity(HttpStatus.NOT_FOUND);
     }
 
     @ApiOperation(value = "Cancel and delete a Test Run", notes = "Cancels a running Test Run or deletes an already completed and saved report.", response = Void.class, tags = {
@@ -464,23 +1200,27 @@ public class TestRunController implements TestRunEventListener {
     @RequestMapping(value = TEST_RUNS_URL + "/{id}", method = RequestMethod.DELETE)
     public ResponseEntity delete(
             @ApiParam(value = "Test Run ID. "
-                    + EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id)
+                    + EID_DESCRIPTION, example = EID_EXAMPLE, required = true) @PathVariable String id,
+            final HttpServletRequest request)
             throws LocalizableApiError {
         final EID eid = EidConverter.toEid(id);
         final HttpHeaders responseHeaders = new HttpHeaders();
         try {
             if (taskPoolRegistry.contains(eid)) {
                 responseHeaders.set("action", "canceled");
-                taskPoolRegistry.cancelTask(eid);
-                try {
-                    ((WriteDao) testRunDao).delete(eid);
-                } catch (ObjectWithIdNotFoundException | StorageException ignore) {
-                    ExcUtils.suppress(ignore);
-                }
+                // delete the Test Run after it has been released, without blocking the request
+                taskPoolRegistry.cancelTask(eid).thenRun(() -> {
+                    try {
+                        ((WriteDao) testRunDao).delete(eid);
+                    } catch (ObjectWithIdNotFoundException | StorageException ignore) {
+                        ExcUtils.suppress(ignore);
+                    }
+                });
                 return new ResponseEntity(responseHeaders, HttpStatus.NO_CONTENT);
             } else if (testRunDao.exists(EidConverter.toEid(id))) {
                 responseHeaders.set("action", "deleted");
                 ((WriteDao) testRunDao).delete(eid);
+                forgetExecutingNode(eid);
                 return new ResponseEntity(responseHeaders, HttpStatus.NO_CONTENT);
             }
         } catch (ObjectWithIdNotFoundException e) {
@@ -488,7 +1228,7 @@ public class TestRunController implements TestRunEventListener {
         } catch (StorageException e) {
             throw new LocalizableApiError(e);
         }
-        return new ResponseEntity(HttpStatus.NOT_FOUND);
+        return notFoundOrRedirect(eid, request);
     }
 
     @ApiOperation(value = "Start a new Test Run", notes = "There are two ways to start a Test Run. In addition to Ad hoc test runs, in which all the necessary information "
@@ -606,10 +1346,10 @@ public class TestRunController implements TestRunEventListener {
             + "\n\n", tags = {TEST_RUNS_TAG_NAME})
     @ApiResponses(value = {
             @ApiResponse(code = 201, message = "Test Run created"),
+            @ApiResponse(code = 202, message = "Test Run published to the queue of the worker nodes"),
             @ApiResponse(code = 400, message = "Invalid request", response = ApiError.class),
             @ApiResponse(code = 404, message = "AdHoc: Test Object or Executable Test Suite not found."
                     + " Template: Test Run Template or Test Object not found.", response = ApiError.class),
-            @ApiResponse(code = 409, message = "Test Object already in use", response = ApiError.class),
             @ApiResponse(code = 500, message = "Internal error", response = ApiError.class),
     })
     @RequestMapping(value = TEST_RUNS_URL, method = RequestMethod.POST)
@@ -0,0 +1,361 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.webapp.controller;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import de.interactive_instruments.etf.model.EID;
+import de.interactive_instruments.etf.testdriver.*;
+import de.interactive_instruments.etf.webapp.controller.TestRunController.TaskProgressDto;
+import de.interactive_instruments.exceptions.ExcUtils;
+
+/**
+ * Pushes the progress and the log messages of running Test Runs to web clients as server-sent events.
+ *
+ * Every watched Test Run has one channel. The channel listens to state changes of the Test Run and its Test Tasks and
+ * to the log writer, there is no polling. Notifications that arrive while an update is pending are coalesced. New
+ * messages are read once and the event is serialized once, independent of the number of clients watching the Test Run.
+ * The channel deregisters its listeners when the Test Run ends or when the last client disconnected.
+ *
+ * The id of an event is the log position after the event. Each client has a bounded event queue. A client that does
+ * not keep up is disconnected, the browser then reconnects with the last received event id and catches up with one
+ * read.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class TestRunEventStream {
+
+    static final String EVENT_NAME = "progress";
+    // Number of events that can be queued for one client
+    private static final int CLIENT_QUEUE_SIZE = 32;
+    // Connections are closed after this time and reestablished by the browser
+    private static final long CONNECTION_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final Event END = new Event(null, null);
+
+    private final Logger logger = LoggerFactory.getLogger(TestRunEventStream.class);
+    private final ObjectMapper objectMapper;
+    // The dispatcher thread reads the logs, serializes the events and owns all channels
+    private final ExecutorService dispatcher;
+    // Writes the events to the clients, so that slow connections do not block the dispatcher
+    private final ExecutorService senders;
+    private final Map<EID, Channel> channels = new HashMap<>();
+
+    private static final class Event {
+        private final String id;
+        private final String data;
+
+        private Event(final String id, final String data) {
+            this.id = id;
+            this.data = data;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String prefix) {
+        return new ThreadFactory() {
+            private int counter;
+
+            @Override
+            public synchronized Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, prefix + ++counter);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    TestRunEventStream(final ObjectMapper objectMapper, final int senderThreads) {
+        this.objectMapper = objectMapper;
+        this.dispatcher = Executors.newSingleThreadExecutor(daemonThreads("test-run-events-"));
+        this.senders = Executors.newFixedThreadPool(senderThreads, daemonThreads("test-run-event-sender-"));
+    }
+
+    /**
+     * Subscribe to the events of a Test Run
+     *
+     * @param testRun
+     *            watched Test Run
+     * @param position
+     *            number of log messages the client already knows
+     * @return emitter that is returned to Spring MVC
+     */
+    SseEmitter subscribe(final TestRun testRun, final long position) {
+        final Client client = new Client();
+        dispatcher.execute(() -> {
+            Channel channel = channels.get(testRun.getId());
+            if (channel == null) {
+                // start at the position of the first client instead of sending the whole log again
+                channel = new Channel(testRun, Math.max(0, position));
+                channels.put(testRun.getId(), channel);
+            }
+            channel.add(client, Math.max(0, position));
+            channel.publish();
+        });
+        return client.emitter;
+    }
+
+    /**
+     * Send one message and close the connection, used for Test Runs that are not running. Clients of queued Test Runs
+     * reconnect after the connection has been closed.
+     *
+     * @param progress
+     *            final message
+     * @return emitter that is returned to Spring MVC
+     */
+    SseEmitter single(final TaskProgressDto progress) {
+        final Client client = new Client();
+        client.offer(createEvent("0", progress));
+        client.offer(END);
+        return client.emitter;
+    }
+
+    void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private Event createEvent(final String id, final TaskProgressDto progress) {
+        try {
+            return new Event(id, objectMapper.writeValueAsString(progress));
+        } catch (final JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final class Channel implements TestRunEventListener, TestRunLogListener {
+        private final TestRun testRun;
+        // null if the Test Run has already been released
+        private final TestRunLogReader logReader;
+        // set if a publication is pending, further notifications are covered by it
+        private final AtomicBoolean publishRequested = new AtomicBoolean();
+        // accessed by the dispatcher thread only
+        private final List<Client> clients = new ArrayList<>();
+        private long position;
+        private String lastVal;
+        private String lastMax;
+        private boolean closed;
+        // set after the listeners that persist the completed Test Run have been notified
+        private volatile boolean persisted;
+        // the state is not read when publishing, because a failed Test Run is finalized right afterwards
+        private volatile boolean terminated;
+
+        private Channel(final TestRun testRun, final long position) {
+            this.testRun = testRun;
+            this.position = position;
+            // The listeners are notified while the Test Run is locked. If the Test Run is already completed, the
+            // completed Test Run has been persisted by the listeners that were registered before.
+            synchronized (testRun) {
+                testRun.addTestRunEventListener(this);
+                final TaskState.STATE state = testRun.getState();
+                this.persisted = state == TaskState.STATE.COMPLETED || state == TaskState.STATE.FINALIZING;
+                this.terminated = state == TaskState.STATE.FAILED || state == TaskState.STATE.CANCELED;
+            }
+            this.logReader = testRun.getProgress().getLogReader();
+            if (logReader != null) {
+                logReader.addLogListener(this);
+            }
+        }
+
+        @Override
+        public void taskStateChangedEvent(final TestTask t, final TaskState.STATE actualState,
+                final TaskState.STATE oldState) {
+            requestPublish();
+        }
+
+        @Override
+        public void taskRunChangedEvent(final TestRun testRun, final TaskState.STATE actualState,
+                final TaskState.STATE oldState) {
+            if (actualState == TaskState.STATE.COMPLETED) {
+                // the Test Run Controller was registered first and has already persisted the Test Run
+                persisted = true;
+            } else if (actualState == TaskState.STATE.FAILED || actualState == TaskState.STATE.CANCELED) {
+                terminated = true;
+            }
+            requestPublish();
+        }
+
+        @Override
+        public void logMessagesWritten(final long messageCount) {
+            requestPublish();
+        }
+
+        private void requestPublish() {
+            if (!publishRequested.get() && publishRequested.compareAndSet(false, true)) {
+                try {
+                    dispatcher.execute(this::publish);
+                } catch (final RejectedExecutionException e) {
+                    // shut down, must not fail the notifying Test Run
+                    ExcUtils.suppress(e);
+                }
+            }
+        }
+
+        private List<String> readLog(final long from) {
+            final TestRunLogReader logReader = testRun.getProgress().getLogReader();
+            if (logReader == null) {
+                // released
+                return Collections.emptyList();
+            }
+            return logReader.getLogMessages(from);
+        }
+
+        private void add(final Client client, final long clientPosition) {
+            // catch up to the position of the channel
+            List<String> log = Collections.emptyList();
+            if (clientPosition < position) {
+                log = readLog(clientPosition);
+                log = new ArrayList<>(log.subList(0, (int) Math.min(log.size(), position - clientPosition)));
+            }
+            final long startPosition = clientPosition < position ? clientPosition : position;
+            client.offer(createEvent(String.valueOf(startPosition + log.size()),
+                    TaskProgressDto.createRunningMsg(testRun.getProgress(), log)));
+            clients.add(client);
+            client.channel = this;
+        }
+
+        private void publish() {
+            // reset first, notifications that arrive afterwards request the next publication
+            publishRequested.set(false);
+            if (closed) {
+                return;
+            }
+            clients.removeIf(c -> c.disconnected);
+            // the client requests the result after the final message, so it must not be sent before the Test Run
+            // has been persisted
+            final boolean completed = persisted;
+            final boolean terminated = this.terminated;
+            if (clients.isEmpty()) {
+                // the last client disconnected, a new channel is opened for the next client
+                close();
+                return;
+            }
+            try {
+                final List<String> log = readLog(position);
+                final TaskProgressDto progress = TaskProgressDto.createRunningMsg(testRun.getProgress(), log);
+                if (!log.isEmpty() || !progress.getVal().equals(lastVal) || !progress.getMax().equals(lastMax)) {
+                    position += log.size();
+                    lastVal = progress.getVal();
+                    lastMax = progress.getMax();
+                    broadcast(createEvent(String.valueOf(position), progress));
+                }
+                // the final message has val == max, which tells the client to stop
+                if (completed) {
+                    broadcast(createEvent(String.valueOf(position),
+                            TaskProgressDto.createCompletedMsg(testRun.getProgress())));
+                } else if (terminated) {
+                    broadcast(createEvent(String.valueOf(position),
+                            TaskProgressDto.createTerminateddMsg((int) testRun.getProgress().getMaxSteps())));
+                }
+            } catch (final RuntimeException e) {
+                logger.error("Could not publish the progress of Test Run {}", testRun.getId(), e);
+            }
+            if (completed || terminated) {
+                close();
+            }
+        }
+
+        private void broadcast(final Event event) {
+            for (final Client client : clients) {
+                client.offer(event);
+            }
+        }
+
+        private void close() {
+            closed = true;
+            testRun.removeTestRunEventListener(this);
+            if (logReader != null) {
+                logReader.removeLogListener(this);
+            }
+            broadcast(END);
+            clients.clear();
+            channels.remove(testRun.getId(), this);
+        }
+    }
+
+    private final class Client {
+        private final SseEmitter emitter = new SseEmitter(CONNECTION_TIMEOUT_MS);
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(CLIENT_QUEUE_SIZE);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean disconnected;
+        // null for single messages
+        private volatile Channel channel;
+
+        private Client() {
+            emitter.onCompletion(this::disconnect);
+            emitter.onTimeout(this::disconnect);
+        }
+
+        private void disconnect() {
+            if (!disconnected) {
+                disconnected = true;
+                final Channel watched = channel;
+                if (watched != null) {
+                    // removes the client and closes the channel if it was the last one
+                    watched.requestPublish();
+                }
+            }
+        }
+
+        private void offer(final Event event) {
+            if (disconnected) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                // too slow, let the browser reconnect and catch up
+                disconnect();
+                queue.clear();
+                queue.offer(END);
+            }
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::send);
+            }
+        }
+
+        private void send() {
+            do {
+                for (Event event; (event = queue.poll()) != null;) {
+                    try {
+                        if (event == END) {
+                            disconnect();
+                            emitter.complete();
+                            queue.clear();
+                            return;
+                        }
+                        emitter.send(SseEmitter.event().id(event.id).name(EVENT_NAME).data(event.data,
+                                MediaType.APPLICATION_JSON));
+                    } catch (final IOException | IllegalStateException e) {
+                        // connection closed by the client
+                        disconnect();
+                        queue.clear();
+                        return;
+                    }
+                }
+                sending.set(false);
+            } while (!queue.isEmpty() && sending.compareAndSet(false, true));
+        }
+    }
+}
@@ -45,6 +45,7 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import springfox.documentation.annotations.ApiIgnore;
 
@@ -147,13 +148,13 @@ public class TestRunTemplateController implements PreparedDtoResolver<TestRunTem
     @ApiOperation(value = "Get multiple Test Run Templates as JSON", notes = TEST_RUN_TEMPLATE_DESC, tags = {
             SERVICE_CAP_TAG_NAME})
     @RequestMapping(value = {TEST_RUN_TEMPLATES_URL, TEST_RUN_TEMPLATES_URL + ".json"}, method = RequestMethod.GET)
-    public void listTestRunTemplatesJson(
+    public StreamingResponseBody listTestRunTemplatesJson(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             @ApiParam(value = FIELDS_DESCRIPTION) @RequestParam(required = false, defaultValue = "*") String fields,
             HttpServletRequest request,
             HttpServletResponse response) throws IOException {
-        streaming.asJson2(testRunTemplateDao, request, response, SimpleFilter.filterItems(offset, limit, fields));
+        return streaming.asJson2(testRunTemplateDao, request, response, SimpleFilter.filterItems(offset, limit, fields));
     }
 
     @ApiOperation(value = "Get multiple Test Run Templates as XML", notes = TEST_RUN_TEMPLATE_DESC, tags = {
@@ -162,13 +163,13 @@ public class TestRunTemplateController implements PreparedDtoResolver<TestRunTem
             @ApiResponse(code = 200, message = "EtfItemCollection with multiple Test Run Templates")
     })
     @RequestMapping(value = {TEST_RUN_TEMPLATES_URL + ".xml"}, method = RequestMethod.GET)
-    public void listTestRunTemplatesXml(
+    public StreamingResponseBody listTestRunTemplatesXml(
             @ApiParam(value = OFFSET_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int offset,
             @ApiParam(value = LIMIT_DESCRIPTION) @RequestParam(required = false, defaultValue = "0") int limit,
             @ApiParam(value = FIELDS_DESCRIPTION) @RequestParam(required = false, defaultValue = "*") String fields,
             HttpServletRequest request,
             HttpServletResponse response) throws IOException {
-        streaming.asXml2(testRunTemplateDao, request, response, SimpleFilter.filterItems(offset, limit, fields));
+        return streaming.asXml2(testRunTemplateDao, request, response, SimpleFilter.filterItems(offset, limit, fields));
     }
 
     @ApiOperation(value = "Get Test Run Template as XML", notes = TEST_RUN_TEMPLATE_DESC, tags = {
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2010-2022 interactive instruments GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.interactive_instruments.etf.webapp.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import de.interactive_instruments.etf.dal.dto.result.ResultStatistics;
+import de.interactive_instruments.etf.dal.dto.result.TestResultStatus;
+import io.swagger.annotations.ApiModel;
+
+/**
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@ApiModel(value = "ResultStatistics", description = "Number of results per result type and status")
+public class ResultStatisticsView {
+
+    @ApiModel(value = "ResultCounts", description = "Number of results of one result type")
+    public final static class Counts {
+        @JsonProperty
+        private int total;
+
+        @JsonProperty
+        private Map<String, Integer> status = new LinkedHashMap<>();
+
+        private Counts(final ResultStatistics statistics, final int type) {
+            this.total = statistics.getTotal(type);
+            for (final TestResultStatus s : TestResultStatus.values()) {
+                final int count = statistics.getCount(type, s);
+                if (count > 0) {
+                    status.put(s.toString(), count);
+                }
+            }
+        }
+    }
+
+    @JsonProperty
+    private Counts testTaskResults;
+
+    @JsonProperty
+    private Counts testModuleResults;
+
+    @JsonProperty
+    private Counts testCaseResults;
+
+    @JsonProperty
+    private Counts testStepResults;
+
+    @JsonProperty
+    private Counts testAssertionResults;
+
+    public ResultStatisticsView(final ResultStatistics statistics) {
+        this.testTaskResults = new Counts(statistics, ResultStatistics.TEST_TASK_RESULT);
+        this.testModuleResults = new Counts(statistics, ResultStatistics.TEST_MODULE_RESULT);
+        this.testCaseResults = new Counts(statistics, ResultStatistics.TEST_CASE_RESULT);
+        this.testStepResults = new Counts(statistics, ResultStatistics.TEST_STEP_RESULT);
+        this.testAssertionResults = new Counts(statistics, ResultStatistics.TEST_ASSERTION_RESULT);
+    }
+}
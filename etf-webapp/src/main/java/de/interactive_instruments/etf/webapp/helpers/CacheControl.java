@@ -103,6 +103,14 @@ public class CacheControl {
         return clientNeedsUpdate(dao, request, response, 120);
     }
 
+    /**
+     * Allows clients and proxies to reuse the response for maxAge seconds. Afterwards the response must be revalidated,
+     * with the ETag or the last modification date.
+     */
+    public static void setMaxAge(final long maxAge, final HttpServletResponse response) {
+        setCache(maxAge, response);
+    }
+
     private static void setCache(final long maxAge, final HttpServletResponse response) {
         response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + maxAge);
     }
@@ -48,10 +48,29 @@ public class User {
         return userNamePrefix + getRemoteAddr(request);
     }
 
+    /**
+     * Returns the remote user or the address of the client, also if the users are not logged. Behind a proxy the
+     * address of the client is taken from the forwarding headers.
+     *
+     * @param request
+     *            HTTP request
+     * @return remote user or client address
+     */
+    public static String getClient(final HttpServletRequest request) {
+        if (!SUtils.isNullOrEmpty(request.getRemoteUser())) {
+            return request.getRemoteUser();
+        }
+        return getClientAddr(request);
+    }
+
     private static String getRemoteAddr(final HttpServletRequest request) {
         if ("false".equals(EtfConfig.getInstance().getPropertyOrDefault("etf.users.log", "false"))) {
             return "unknown";
         }
+        return getClientAddr(request);
+    }
+
+    private static String getClientAddr(final HttpServletRequest request) {
         final String remoteAddr = request.getRemoteAddr();
         try {
             if (UriUtils.isPrivateNet(remoteAddr)) {
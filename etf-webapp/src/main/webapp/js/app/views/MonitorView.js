@@ -60,6 +60,10 @@ define([
         },
 
         onShow: function (e, _this) {
+            if (window.EventSource) {
+                this.openEventStream(this);
+                return;
+            }
             this.pullLog(this.currentLogPos, this);
             var intervalMs = 6379;
             _this.progressLogPollInterval = setInterval(function() {
@@ -71,6 +75,27 @@ define([
             this.stopPolling();
         },
 
+        // Progress and log messages are pushed by the server, the browser reconnects automatically
+        openEventStream: function(_this) {
+            console.log("Monitoring "+this.testRunBaseUrl);
+            var source = new EventSource(_this.testRunBaseUrl + '/progress/stream?pos=' + _this.currentLogPos);
+            _this.progressEventSource = source;
+            source.addEventListener('progress', function (e) {
+                var jsonData = JSON.parse(e.data);
+                // The event id is the log position after the event, skip messages that are already known
+                if (!$.isEmptyObject(jsonData.log) && e.lastEventId) {
+                    var start = parseInt(e.lastEventId) - jsonData.log.length;
+                    jsonData.log = jsonData.log.slice(Math.max(0, _this.currentLogPos - start));
+                }
+                _this.handleProgress(jsonData, _this);
+            });
+            source.onerror = function () {
+                if (source.readyState === EventSource.CLOSED) {
+                    _this.connectionLost(_this);
+                }
+            };
+        },
+
         pullLog: function(pos) {
             console.log("Monitoring "+this.testRunBaseUrl);
             var _this = this;
@@ -79,71 +104,85 @@ define([
                 dataType: 'json',
                 cache: false,
                 success: function (jsonData) {
-                    try {
-                        if (!$.isEmptyObject(jsonData) && _this.progressLogPollInterval != null) {
-
-                            if (!$.isEmptyObject(jsonData.log)) {
-                                $.each(jsonData.log, function (i, logEntry) {
-                                    _this.currentLogPos++;
-                                    _this.monitorLogArea.append(logEntry + "\n");
-                                });
-                                _this.monitorLogArea.animate({
-                                    scrollTop: _this.monitorLogArea[0].scrollHeight - _this.monitorLogArea.height()
-                                }, 500);
-                            }
-
-                            if (!$.isEmptyObject(jsonData.val) && parseInt(jsonData.max) > 0) {
-                                $("#monitor-test-run-progressbar").val(jsonData.val);
-                                $("#monitor-test-run-progressbar").attr("max", jsonData.max);
-                                $("#monitor-test-run-progressbar").slider('refresh');
-
-                                if (parseInt(jsonData.val) >= parseInt(jsonData.max)) {
-                                    _this.stopPolling(_this);
-                                    console.log("Test run finished, trying to show test results: " + _this.htmlReportUrl);
-                                    // location.href = htmlReportUrl;
-                                    // $("body").pagecontainer("change", htmlReportUrl, { reload: true, transition: "slideup", changeHash: true });
-                                    $.ajax({
-                                        url: _this.htmlReportUrl,
-                                        type: "GET",
-                                        // wait 90 seconds
-                                        timeout: 90000,
-                                        error: function () {
-                                            _this.monitorLogArea.append("\nTest run finished.");
-                                            toastr.error("There was an internal problem generating the report. " +
-                                                "Please contact you administrator to check the ETF log file.", {
-                                                timeOut: 0, extendedTimeOut: 0
-                                            });
-                                        },
-                                        success: function () {
-                                            v2.changePage(_this.htmlReportUrl);
-                                        }
-                                    });
-                                }
-                            }
-                        }
-                    }catch(e) {
-                        console.error(e);
-                        _this.stopPolling();
+                    if (_this.progressLogPollInterval != null) {
+                        _this.handleProgress(jsonData, _this);
                     }
                 },
 
                 error: function () {
-                    if (_this.progressLogPollInterval != null) {
-                        _this.stopPolling();
-                        _this.monitorLogArea.append("\nConnection to test runner lost. The test could have been canceled without generating " +
-                            " a report or the internet connection to the web application has been lost!");
-                        var e = new Error("Internal error occurred during test run: " + _this.monitorLogArea.val());
-                        e.name = 'InternalTestRunError';
-                    }
+                    _this.connectionLost(_this);
                 }
             });
         },
 
+        handleProgress: function (jsonData, _this) {
+            try {
+                if (!$.isEmptyObject(jsonData)) {
+
+                    if (!$.isEmptyObject(jsonData.log)) {
+                        $.each(jsonData.log, function (i, logEntry) {
+                            _this.currentLogPos++;
+                            _this.monitorLogArea.append(logEntry + "\n");
+                        });
+                        _this.monitorLogArea.animate({
+                            scrollTop: _this.monitorLogArea[0].scrollHeight - _this.monitorLogArea.height()
+                        }, 500);
+                    }
+
+                    if (!$.isEmptyObject(jsonData.val) && parseInt(jsonData.max) > 0) {
+                        $("#monitor-test-run-progressbar").val(jsonData.val);
+                        $("#monitor-test-run-progressbar").attr("max", jsonData.max);
+                        $("#monitor-test-run-progressbar").slider('refresh');
+
+                        if (parseInt(jsonData.val) >= parseInt(jsonData.max)) {
+                            _this.stopPolling(_this);
+                            console.log("Test run finished, trying to show test results: " + _this.htmlReportUrl);
+                            // location.href = htmlReportUrl;
+                            // $("body").pagecontainer("change", htmlReportUrl, { reload: true, transition: "slideup", changeHash: true });
+                            $.ajax({
+                                url: _this.htmlReportUrl,
+                                type: "GET",
+                                // wait 90 seconds
+                                timeout: 90000,
+                                error: function () {
+                                    _this.monitorLogArea.append("\nTest run finished.");
+                                    toastr.error("There was an internal problem generating the report. " +
+                                        "Please contact you administrator to check the ETF log file.", {
+                                        timeOut: 0, extendedTimeOut: 0
+                                    });
+                                },
+                                success: function () {
+                                    v2.changePage(_this.htmlReportUrl);
+                                }
+                            });
+                        }
+                    }
+                }
+            }catch(e) {
+                console.error(e);
+                _this.stopPolling();
+            }
+        },
+
+        connectionLost: function (_this) {
+            if (_this.progressLogPollInterval != null || _this.progressEventSource != null) {
+                _this.stopPolling();
+                _this.monitorLogArea.append("\nConnection to test runner lost. The test could have been canceled without generating " +
+                    " a report or the internet connection to the web application has been lost!");
+                var e = new Error("Internal error occurred during test run: " + _this.monitorLogArea.val());
+                e.name = 'InternalTestRunError';
+            }
+        },
+
         stopPolling: function () {
             if(this.progressLogPollInterval!=null) {
                 clearInterval(this.progressLogPollInterval);
                 this.progressLogPollInterval = null;
             }
+            if(this.progressEventSource!=null) {
+                this.progressEventSource.close();
+                this.progressEventSource = null;
+            }
         },
 
         cancelTestRun: function (e) {
@@ -69,6 +69,35 @@ define([
 
                 _this.container.trigger('create');
                 _this.container.listview().listview('refresh');
+
+                // Load the result statistics when a Test Report is expanded
+                _this.container.children("li").on("collapsibleexpand", function() {
+                    _this.loadStatistics($(this).find(".test-report-statistics"));
+                });
+            });
+        },
+
+        loadStatistics: function(element) {
+            if (!element.length || element.data("requested")) {
+                return;
+            }
+            element.data("requested", true);
+            $.ajax({
+                url: this.reportBaseUrl + element.attr("data-test-run-id") + "/Statistics",
+                dataType: 'json',
+                success: function (statistics) {
+                    var assertions = statistics.testAssertionResults;
+                    var counts = _.map(assertions.status, function(count, status) {
+                        return status + ": " + count;
+                    });
+                    element.find(".test-report-statistics-counts").text(
+                        assertions.total + (counts.length ? " (" + counts.join(", ") + ")" : ""));
+                    element.show();
+                },
+                error: function () {
+                    // Test Runs without stored statistics
+                    console.log("No statistics available for Test Run " + element.attr("data-test-run-id"));
+                }
             });
         },
 